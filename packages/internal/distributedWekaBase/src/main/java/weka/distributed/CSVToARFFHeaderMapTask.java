@@ -1527,12 +1527,87 @@ public class CSVToARFFHeaderMapTask implements OptionHandler, Serializable {
 
   }
 
+  /**
+   * Returns true if any of the labels in a comma-separated list of nominal
+   * labels is quoted with a single quote (as done by Utils.quote()).
+   *
+   * @param labels the list of labels
+   * @return true if the list contains quoted labels
+   */
+  protected static boolean hasQuotedLabels(String labels) {
+    return labels.startsWith("'") || labels.indexOf(",'") >= 0;
+  }
+
+  /**
+   * Split a nominal label spec into the attribute part and the label part.
+   * Specs are split at ':' as they always have been, unless the label part
+   * contains quoted labels, in which case the spec is split at the first ':'
+   * only (a quoted label may contain ':').
+   *
+   * @param spec the nominal label spec
+   * @return the attribute part and the label part, or null if the spec is not
+   *         valid
+   */
+  protected static String[] splitNominalSpec(String spec) {
+    String[] attsAndLabels = spec.split(":");
+    if (attsAndLabels.length == 2) {
+      return attsAndLabels;
+    }
+
+    int colon = spec.indexOf(':');
+    if (colon > 0 && hasQuotedLabels(spec.substring(colon + 1))) {
+      return new String[] { spec.substring(0, colon),
+        spec.substring(colon + 1) };
+    }
+
+    return null;
+  }
+
+  /**
+   * Split a comma-separated list of nominal labels. A list without quoted
+   * labels is split at every comma, as it always has been. Otherwise labels
+   * quoted with Utils.quote() may contain commas, and are unquoted. A single
+   * quote only starts a quoted label at the beginning of the label.
+   *
+   * @param labels the list of labels
+   * @return the individual labels
+   */
+  protected static List<String> splitLabels(String labels) {
+    List<String> result = new ArrayList<String>();
+    if (!hasQuotedLabels(labels)) {
+      for (String label : labels.split(",")) {
+        result.add(label);
+      }
+      return result;
+    }
+
+    StringBuilder current = new StringBuilder();
+    boolean inQuotes = false;
+    for (int i = 0; i < labels.length(); i++) {
+      char c = labels.charAt(i);
+      if (c == '\\' && inQuotes && i < labels.length() - 1) {
+        current.append(c).append(labels.charAt(++i));
+      } else if (c == '\'' && (inQuotes || current.length() == 0)) {
+        inQuotes = !inQuotes;
+        current.append(c);
+      } else if (c == ',' && !inQuotes) {
+        result.add(Utils.unquote(current.toString()));
+        current.setLength(0);
+      } else {
+        current.append(c);
+      }
+    }
+    result.add(Utils.unquote(current.toString()));
+
+    return result;
+  }
+
   private void processNominalSpecs(int numFields) {
     if (m_nominalLabelSpecs.size() > 0) {
       for (String spec : m_nominalLabelSpecs) {
-        String[] attsAndLabels = spec.split(":");
-        if (attsAndLabels.length == 2) {
-          String[] labels = attsAndLabels[1].split(",");
+        String[] attsAndLabels = splitNominalSpec(spec);
+        if (attsAndLabels != null) {
+          List<String> labels = splitLabels(attsAndLabels[1]);
           try {
             // try as a range string first
             Range tempR = new Range();
@@ -25,11 +25,18 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
+import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
+import weka.classifiers.meta.Bagging;
 import weka.classifiers.meta.BatchPredictorVote;
 import weka.classifiers.meta.Vote;
+import weka.classifiers.trees.REPTree;
+import weka.classifiers.trees.RandomForest;
+import weka.classifiers.trees.RandomTree;
 import weka.core.Aggregateable;
 import weka.core.BatchPredictor;
+import weka.core.Instances;
+import weka.core.OptionHandler;
 
 /**
  * Reduce task for aggregating classifiers into one final model, if they all
@@ -85,10 +92,35 @@ public class WekaClassifierReduceTask implements Serializable {
    * @return the aggregated classifier
    * @throws DistributedWekaException if a problem occurs
    */
-  @SuppressWarnings("unchecked")
   public Classifier aggregate(List<Classifier> classifiers,
     List<Integer> numTrainingInstancesPerClassifier, boolean forceVote)
     throws DistributedWekaException {
+    return aggregate(classifiers, numTrainingInstancesPerClassifier,
+      forceVote, null);
+  }
+
+  /**
+   * Aggregated the supplied list of classifiers. Might discard some classifiers
+   * if they have not seen enough training data. If the header of the training
+   * data is supplied, a Vote ensemble is not forced and more than one
+   * classifier remains, RandomTrees are combined into one RandomForest and
+   * REPTrees into one Bagging ensemble.
+   * 
+   * @param classifiers the list of classifiers to aggregate
+   * @param numTrainingInstancesPerClassifier a list of integers, where each
+   *          entry is the number of training instances seen by the
+   *          corresponding classifier
+   * @param forceVote true if a Vote ensemble is to be created (even if all
+   *          classifiers could be directly aggregated to one model of the same
+   *          type
+   * @param header the header of the training data (may be null)
+   * @return the aggregated classifier
+   * @throws DistributedWekaException if a problem occurs
+   */
+  @SuppressWarnings("unchecked")
+  public Classifier aggregate(List<Classifier> classifiers,
+    List<Integer> numTrainingInstancesPerClassifier, boolean forceVote,
+    Instances header) throws DistributedWekaException {
 
     if (classifiers.size() == 0) {
       throw new DistributedWekaException("Nothing to aggregate!");
@@ -143,6 +175,13 @@ public class WekaClassifierReduceTask implements Serializable {
       }
     }
 
+    if (!forceVote && header != null && classifiers.size() > 1) {
+      Classifier trees = treeEnsemble(classifiers, header);
+      if (trees != null) {
+        return trees;
+      }
+    }
+
     Classifier base =
       allAggregateable ? classifiers.get(0)
         : batchPredictors ? new BatchPredictorVote() : new Vote();
@@ -174,6 +213,45 @@ public class WekaClassifierReduceTask implements Serializable {
     return base;
   }
 
+  /**
+   * Combines RandomTrees into a RandomForest, or REPTrees into a Bagging
+   * ensemble. The base classifier of the ensemble is an untrained tree with
+   * the options of the first tree.
+   * 
+   * @param classifiers the trees to combine
+   * @param header the header of the training data
+   * @return the ensemble, or null if the classifiers are not all RandomTrees
+   *         or all REPTrees
+   * @throws DistributedWekaException if a problem occurs
+   */
+  protected static Classifier treeEnsemble(List<Classifier> classifiers,
+    Instances header) throws DistributedWekaException {
+    Class<?> type = classifiers.get(0).getClass();
+    if (type != RandomTree.class && type != REPTree.class) {
+      return null;
+    }
+    for (Classifier c : classifiers) {
+      if (c.getClass() != type) {
+        return null;
+      }
+    }
+
+    Bagging ensemble =
+      type == RandomTree.class ? new RandomForest() : new Bagging();
+    try {
+      ensemble.setClassifier(AbstractClassifier.forName(type.getName(),
+        ((OptionHandler) classifiers.get(0)).getOptions()));
+      ensemble.setBatchSize(((BatchPredictor) classifiers.get(0))
+        .getBatchSize());
+      ensemble.setBuiltClassifiers(header,
+        classifiers.toArray(new Classifier[classifiers.size()]));
+    } catch (Exception e) {
+      throw new DistributedWekaException(e);
+    }
+
+    return ensemble;
+  }
+
   /**
    * Get list of indices of the classifiers that were discarded (if any)
    * 
@@ -0,0 +1,943 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    LocalMapReduceRunner.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.distributed.local;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import weka.classifiers.Classifier;
+import weka.classifiers.UpdateableClassifier;
+import weka.classifiers.evaluation.Evaluation;
+import weka.core.Attribute;
+import weka.core.Environment;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SerializedObject;
+import weka.core.Utils;
+import weka.core.stats.ArffSummaryNumericMetric;
+import weka.distributed.CSVToARFFHeaderMapTask;
+import weka.distributed.CSVToARFFHeaderMapTask.HeaderAndQuantileDataHolder;
+import weka.distributed.CSVToARFFHeaderReduceTask;
+import weka.distributed.CorrelationMatrixMapTask;
+import weka.distributed.CorrelationMatrixRowReduceTask;
+import weka.distributed.DistributedWekaException;
+import weka.distributed.WekaClassifierEvaluationMapTask;
+import weka.distributed.WekaClassifierEvaluationReduceTask;
+import weka.distributed.WekaClassifierMapTask;
+import weka.distributed.WekaClassifierReduceTask;
+import distributed.core.DistributedJob;
+import distributed.core.DistributedJobConfig;
+
+/**
+ * Runs the distributed map and reduce tasks in-process, using the cores of the
+ * local machine rather than a cluster. The input CSV or ARFF file is split
+ * into byte-range partitions, each partition is read in a streaming fashion by
+ * a map task running in a thread pool, and the results of the map tasks are
+ * reduced locally. Partitions are aligned to line boundaries in the same way
+ * as Hadoop's text input splits, so each data row is processed by exactly one
+ * map task.
+ * <p>
+ * ARFF input is supported for dense data. Rows are parsed with the CSV map
+ * task, which is configured from the ARFF header. As with the CSV header job,
+ * the labels of nominal attributes in a computed header are sorted.
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public class LocalMapReduceRunner {
+
+  /**
+   * A map task that processes the rows of one partition
+   *
+   * @param <T> the type of result produced by the map task
+   */
+  public static interface RowMapper<T> {
+
+    /**
+     * Process a row of data
+     *
+     * @param row the row to process
+     * @throws Exception if a problem occurs
+     */
+    void processRow(String row) throws Exception;
+
+    /**
+     * Finish processing and return the result for the partition
+     *
+     * @return the result of the map task (may be null if the partition was
+     *         empty)
+     * @throws Exception if a problem occurs
+     */
+    T finish() throws Exception;
+  }
+
+  /**
+   * Creates a map task for each partition
+   *
+   * @param <T> the type of result produced by the map tasks
+   */
+  public static interface RowMapperFactory<T> {
+
+    /**
+     * Create a map task
+     *
+     * @param partition the number of the partition that the task will process
+     * @param input information on the input file
+     * @return a new map task
+     * @throws Exception if a problem occurs
+     */
+    RowMapper<T> newMapper(int partition, InputInfo input) throws Exception;
+  }
+
+  /**
+   * Information about an input file
+   */
+  public static class InputInfo {
+
+    /** The input file */
+    protected File m_file;
+
+    /** The offset of the first data row */
+    protected long m_dataStart;
+
+    /** Attribute names from the input (null if not available) */
+    protected List<String> m_attNames;
+
+    /** The ARFF header if the input is an ARFF file, otherwise null */
+    protected Instances m_arffStructure;
+
+    /**
+     * Get the input file
+     *
+     * @return the input file
+     */
+    public File getFile() {
+      return m_file;
+    }
+
+    /**
+     * Get the attribute names from the input (if available)
+     *
+     * @return the attribute names or null if the input does not name its
+     *         columns
+     */
+    public List<String> getAttributeNames() {
+      return m_attNames;
+    }
+
+    /**
+     * Get the header of the ARFF input
+     *
+     * @return the ARFF header, or null if the input is not an ARFF file
+     */
+    public Instances getArffStructure() {
+      return m_arffStructure;
+    }
+  }
+
+  /** Number of threads to run map tasks with (0 = number of cores) */
+  protected int m_numSlots;
+
+  /** Number of partitions to split the input into (0 = number of threads) */
+  protected int m_numPartitions;
+
+  /** Options for the CSV map task that parses rows */
+  protected String m_csvMapTaskOptions = "";
+
+  /** True if the first row of CSV input holds the attribute names */
+  protected boolean m_csvHasHeaderRow;
+
+  /**
+   * Set the number of threads to run map tasks with
+   *
+   * @param slots the number of threads (0 = use as many as there are cores)
+   */
+  public void setNumSlots(int slots) {
+    m_numSlots = slots;
+  }
+
+  /**
+   * Get the number of threads to run map tasks with
+   *
+   * @return the number of threads (0 = use as many as there are cores)
+   */
+  public int getNumSlots() {
+    return m_numSlots;
+  }
+
+  /**
+   * Set the number of partitions to split the input into
+   *
+   * @param numPartitions the number of partitions (0 = one per thread)
+   */
+  public void setNumPartitions(int numPartitions) {
+    m_numPartitions = numPartitions;
+  }
+
+  /**
+   * Get the number of partitions to split the input into
+   *
+   * @return the number of partitions (0 = one per thread)
+   */
+  public int getNumPartitions() {
+    return m_numPartitions;
+  }
+
+  /**
+   * Set options for the CSV map task that is used to parse CSV rows
+   *
+   * @param opts options for the CSV map task
+   */
+  public void setCSVMapTaskOptions(String opts) {
+    m_csvMapTaskOptions = opts;
+  }
+
+  /**
+   * Get options for the CSV map task that is used to parse CSV rows
+   *
+   * @return options for the CSV map task
+   */
+  public String getCSVMapTaskOptions() {
+    return m_csvMapTaskOptions;
+  }
+
+  /**
+   * Set whether the first row of CSV input holds the attribute names
+   *
+   * @param header true if the first row of CSV input holds attribute names
+   */
+  public void setCSVHasHeaderRow(boolean header) {
+    m_csvHasHeaderRow = header;
+  }
+
+  /**
+   * Get whether the first row of CSV input holds the attribute names
+   *
+   * @return true if the first row of CSV input holds attribute names
+   */
+  public boolean getCSVHasHeaderRow() {
+    return m_csvHasHeaderRow;
+  }
+
+  /**
+   * Get the number of threads to use
+   *
+   * @return the number of threads to use
+   */
+  protected int numThreads() {
+    return m_numSlots > 0 ? m_numSlots : Runtime.getRuntime()
+      .availableProcessors();
+  }
+
+  /**
+   * Examine an input file - locate the start of the data and get attribute
+   * names and (for ARFF files) the header
+   *
+   * @param file the input file
+   * @return information on the input
+   * @throws DistributedWekaException if a problem occurs
+   */
+  public InputInfo prepareInput(File file) throws DistributedWekaException {
+    if (!file.exists()) {
+      throw new DistributedWekaException("Input file '" + file
+        + "' does not exist!");
+    }
+
+    InputInfo info = new InputInfo();
+    info.m_file = file;
+
+    PartitionLineReader reader = null;
+    try {
+      reader = new PartitionLineReader(file, 0, file.length());
+      if (file.getName().toLowerCase().endsWith(".arff")) {
+        StringBuilder header = new StringBuilder();
+        String line;
+        boolean dataFound = false;
+        while ((line = reader.readLine()) != null) {
+          header.append(line).append("\n");
+          if (line.trim().toLowerCase().startsWith("@data")) {
+            dataFound = true;
+            break;
+          }
+        }
+        if (!dataFound) {
+          throw new DistributedWekaException("No @data section in '" + file
+            + "'");
+        }
+        info.m_arffStructure =
+          new Instances(new StringReader(header.toString()));
+        info.m_attNames =
+          CSVToARFFHeaderMapTask
+            .instanceHeaderToAttributeNameList(info.m_arffStructure);
+      } else if (m_csvHasHeaderRow) {
+        String line = reader.readLine();
+        if (line != null) {
+          CSVToARFFHeaderMapTask rowHelper = newRowHelper(null);
+          rowHelper.initParserOnly(null);
+          info.m_attNames = new ArrayList<String>();
+          for (String name : rowHelper.parseRowOnly(line)) {
+            info.m_attNames.add(name.trim());
+          }
+        }
+      }
+      info.m_dataStart =
+        info.m_arffStructure != null || m_csvHasHeaderRow ? reader
+          .getPosition() : 0;
+    } catch (IOException ex) {
+      throw new DistributedWekaException(ex);
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (IOException e) {
+          // ignore
+        }
+      }
+    }
+
+    return info;
+  }
+
+  /**
+   * Create a CSV map task for parsing rows, configured with the user-supplied
+   * options and, for ARFF input, the attribute types from the ARFF header
+   *
+   * @param input information on the input (may be null)
+   * @return a configured CSV map task
+   * @throws DistributedWekaException if a problem occurs
+   */
+  protected CSVToARFFHeaderMapTask newRowHelper(InputInfo input)
+    throws DistributedWekaException {
+    CSVToARFFHeaderMapTask rowHelper = new CSVToARFFHeaderMapTask();
+    try {
+      if (!DistributedJobConfig.isEmpty(m_csvMapTaskOptions)) {
+        rowHelper.setOptions(Utils.splitOptions(m_csvMapTaskOptions));
+      }
+    } catch (Exception ex) {
+      throw new DistributedWekaException(ex);
+    }
+
+    Instances arff = input != null ? input.m_arffStructure : null;
+    if (arff != null) {
+      List<String> labelSpecs = new ArrayList<String>();
+      StringBuilder stringAtts = new StringBuilder();
+      StringBuilder dateAtts = new StringBuilder();
+      String dateFormat = null;
+      for (int i = 0; i < arff.numAttributes(); i++) {
+        Attribute att = arff.attribute(i);
+        if (att.isNominal()) {
+          StringBuilder spec = new StringBuilder().append(i + 1).append(":");
+          for (int j = 0; j < att.numValues(); j++) {
+            spec.append(j > 0 ? "," : "").append(Utils.quote(att.value(j)));
+          }
+          labelSpecs.add(spec.toString());
+        } else if (att.isString()) {
+          stringAtts.append(stringAtts.length() > 0 ? "," : "").append(i + 1);
+        } else if (att.isDate()) {
+          if (dateFormat != null && !dateFormat.equals(att.getDateFormat())) {
+            throw new DistributedWekaException("Date attributes in ARFF "
+              + "input must all use the same date format");
+          }
+          dateFormat = att.getDateFormat();
+          dateAtts.append(dateAtts.length() > 0 ? "," : "").append(i + 1);
+        } else if (att.isRelationValued()) {
+          throw new DistributedWekaException(
+            "Relational attributes are not supported");
+        }
+      }
+      rowHelper.setNominalLabelSpecs(labelSpecs.toArray());
+      rowHelper.setStringAttributes(stringAtts.toString());
+      rowHelper.setDateAttributes(dateAtts.toString());
+      if (dateFormat != null) {
+        rowHelper.setDateFormat(dateFormat);
+      }
+      rowHelper.setMissingValue("?");
+    }
+
+    return rowHelper;
+  }
+
+  /**
+   * Run map tasks over the partitions of an input file, in parallel
+   *
+   * @param file the input file
+   * @param factory creates the map task for each partition
+   * @param <T> the type of result produced by the map tasks
+   * @return the results of the map tasks, in partition order. Entries are
+   *         null for map tasks that returned null
+   * @throws DistributedWekaException if a problem occurs
+   */
+  public <T> List<T> runMapTasks(File file, RowMapperFactory<T> factory)
+    throws DistributedWekaException {
+    return runMapTasks(prepareInput(file), factory);
+  }
+
+  /**
+   * Run map tasks over the partitions of an input file, in parallel
+   *
+   * @param input the prepared input
+   * @param factory creates the map task for each partition
+   * @param <T> the type of result produced by the map tasks
+   * @return the results of the map tasks, in partition order. Entries are
+   *         null for map tasks that returned null
+   * @throws DistributedWekaException if a problem occurs
+   */
+  public <T> List<T> runMapTasks(final InputInfo input,
+    final RowMapperFactory<T> factory) throws DistributedWekaException {
+
+    int numThreads = numThreads();
+    int numPartitions = m_numPartitions > 0 ? m_numPartitions : numThreads;
+    final long length = input.m_file.length();
+    long dataLength = length - input.m_dataStart;
+    long partitionSize =
+      Math.max(1, (dataLength + numPartitions - 1) / numPartitions);
+
+    List<long[]> ranges = new ArrayList<long[]>();
+    for (long start = input.m_dataStart; start < length; start +=
+      partitionSize) {
+      ranges.add(new long[] { start, Math.min(length, start + partitionSize) });
+    }
+    final boolean arff = input.m_arffStructure != null;
+
+    List<T> results = new ArrayList<T>();
+    if (ranges.size() == 0) {
+      return results;
+    }
+
+    ExecutorService pool =
+      Executors.newFixedThreadPool(Math.min(numThreads, ranges.size()),
+        new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "Local map task");
+            t.setDaemon(true);
+            return t;
+          }
+        });
+
+    try {
+      List<Future<T>> futures = new ArrayList<Future<T>>();
+      for (int i = 0; i < ranges.size(); i++) {
+        final int partition = i;
+        final long[] range = ranges.get(i);
+        futures.add(pool.submit(new Callable<T>() {
+          @Override
+          public T call() throws Exception {
+            RowMapper<T> mapper = factory.newMapper(partition, input);
+            PartitionLineReader reader =
+              new PartitionLineReader(input.m_file, range[0], range[1]);
+            try {
+              String row;
+              while ((row = reader.readLine()) != null) {
+                String trimmed = row.trim();
+                if (trimmed.length() == 0
+                  || (arff && trimmed.startsWith("%"))) {
+                  continue;
+                }
+                if (arff && trimmed.startsWith("{")) {
+                  throw new DistributedWekaException(
+                    "Sparse ARFF data is not supported");
+                }
+                mapper.processRow(row);
+              }
+            } finally {
+              reader.close();
+            }
+
+            return mapper.finish();
+          }
+        }));
+      }
+
+      for (Future<T> f : futures) {
+        results.add(f.get());
+      }
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof DistributedWekaException) {
+        throw (DistributedWekaException) cause;
+      }
+      throw new DistributedWekaException(cause);
+    } catch (InterruptedException ex) {
+      throw new DistributedWekaException(ex);
+    } finally {
+      pool.shutdownNow();
+    }
+
+    return results;
+  }
+
+  /**
+   * Remove null entries from a list of map task results
+   *
+   * @param results the results
+   * @param <T> the type of the results
+   * @return the list, without null entries
+   * @throws DistributedWekaException if there are no non-null results
+   */
+  protected static <T> List<T> nonNull(List<T> results)
+    throws DistributedWekaException {
+    List<T> toReturn = new ArrayList<T>();
+    for (T r : results) {
+      if (r != null) {
+        toReturn.add(r);
+      }
+    }
+    if (toReturn.size() == 0) {
+      throw new DistributedWekaException("No data rows in the input!");
+    }
+
+    return toReturn;
+  }
+
+  /**
+   * Set the class index in the supplied header
+   *
+   * @param classAttribute the name or 1-based index of the class attribute,
+   *          or "first" or "last". If null or empty the last attribute is
+   *          used.
+   * @param header the header to set the class index in
+   * @throws DistributedWekaException if the class attribute can't be found
+   */
+  public static void setClassIndex(String classAttribute, Instances header)
+    throws DistributedWekaException {
+    if (DistributedJobConfig.isEmpty(classAttribute)
+      || classAttribute.equalsIgnoreCase("last")) {
+      header.setClassIndex(header.numAttributes() - 1);
+    } else if (classAttribute.equalsIgnoreCase("first")) {
+      header.setClassIndex(0);
+    } else if (header.attribute(classAttribute.trim()) != null) {
+      header.setClass(header.attribute(classAttribute.trim()));
+    } else {
+      try {
+        header.setClassIndex(Integer.parseInt(classAttribute.trim()) - 1);
+      } catch (NumberFormatException ex) {
+        throw new DistributedWekaException("Can't find class attribute: "
+          + classAttribute);
+      }
+    }
+  }
+
+  /**
+   * Compute an ARFF header (with summary attributes) for the input, using
+   * CSVToARFFHeaderMapTask and CSVToARFFHeaderReduceTask.
+   *
+   * @param file the input file
+   * @return the header with summary attributes
+   * @throws DistributedWekaException if a problem occurs
+   */
+  public Instances computeHeader(File file) throws DistributedWekaException {
+    final InputInfo input = prepareInput(file);
+    final boolean quantiles =
+      newRowHelper(input).getComputeQuartilesAsPartOfSummaryStats();
+
+    List<Object> results =
+      runMapTasks(input, new RowMapperFactory<Object>() {
+        @Override
+        public RowMapper<Object> newMapper(int partition, InputInfo in)
+          throws Exception {
+          final CSVToARFFHeaderMapTask task = newRowHelper(in);
+          final List<String> attNames =
+            in.m_attNames != null ? new ArrayList<String>(in.m_attNames)
+              : null;
+
+          return new RowMapper<Object>() {
+            protected boolean m_rowsSeen;
+
+            @Override
+            public void processRow(String row) throws Exception {
+              task.processRow(row, attNames);
+              m_rowsSeen = true;
+            }
+
+            @Override
+            public Object finish() throws Exception {
+              if (!m_rowsSeen) {
+                return null;
+              }
+              return quantiles ? task.getHeaderAndQuantileEstimators() : task
+                .getHeader();
+            }
+          };
+        }
+      });
+
+    results = nonNull(results);
+    if (quantiles) {
+      List<HeaderAndQuantileDataHolder> holders =
+        new ArrayList<HeaderAndQuantileDataHolder>();
+      for (Object o : results) {
+        holders.add((HeaderAndQuantileDataHolder) o);
+      }
+      return CSVToARFFHeaderReduceTask.aggregateHeadersAndQuartiles(holders);
+    }
+
+    List<Instances> headers = new ArrayList<Instances>();
+    for (Object o : results) {
+      headers.add((Instances) o);
+    }
+    return CSVToARFFHeaderReduceTask.aggregate(headers);
+  }
+
+  /**
+   * Creates a map task that parses rows into instances of a private copy of
+   * the supplied header and passes them on
+   */
+  protected abstract class InstanceMapper<T> implements RowMapper<T> {
+
+    /** Parses rows */
+    protected CSVToARFFHeaderMapTask m_rowHelper;
+
+    /** Header for the parsed instances */
+    protected Instances m_header;
+
+    /** True if string values are to be set in the header */
+    protected boolean m_setStringVals;
+
+    /** Number of rows processed */
+    protected int m_numRows;
+
+    /**
+     * Constructor
+     *
+     * @param input information on the input
+     * @param header the header (without summary attributes) for the data
+     * @param setStringVals true if string values are to be set in the header
+     *          rather than accumulated in it
+     * @throws DistributedWekaException if a problem occurs
+     */
+    protected InstanceMapper(InputInfo input, Instances header,
+      boolean setStringVals) throws DistributedWekaException {
+      m_header = new Instances(header, 0);
+      m_rowHelper = newRowHelper(input);
+      m_rowHelper.initParserOnly(CSVToARFFHeaderMapTask
+        .instanceHeaderToAttributeNameList(m_header));
+      m_setStringVals = setStringVals;
+    }
+
+    @Override
+    public void processRow(String row) throws Exception {
+      processInstance(DistributedJob.parseInstance(row, m_rowHelper, m_header,
+        m_setStringVals));
+      m_numRows++;
+    }
+
+    /**
+     * Process a parsed instance
+     *
+     * @param inst the instance to process
+     * @throws Exception if a problem occurs
+     */
+    protected abstract void processInstance(Instance inst) throws Exception;
+  }
+
+  /**
+   * Build a classifier on the input using WekaClassifierMapTask and
+   * WekaClassifierReduceTask. Each partition trains a copy of the supplied map
+   * task's classifier; the partial models are then aggregated (or combined
+   * into a voted ensemble if they are not Aggregateable).
+   *
+   * @param file the input file
+   * @param headerWithSummary the header of the data (with summary attributes)
+   * @param template the configured map task to copy for each partition
+   * @param classAttribute the name or index of the class attribute
+   * @return the final classifier
+   * @throws DistributedWekaException if a problem occurs
+   */
+  public Classifier buildClassifier(File file, Instances headerWithSummary,
+    final WekaClassifierMapTask template, String classAttribute)
+    throws DistributedWekaException {
+
+    final InputInfo input = prepareInput(file);
+    final Instances trainingHeader =
+      CSVToARFFHeaderReduceTask.stripSummaryAtts(headerWithSummary);
+    setClassIndex(classAttribute, trainingHeader);
+    final boolean setStringVals =
+      template.getClassifier() instanceof UpdateableClassifier
+        && !template.getForceBatchLearningForUpdateableClassifiers();
+
+    final SerializedObject serializedTemplate;
+    try {
+      serializedTemplate = new SerializedObject(template);
+    } catch (Exception ex) {
+      throw new DistributedWekaException(ex);
+    }
+
+    List<WekaClassifierMapTask> tasks =
+      runMapTasks(input, new RowMapperFactory<WekaClassifierMapTask>() {
+        @Override
+        public RowMapper<WekaClassifierMapTask> newMapper(int partition,
+          InputInfo in) throws Exception {
+          final WekaClassifierMapTask task =
+            (WekaClassifierMapTask) serializedTemplate.getObject();
+          Environment env = new Environment();
+          env.addVariable(WekaClassifierMapTask.TOTAL_NUMBER_OF_MAPS, ""
+            + (m_numPartitions > 0 ? m_numPartitions : numThreads()));
+          task.setEnvironment(env);
+
+          InstanceMapper<WekaClassifierMapTask> mapper =
+            new InstanceMapper<WekaClassifierMapTask>(in, trainingHeader,
+              setStringVals) {
+              @Override
+              protected void processInstance(Instance inst) throws Exception {
+                task.processInstance(inst);
+              }
+
+              @Override
+              public WekaClassifierMapTask finish() throws Exception {
+                if (m_numRows == 0) {
+                  return null;
+                }
+                task.finalizeTask();
+                return task;
+              }
+            };
+          task.setup(mapper.m_header);
+
+          return mapper;
+        }
+      });
+
+    tasks = nonNull(tasks);
+    List<Classifier> classifiers = new ArrayList<Classifier>();
+    List<Integer> numTrainingInstances = new ArrayList<Integer>();
+    for (WekaClassifierMapTask t : tasks) {
+      classifiers.add(t.getClassifier());
+      numTrainingInstances.add(t.getNumTrainingInstances());
+    }
+
+    return new WekaClassifierReduceTask().aggregate(classifiers,
+      numTrainingInstances, template.getForceVotedEnsembleCreation(),
+      trainingHeader);
+  }
+
+  /**
+   * Evaluate a trained classifier on the input using
+   * WekaClassifierEvaluationMapTask and WekaClassifierEvaluationReduceTask.
+   *
+   * @param file the input file
+   * @param headerWithSummary the header of the data (with summary attributes)
+   * @param classifier the trained classifier to evaluate
+   * @param classAttribute the name or index of the class attribute
+   * @return the aggregated evaluation
+   * @throws DistributedWekaException if a problem occurs
+   */
+  public Evaluation evaluateClassifier(File file,
+    Instances headerWithSummary, Classifier classifier, String classAttribute)
+    throws DistributedWekaException {
+
+    final InputInfo input = prepareInput(file);
+    final Instances trainingHeader =
+      CSVToARFFHeaderReduceTask.stripSummaryAtts(headerWithSummary);
+    setClassIndex(classAttribute, trainingHeader);
+
+    final double[] priorsAndCount =
+      computePriors(headerWithSummary, trainingHeader);
+    final double priorsCount = priorsAndCount[priorsAndCount.length - 1];
+    final double[] classPriors =
+      Arrays.copyOf(priorsAndCount, priorsAndCount.length - 1);
+    final SerializedObject serializedClassifier;
+    try {
+      serializedClassifier = new SerializedObject(classifier);
+    } catch (Exception ex) {
+      throw new DistributedWekaException(ex);
+    }
+
+    List<Evaluation> evals =
+      runMapTasks(input, new RowMapperFactory<Evaluation>() {
+        @Override
+        public RowMapper<Evaluation> newMapper(int partition, InputInfo in)
+          throws Exception {
+          // classifiers are not guaranteed to be safe for concurrent
+          // prediction, so each partition gets its own copy
+          final WekaClassifierEvaluationMapTask task =
+            new WekaClassifierEvaluationMapTask();
+          task.setClassifier((Classifier) serializedClassifier.getObject());
+          task.setup(trainingHeader, classPriors, priorsCount, 1L, 0);
+
+          return new InstanceMapper<Evaluation>(in, trainingHeader, false) {
+            @Override
+            protected void processInstance(Instance inst) throws Exception {
+              task.processInstance(inst);
+            }
+
+            @Override
+            public Evaluation finish() throws Exception {
+              if (m_numRows == 0) {
+                return null;
+              }
+              task.finalizeTask();
+              return task.getEvaluation();
+            }
+          };
+        }
+      });
+
+    try {
+      return new WekaClassifierEvaluationReduceTask().aggregate(nonNull(evals));
+    } catch (DistributedWekaException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new DistributedWekaException(ex);
+    }
+  }
+
+  /**
+   * Compute class priors from the summary attribute for the class
+   *
+   * @param headerWithSummary the header with summary attributes
+   * @param trainingHeader the header without summary attributes, with the
+   *          class set
+   * @return the priors, with the count for the priors as the last element
+   * @throws DistributedWekaException if a problem occurs
+   */
+  protected static double[] computePriors(Instances headerWithSummary,
+    Instances trainingHeader) throws DistributedWekaException {
+    Attribute classAtt = trainingHeader.classAttribute();
+    Attribute summaryClassAtt =
+      headerWithSummary
+        .attribute(CSVToARFFHeaderMapTask.ARFF_SUMMARY_ATTRIBUTE_PREFIX
+          + classAtt.name());
+    if (summaryClassAtt == null) {
+      throw new DistributedWekaException("Unable to find the summary "
+        + "attribute for the class in the header");
+    }
+
+    double[] result;
+    if (classAtt.isNominal()) {
+      result = new double[classAtt.numValues() + 1];
+      for (int i = 0; i < classAtt.numValues(); i++) {
+        String label = classAtt.value(i);
+        String labelWithCount =
+          summaryClassAtt.value(i).replace(label + "_", "").trim();
+        try {
+          result[i] = Double.parseDouble(labelWithCount);
+        } catch (NumberFormatException ex) {
+          throw new DistributedWekaException(ex);
+        }
+      }
+      result[result.length - 1] = classAtt.numValues();
+    } else {
+      result = new double[2];
+      result[0] = ArffSummaryNumericMetric.SUM.valueFromAttribute(summaryClassAtt);
+      result[1] =
+        ArffSummaryNumericMetric.COUNT.valueFromAttribute(summaryClassAtt);
+    }
+
+    return result;
+  }
+
+  /**
+   * Compute a correlation (or covariance) matrix for the numeric attributes in
+   * the input using CorrelationMatrixMapTask and
+   * CorrelationMatrixRowReduceTask.
+   *
+   * @param file the input file
+   * @param headerWithSummary the header of the data (with summary attributes)
+   * @param template the configured map task to copy for each partition
+   * @param classAttribute the name or index of the class attribute (may be
+   *          null or empty for no class)
+   * @return the final matrix
+   * @throws DistributedWekaException if a problem occurs
+   */
+  public double[][] computeCorrelationMatrix(File file,
+    Instances headerWithSummary, final CorrelationMatrixMapTask template,
+    String classAttribute) throws DistributedWekaException {
+
+    final InputInfo input = prepareInput(file);
+    final Instances header = new Instances(headerWithSummary, 0);
+    final Instances trainingHeader =
+      CSVToARFFHeaderReduceTask.stripSummaryAtts(header);
+    if (!DistributedJobConfig.isEmpty(classAttribute)) {
+      setClassIndex(classAttribute, trainingHeader);
+      // summary atts always come after the regular ones
+      header.setClassIndex(trainingHeader.classIndex());
+    }
+
+    final SerializedObject serializedTemplate;
+    try {
+      serializedTemplate = new SerializedObject(template);
+    } catch (Exception ex) {
+      throw new DistributedWekaException(ex);
+    }
+
+    List<CorrelationMatrixMapTask> tasks =
+      runMapTasks(input, new RowMapperFactory<CorrelationMatrixMapTask>() {
+        @Override
+        public RowMapper<CorrelationMatrixMapTask> newMapper(int partition,
+          InputInfo in) throws Exception {
+          final CorrelationMatrixMapTask task =
+            (CorrelationMatrixMapTask) serializedTemplate.getObject();
+          task.setup(new Instances(header, 0));
+
+          return new InstanceMapper<CorrelationMatrixMapTask>(in,
+            trainingHeader, true) {
+            @Override
+            protected void processInstance(Instance inst) throws Exception {
+              task.processInstance(inst);
+            }
+
+            @Override
+            public CorrelationMatrixMapTask finish() throws Exception {
+              return m_numRows == 0 ? null : task;
+            }
+          };
+        }
+      });
+
+    tasks = nonNull(tasks);
+    boolean missingsReplaced = !template.getIgnoreMissingValues();
+    int numRows = tasks.get(0).getMatrix().length;
+    double[][] result = new double[numRows][numRows];
+    CorrelationMatrixRowReduceTask reduce =
+      new CorrelationMatrixRowReduceTask();
+    for (int i = 0; i < numRows; i++) {
+      List<double[]> rows = new ArrayList<double[]>();
+      List<int[]> coOcc = missingsReplaced ? null : new ArrayList<int[]>();
+      for (CorrelationMatrixMapTask t : tasks) {
+        rows.add(t.getMatrix()[i]);
+        if (coOcc != null) {
+          coOcc.add(t.getCoOccurrenceCounts()[i]);
+        }
+      }
+      double[] row =
+        reduce.aggregate(i, rows, coOcc, header, missingsReplaced,
+          template.getCovariance(), !template.getKeepClassAttributeIfSet());
+      for (int j = 0; j < row.length; j++) {
+        result[i][j] = row[j];
+        result[j][i] = row[j];
+      }
+    }
+
+    return result;
+  }
+}
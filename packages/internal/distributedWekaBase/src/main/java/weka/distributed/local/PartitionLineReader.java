@@ -0,0 +1,149 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    PartitionLineReader.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.distributed.local;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Reads the lines of a byte range of a text file. A line belongs to the
+ * partition that contains its first byte, so the readers for a set of
+ * adjacent byte ranges together return every line of the file exactly once
+ * (in the same way as Hadoop's line record reader). Lines are read in a
+ * streaming fashion, so only one line is held in memory at a time.
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public class PartitionLineReader implements Closeable {
+
+  /** Size of the read buffer */
+  protected static final int BUFFER_SIZE = 64 * 1024;
+
+  /** Character set for decoding lines */
+  protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+  /** The underlying stream */
+  protected InputStream m_in;
+
+  /** Offset of the next byte to be read */
+  protected long m_pos;
+
+  /** Lines that start at or after this offset belong to the next partition */
+  protected long m_end;
+
+  /** Holds the bytes of the line being read */
+  protected byte[] m_lineBuffer = new byte[256];
+
+  /**
+   * Constructor
+   *
+   * @param file the file to read
+   * @param start the offset of the first byte of the partition
+   * @param end the offset one past the last byte of the partition
+   * @throws IOException if a problem occurs
+   */
+  public PartitionLineReader(File file, long start, long end)
+    throws IOException {
+    FileInputStream fis = new FileInputStream(file);
+    m_end = end;
+
+    // back up one byte so that a line starting exactly at the start of
+    // the partition is not skipped
+    long seekTo = start > 0 ? start - 1 : 0;
+    fis.getChannel().position(seekTo);
+    m_in = new BufferedInputStream(fis, BUFFER_SIZE);
+    m_pos = seekTo;
+
+    if (start > 0) {
+      // the partial (or previous) line belongs to the previous partition
+      readLineBytes();
+    }
+  }
+
+  /**
+   * Read the next line of the partition
+   *
+   * @return the next line (without the line terminator), or null if there are
+   *         no more lines in this partition
+   * @throws IOException if a problem occurs
+   */
+  public String readLine() throws IOException {
+    if (m_pos >= m_end) {
+      return null;
+    }
+
+    int len = readLineBytes();
+    if (len < 0) {
+      return null;
+    }
+    if (len > 0 && m_lineBuffer[len - 1] == '\r') {
+      len--;
+    }
+
+    return new String(m_lineBuffer, 0, len, UTF8);
+  }
+
+  /**
+   * Read bytes up to and including the next newline into the line buffer
+   *
+   * @return the number of bytes in the line (excluding the newline), or -1 if
+   *         the end of the file has been reached
+   * @throws IOException if a problem occurs
+   */
+  protected int readLineBytes() throws IOException {
+    int len = 0;
+    int b;
+    while ((b = m_in.read()) >= 0) {
+      m_pos++;
+      if (b == '\n') {
+        return len;
+      }
+      if (len == m_lineBuffer.length) {
+        m_lineBuffer = Arrays.copyOf(m_lineBuffer, len * 2);
+      }
+      m_lineBuffer[len++] = (byte) b;
+    }
+
+    return len > 0 ? len : -1;
+  }
+
+  /**
+   * Get the offset of the next byte to be read
+   *
+   * @return the offset of the next byte to be read
+   */
+  public long getPosition() {
+    return m_pos;
+  }
+
+  @Override
+  public void close() throws IOException {
+    m_in.close();
+  }
+}
@@ -22,11 +22,14 @@
 package weka.distributed;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedReader;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -880,6 +883,65 @@ public class CSVToARFFHeaderMapTaskTest {
       0.000001);
   }
 
+  @Test
+  public void testUnquotedLabelSpecsParsedAsBefore() throws Exception {
+    String[] specs =
+      { "1:a,b,c", "class:yes,no", "1-3:x, y ,z", "first-last:a b,c d",
+        "1:it's,b", "1:a,,b", "1:a,b,", "1:a:b", "1:", ":a,b", "1" };
+
+    for (String spec : specs) {
+      // the parsing used before quoted labels were supported
+      String[] oldParts = spec.split(":");
+      String[] parts = CSVToARFFHeaderMapTask.splitNominalSpec(spec);
+      if (oldParts.length != 2) {
+        assertNull(spec, parts);
+        continue;
+      }
+
+      assertNotNull(spec, parts);
+      assertEquals(spec, oldParts[0], parts[0]);
+      assertEquals(spec, oldParts[1], parts[1]);
+      assertEquals(spec, Arrays.asList(oldParts[1].split(",")),
+        CSVToARFFHeaderMapTask.splitLabels(parts[1]));
+    }
+  }
+
+  @Test
+  public void testQuotedLabelSpecs() throws Exception {
+    String[] parts =
+      CSVToARFFHeaderMapTask.splitNominalSpec("1:'a:b','red, dark',plain");
+    assertEquals("1", parts[0]);
+    assertEquals(Arrays.asList("a:b", "red, dark", "plain"),
+      CSVToARFFHeaderMapTask.splitLabels(parts[1]));
+
+    assertEquals(Arrays.asList("plain", "it's"),
+      CSVToARFFHeaderMapTask.splitLabels("plain,'it\\'s'"));
+  }
+
+  @Test
+  public void testProcessCSVWithLabelSpecs() throws Exception {
+    CSVToARFFHeaderMapTask task = new CSVToARFFHeaderMapTask();
+    task.setOptions(new String[] { "-L",
+      "class:Iris-setosa,Iris-versicolor,Iris-virginica,extra" });
+
+    BufferedReader br = new BufferedReader(new StringReader(IRIS));
+    String line = br.readLine();
+    List<String> attNames = new ArrayList<String>();
+    for (String s : line.split(",")) {
+      attNames.add(s);
+    }
+    while ((line = br.readLine()) != null) {
+      task.processRow(line, attNames);
+    }
+    br.close();
+
+    Attribute classAtt = task.getHeader().attribute(4);
+    assertTrue(classAtt.isNominal());
+    assertEquals(4, classAtt.numValues());
+    assertTrue(classAtt.indexOfValue("extra") >= 0);
+    assertTrue(classAtt.indexOfValue("Iris-setosa") >= 0);
+  }
+
   public static void main(String[] args) {
     try {
       CSVToARFFHeaderMapTaskTest t = new CSVToARFFHeaderMapTaskTest();
@@ -896,6 +958,9 @@ public class CSVToARFFHeaderMapTaskTest {
       t.testCombine();
       t.testProcessRoundTripWithQuantiles();
       t.testProcessCSVSummaryAttributesUnparsableNumericValue();
+      t.testUnquotedLabelSpecsParsedAsBefore();
+      t.testQuotedLabelSpecs();
+      t.testProcessCSVWithLabelSpecs();
     } catch (Exception ex) {
       ex.printStackTrace();
     }
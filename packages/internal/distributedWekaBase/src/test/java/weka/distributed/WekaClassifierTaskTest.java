@@ -28,6 +28,9 @@ import weka.classifiers.meta.AggregateableFilteredClassifierUpdateable;
 import weka.classifiers.meta.FilteredClassifier;
 import weka.classifiers.meta.FilteredClassifierUpdateable;
 import weka.classifiers.meta.Vote;
+import weka.classifiers.trees.REPTree;
+import weka.classifiers.trees.RandomForest;
+import weka.classifiers.trees.RandomTree;
 import weka.core.Instances;
 import weka.core.Utils;
 import weka.filters.Filter;
@@ -41,6 +44,7 @@ import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -511,6 +515,88 @@ public class WekaClassifierTaskTest {
     assertTrue(aggregated instanceof Vote);
   }
 
+  @Test
+  public void testAggregatingRandomTrees() throws Exception {
+    Instances train = new Instances(new BufferedReader(new StringReader(
+      CorrelationMatrixMapTaskTest.IRIS)));
+
+    train.setClassIndex(train.numAttributes() - 1);
+    List<Classifier> toAgg = new ArrayList<Classifier>();
+    for (int j = 0; j < 2; j++) {
+      WekaClassifierMapTask task = new WekaClassifierMapTask();
+      task.setClassifier(new weka.classifiers.trees.RandomTree());
+      task.setSeed("" + (j + 1));
+      task.setup(new Instances(train, 0));
+
+      for (int i = 0; i < train.numInstances(); i++) {
+        task.processInstance(train.instance(i));
+      }
+      task.finalizeTask();
+      toAgg.add(task.getClassifier());
+    }
+
+    // the map tasks leave the trees alone
+    assertTrue(toAgg.get(0) instanceof RandomTree);
+
+    WekaClassifierReduceTask reduce = new WekaClassifierReduceTask();
+    Classifier aggregated =
+      reduce.aggregate(new ArrayList<Classifier>(toAgg), null, false, train);
+
+    // one forest rather than a Vote of trees
+    assertTrue(aggregated instanceof RandomForest);
+    RandomForest forest = (RandomForest) aggregated;
+    assertEquals(2, forest.getNumIterations());
+    // the template is an untrained tree, not one of the members
+    assertTrue(forest.getClassifier() instanceof RandomTree);
+    assertFalse(forest.getClassifier() == toAgg.get(0));
+    assertFalse(forest.getClassifier() == toAgg.get(1));
+    for (int i = 0; i < train.numInstances(); i++) {
+      double[] expected = new double[train.numClasses()];
+      for (Classifier tree : toAgg) {
+        double[] dist = tree.distributionForInstance(train.instance(i));
+        for (int j = 0; j < dist.length; j++) {
+          expected[j] += dist[j] / toAgg.size();
+        }
+      }
+      double[] dist = aggregated.distributionForInstance(train.instance(i));
+      for (int j = 0; j < dist.length; j++) {
+        assertEquals(expected[j], dist[j], 1e-6);
+      }
+    }
+
+    // without the header, or when forced, the trees are voted as before
+    assertTrue(reduce.aggregate(new ArrayList<Classifier>(toAgg)) instanceof Vote);
+    assertTrue(reduce.aggregate(new ArrayList<Classifier>(toAgg), null, true,
+      train) instanceof Vote);
+  }
+
+  @Test
+  public void testSingleTreeNotWrapped() throws Exception {
+    Instances train = new Instances(new BufferedReader(new StringReader(
+      CorrelationMatrixMapTaskTest.IRIS)));
+
+    train.setClassIndex(train.numAttributes() - 1);
+    WekaClassifierMapTask task = new WekaClassifierMapTask();
+    task.setClassifier(new REPTree());
+    task.setup(new Instances(train, 0));
+    for (int i = 0; i < train.numInstances(); i++) {
+      task.processInstance(train.instance(i));
+    }
+    task.finalizeTask();
+    assertTrue(task.getClassifier() instanceof REPTree);
+
+    // a one-map job gives the same Vote of one tree as it always has
+    List<Classifier> toAgg = new ArrayList<Classifier>();
+    toAgg.add(task.getClassifier());
+    Classifier aggregated =
+      new WekaClassifierReduceTask().aggregate(toAgg, null, false, train);
+    assertTrue(aggregated instanceof Vote);
+    for (int i = 0; i < train.numInstances(); i++) {
+      assertEquals(task.getClassifier().classifyInstance(train.instance(i)),
+        aggregated.classifyInstance(train.instance(i)), 1e-6);
+    }
+  }
+
   @Test
   public void testAggregatingAggregateableClassifiersForceVote()
     throws Exception {
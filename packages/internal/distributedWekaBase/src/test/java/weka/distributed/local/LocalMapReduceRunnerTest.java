@@ -0,0 +1,148 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    LocalMapReduceRunnerTest.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.distributed.local;
+
+import org.junit.Test;
+import weka.classifiers.Classifier;
+import weka.classifiers.evaluation.Evaluation;
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.distributed.CSVToARFFHeaderMapTaskTest;
+import weka.distributed.CSVToARFFHeaderReduceTask;
+import weka.distributed.WekaClassifierMapTask;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the local map/reduce runner
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public class LocalMapReduceRunnerTest {
+
+  protected File writeIris() throws Exception {
+    File f = File.createTempFile("iris", ".csv");
+    f.deleteOnExit();
+    FileWriter fw = new FileWriter(f);
+    fw.write(CSVToARFFHeaderMapTaskTest.IRIS);
+    fw.close();
+
+    return f;
+  }
+
+  @Test
+  public void testEachRowProcessedOnce() throws Exception {
+    File iris = writeIris();
+    LocalMapReduceRunner runner = new LocalMapReduceRunner();
+    runner.setCSVHasHeaderRow(true);
+
+    for (int p = 1; p <= 7; p++) {
+      runner.setNumPartitions(p);
+      List<int[]> counts =
+        runner.runMapTasks(iris,
+          new LocalMapReduceRunner.RowMapperFactory<int[]>() {
+            @Override
+            public LocalMapReduceRunner.RowMapper<int[]> newMapper(
+              int partition, LocalMapReduceRunner.InputInfo input) {
+              final int[] count = new int[1];
+              return new LocalMapReduceRunner.RowMapper<int[]>() {
+                @Override
+                public void processRow(String row) {
+                  count[0]++;
+                }
+
+                @Override
+                public int[] finish() {
+                  return count;
+                }
+              };
+            }
+          });
+
+      int total = 0;
+      for (int[] c : counts) {
+        total += c[0];
+      }
+      assertEquals(150, total);
+    }
+  }
+
+  @Test
+  public void testHeaderAndClassifierJobs() throws Exception {
+    File iris = writeIris();
+    LocalMapReduceRunner runner = new LocalMapReduceRunner();
+    runner.setCSVHasHeaderRow(true);
+    runner.setNumPartitions(3);
+
+    Instances headerWithSummary = runner.computeHeader(iris);
+    Instances header =
+      CSVToARFFHeaderReduceTask.stripSummaryAtts(headerWithSummary);
+    assertEquals(5, header.numAttributes());
+    assertEquals(3, header.attribute(4).numValues());
+
+    WekaClassifierMapTask task = new WekaClassifierMapTask();
+    task.setClassifier(new weka.classifiers.bayes.NaiveBayes());
+    Classifier c =
+      runner.buildClassifier(iris, headerWithSummary, task, "class");
+    assertTrue(c != null);
+
+    Evaluation eval =
+      runner.evaluateClassifier(iris, headerWithSummary, c, "class");
+    assertEquals(150, (int) eval.numInstances());
+    assertTrue(eval.pctCorrect() > 90);
+  }
+
+  @Test
+  public void testArffNominalLabelsWithSeparators() throws Exception {
+    File f = File.createTempFile("labels", ".arff");
+    f.deleteOnExit();
+    FileWriter fw = new FileWriter(f);
+    fw.write("@relation labels\n\n"
+      + "@attribute colour {'red, dark',plain,'a:b'}\n"
+      + "@attribute x numeric\n\n@data\n");
+    for (int i = 0; i < 30; i++) {
+      fw.write((i % 3 == 0 ? "'red, dark'" : i % 3 == 1 ? "plain" : "'a:b'")
+        + "," + i + "\n");
+    }
+    fw.close();
+
+    LocalMapReduceRunner runner = new LocalMapReduceRunner();
+    runner.setNumPartitions(2);
+    Instances header =
+      CSVToARFFHeaderReduceTask.stripSummaryAtts(runner.computeHeader(f));
+
+    Attribute colour = header.attribute("colour");
+    assertNotNull(colour);
+    assertTrue(colour.isNominal());
+    assertEquals(3, colour.numValues());
+    assertTrue(colour.indexOfValue("red, dark") >= 0);
+    assertTrue(colour.indexOfValue("plain") >= 0);
+    assertTrue(colour.indexOfValue("a:b") >= 0);
+  }
+}
@@ -0,0 +1,589 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+/*
+ *    MultiSeriesForecaster.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.timeseries;
+
+import weka.classifiers.evaluation.NumericPrediction;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Option;
+import weka.core.OptionHandler;
+import weka.core.Utils;
+
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds and applies one forecaster per series for data that contains many
+ * independent series (e.g. one per product) interleaved in a single set of
+ * instances. Series are identified by the value of an ID attribute. The data
+ * is split into series in a single pass (the ID attribute is removed and the
+ * header is shared between all series), and then a copy of the base
+ * forecaster is trained, primed and used to forecast each series, with
+ * several series being processed in parallel. The number of instances held in
+ * memory for any one series can be bounded, in which case only the most
+ * recent instances of each series are kept.
+ * <p/>
+ *
+ * <!-- options-start -->
+ * Valid options are: <p/>
+ *
+ * <pre> -series-id &lt;attribute name&gt;
+ *  The name of the attribute that identifies the series
+ *  that each instance belongs to.</pre>
+ *
+ * <pre> -num-slots &lt;num&gt;
+ *  Number of series to process in parallel.
+ *  (default 1 - i.e. no parallelism; 0 = number of cores)</pre>
+ *
+ * <pre> -max-history &lt;num&gt;
+ *  Maximum number of (most recent) instances to keep for
+ *  each series when training or priming.
+ *  (default 0 - i.e. keep all instances)</pre>
+ *
+ * <pre> -W &lt;forecaster spec&gt;
+ *  The base forecaster to train for each series, followed
+ *  by its options after "--".
+ *  (default: weka.classifiers.timeseries.WekaForecaster)</pre>
+ *
+ * <!-- options-end -->
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public class MultiSeriesForecaster implements OptionHandler, Serializable {
+
+  /** For serialization */
+  private static final long serialVersionUID = -2939618032735104387L;
+
+  /** The forecaster that is copied for each series */
+  protected TSForecaster m_baseForecaster = new WekaForecaster();
+
+  /** The name of the attribute that identifies the series */
+  protected String m_seriesIDField = "";
+
+  /** Number of series to process in parallel (0 = number of cores) */
+  protected int m_numExecutionSlots = 1;
+
+  /** Maximum number of instances to keep per series (0 = unlimited) */
+  protected int m_maxSeriesHistory = 0;
+
+  /** The trained forecasters, keyed by series ID */
+  protected Map<String, TSForecaster> m_forecasters;
+
+  /** Error messages for series that could not be processed */
+  protected Map<String, String> m_failedSeries =
+    new LinkedHashMap<String, String>();
+
+  /**
+   * Interface for the work that is done for each series
+   *
+   * @param <T> the type of result produced for a series
+   */
+  public static interface SeriesTask<T> {
+
+    /**
+     * Process one series
+     *
+     * @param seriesID the ID of the series
+     * @param series the instances of the series (ID attribute removed)
+     * @return the result for the series
+     * @throws Exception if the series can't be processed
+     */
+    T process(String seriesID, Instances series) throws Exception;
+  }
+
+  /**
+   * Returns a string describing this forecaster
+   *
+   * @return a description of the forecaster suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String globalInfo() {
+    return "Trains and applies a separate copy of a base forecaster to each "
+      + "of many independent series. Series are identified by the value of "
+      + "an ID attribute and are processed in parallel.";
+  }
+
+  @Override
+  public Enumeration<Option> listOptions() {
+    Vector<Option> newVector = new Vector<Option>();
+
+    newVector.add(new Option("\tThe name of the attribute that identifies "
+      + "the series\n\tthat each instance belongs to.", "series-id", 1,
+      "-series-id <attribute name>"));
+    newVector.add(new Option("\tNumber of series to process in parallel.\n"
+      + "\t(default 1 - i.e. no parallelism; 0 = number of cores)",
+      "num-slots", 1, "-num-slots <num>"));
+    newVector.add(new Option("\tMaximum number of (most recent) instances "
+      + "to keep for\n\teach series when training or priming.\n"
+      + "\t(default 0 - i.e. keep all instances)", "max-history", 1,
+      "-max-history <num>"));
+    newVector.add(new Option("\tThe base forecaster to train for each "
+      + "series, followed\n\tby its options after \"--\".\n"
+      + "\t(default: weka.classifiers.timeseries.WekaForecaster)", "W", 1,
+      "-W <forecaster spec>"));
+
+    if (m_baseForecaster instanceof OptionHandler) {
+      newVector.add(new Option("", "", 0, "\nOptions specific to forecaster "
+        + m_baseForecaster.getClass().getName() + ":"));
+      newVector.addAll(Collections.list(((OptionHandler) m_baseForecaster)
+        .listOptions()));
+    }
+
+    return newVector.elements();
+  }
+
+  @Override
+  public void setOptions(String[] options) throws Exception {
+    setSeriesIDField(Utils.getOption("series-id", options));
+
+    String slots = Utils.getOption("num-slots", options);
+    setNumExecutionSlots(slots.length() > 0 ? Integer.parseInt(slots) : 1);
+
+    String history = Utils.getOption("max-history", options);
+    setMaxSeriesHistory(history.length() > 0 ? Integer.parseInt(history) : 0);
+
+    String forecasterName = Utils.getOption('W', options);
+    if (forecasterName.length() == 0) {
+      forecasterName = WekaForecaster.class.getName();
+    }
+    TSForecaster forecaster =
+      (TSForecaster) Utils.forName(TSForecaster.class, forecasterName, null);
+    if (forecaster instanceof OptionHandler) {
+      ((OptionHandler) forecaster).setOptions(Utils.partitionOptions(options));
+    }
+    setBaseForecaster(forecaster);
+
+    Utils.checkForRemainingOptions(options);
+  }
+
+  @Override
+  public String[] getOptions() {
+    List<String> options = new ArrayList<String>();
+
+    if (m_seriesIDField.length() > 0) {
+      options.add("-series-id");
+      options.add(m_seriesIDField);
+    }
+    options.add("-num-slots");
+    options.add("" + getNumExecutionSlots());
+    options.add("-max-history");
+    options.add("" + getMaxSeriesHistory());
+    options.add("-W");
+    options.add(m_baseForecaster.getClass().getName());
+    if (m_baseForecaster instanceof OptionHandler) {
+      String[] forecasterOptions =
+        ((OptionHandler) m_baseForecaster).getOptions();
+      if (forecasterOptions.length > 0) {
+        options.add("--");
+        Collections.addAll(options, forecasterOptions);
+      }
+    }
+
+    return options.toArray(new String[options.size()]);
+  }
+
+  /**
+   * Set the forecaster that is copied and trained for each series
+   *
+   * @param forecaster the base forecaster
+   */
+  public void setBaseForecaster(TSForecaster forecaster) {
+    m_baseForecaster = forecaster;
+  }
+
+  /**
+   * Get the forecaster that is copied and trained for each series
+   *
+   * @return the base forecaster
+   */
+  public TSForecaster getBaseForecaster() {
+    return m_baseForecaster;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String baseForecasterTipText() {
+    return "The forecaster to train for each series.";
+  }
+
+  /**
+   * Set the name of the attribute that identifies the series
+   *
+   * @param name the name of the series ID attribute
+   */
+  public void setSeriesIDField(String name) {
+    m_seriesIDField = name;
+  }
+
+  /**
+   * Get the name of the attribute that identifies the series
+   *
+   * @return the name of the series ID attribute
+   */
+  public String getSeriesIDField() {
+    return m_seriesIDField;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String seriesIDFieldTipText() {
+    return "The name of the attribute that identifies the series that "
+      + "each instance belongs to.";
+  }
+
+  /**
+   * Set the number of series to process in parallel
+   *
+   * @param numSlots the number of series to process in parallel (0 = number
+   *          of cores)
+   */
+  public void setNumExecutionSlots(int numSlots) {
+    m_numExecutionSlots = numSlots;
+  }
+
+  /**
+   * Get the number of series to process in parallel
+   *
+   * @return the number of series to process in parallel
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of series to process in parallel (0 = use the "
+      + "number of cores).";
+  }
+
+  /**
+   * Set the maximum number of instances to keep for each series
+   *
+   * @param max the maximum number of (most recent) instances to keep for each
+   *          series (0 = keep all)
+   */
+  public void setMaxSeriesHistory(int max) {
+    m_maxSeriesHistory = max;
+  }
+
+  /**
+   * Get the maximum number of instances to keep for each series
+   *
+   * @return the maximum number of instances to keep for each series
+   */
+  public int getMaxSeriesHistory() {
+    return m_maxSeriesHistory;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String maxSeriesHistoryTipText() {
+    return "The maximum number of most recent instances to keep for each "
+      + "series when training or priming (0 = keep all). Bounds the memory "
+      + "used per series.";
+  }
+
+  /**
+   * Build one forecaster per series. Series that can't be modelled (e.g.
+   * because they are too short) are skipped and reported by
+   * getFailedSeries().
+   *
+   * @param data the training data containing all series. Instances within a
+   *          series are assumed to be in ascending order of time
+   * @param progress optional progress objects to report to
+   * @throws Exception if the data can't be split into series or no series
+   *           could be modelled
+   */
+  public void buildForecasters(Instances data, PrintStream... progress)
+    throws Exception {
+    Map<String, Instances> series =
+      splitSeries(data, m_seriesIDField, m_maxSeriesHistory);
+    for (PrintStream p : progress) {
+      p.println("Building forecasters for " + series.size() + " series...");
+    }
+
+    m_failedSeries.clear();
+    final TSForecaster template = m_baseForecaster;
+    m_forecasters =
+      runPerSeries(series, new SeriesTask<TSForecaster>() {
+        @Override
+        public TSForecaster process(String seriesID, Instances insts)
+          throws Exception {
+          TSForecaster forecaster = AbstractForecaster.makeCopy(template);
+          forecaster.buildForecaster(insts);
+          return forecaster;
+        }
+      }, m_numExecutionSlots, m_failedSeries);
+
+    if (m_forecasters.size() == 0 && series.size() > 0) {
+      throw new Exception("Unable to build a forecaster for any series: "
+        + m_failedSeries.values().iterator().next());
+    }
+  }
+
+  /**
+   * Prime the forecaster of each series with recent history and produce a
+   * forecast. Series that have no trained forecaster, or that fail to prime,
+   * are left out of the results and reported by getFailedSeries().
+   *
+   * @param primeData recent history for the series to forecast
+   * @param numSteps the number of steps to forecast for each series
+   * @return the forecasts (as produced by TSForecaster.forecast()) keyed by
+   *         series ID
+   * @throws Exception if no forecasters have been built or the priming data
+   *           can't be split into series
+   */
+  public Map<String, List<List<NumericPrediction>>> forecast(
+    Instances primeData, final int numSteps) throws Exception {
+    if (m_forecasters == null) {
+      throw new Exception("No forecasters have been built yet!");
+    }
+
+    Map<String, Instances> series =
+      splitSeries(primeData, m_seriesIDField, m_maxSeriesHistory);
+
+    m_failedSeries.clear();
+    return runPerSeries(series,
+      new SeriesTask<List<List<NumericPrediction>>>() {
+        @Override
+        public List<List<NumericPrediction>> process(String seriesID,
+          Instances insts) throws Exception {
+          TSForecaster forecaster = m_forecasters.get(seriesID);
+          if (forecaster == null) {
+            throw new Exception("No forecaster has been built for series '"
+              + seriesID + "'");
+          }
+          // a forecaster holds priming state, so only one thread may use it
+          // at a time
+          synchronized (forecaster) {
+            forecaster.primeForecaster(insts);
+            return forecaster.forecast(numSteps);
+          }
+        }
+      }, m_numExecutionSlots, m_failedSeries);
+  }
+
+  /**
+   * Get the IDs of the series that have a trained forecaster
+   *
+   * @return the IDs of the modelled series
+   */
+  public Collection<String> getSeriesIDs() {
+    if (m_forecasters == null) {
+      return Collections.emptyList();
+    }
+    return Collections.unmodifiableCollection(m_forecasters.keySet());
+  }
+
+  /**
+   * Get the trained forecaster for a series
+   *
+   * @param seriesID the ID of the series
+   * @return the forecaster for the series, or null if there is none
+   */
+  public TSForecaster getForecaster(String seriesID) {
+    return m_forecasters == null ? null : m_forecasters.get(seriesID);
+  }
+
+  /**
+   * Get the series that could not be processed by the last call to
+   * buildForecasters() or forecast()
+   *
+   * @return a map of error messages keyed by series ID
+   */
+  public Map<String, String> getFailedSeries() {
+    return Collections.unmodifiableMap(m_failedSeries);
+  }
+
+  /**
+   * Split data containing many series into one set of instances per series.
+   * The series ID attribute is located once and removed from a header that is
+   * shared by all the series. Instances with a missing ID are ignored.
+   *
+   * @param data the data to split
+   * @param seriesIDField the name of the attribute that identifies the series
+   * @param maxHistory the maximum number of (most recent) instances to keep
+   *          for each series, or 0 to keep all of them
+   * @return the series in order of first appearance, keyed by series ID
+   * @throws Exception if the series ID attribute can't be found
+   */
+  public static Map<String, Instances> splitSeries(Instances data,
+    String seriesIDField, int maxHistory) throws Exception {
+    Attribute idAtt = data.attribute(seriesIDField);
+    if (idAtt == null) {
+      throw new Exception("Can't find series ID attribute '" + seriesIDField
+        + "' in the data!");
+    }
+    int idIndex = idAtt.index();
+
+    ArrayList<Attribute> atts = new ArrayList<Attribute>();
+    int classIndex = -1;
+    for (int i = 0; i < data.numAttributes(); i++) {
+      if (i != idIndex) {
+        if (i == data.classIndex()) {
+          classIndex = atts.size();
+        }
+        atts.add((Attribute) data.attribute(i).copy());
+      }
+    }
+    Instances header = new Instances(data.relationName(), atts, 0);
+    header.setClassIndex(classIndex);
+
+    Map<String, Instances> series = new LinkedHashMap<String, Instances>();
+    for (int i = 0; i < data.numInstances(); i++) {
+      Instance inst = data.instance(i);
+      if (inst.isMissing(idIndex)) {
+        continue;
+      }
+      String id =
+        idAtt.isNumeric() ? Utils.doubleToString(inst.value(idIndex), 12)
+          : inst.stringValue(idIndex);
+
+      Instances s = series.get(id);
+      if (s == null) {
+        s = new Instances(header, 0);
+        series.put(id, s);
+      } else if (maxHistory > 0 && s.numInstances() >= 2 * maxHistory) {
+        // compact (amortized) so that no more than twice the limit is held
+        s = new Instances(s, s.numInstances() - maxHistory, maxHistory);
+        series.put(id, s);
+      }
+
+      double[] vals = new double[atts.size()];
+      for (int j = 0, k = 0; j < data.numAttributes(); j++) {
+        if (j != idIndex) {
+          vals[k++] = inst.value(j);
+        }
+      }
+      s.add(new DenseInstance(inst.weight(), vals));
+    }
+
+    if (maxHistory > 0) {
+      for (Map.Entry<String, Instances> e : series.entrySet()) {
+        Instances s = e.getValue();
+        if (s.numInstances() > maxHistory) {
+          e.setValue(new Instances(s, s.numInstances() - maxHistory,
+            maxHistory));
+        }
+      }
+    }
+
+    return series;
+  }
+
+  /**
+   * Run a task for each series, processing several series in parallel.
+   * Failures are recorded rather than aborting the other series.
+   *
+   * @param series the series to process, keyed by series ID
+   * @param task the task to run for each series
+   * @param numSlots the number of series to process in parallel (0 = number
+   *          of cores)
+   * @param failed a map to record error messages for failed series in
+   * @param <T> the type of result produced for a series
+   * @return the results for the series that were processed successfully, in
+   *         the order of the supplied series
+   * @throws Exception if the number of execution slots is invalid or the
+   *           calling thread is interrupted
+   */
+  public static <T> Map<String, T> runPerSeries(Map<String, Instances> series,
+    final SeriesTask<T> task, int numSlots, Map<String, String> failed)
+    throws Exception {
+    if (numSlots < 0) {
+      throw new Exception("Number of execution slots needs to be >= 0!");
+    }
+
+    Map<String, T> results = new LinkedHashMap<String, T>();
+    if (numSlots == 1 || series.size() <= 1) {
+      for (Map.Entry<String, Instances> e : series.entrySet()) {
+        try {
+          results.put(e.getKey(), task.process(e.getKey(), e.getValue()));
+        } catch (Exception ex) {
+          failed.put(e.getKey(), "" + ex.getMessage());
+        }
+      }
+      return results;
+    }
+
+    int numThreads =
+      numSlots == 0 ? Runtime.getRuntime().availableProcessors() : numSlots;
+    ExecutorService executorPool =
+      Executors.newFixedThreadPool(Math.min(numThreads, series.size()));
+    try {
+      Map<String, Future<T>> futures = new LinkedHashMap<String, Future<T>>();
+      for (final Map.Entry<String, Instances> e : series.entrySet()) {
+        futures.put(e.getKey(),
+          executorPool.submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+              return task.process(e.getKey(), e.getValue());
+            }
+          }));
+      }
+
+      for (Map.Entry<String, Future<T>> f : futures.entrySet()) {
+        try {
+          results.put(f.getKey(), f.getValue().get());
+        } catch (ExecutionException ex) {
+          failed.put(f.getKey(), "" + ex.getCause().getMessage());
+        }
+      }
+    } finally {
+      executorPool.shutdownNow();
+    }
+
+    return results;
+  }
+}
@@ -0,0 +1,404 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+/*
+ *    IncrementalLagEngine.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.timeseries.core;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Range;
+import weka.core.SparseInstance;
+import weka.core.Utils;
+import weka.filters.Filter;
+import weka.filters.unsupervised.attribute.AddExpression;
+import weka.filters.unsupervised.attribute.Copy;
+import weka.filters.unsupervised.attribute.Remove;
+import weka.filters.unsupervised.attribute.RenameAttribute;
+
+/**
+ * Computes the output of the chain of filters that TSLagMaker uses to create
+ * lagged, averaged lag, powers of time and time/lag product fields directly,
+ * one instance at a time. The chain is analysed once to determine where each
+ * output value comes from; past values of the lagged fields are then kept in
+ * a ring buffer, so each new instance costs time proportional to the number
+ * of output fields rather than a pass through every filter (each of which
+ * copies the whole instance).
+ *
+ * @author agent (agent@local)
+ * @version $Revision: $
+ */
+public class IncrementalLagEngine implements Serializable {
+
+  /** For serialization */
+  private static final long serialVersionUID = 3525153394826375427L;
+
+  /** Patterns for the expressions that TSLagMaker uses */
+  protected static final Pattern POWER = Pattern.compile("a(\\d+)\\^(\\d+)");
+  protected static final Pattern PRODUCT = Pattern.compile("a(\\d+)\\*a(\\d+)");
+  protected static final Pattern AVERAGE = Pattern
+    .compile("\\((a\\d+(?:\\+a\\d+)*)\\)/(\\d+)");
+
+  /** Where the value of an output field comes from */
+  protected static class Column implements Serializable {
+
+    /** For serialization */
+    private static final long serialVersionUID = -3080591012281294539L;
+
+    protected static final int INPUT = 0;
+    protected static final int LAG = 1;
+    protected static final int AVERAGE = 2;
+    protected static final int POWER = 3;
+    protected static final int PRODUCT = 4;
+
+    /** The kind of column */
+    protected int m_kind;
+
+    /** Input attribute index (INPUT) or history slot (LAG) */
+    protected int m_index;
+
+    /** Number of steps back in time (LAG) */
+    protected int m_lag;
+
+    /** Exponent (POWER) or denominator (AVERAGE) */
+    protected double m_constant;
+
+    /** The columns that this one is computed from */
+    protected Column[] m_args;
+
+    protected Column(int kind, int index, int lag, double constant,
+      Column... args) {
+      m_kind = kind;
+      m_index = index;
+      m_lag = lag;
+      m_constant = constant;
+      m_args = args;
+    }
+
+    /**
+     * Compute the value of this column
+     *
+     * @param input the values of the incoming instance
+     * @param engine the engine holding the history
+     * @return the value
+     */
+    protected double value(double[] input, IncrementalLagEngine engine) {
+      switch (m_kind) {
+      case INPUT:
+        return input[m_index];
+      case LAG:
+        return engine.pastValue(m_index, m_lag);
+      case POWER:
+        double base = m_args[0].value(input, engine);
+        // AddExpression outputs missing if a missing value is used
+        return Utils.isMissingValue(base) ? base : Math.pow(base, m_constant);
+      case PRODUCT:
+        return m_args[0].value(input, engine) * m_args[1].value(input, engine);
+      default:
+        // missing values (NaN) propagate, as they do in AddExpression
+        double sum = m_args[0].value(input, engine);
+        for (int i = 1; i < m_args.length; i++) {
+          sum += m_args[i].value(input, engine);
+        }
+        return sum / m_constant;
+      }
+    }
+  }
+
+  /** The structure of the instances that are input */
+  protected Instances m_inputFormat;
+
+  /** The structure of the instances that are output */
+  protected Instances m_outputFormat;
+
+  /** Where the value for each output field comes from */
+  protected Column[] m_columns;
+
+  /** Input attribute index of the field held in each history slot */
+  protected int[] m_laggedFields;
+
+  /** Past values of the lagged fields - a ring buffer of rows */
+  protected double[][] m_history;
+
+  /** Position in the ring buffer that the next row goes into */
+  protected int m_next;
+
+  /** Number of rows currently in the history */
+  protected int m_historySize;
+
+  /**
+   * Protected constructor - use create()
+   */
+  protected IncrementalLagEngine() {
+  }
+
+  /**
+   * Analyse a chain of filters and create an engine that computes the same
+   * output. Returns null if the chain contains filters (or settings) that the
+   * engine can't reproduce, in which case the filters must be used.
+   *
+   * @param filters the chain of filters, in the order that they are applied.
+   *          All must have had their input format set
+   * @return an engine, or null if the chain is not supported
+   */
+  public static IncrementalLagEngine create(List<Filter> filters) {
+    if (filters == null || filters.size() == 0) {
+      return null;
+    }
+    Instances inputFormat = filters.get(0).getCopyOfInputFormat();
+    if (inputFormat == null
+      || inputFormat.checkForAttributeType(Attribute.STRING)
+      || inputFormat.checkForAttributeType(Attribute.RELATIONAL)) {
+      return null;
+    }
+
+    List<Column> columns = new ArrayList<Column>();
+    for (int i = 0; i < inputFormat.numAttributes(); i++) {
+      columns.add(new Column(Column.INPUT, i, 0, 0));
+    }
+    Map<Integer, Integer> slots = new HashMap<Integer, Integer>();
+    int maxLag = 0;
+
+    for (Filter f : filters) {
+      if (f instanceof Copy) {
+        Range r =
+          selection(((Copy) f).getAttributeIndices(),
+            ((Copy) f).getInvertSelection(), columns.size());
+        int numColumns = columns.size();
+        for (int i = 0; i < numColumns; i++) {
+          if (r.isInRange(i)) {
+            columns.add(columns.get(i));
+          }
+        }
+      } else if (f instanceof RenameAttribute) {
+        // no change to values
+      } else if (f instanceof TimeSeriesTranslate) {
+        TimeSeriesTranslate t = (TimeSeriesTranslate) f;
+        if (t.getInstanceRange() >= 0 || !t.getFillWithMissing()) {
+          return null;
+        }
+        Range r =
+          selection(t.getAttributeIndices(), t.getInvertSelection(),
+            columns.size());
+        int classIndex = t.getCopyOfInputFormat().classIndex();
+        for (int i = 0; i < columns.size(); i++) {
+          if (i != classIndex && r.isInRange(i)) {
+            Column source = columns.get(i);
+            if (source.m_kind != Column.INPUT) {
+              return null;
+            }
+            Integer slot = slots.get(source.m_index);
+            if (slot == null) {
+              slot = slots.size();
+              slots.put(source.m_index, slot);
+            }
+            int lag = -t.getInstanceRange();
+            columns.set(i, new Column(Column.LAG, slot, lag, 0));
+            maxLag = Math.max(maxLag, lag);
+          }
+        }
+      } else if (f instanceof Remove) {
+        Range r =
+          selection(((Remove) f).getAttributeIndices(),
+            ((Remove) f).getInvertSelection(), columns.size());
+        List<Column> kept = new ArrayList<Column>();
+        for (int i = 0; i < columns.size(); i++) {
+          if (!r.isInRange(i)) {
+            kept.add(columns.get(i));
+          }
+        }
+        columns = kept;
+      } else if (f instanceof AddExpression) {
+        Column c =
+          parseExpression(((AddExpression) f).getExpression(), columns);
+        if (c == null) {
+          return null;
+        }
+        columns.add(c);
+      } else {
+        return null;
+      }
+    }
+
+    Instances outputFormat = filters.get(filters.size() - 1).getOutputFormat();
+    if (outputFormat.numAttributes() != columns.size()) {
+      return null;
+    }
+
+    IncrementalLagEngine engine = new IncrementalLagEngine();
+    engine.m_inputFormat = inputFormat;
+    engine.m_outputFormat = outputFormat;
+    engine.m_columns = columns.toArray(new Column[columns.size()]);
+    engine.m_laggedFields = new int[slots.size()];
+    for (Map.Entry<Integer, Integer> e : slots.entrySet()) {
+      engine.m_laggedFields[e.getValue()] = e.getKey();
+    }
+    engine.m_history = new double[maxLag][slots.size()];
+
+    return engine;
+  }
+
+  /**
+   * Create a range selection, resolved against the supplied number of
+   * attributes
+   *
+   * @param indices the range string
+   * @param invert true if the selection is inverted
+   * @param numAttributes the number of attributes
+   * @return the range
+   */
+  protected static Range selection(String indices, boolean invert,
+    int numAttributes) {
+    Range r = new Range(indices);
+    r.setInvert(invert);
+    r.setUpper(numAttributes - 1);
+
+    return r;
+  }
+
+  /**
+   * Parse one of the expressions that TSLagMaker creates for AddExpression
+   * filters - i.e. a power of an attribute, a product of two attributes or
+   * the average of several attributes.
+   *
+   * @param expression the expression
+   * @param columns the current columns (attribute references are 1-based)
+   * @return a column that computes the expression, or null if the expression
+   *         is not supported
+   */
+  protected static Column parseExpression(String expression,
+    List<Column> columns) {
+    String e = expression.replaceAll("\\s+", "");
+    try {
+      Matcher m = POWER.matcher(e);
+      if (m.matches()) {
+        return new Column(Column.POWER, 0, 0, Integer.parseInt(m.group(2)),
+          columns.get(Integer.parseInt(m.group(1)) - 1));
+      }
+      m = PRODUCT.matcher(e);
+      if (m.matches()) {
+        return new Column(Column.PRODUCT, 0, 0, 0,
+          columns.get(Integer.parseInt(m.group(1)) - 1),
+          columns.get(Integer.parseInt(m.group(2)) - 1));
+      }
+      m = AVERAGE.matcher(e);
+      if (m.matches()) {
+        String[] refs = m.group(1).split("\\+");
+        Column[] args = new Column[refs.length];
+        for (int i = 0; i < refs.length; i++) {
+          args[i] = columns.get(Integer.parseInt(refs[i].substring(1)) - 1);
+        }
+        return new Column(Column.AVERAGE, 0, 0, Integer.parseInt(m.group(2)),
+          args);
+      }
+    } catch (IndexOutOfBoundsException ex) {
+      // reference to a non-existent attribute
+    }
+
+    return null;
+  }
+
+  /**
+   * Get the structure of the instances output by this engine
+   *
+   * @return the output structure
+   */
+  public Instances getOutputFormat() {
+    return m_outputFormat;
+  }
+
+  /**
+   * Clear the history of past values
+   */
+  public void reset() {
+    m_next = 0;
+    m_historySize = 0;
+  }
+
+  /**
+   * Get the value of a lagged field from a previous instance
+   *
+   * @param slot the history slot of the field
+   * @param lag the number of steps back in time
+   * @return the value, or missing if not enough instances have been seen
+   */
+  protected double pastValue(int slot, int lag) {
+    if (lag > m_historySize) {
+      return Utils.missingValue();
+    }
+    int row = (m_next - lag + m_history.length) % m_history.length;
+
+    return m_history[row][slot];
+  }
+
+  /**
+   * Process an instance, producing the corresponding output instance
+   *
+   * @param source the instance to process (in the input format - any
+   *          trailing values beyond those of the input format are ignored)
+   * @param temporary true if the instance should not be added to the history
+   *          - i.e. just see how it would be transformed
+   * @return the transformed instance
+   * @throws Exception if the instance does not have the expected structure
+   */
+  public Instance process(Instance source, boolean temporary)
+    throws Exception {
+    if (source.numAttributes() < m_inputFormat.numAttributes()) {
+      throw new Exception("[IncrementalLagEngine] expected at least "
+        + m_inputFormat.numAttributes() + " attributes but instance has "
+        + source.numAttributes());
+    }
+    double[] input = source.toDoubleArray();
+    double[] vals = new double[m_columns.length];
+    for (int i = 0; i < vals.length; i++) {
+      vals[i] = m_columns[i].value(input, this);
+    }
+
+    if (!temporary && m_history.length > 0) {
+      double[] row = m_history[m_next];
+      for (int i = 0; i < m_laggedFields.length; i++) {
+        row[i] = input[m_laggedFields[i]];
+      }
+      m_next = (m_next + 1) % m_history.length;
+      if (m_historySize < m_history.length) {
+        m_historySize++;
+      }
+    }
+
+    Instance result;
+    if (source instanceof SparseInstance) {
+      result = new SparseInstance(source.weight(), vals);
+    } else {
+      result = new DenseInstance(source.weight(), vals);
+    }
+    result.setDataset(m_outputFormat);
+
+    return result;
+  }
+}
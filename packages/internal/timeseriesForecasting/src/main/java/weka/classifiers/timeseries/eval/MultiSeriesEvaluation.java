@@ -0,0 +1,634 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+/*
+ *    MultiSeriesEvaluation.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.timeseries.eval;
+
+import weka.classifiers.timeseries.AbstractForecaster;
+import weka.classifiers.timeseries.MultiSeriesForecaster;
+import weka.classifiers.timeseries.TSForecaster;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates a forecaster on data that contains many independent series,
+ * identified by the value of an ID attribute. The data is split into series
+ * once, each series is held out, trained and evaluated with its own copy of
+ * the forecaster (via TSEvaluation), and several series are evaluated in
+ * parallel. Only the metric values of each series are retained once it has
+ * been evaluated, so memory use does not grow with the predictions made for
+ * every series. The metrics are averaged over all series in the summary.
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public class MultiSeriesEvaluation {
+
+  /** The name of the attribute that identifies the series */
+  protected String m_seriesIDField;
+
+  /** The training data (all series) */
+  protected Instances m_trainingData;
+
+  /** Separate test data (all series) - may be null */
+  protected Instances m_testData;
+
+  /** Number or fraction of instances to hold out from the end of each series */
+  protected double m_testSplitSize;
+
+  /** Number of series to evaluate in parallel (0 = number of cores) */
+  protected int m_numExecutionSlots = 1;
+
+  /** Maximum number of instances to keep per series (0 = unlimited) */
+  protected int m_maxSeriesHistory = 0;
+
+  /** The number of steps to forecast */
+  protected int m_horizon = 1;
+
+  /** The number of instances to prime with */
+  protected int m_primeWindowSize = 1;
+
+  /** Whether to prime for the test data with the test data */
+  protected boolean m_primeForTestDataWithTestData = false;
+
+  /** Whether to evaluate on the training data */
+  protected boolean m_evaluateTrainingData = false;
+
+  /** Whether to evaluate on the test data */
+  protected boolean m_evaluateTestData = true;
+
+  /** Comma-separated list of evaluation modules */
+  protected String m_evaluationModules = "MAE,RMSE";
+
+  /**
+   * Metrics for each series on the training data: series ID -> metric name ->
+   * [step][target]
+   */
+  protected Map<String, Map<String, double[][]>> m_trainingMetrics;
+
+  /**
+   * Metrics for each series on the test data: series ID -> metric name ->
+   * [step][target]
+   */
+  protected Map<String, Map<String, double[][]>> m_testMetrics;
+
+  /** Error messages for series that could not be evaluated */
+  protected Map<String, String> m_failedSeries =
+    new LinkedHashMap<String, String>();
+
+  /** The names of the targets */
+  protected List<String> m_targetNames;
+
+  /**
+   * Constructor.
+   *
+   * @param trainingData the training data containing all series
+   * @param testSplitSize the number or percentage of instances to hold out
+   *          from the end of each series to be test data
+   * @param seriesIDField the name of the attribute that identifies the series
+   * @throws Exception if the hold out size is negative
+   */
+  public MultiSeriesEvaluation(Instances trainingData, double testSplitSize,
+    String seriesIDField) throws Exception {
+    if (testSplitSize < 0) {
+      throw new Exception("Testing holdout size can't be less than zero!");
+    }
+    m_trainingData = trainingData;
+    m_testSplitSize = testSplitSize;
+    m_seriesIDField = seriesIDField;
+    m_evaluateTestData = testSplitSize > 0;
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param trainingData the training data containing all series
+   * @param testData the test data containing all series
+   * @param seriesIDField the name of the attribute that identifies the series
+   * @throws Exception if the training and test data are not compatible
+   */
+  public MultiSeriesEvaluation(Instances trainingData, Instances testData,
+    String seriesIDField) throws Exception {
+    if (testData != null && !trainingData.equalHeaders(testData)) {
+      throw new Exception("Training and testing data are not compatible!");
+    }
+    m_trainingData = trainingData;
+    m_testData = testData;
+    m_seriesIDField = seriesIDField;
+    m_evaluateTestData = testData != null;
+  }
+
+  /**
+   * Set the number of series to evaluate in parallel
+   *
+   * @param numSlots the number of series to evaluate in parallel (0 = number
+   *          of cores)
+   */
+  public void setNumExecutionSlots(int numSlots) {
+    m_numExecutionSlots = numSlots;
+  }
+
+  /**
+   * Get the number of series to evaluate in parallel
+   *
+   * @return the number of series to evaluate in parallel
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
+  /**
+   * Set the maximum number of (most recent) instances to keep for each series
+   * in the training data
+   *
+   * @param max the maximum number of instances per series (0 = keep all)
+   */
+  public void setMaxSeriesHistory(int max) {
+    m_maxSeriesHistory = max;
+  }
+
+  /**
+   * Get the maximum number of (most recent) instances to keep for each series
+   * in the training data
+   *
+   * @return the maximum number of instances per series
+   */
+  public int getMaxSeriesHistory() {
+    return m_maxSeriesHistory;
+  }
+
+  /**
+   * Set the horizon - i.e. the number of steps to forecast into the future.
+   *
+   * @param horizon the number of steps to forecast into the future
+   */
+  public void setHorizon(int horizon) {
+    m_horizon = horizon;
+  }
+
+  /**
+   * Get the horizon - i.e. the number of steps to forecast into the future.
+   *
+   * @return the number of steps to forecast into the future
+   */
+  public int getHorizon() {
+    return m_horizon;
+  }
+
+  /**
+   * Set the size of the priming window
+   *
+   * @param primeSize the number of instances to prime with
+   */
+  public void setPrimeWindowSize(int primeSize) {
+    m_primeWindowSize = primeSize;
+  }
+
+  /**
+   * Get the size of the priming window
+   *
+   * @return the number of instances to prime with
+   */
+  public int getPrimeWindowSize() {
+    return m_primeWindowSize;
+  }
+
+  /**
+   * Set whether evaluation of the test data of each series should begin by
+   * priming with the first instances of the test data.
+   *
+   * @param p true to prime with the test data
+   */
+  public void setPrimeForTestDataWithTestData(boolean p) {
+    m_primeForTestDataWithTestData = p;
+  }
+
+  /**
+   * Get whether evaluation of the test data of each series will begin by
+   * priming with the first instances of the test data.
+   *
+   * @return true if priming with the test data
+   */
+  public boolean getPrimeForTestDataWithTestData() {
+    return m_primeForTestDataWithTestData;
+  }
+
+  /**
+   * Set whether to evaluate on the training data
+   *
+   * @param evalOnTraining true to evaluate on the training data
+   */
+  public void setEvaluateOnTrainingData(boolean evalOnTraining) {
+    m_evaluateTrainingData = evalOnTraining;
+  }
+
+  /**
+   * Get whether to evaluate on the training data
+   *
+   * @return true if evaluating on the training data
+   */
+  public boolean getEvaluateOnTrainingData() {
+    return m_evaluateTrainingData;
+  }
+
+  /**
+   * Set whether to evaluate on the test data
+   *
+   * @param evalOnTest true to evaluate on the test data
+   */
+  public void setEvaluateOnTestData(boolean evalOnTest) {
+    m_evaluateTestData = evalOnTest;
+  }
+
+  /**
+   * Get whether to evaluate on the test data
+   *
+   * @return true if evaluating on the test data
+   */
+  public boolean getEvaluateOnTestData() {
+    return m_evaluateTestData;
+  }
+
+  /**
+   * Set the evaluation modules to use
+   *
+   * @param evalModNames a comma-separated list of evaluation module names
+   * @throws Exception if there are unknown evaluation modules requested
+   */
+  public void setEvaluationModules(String evalModNames) throws Exception {
+    // validate the names up front rather than in every series
+    for (String modName : evalModNames.split(",")) {
+      if (modName.trim().length() > 0) {
+        TSEvalModule.getModule(modName.trim());
+      }
+    }
+    m_evaluationModules = evalModNames;
+  }
+
+  /**
+   * Get the evaluation modules to use
+   *
+   * @return a comma-separated list of evaluation module names
+   */
+  public String getEvaluationModules() {
+    return m_evaluationModules;
+  }
+
+  /**
+   * Evaluate the supplied forecaster on every series. A copy of the
+   * forecaster is trained for each series. Series that can't be evaluated
+   * (e.g. because they are too short) are skipped and reported by
+   * getFailedSeries().
+   *
+   * @param forecaster the forecaster to evaluate
+   * @param progress optional progress objects to report to
+   * @throws Exception if the data can't be split into series or no series
+   *           could be evaluated
+   */
+  public void evaluateForecaster(final TSForecaster forecaster,
+    PrintStream... progress) throws Exception {
+    final Map<String, Instances> train =
+      MultiSeriesForecaster.splitSeries(m_trainingData, m_seriesIDField,
+        m_maxSeriesHistory);
+    final Map<String, Instances> test =
+      m_testData != null ? MultiSeriesForecaster.splitSeries(m_testData,
+        m_seriesIDField, 0) : null;
+
+    for (PrintStream p : progress) {
+      p.println("Evaluating forecaster on " + train.size() + " series...");
+    }
+
+    m_failedSeries.clear();
+    m_targetNames = null;
+    final Map<String, Map<String, double[][]>> trainingMetrics =
+      Collections.synchronizedMap(new LinkedHashMap<String, Map<String, double[][]>>());
+
+    Map<String, Map<String, double[][]>> testMetrics =
+      MultiSeriesForecaster.runPerSeries(train,
+        new MultiSeriesForecaster.SeriesTask<Map<String, double[][]>>() {
+          @Override
+          public Map<String, double[][]> process(String seriesID,
+            Instances series) throws Exception {
+            TSEvaluation eval;
+            if (test != null) {
+              Instances seriesTest = test.get(seriesID);
+              if (seriesTest == null) {
+                seriesTest = new Instances(series, 0);
+              }
+              eval = new TSEvaluation(series, seriesTest);
+            } else {
+              eval = new TSEvaluation(series, m_testSplitSize);
+            }
+            eval.setHorizon(m_horizon);
+            eval.setPrimeWindowSize(m_primeWindowSize);
+            eval.setPrimeForTestDataWithTestData(m_primeForTestDataWithTestData);
+            eval.setEvaluateOnTrainingData(m_evaluateTrainingData);
+            eval.setEvaluateOnTestData(m_evaluateTestData
+              && eval.getTestData() != null);
+            eval.setForecastFuture(false);
+            eval.setEvaluationModules(m_evaluationModules);
+
+            TSForecaster copy = AbstractForecaster.makeCopy(forecaster);
+            eval.evaluateForecaster(copy);
+
+            if (m_evaluateTrainingData) {
+              trainingMetrics.put(seriesID,
+                extractMetrics(eval.getMetricsForTrainingData()));
+            }
+
+            // only the metric values are kept, so the evaluation (and the
+            // forecaster and predictions it holds) can be garbage collected
+            return extractMetrics(eval.getMetricsForTestData());
+          }
+        }, m_numExecutionSlots, m_failedSeries);
+
+    if (testMetrics.size() == 0 && train.size() > 0) {
+      throw new Exception("Unable to evaluate the forecaster on any series: "
+        + m_failedSeries.values().iterator().next());
+    }
+
+    m_trainingMetrics = new LinkedHashMap<String, Map<String, double[][]>>();
+    for (String id : testMetrics.keySet()) {
+      if (trainingMetrics.containsKey(id)) {
+        m_trainingMetrics.put(id, trainingMetrics.get(id));
+      }
+    }
+    m_testMetrics = new LinkedHashMap<String, Map<String, double[][]>>();
+    for (Map.Entry<String, Map<String, double[][]>> e : testMetrics
+      .entrySet()) {
+      if (e.getValue() != null) {
+        m_testMetrics.put(e.getKey(), e.getValue());
+      }
+    }
+    m_targetNames =
+      AbstractForecaster.stringToList(forecaster.getFieldsToForecast());
+  }
+
+  /**
+   * Extract the values of the metrics computed by a TSEvaluation
+   *
+   * @param metrics the metrics (module name -> one module per step)
+   * @return the metric values (metric description -> [step][target]), or
+   *         null if there are no metrics. Modules without any steps are
+   *         left out
+   * @throws Exception if a problem occurs
+   */
+  protected static Map<String, double[][]> extractMetrics(
+    Map<String, List<TSEvalModule>> metrics) throws Exception {
+    if (metrics == null) {
+      return null;
+    }
+
+    Map<String, double[][]> result = new LinkedHashMap<String, double[][]>();
+    for (Map.Entry<String, List<TSEvalModule>> e : metrics.entrySet()) {
+      List<TSEvalModule> steps = e.getValue();
+      if (steps == null || steps.size() == 0) {
+        continue;
+      }
+      double[][] values = new double[steps.size()][];
+      for (int i = 0; i < steps.size(); i++) {
+        values[i] = steps.get(i).calculateMeasure();
+        if (values[i] == null) {
+          values[i] = new double[0];
+        }
+      }
+      result.put(steps.get(0).getDescription(), values);
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the metric values for one series on the test data
+   *
+   * @param seriesID the ID of the series
+   * @return the metric values (metric description -> [step][target]), or null
+   *         if the series has not been evaluated on test data
+   */
+  public Map<String, double[][]> getMetricsForTestData(String seriesID) {
+    return m_testMetrics == null ? null : m_testMetrics.get(seriesID);
+  }
+
+  /**
+   * Get the metric values for one series on the training data
+   *
+   * @param seriesID the ID of the series
+   * @return the metric values (metric description -> [step][target]), or null
+   *         if the series has not been evaluated on training data
+   */
+  public Map<String, double[][]> getMetricsForTrainingData(String seriesID) {
+    return m_trainingMetrics == null ? null : m_trainingMetrics.get(seriesID);
+  }
+
+  /**
+   * Get the series that could not be evaluated
+   *
+   * @return a map of error messages keyed by series ID
+   */
+  public Map<String, String> getFailedSeries() {
+    return Collections.unmodifiableMap(m_failedSeries);
+  }
+
+  /**
+   * Grow an array of sums or counts so that it covers the shape of some metric
+   * values (series may have been evaluated for different numbers of steps)
+   *
+   * @param array the array to grow (may be null)
+   * @param shape the metric values ([step][target])
+   * @return the grown array
+   */
+  protected static double[][] ensureSize(double[][] array, double[][] shape) {
+    if (array == null) {
+      array = new double[0][];
+    }
+    if (array.length < shape.length) {
+      array = Arrays.copyOf(array, shape.length);
+    }
+    for (int i = 0; i < shape.length; i++) {
+      int length = shape[i] == null ? 0 : shape[i].length;
+      if (array[i] == null) {
+        array[i] = new double[length];
+      } else if (array[i].length < length) {
+        array[i] = Arrays.copyOf(array[i], length);
+      }
+    }
+
+    return array;
+  }
+
+  /**
+   * Average a metric over all series. Missing values are ignored.
+   *
+   * @param metrics the metrics for each series (may be null)
+   * @return the averaged metrics (metric description -> [step][target]), empty
+   *         if there are no metrics
+   */
+  protected static Map<String, double[][]> averageMetrics(
+    Map<String, Map<String, double[][]>> metrics) {
+    Map<String, double[][]> sums = new LinkedHashMap<String, double[][]>();
+    Map<String, double[][]> counts = new LinkedHashMap<String, double[][]>();
+    if (metrics == null) {
+      return sums;
+    }
+
+    for (Map<String, double[][]> seriesMetrics : metrics.values()) {
+      if (seriesMetrics == null) {
+        continue;
+      }
+      for (Map.Entry<String, double[][]> e : seriesMetrics.entrySet()) {
+        double[][] values = e.getValue();
+        if (values == null || values.length == 0) {
+          continue;
+        }
+        double[][] sum = ensureSize(sums.get(e.getKey()), values);
+        double[][] count = ensureSize(counts.get(e.getKey()), values);
+        sums.put(e.getKey(), sum);
+        counts.put(e.getKey(), count);
+        for (int i = 0; i < values.length; i++) {
+          if (values[i] == null) {
+            continue;
+          }
+          for (int j = 0; j < values[i].length; j++) {
+            if (!Utils.isMissingValue(values[i][j])
+              && !Double.isInfinite(values[i][j])) {
+              sum[i][j] += values[i][j];
+              count[i][j]++;
+            }
+          }
+        }
+      }
+    }
+
+    for (Map.Entry<String, double[][]> e : sums.entrySet()) {
+      double[][] sum = e.getValue();
+      double[][] count = counts.get(e.getKey());
+      for (int i = 0; i < sum.length; i++) {
+        for (int j = 0; j < sum[i].length; j++) {
+          sum[i][j] =
+            count[i][j] > 0 ? sum[i][j] / count[i][j] : Utils.missingValue();
+        }
+      }
+    }
+
+    return sums;
+  }
+
+  /**
+   * Get the metrics on the test data averaged over all series
+   *
+   * @return the averaged metrics (metric description -> [step][target])
+   */
+  public Map<String, double[][]> getAverageMetricsForTestData() {
+    return averageMetrics(m_testMetrics);
+  }
+
+  /**
+   * Get the metrics on the training data averaged over all series
+   *
+   * @return the averaged metrics (metric description -> [step][target])
+   */
+  public Map<String, double[][]> getAverageMetricsForTrainingData() {
+    return averageMetrics(m_trainingMetrics);
+  }
+
+  /**
+   * Generates a String containing the metrics averaged over all series.
+   *
+   * @return a String containing the results of the evaluation
+   * @throws Exception if no evaluation has been performed
+   */
+  public String toSummaryString() throws Exception {
+    if (m_testMetrics == null) {
+      throw new Exception("The forecaster has not been evaluated yet!");
+    }
+
+    StringBuffer result = new StringBuffer();
+    if (m_evaluateTrainingData) {
+      result.append("=== Evaluation on training data (mean over "
+        + m_trainingMetrics.size() + " series) ===\n");
+      result.append(summaryMetrics(getAverageMetricsForTrainingData()));
+      result.append("\n");
+    }
+    if (m_evaluateTestData) {
+      result.append("=== Evaluation on test data (mean over "
+        + m_testMetrics.size() + " series) ===\n");
+      result.append(summaryMetrics(getAverageMetricsForTestData()));
+      result.append("\n");
+    }
+    if (m_failedSeries.size() > 0) {
+      result.append("Series that could not be evaluated: "
+        + m_failedSeries.size() + "\n");
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * Format averaged metrics as a table of targets/metrics by steps ahead
+   *
+   * @param metrics the metrics to format
+   * @return the formatted table
+   */
+  protected String summaryMetrics(Map<String, double[][]> metrics) {
+    int leftWidth = "Target".length();
+    for (String t : m_targetNames) {
+      leftWidth = Math.max(leftWidth, t.length());
+    }
+    for (String m : metrics.keySet()) {
+      leftWidth = Math.max(leftWidth, m.length() + 2);
+    }
+    int colWidth = "10-steps-ahead".length() + 1;
+
+    StringBuffer temp = new StringBuffer();
+    temp.append(TSEvaluation.pad("Target", " ", leftWidth, false));
+    for (int i = 0; i < m_horizon; i++) {
+      String stepS = (i == 0) ? "step-ahead" : "steps-ahead";
+      temp.append(TSEvaluation.pad("" + (i + 1) + "-" + stepS, " ",
+        colWidth, true));
+    }
+    temp.append("\n");
+    temp.append(TSEvaluation.pad("=", "=", leftWidth + m_horizon * colWidth,
+      true));
+    temp.append("\n");
+
+    for (int t = 0; t < m_targetNames.size(); t++) {
+      temp.append(m_targetNames.get(t)).append("\n");
+      for (Map.Entry<String, double[][]> e : metrics.entrySet()) {
+        temp.append(TSEvaluation.pad("  " + e.getKey(), " ", leftWidth, false));
+        for (double[] step : e.getValue()) {
+          double v = t < step.length ? step[t] : Utils.missingValue();
+          String s =
+            Utils.isMissingValue(v) ? "N/A" : Utils.doubleToString(v, 4);
+          temp.append(TSEvaluation.pad(s, " ", colWidth, true));
+        }
+        temp.append("\n");
+      }
+    }
+
+    return temp.toString();
+  }
+}
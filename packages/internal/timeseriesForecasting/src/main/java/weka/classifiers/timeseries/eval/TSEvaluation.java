@@ -325,6 +325,15 @@ public class TSEvaluation {
     m_horizon = horizon;
   }
 
+  /**
+   * Get the horizon - i.e. the number of steps to forecast into the future.
+   * 
+   * @return the number of steps to forecast into the future
+   */
+  public int getHorizon() {
+    return m_horizon;
+  }
+
   /**
    * Set the size of the priming window - i.e. the number of historical
    * instances to be presented to the forecaster before a forecast is requested
@@ -451,6 +460,28 @@ public class TSEvaluation {
     return m_evalModules;
   }
 
+  /**
+   * Get the evaluation metrics computed on the training data. Keys are
+   * evaluation module names; each value holds one module per step ahead.
+   * 
+   * @return the metrics for the training data, or null if the training data
+   *         has not been evaluated
+   */
+  public Map<String, List<TSEvalModule>> getMetricsForTrainingData() {
+    return m_evaluateTrainingData ? m_metricsForTrainingData : null;
+  }
+
+  /**
+   * Get the evaluation metrics computed on the test data. Keys are evaluation
+   * module names; each value holds one module per step ahead.
+   * 
+   * @return the metrics for the test data, or null if the test data has not
+   *         been evaluated
+   */
+  public Map<String, List<TSEvalModule>> getMetricsForTestData() {
+    return m_evaluateTestData ? m_metricsForTestData : null;
+  }
+
   /**
    * Get predictions for all targets for the specified step number on the
    * training data
@@ -2048,7 +2079,7 @@ public class TSEvaluation {
     return temp.toString();
   }
 
-  private static String pad(String source, String padChar, int length,
+  static String pad(String source, String padChar, int length,
     boolean leftPad) {
     StringBuffer temp = new StringBuffer();
     length = length - source.length();
@@ -23,6 +23,7 @@ package weka.filters.supervised.attribute;
 
 import weka.classifiers.Classifier;
 import weka.classifiers.timeseries.core.CustomPeriodicTest;
+import weka.classifiers.timeseries.core.IncrementalLagEngine;
 import weka.classifiers.timeseries.core.TimeSeriesTranslate;
 import weka.core.Attribute;
 import weka.core.Capabilities;
@@ -182,6 +183,12 @@ public class TSLagMaker extends Filter implements SupervisedFilter,
   protected List<Filter> m_timeLagCrossProductMakers;
   protected Remove m_extraneousAttributeRemover;
 
+  /**
+   * Computes the output of the lag, averaged lag, time index and time/lag
+   * product filters incrementally. Null if the filters have to be used.
+   */
+  protected IncrementalLagEngine m_lagEngine;
+
   /** The name of the primary periodic attribute */
   protected String m_primaryPeriodicName = "";
 
@@ -477,6 +484,7 @@ public class TSLagMaker extends Filter implements SupervisedFilter,
     m_averagedLagMakers = null;
     m_timeIndexMakers = null;
     m_timeLagCrossProductMakers = null;
+    m_lagEngine = null;
     m_derivedPeriodicMakers = null;
     m_extraneousAttributeRemover = null;
     m_lastTimeValue = -1;
@@ -2657,6 +2665,8 @@ public class TSLagMaker extends Filter implements SupervisedFilter,
       result = createTimeLagCrossProducts(result);
     }
 
+    m_lagEngine = IncrementalLagEngine.create(getLagStageFilters());
+
     // remove all instances with missing values at the
     // start of the series?
     if (m_deleteMissingFromStartOfSeries) {
@@ -2789,7 +2799,11 @@ public class TSLagMaker extends Filter implements SupervisedFilter,
       }
     }
 
-    for (Filter f : m_lagMakers) {
+    if (m_lagEngine != null) {
+      return m_lagEngine.process(result, temporary);
+    }
+
+    for (Filter f : getLagStageFilters()) {
       if (temporary && f instanceof TimeSeriesTranslate) {
         result = ((TimeSeriesTranslate) f).inputOneTemporarily(result);
       } else {
@@ -2798,28 +2812,28 @@ public class TSLagMaker extends Filter implements SupervisedFilter,
       }
     }
 
+    return result;
+  }
+
+  /**
+   * Get the filters that create lagged, averaged lag, time index and time/lag
+   * product fields, in the order that they are applied
+   *
+   * @return the filters
+   */
+  protected List<Filter> getLagStageFilters() {
+    List<Filter> filters = new ArrayList<Filter>(m_lagMakers);
     if (m_averagedLagMakers != null) {
-      for (Filter f : m_averagedLagMakers) {
-        f.input(result);
-        result = f.output();
-      }
+      filters.addAll(m_averagedLagMakers);
     }
-
     if (m_timeIndexMakers != null) {
-      for (Filter f : m_timeIndexMakers) {
-        f.input(result);
-        result = f.output();
-      }
+      filters.addAll(m_timeIndexMakers);
     }
-
     if (m_includeTimeLagCrossProducts && m_timeLagCrossProductMakers != null) {
-      for (Filter f : m_timeLagCrossProductMakers) {
-        f.input(result);
-        result = f.output();
-      }
+      filters.addAll(m_timeLagCrossProductMakers);
     }
 
-    return result;
+    return filters;
   }
 
   /**
@@ -2829,6 +2843,10 @@ public class TSLagMaker extends Filter implements SupervisedFilter,
    */
   public void clearLagHistories() throws Exception {
 
+    if (m_lagEngine != null) {
+      m_lagEngine.reset();
+    }
+
     if (m_artificialTimeMaker != null) {
       m_artificialTimeMaker.batchFinished();
     }
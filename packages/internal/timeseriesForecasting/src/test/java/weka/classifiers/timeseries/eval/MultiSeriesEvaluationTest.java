@@ -0,0 +1,263 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+/*
+ *    MultiSeriesEvaluationTest.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.timeseries.eval;
+
+import weka.classifiers.functions.LinearRegression;
+import weka.classifiers.timeseries.AbstractForecaster;
+import weka.classifiers.timeseries.WekaForecaster;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Tests MultiSeriesEvaluation: the metrics for each series must be the same as
+ * those from evaluating the series on its own with TSEvaluation.
+ *
+ * @author agent (agent@local)
+ */
+public class MultiSeriesEvaluationTest extends TestCase {
+
+  /** The fields of the wine data used as series */
+  protected static final String[] SERIES = { "Fortified", "Dry-white", "Red" };
+
+  /** The number of instances held out from each series for testing */
+  protected static final int NUM_TEST = 12;
+
+  /** The number of steps to evaluate */
+  protected static final int HORIZON = 3;
+
+  public MultiSeriesEvaluationTest(String name) {
+    super(name);
+  }
+
+  public Instances getData(String name) throws Exception {
+    return new Instances(new BufferedReader(new InputStreamReader(
+      ClassLoader.getSystemResourceAsStream("weka/classifiers/timeseries/data/"
+        + name))));
+  }
+
+  /**
+   * Creates a header for a single series
+   *
+   * @param id true if the header should include the series ID attribute
+   * @return the header
+   */
+  protected Instances seriesHeader(boolean id) {
+    ArrayList<Attribute> atts = new ArrayList<Attribute>();
+    if (id) {
+      atts.add(new Attribute("id", Arrays.asList(SERIES)));
+    }
+    atts.add(new Attribute("value"));
+    atts.add(new Attribute("Date", "yyyy-MM-dd"));
+    return new Instances("series", atts, 0);
+  }
+
+  /**
+   * Gets one of the wine series on its own
+   *
+   * @param wine the wine data
+   * @param field the field to use as the series
+   * @return the series
+   */
+  protected Instances singleSeries(Instances wine, String field) {
+    Instances result = seriesHeader(false);
+    int index = wine.attribute(field).index();
+    int date = wine.attribute("Date").index();
+    for (int i = 0; i < wine.numInstances(); i++) {
+      result.add(new DenseInstance(1.0, new double[] {
+        wine.instance(i).value(index), wine.instance(i).value(date) }));
+    }
+    return result;
+  }
+
+  /**
+   * Gets the wine series interleaved in one set of instances, identified by
+   * the ID attribute
+   *
+   * @param wine the wine data
+   * @return the series
+   */
+  protected Instances multiSeries(Instances wine) {
+    Instances result = seriesHeader(true);
+    int date = wine.attribute("Date").index();
+    for (int i = 0; i < wine.numInstances(); i++) {
+      for (int s = 0; s < SERIES.length; s++) {
+        result.add(new DenseInstance(1.0, new double[] { s,
+          wine.instance(i).value(wine.attribute(SERIES[s]).index()),
+          wine.instance(i).value(date) }));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Creates the forecaster to evaluate
+   *
+   * @return the forecaster
+   * @throws Exception if the forecaster can't be configured
+   */
+  protected WekaForecaster getForecaster() throws Exception {
+    WekaForecaster forecaster = new WekaForecaster();
+    forecaster.setBaseForecaster(new LinearRegression());
+    forecaster.setFieldsToForecast("value");
+    forecaster.getTSLagMaker().setTimeStampField("Date");
+    forecaster.getTSLagMaker().setMinLag(1);
+    forecaster.getTSLagMaker().setMaxLag(12);
+    return forecaster;
+  }
+
+  /**
+   * Checks that two sets of metric values are the same
+   *
+   * @param message the message to report a difference with
+   * @param expected the expected metrics (description -> [step][target])
+   * @param actual the actual metrics
+   */
+  protected void assertSameMetrics(String message,
+    Map<String, double[][]> expected, Map<String, double[][]> actual) {
+    assertNotNull(message, actual);
+    assertEquals(message, expected.keySet(), actual.keySet());
+    for (Map.Entry<String, double[][]> e : expected.entrySet()) {
+      double[][] exp = e.getValue();
+      double[][] act = actual.get(e.getKey());
+      assertEquals(message, exp.length, act.length);
+      for (int i = 0; i < exp.length; i++) {
+        assertEquals(message, exp[i].length, act[i].length);
+        for (int j = 0; j < exp[i].length; j++) {
+          assertEquals(message + " " + e.getKey() + " step " + (i + 1),
+            exp[i][j], act[i][j], 1e-9 * Math.max(1, Math.abs(exp[i][j])));
+        }
+      }
+    }
+  }
+
+  /**
+   * Evaluating several series at once (in parallel) gives the same metrics as
+   * evaluating each series separately, and the summary averages them
+   */
+  public void testMatchesSingleSeries() throws Exception {
+    Instances wine = getData("wine_date.arff");
+
+    MultiSeriesEvaluation multi =
+      new MultiSeriesEvaluation(multiSeries(wine), NUM_TEST, "id");
+    multi.setHorizon(HORIZON);
+    multi.setEvaluateOnTrainingData(true);
+    multi.setEvaluationModules("MAE,RMSE");
+    multi.setNumExecutionSlots(2);
+    multi.evaluateForecaster(getForecaster());
+    assertEquals(0, multi.getFailedSeries().size());
+
+    List<Map<String, double[][]>> allTest =
+      new ArrayList<Map<String, double[][]>>();
+    for (String id : SERIES) {
+      TSEvaluation single = new TSEvaluation(singleSeries(wine, id), NUM_TEST);
+      single.setHorizon(HORIZON);
+      single.setEvaluateOnTrainingData(true);
+      single.setEvaluateOnTestData(true);
+      single.setForecastFuture(false);
+      single.setEvaluationModules("MAE,RMSE");
+      single.evaluateForecaster(AbstractForecaster.makeCopy(getForecaster()));
+
+      Map<String, double[][]> test =
+        MultiSeriesEvaluation.extractMetrics(single.getMetricsForTestData());
+      assertEquals(2, test.size());
+      assertSameMetrics(id + " test", test, multi.getMetricsForTestData(id));
+      assertSameMetrics(id + " training",
+        MultiSeriesEvaluation.extractMetrics(single
+          .getMetricsForTrainingData()), multi.getMetricsForTrainingData(id));
+      allTest.add(test);
+    }
+
+    Map<String, double[][]> average = multi.getAverageMetricsForTestData();
+    for (Map.Entry<String, double[][]> e : average.entrySet()) {
+      double[][] values = e.getValue();
+      assertEquals(HORIZON, values.length);
+      for (int i = 0; i < values.length; i++) {
+        double sum = 0;
+        for (Map<String, double[][]> test : allTest) {
+          sum += test.get(e.getKey())[i][0];
+        }
+        assertEquals(sum / SERIES.length, values[i][0], 1e-9 * sum);
+      }
+    }
+    assertTrue(multi.toSummaryString().indexOf("mean over 3 series") > 0);
+  }
+
+  /**
+   * Series without any evaluation steps or metrics are ignored when
+   * extracting and averaging metrics, and series may have been evaluated for
+   * different numbers of steps
+   */
+  public void testEmptyMetrics() throws Exception {
+    Map<String, List<TSEvalModule>> modules =
+      new LinkedHashMap<String, List<TSEvalModule>>();
+    modules.put("MAE", new ArrayList<TSEvalModule>());
+    assertEquals(0, MultiSeriesEvaluation.extractMetrics(modules).size());
+    assertNull(MultiSeriesEvaluation.extractMetrics(null));
+
+    Map<String, Map<String, double[][]>> metrics =
+      new LinkedHashMap<String, Map<String, double[][]>>();
+    Map<String, double[][]> noSteps = new LinkedHashMap<String, double[][]>();
+    noSteps.put("MAE", new double[0][]);
+    metrics.put("noSteps", noSteps);
+    metrics.put("noMetrics", new LinkedHashMap<String, double[][]>());
+    Map<String, double[][]> oneStep = new LinkedHashMap<String, double[][]>();
+    oneStep.put("MAE", new double[][] { { 1 } });
+    metrics.put("oneStep", oneStep);
+    Map<String, double[][]> twoSteps = new LinkedHashMap<String, double[][]>();
+    twoSteps.put("MAE", new double[][] { { 3 }, { Utils.missingValue() } });
+    metrics.put("twoSteps", twoSteps);
+
+    Map<String, double[][]> average =
+      MultiSeriesEvaluation.averageMetrics(metrics);
+    double[][] mae = average.get("MAE");
+    assertEquals(2, mae.length);
+    assertEquals(2.0, mae[0][0], 0);
+    assertTrue(Utils.isMissingValue(mae[1][0]));
+
+    assertEquals(0, MultiSeriesEvaluation.averageMetrics(null).size());
+    metrics.remove("oneStep");
+    metrics.remove("twoSteps");
+    assertEquals(0, MultiSeriesEvaluation.averageMetrics(metrics).size());
+  }
+
+  public static Test suite() {
+    return new TestSuite(MultiSeriesEvaluationTest.class);
+  }
+
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+/*
+ *    TSLagMakerTest.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.filters.supervised.attribute;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Checks that the incremental lag engine used by TSLagMaker produces the same
+ * lagged, averaged lag, time power and time/lag product fields as the
+ * TimeSeriesTranslate/AddExpression filters it replaces.
+ *
+ * @author agent (agent@local)
+ */
+public class TSLagMakerTest extends TestCase {
+
+  /** The number of instances held back for deployment */
+  protected static final int NUM_HELD_BACK = 24;
+
+  public TSLagMakerTest(String name) {
+    super(name);
+  }
+
+  public Instances getData(String name) throws Exception {
+    return new Instances(new BufferedReader(new InputStreamReader(
+      ClassLoader.getSystemResourceAsStream("weka/classifiers/timeseries/data/"
+        + name))));
+  }
+
+  /**
+   * Creates a lag maker that uses all the kinds of lag stage field, and
+   * configures it on the supplied data
+   *
+   * @param data the training data
+   * @param engine true if the lag maker is to use the incremental engine,
+   *          false if it is to use the filters
+   * @param transformed receives the transformed training data
+   * @return the configured lag maker
+   */
+  protected TSLagMaker configure(Instances data, boolean engine,
+    Instances[] transformed) throws Exception {
+    TSLagMaker lagMaker = new TSLagMaker();
+    lagMaker.setFieldsToLag(Arrays.asList("Fortified", "Dry-white"));
+    lagMaker.setTimeStampField("Date");
+    lagMaker.setMinLag(1);
+    lagMaker.setMaxLag(12);
+    lagMaker.setAverageConsecutiveLongLags(true);
+    lagMaker.setAverageLagsAfter(3);
+    lagMaker.setNumConsecutiveLongLagsToAverage(2);
+    lagMaker.setIncludePowersOfTime(true);
+    lagMaker.setIncludeTimeLagProducts(true);
+    lagMaker.setAddMonthOfYear(true);
+    lagMaker.setRemoveLeadingInstancesWithUnknownLagValues(false);
+
+    transformed[0] = lagMaker.getTransformedData(data);
+    if (engine) {
+      assertNotNull("engine not created", lagMaker.m_lagEngine);
+    } else {
+      lagMaker.m_lagEngine = null;
+    }
+
+    return lagMaker;
+  }
+
+  /**
+   * Checks that two instances have the same values, treating missing values
+   * as equal
+   *
+   * @param message the message to report a difference with
+   * @param expected the expected instance
+   * @param actual the actual instance
+   */
+  protected void assertSameValues(String message, Instance expected,
+    Instance actual) {
+    assertEquals(message, expected.numAttributes(), actual.numAttributes());
+    for (int j = 0; j < expected.numAttributes(); j++) {
+      String att = message + " " + expected.dataset().attribute(j).name();
+      if (expected.isMissing(j)) {
+        assertTrue(att + " should be missing", actual.isMissing(j));
+      } else {
+        assertFalse(att + " should not be missing", actual.isMissing(j));
+        assertEquals(att, expected.value(j), actual.value(j),
+          1e-9 * Math.max(1, Math.abs(expected.value(j))));
+      }
+    }
+  }
+
+  /**
+   * Replaying the training data through the engine reproduces the batch
+   * transformation of the training data, and so does replaying it through the
+   * filters
+   */
+  public void testTrainingEquivalence() throws Exception {
+    Instances wine = getData("wine_date.arff");
+
+    for (boolean engine : new boolean[] { true, false }) {
+      Instances[] transformed = new Instances[1];
+      TSLagMaker lagMaker = configure(wine, engine, transformed);
+      assertEquals(wine.numInstances(), transformed[0].numInstances());
+
+      lagMaker.clearLagHistories();
+      for (int i = 0; i < wine.numInstances(); i++) {
+        Instance result = lagMaker.processInstance(wine.instance(i), false,
+          false);
+        assertEquals(transformed[0].numAttributes(), result.numAttributes());
+        assertSameValues((engine ? "engine" : "filters") + " row " + i,
+          transformed[0].instance(i), result);
+      }
+    }
+  }
+
+  /**
+   * The engine and the filters agree when priming with history and then
+   * deploying on new instances, including previews of future instances
+   */
+  public void testDeploymentEquivalence() throws Exception {
+    Instances wine = getData("wine_date.arff");
+    int numTrain = wine.numInstances() - NUM_HELD_BACK;
+    Instances train = new Instances(wine, 0, numTrain);
+
+    Instances[] transformed = new Instances[1];
+    TSLagMaker engine = configure(train, true, transformed);
+    TSLagMaker filters = configure(train, false, transformed);
+
+    engine.clearLagHistories();
+    filters.clearLagHistories();
+    for (int i = 0; i < numTrain; i++) {
+      assertSameValues("priming row " + i,
+        filters.processInstance(wine.instance(i), false, false),
+        engine.processInstance(wine.instance(i), false, false));
+    }
+
+    for (int i = numTrain; i < wine.numInstances(); i++) {
+      assertSameValues("preview row " + i,
+        filters.processInstancePreview(wine.instance(i), false, false),
+        engine.processInstancePreview(wine.instance(i), false, false));
+
+      // the filters lose history when previewing, so re-prime them
+      filters.clearLagHistories();
+      for (int j = 0; j < i; j++) {
+        filters.processInstance(wine.instance(j), false, false);
+      }
+
+      assertSameValues("deployment row " + i,
+        filters.processInstance(wine.instance(i), false, false),
+        engine.processInstance(wine.instance(i), false, false));
+    }
+  }
+
+  /**
+   * A temporary instance must not evict history, so the lags of the next real
+   * instance are the same as if there had been no preview
+   */
+  public void testTemporaryKeepsHistory() throws Exception {
+    Instances wine = getData("wine_date.arff");
+    Instances[] transformed = new Instances[1];
+    TSLagMaker withPreview = configure(wine, true, transformed);
+    TSLagMaker withoutPreview = configure(wine, true, transformed);
+
+    withPreview.clearLagHistories();
+    withoutPreview.clearLagHistories();
+    int numPrime = 20;
+    for (int i = 0; i < numPrime; i++) {
+      withPreview.processInstance(wine.instance(i), false, false);
+      withoutPreview.processInstance(wine.instance(i), false, false);
+    }
+
+    for (int k = 0; k < 3; k++) {
+      withPreview.processInstancePreview(wine.instance(numPrime), false, false);
+    }
+    Instance expected =
+      withoutPreview.processInstance(wine.instance(numPrime), false, false);
+    Instance actual =
+      withPreview.processInstance(wine.instance(numPrime), false, false);
+    assertSameValues("after preview", expected, actual);
+
+    // enough history has been seen for every lagged field to have a value
+    int lag1 = actual.dataset().attribute("Lag_Fortified-1").index();
+    assertEquals(wine.instance(numPrime - 1).value(0), actual.value(lag1), 0);
+    for (int j = 0; j < actual.numAttributes(); j++) {
+      String name = actual.dataset().attribute(j).name();
+      if (name.startsWith("Lag_") || name.startsWith("Avg(")) {
+        assertFalse(name + " should not be missing", actual.isMissing(j));
+      }
+    }
+  }
+
+  public static Test suite() {
+    return new TestSuite(TSLagMakerTest.class);
+  }
+
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
@@ -23,6 +23,7 @@ import json
 import base64
 import math
 import traceback
+import numpy as np
 import pandas as pd
 import matplotlib.pyplot as plt
 
@@ -49,6 +50,9 @@ _global_env = {}
 
 _global_startup_debug = False
 
+# target size (in bytes) of each chunk of column data sent to Weka
+_global_column_chunk_bytes = 8 * 1024 * 1024
+
 # _global_std_out = StringIO()
 # _global_std_err = StringIO()
 sys.stdout = StringIO()
@@ -138,19 +142,26 @@ def receive_instances(message):
         # _headers[frame_name] = header
         num_instances = message['num_instances']
         if num_instances > 0:
-            # receive the CSV
-            csv_data = receive_message(False)
             frame = None
-            if 'date_atts' in header:
-                frame = pd.read_csv(StringIO(csv_data), na_values='?',
-                                    quotechar='\'', escapechar='\\',
-                                    index_col=None,
-                                    parse_dates=header['date_atts'],
-                                    infer_datetime_format=True)
+            if message.get('encoding') == 'binary':
+                # receive the columns as chunks of raw float64 values
+                columns = message['attributes']
+                frame = columns_to_frame(columns,
+                                         receive_columns(len(columns),
+                                                         num_instances))
             else:
-                frame = pd.read_csv(StringIO(csv_data), na_values='?',
-                                    quotechar='\'', escapechar='\\',
-                                    index_col=None)
+                # receive the CSV
+                csv_data = receive_message(False)
+                if 'date_atts' in header:
+                    frame = pd.read_csv(StringIO(csv_data), na_values='?',
+                                        quotechar='\'', escapechar='\\',
+                                        index_col=None,
+                                        parse_dates=header['date_atts'],
+                                        infer_datetime_format=True)
+                else:
+                    frame = pd.read_csv(StringIO(csv_data), na_values='?',
+                                        quotechar='\'', escapechar='\\',
+                                        index_col=None)
             _global_env[frame_name] = frame
             if message_debug(message) == True:
                 print(frame.info(), '\n')
@@ -160,6 +171,45 @@ def receive_instances(message):
         ack_command_err(error)
 
 
+def receive_columns(num_columns, num_rows):
+    """Receive column-major chunks of little-endian float64 values into a
+    (num_columns x num_rows) array. The number of rows in each chunk is
+    implied by its length"""
+    data = np.empty((num_columns, num_rows), dtype=np.float64)
+    start = 0
+    while start < num_rows:
+        chunk = np.frombuffer(receive_bytes(), dtype='<f8')
+        rows = len(chunk) // num_columns
+        data[:, start:start + rows] = chunk.reshape((num_columns, rows))
+        start += rows
+    return data
+
+
+def columns_to_frame(columns, data):
+    """Create a data frame from columns of float64 values. Nominal values
+    arrive as indexes into the attribute's labels and dates as milliseconds
+    since the epoch (local time)"""
+    names = [column['name'] for column in columns]
+    if all(column['type'] == 'NUMERIC' for column in columns):
+        return pd.DataFrame(data.T, columns=names)
+
+    frame_data = {}
+    for i in range(len(columns)):
+        column = columns[i]
+        values = data[i]
+        if column['type'] == 'NOMINAL':
+            labels = np.empty(len(column['values']) + 1, dtype=object)
+            labels[:-1] = column['values']
+            labels[-1] = np.nan
+            codes = np.where(np.isnan(values), len(column['values']), values)
+            frame_data[column['name']] = labels.take(codes.astype(np.int64))
+        elif column['type'] == 'DATE':
+            frame_data[column['name']] = pd.to_datetime(values, unit='ms')
+        else:
+            frame_data[column['name']] = values
+    return pd.DataFrame(frame_data, columns=names)
+
+
 def send_instances(message):
     frame_name = message['frame_name']
     frame = get_variable(frame_name)
@@ -177,9 +227,17 @@ def send_instances(message):
     response['response'] = 'instances_header'
     response['num_instances'] = len(frame.index)
     response['header'] = instances_to_header_message(frame_name, frame)
+    # string columns can't be sent as float64 values
+    binary = message.get('encoding') == 'binary' and \
+        all(attribute['type'] != 'STRING'
+            for attribute in response['header']['attributes'])
+    response['encoding'] = 'binary' if binary else 'csv'
     if message_debug(message) == True:
         print(response)
     send_response(response, True)
+    if binary:
+        send_columns(frame, response['header']['attributes'])
+        return
     # now send the CSV data
     s = StringIO()
     frame.to_csv(path_or_buf=s, na_rep='?', doublequote=False, index=False,
@@ -188,6 +246,38 @@ def send_instances(message):
     send_response(s.getvalue(), False)
 
 
+def send_columns(frame, attributes):
+    """Send the columns of a data frame as column-major chunks of
+    little-endian float64 values"""
+    num_rows = len(frame.index)
+    num_columns = len(attributes)
+    columns = [column_as_float64(frame.iloc[:, i], attributes[i])
+               for i in range(num_columns)]
+    chunk_rows = max(1, _global_column_chunk_bytes // (8 * max(1, num_columns)))
+    for start in range(0, num_rows, chunk_rows):
+        end = min(num_rows, start + chunk_rows)
+        chunk = np.empty((num_columns, end - start), dtype='<f8')
+        for i in range(num_columns):
+            chunk[i] = columns[i][start:end]
+        send_bytes(chunk.tobytes())
+
+
+def column_as_float64(column, attribute):
+    if attribute['type'] == 'NOMINAL':
+        codes = pd.Categorical(column.values,
+                               categories=attribute['values']).codes
+        values = codes.astype(np.float64)
+        values[codes < 0] = np.nan
+    elif attribute['type'] == 'DATE':
+        values = column.values.astype('datetime64[ms]').astype(np.int64) \
+            .astype(np.float64)
+        values[column.isnull().values] = np.nan
+    else:
+        values = pd.to_numeric(column, errors='coerce').values \
+            .astype(np.float64)
+    return values
+
+
 def instances_to_header_message(frame_name, frame):
     num_rows = len(frame.index)
     header = {}
@@ -256,6 +346,33 @@ def receive_message(isJson):
     return data
 
 
+def send_bytes(data):
+    _global_connection.sendall(struct.pack('>L', len(data)))
+    _global_connection.sendall(data)
+
+
+def receive_bytes():
+    """Receive a length-delimited message as raw bytes (no decoding)"""
+    length = bytearray()
+    while len(length) < 4:
+        chunk = _global_connection.recv(4 - len(length))
+        if len(chunk) == 0:
+            raise IOError('Connection closed while receiving message length')
+        length += chunk
+
+    size = struct.unpack('>L', bytes(length))[0]
+    data = bytearray(size)
+    view = memoryview(data)
+    received = 0
+    while received < size:
+        num_read = _global_connection.recv_into(view[received:],
+                                                size - received)
+        if num_read == 0:
+            raise IOError('Connection closed while receiving data')
+        received += num_read
+    return data
+
+
 def ack_command_err(message):
     err_response = {}
     err_response['response'] = 'error'
@@ -22,6 +22,7 @@
 package weka.classifiers.sklearn;
 
 import java.util.List;
+import java.util.UUID;
 
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.rules.ZeroR;
@@ -543,7 +544,8 @@ public class ScikitLearnClassifier extends AbstractClassifier implements
       if (m_scikitVersion < 0) {
         // try and establish scikit-learn version
         try {
-          PythonSession session = PythonSession.acquireSession(this);
+          PythonSession session =
+            PythonSession.acquirePooledSession(this, false);
           String script = "import sklearn\nskv = sklearn.__version__\n";
           List<String> outAndErr = session.executeScript(script, getDebug());
 
@@ -793,9 +795,9 @@ public class ScikitLearnClassifier extends AbstractClassifier implements
       }
     }
 
-    if (m_modelHash == null) {
-      m_modelHash = "" + hashCode();
-    }
+    // a new name for every build, so that a stale model left in another
+    // (pooled) python session - or by a copy of this object - is never used
+    m_modelHash = UUID.randomUUID().toString().replace("-", "");
 
     data = new Instances(data);
     data.deleteWithMissingClass();
@@ -855,7 +857,8 @@ public class ScikitLearnClassifier extends AbstractClassifier implements
         }
       }
 
-      PythonSession session = PythonSession.acquireSession(this);
+      PythonSession session =
+        PythonSession.acquirePooledSession(this, false);
       // transfer the data over to python
       session
         .instancesToPythonAsScikitLearn(data, TRAINING_DATA_ID, getDebug());
@@ -967,7 +970,10 @@ public class ScikitLearnClassifier extends AbstractClassifier implements
 
     double[][] results = null;
     try {
-      PythonSession session = PythonSession.acquireSession(this);
+      // without a pickled copy, the model only exists in the session that it
+      // was built in
+      PythonSession session =
+        PythonSession.acquirePooledSession(this, m_pickledModel == null);
       session.instancesToPythonAsScikitLearn(insts, TEST_DATA_ID, getDebug());
       StringBuilder predictScript = new StringBuilder();
 
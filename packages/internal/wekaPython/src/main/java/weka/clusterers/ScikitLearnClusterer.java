@@ -22,6 +22,7 @@
 package weka.clusterers;
 
 import java.util.List;
+import java.util.UUID;
 
 import weka.core.BatchPredictor;
 import weka.core.Capabilities;
@@ -356,9 +357,9 @@ public class ScikitLearnClusterer extends AbstractClusterer implements
       }
     }
 
-    if (m_modelHash == null) {
-      m_modelHash = "" + hashCode();
-    }
+    // a new name for every build, so that a stale model left in another
+    // (pooled) python session - or by a copy of this object - is never used
+    m_modelHash = UUID.randomUUID().toString().replace("-", "");
 
     data = new Instances(data);
 
@@ -368,7 +369,8 @@ public class ScikitLearnClusterer extends AbstractClusterer implements
     data = Filter.useFilter(data, m_nominalToBinary);
 
     try {
-      PythonSession session = PythonSession.acquireSession(this);
+      PythonSession session =
+        PythonSession.acquirePooledSession(this, false);
 
       session
         .instancesToPythonAsScikitLearn(data, TRAINING_DATA_ID, getDebug());
@@ -493,7 +495,8 @@ public class ScikitLearnClusterer extends AbstractClusterer implements
     insts = Filter.useFilter(insts, m_nominalToBinary);
 
     try {
-      PythonSession session = PythonSession.acquireSession(this);
+      PythonSession session =
+        PythonSession.acquirePooledSession(this, false);
       session.instancesToPythonAsScikitLearn(insts, TEST_DATA_ID, getDebug());
       StringBuilder predictScript = new StringBuilder();
 
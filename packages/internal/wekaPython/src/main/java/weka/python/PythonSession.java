@@ -28,7 +28,10 @@ import java.io.IOException;
 import java.io.StringWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import org.apache.commons.io.IOUtils;
 
@@ -39,7 +42,16 @@ import weka.gui.Logger;
 
 /**
  * Class that manages interaction with the python micro server. Launches the
- * server and shuts it down on VM exit.
+ * server and shuts it down on VM exit.<p>
+ *
+ * The server started by initSession() is shared by all clients of
+ * acquireSession(), which are serialized. Clients that don't rely on state
+ * shared with other clients (such as the scikit-learn wrappers) can instead
+ * use acquirePooledSession() to run concurrently against a pool of additional
+ * servers. The pool grows on demand up to the maximum set via
+ * setMaxPooledSessions() (or the weka.python.maxSessions system property).
+ * Pooled clients prefer the server that they last used, so that variables
+ * (e.g. fitted models) they left there can be reused.
  *
  * @author Mark Hall (mhall{[at]}pentaho{[dot]}com)
  * @version $Revision: $
@@ -56,14 +68,29 @@ public class PythonSession {
   /** The session singleton */
   private static PythonSession s_sessionSingleton;
 
-  /** the current session holder */
-  private static Object s_sessionHolder;
+  /** All running sessions - the singleton is always the first */
+  private static final List<PythonSession> s_sessionPool =
+    new ArrayList<PythonSession>();
+
+  /** The session that each pooled client last acquired */
+  private static final Map<Object, PythonSession> s_sessionAffinity =
+    new WeakHashMap<Object, PythonSession>();
+
+  /** Maximum number of sessions (including the singleton) */
+  private static int s_maxSessions = Math.max(1,
+    Integer.getInteger("weka.python.maxSessions", 1));
+
+  /** Number of sessions that are in the process of being launched */
+  private static int s_sessionsLaunching;
 
   /** The results of the python check script */
   private static String s_pythonEnvCheckResults = "";
 
-  /** For locking */
-  protected SessionMutex m_mutex = new SessionMutex();
+  /** The current holder of this session (null if the session is free) */
+  protected Object m_sessionHolder;
+
+  /** The thread that acquired this session */
+  protected Thread m_sessionHolderThread;
 
   /** Server socket */
   protected ServerSocket m_serverSocket;
@@ -98,17 +125,180 @@ public class PythonSession {
    */
   public static PythonSession acquireSession(Object requester)
     throws WekaException {
-    return s_sessionSingleton.getSession(requester);
+    synchronized (s_sessionPool) {
+      PythonSession session = s_sessionSingleton;
+      if (session == null) {
+        throw new WekaException("Python not available!");
+      }
+      while (!session.isAvailableTo(requester)) {
+        waitForSession();
+      }
+      session.hold(requester);
+      return session;
+    }
+  }
+
+  /**
+   * Acquire a session from the pool for the requester. The session that the
+   * requester last acquired from the pool is used if it is free; otherwise,
+   * unless affinity is required, any free session is used, or a new one is
+   * launched if the pool has not reached its maximum size. Only if none of
+   * these is possible does the requester wait.
+   *
+   * @param requester the object requesting the session
+   * @param requireAffinity true if the requester must get the session it
+   *          last acquired (e.g. because state there can't be transferred to
+   *          another session)
+   * @return a session
+   * @throws WekaException if python is not available
+   */
+  public static PythonSession acquirePooledSession(Object requester,
+    boolean requireAffinity) throws WekaException {
+    PythonSession primary;
+    synchronized (s_sessionPool) {
+      while (true) {
+        primary = s_sessionSingleton;
+        if (primary == null) {
+          throw new WekaException("Python not available!");
+        }
+        for (PythonSession s : s_sessionPool) {
+          if (s.m_sessionHolder == requester) {
+            return s;
+          }
+        }
+
+        PythonSession preferred = s_sessionAffinity.get(requester);
+        if (preferred != null && !s_sessionPool.contains(preferred)) {
+          s_sessionAffinity.remove(requester);
+          preferred = null;
+        }
+        if (preferred != null && preferred.m_sessionHolder == null) {
+          preferred.hold(requester);
+          return preferred;
+        }
+
+        if (preferred == null || !requireAffinity) {
+          for (PythonSession s : s_sessionPool) {
+            if (s.m_sessionHolder == null) {
+              s_sessionAffinity.put(requester, s);
+              s.hold(requester);
+              return s;
+            }
+          }
+          if (s_sessionPool.size() + s_sessionsLaunching < s_maxSessions) {
+            s_sessionsLaunching++;
+            break;
+          }
+        }
+        waitForSession();
+      }
+    }
+
+    // launch a new server outside of the lock
+    PythonSession session = null;
+    try {
+      session = new PythonSession(primary);
+    } catch (IOException ex) {
+      System.err.println("WARNING: unable to launch an additional python "
+        + "server - " + ex.getMessage());
+    }
+    synchronized (s_sessionPool) {
+      s_sessionsLaunching--;
+      if (session == null) {
+        // don't keep trying
+        s_maxSessions = s_sessionPool.size() + s_sessionsLaunching;
+        s_sessionPool.notifyAll();
+        return acquirePooledSession(requester, requireAffinity);
+      }
+      s_sessionPool.add(session);
+      s_sessionAffinity.put(requester, session);
+      session.hold(requester);
+    }
+    return session;
   }
 
   /**
    * Release the session so that other clients can obtain it. This method does
-   * nothing if the requester is not the current session holder
+   * nothing if the requester is not the current holder of a session
    *
    * @param requester the session holder
    */
   public static void releaseSession(Object requester) {
-    s_sessionSingleton.dropSession(requester);
+    synchronized (s_sessionPool) {
+      for (PythonSession s : s_sessionPool) {
+        if (s.m_sessionHolder == requester) {
+          s.m_sessionHolder = null;
+          s.m_sessionHolderThread = null;
+          s_sessionPool.notifyAll();
+        }
+      }
+    }
+  }
+
+  /**
+   * Set the maximum number of python servers (including the one launched by
+   * initSession()) that pooled sessions can be spread over
+   *
+   * @param maxSessions the maximum number of python servers
+   */
+  public static void setMaxPooledSessions(int maxSessions) {
+    synchronized (s_sessionPool) {
+      s_maxSessions = Math.max(1, maxSessions);
+      s_sessionPool.notifyAll();
+    }
+  }
+
+  /**
+   * Get the maximum number of python servers (including the one launched by
+   * initSession()) that pooled sessions can be spread over
+   *
+   * @return the maximum number of python servers
+   */
+  public static int getMaxPooledSessions() {
+    synchronized (s_sessionPool) {
+      return s_maxSessions;
+    }
+  }
+
+  /**
+   * Wait for a session to be released. Must be called while holding the pool
+   * lock.
+   *
+   * @throws WekaException if interrupted while waiting
+   */
+  private static void waitForSession() throws WekaException {
+    try {
+      s_sessionPool.wait();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new WekaException("Interrupted while waiting for python");
+    }
+  }
+
+  /**
+   * Returns true if this session can be given to the requester. A thread that
+   * already holds the session can re-acquire it for another requester rather
+   * than deadlocking.
+   *
+   * @param requester the requesting object
+   * @return true if the session can be given to the requester
+   */
+  private boolean isAvailableTo(Object requester) {
+    return m_sessionHolder == null || m_sessionHolder == requester
+      || m_sessionHolderThread == Thread.currentThread();
+  }
+
+  /**
+   * Mark this session as held by the requester. Must be called while holding
+   * the pool lock.
+   *
+   * @param requester the requesting object
+   */
+  private void hold(Object requester) {
+    if (m_sessionHolder == null) {
+      m_sessionHolder = requester;
+      m_sessionHolderThread = Thread.currentThread();
+    }
   }
 
   /**
@@ -146,42 +336,25 @@ public class PythonSession {
     // launch the server socket and python server
     if (s_pythonEnvCheckResults.length() < 5) {
       launchServer(true);
-      s_sessionSingleton = this;
-    }
-  }
-
-  /**
-   * Gets the access to python for a requester. Handles locking.
-   *
-   * @param requester the requesting object
-   * @return the session
-   * @throws WekaException if python is not available
-   */
-  private synchronized PythonSession getSession(Object requester)
-    throws WekaException {
-    if (s_sessionSingleton == null) {
-      throw new WekaException("Python not available!");
-    }
-
-    if (s_sessionHolder == requester) {
-      return this;
+      synchronized (s_sessionPool) {
+        s_sessionPool.add(0, this);
+        s_sessionSingleton = this;
+      }
     }
-
-    m_mutex.safeLock();
-    s_sessionHolder = requester;
-    return this;
   }
 
   /**
-   * Release the session for a requester
+   * Constructor for an additional, pooled session. The environment has
+   * already been checked when launching the primary session.
    *
-   * @param requester the requesting object
+   * @param primary the primary session
+   * @throws IOException if a problem occurs
    */
-  private void dropSession(Object requester) {
-    if (requester == s_sessionHolder) {
-      s_sessionHolder = null;
-      m_mutex.unlock();
-    }
+  private PythonSession(PythonSession primary) throws IOException {
+    m_debug = primary.m_debug;
+    m_pythonCommand = primary.m_pythonCommand;
+    m_shutdown = false;
+    launchServer(true);
   }
 
   /**
@@ -566,7 +739,13 @@ public class PythonSession {
         if (m_serverSocket != null) {
           m_serverSocket.close();
         }
-        s_sessionSingleton = null;
+        synchronized (s_sessionPool) {
+          s_sessionPool.remove(this);
+          if (s_sessionSingleton == this) {
+            s_sessionSingleton = null;
+          }
+          s_sessionPool.notifyAll();
+        }
       } catch (Exception ex) {
         ex.printStackTrace();
       }
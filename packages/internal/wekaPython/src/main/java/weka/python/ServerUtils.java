@@ -35,10 +35,13 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.StringReader;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TimeZone;
 
 import javax.imageio.ImageIO;
 
@@ -47,6 +50,7 @@ import org.boon.json.JsonFactory;
 import org.boon.json.ObjectMapper;
 
 import weka.core.Attribute;
+import weka.core.DenseInstance;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Utils;
@@ -62,6 +66,9 @@ import weka.gui.Logger;
  */
 public class ServerUtils {
 
+  /** Target size (in bytes) of each chunk of column data sent to python */
+  protected static final int COLUMN_CHUNK_BYTES = 8 * 1024 * 1024;
+
   /**
    * Create a simple header definition to transfer as json to the server
    *
@@ -143,6 +150,140 @@ public class ServerUtils {
     return new Instances(relationName, atts, 0);
   }
 
+  /**
+   * Returns true if the supplied instances can be transferred in binary
+   * columnar form - i.e. all attributes can be represented as doubles on the
+   * python side (string and relational attributes can't).
+   *
+   * @param instances the instances to check
+   * @return true if the instances can be sent as binary columns
+   */
+  protected static boolean canSendColumns(Instances instances) {
+    return instances.numAttributes() > 0
+      && !instances.checkForAttributeType(Attribute.STRING)
+      && !instances.checkForAttributeType(Attribute.RELATIONAL);
+  }
+
+  /**
+   * Create the column definitions that accompany binary columnar data. Each
+   * definition has the name and type (NUMERIC, NOMINAL or DATE) of a column
+   * and, for nominal columns, the labels that the transferred value indexes
+   * refer to.
+   *
+   * @param instances the instances to create column definitions for
+   * @param allNumeric true if all columns are to be treated as numeric (i.e.
+   *          nominal columns arrive as indexes and dates as milliseconds)
+   * @return a list of column definitions
+   */
+  protected static List<Map<String, Object>> createColumnDefinitions(
+    Instances instances, boolean allNumeric) {
+    List<Map<String, Object>> columns = new ArrayList<Map<String, Object>>();
+    for (int i = 0; i < instances.numAttributes(); i++) {
+      Attribute att = instances.attribute(i);
+      Map<String, Object> column = new HashMap<String, Object>();
+      column.put("name", att.name());
+      if (allNumeric || att.isNumeric() && !att.isDate()) {
+        column.put("type", "NUMERIC");
+      } else if (att.isDate()) {
+        column.put("type", "DATE");
+      } else {
+        column.put("type", "NOMINAL");
+        List<String> labels = new ArrayList<String>();
+        for (int j = 0; j < att.numValues(); j++) {
+          labels.add(att.value(j));
+        }
+        column.put("values", labels);
+      }
+      columns.add(column);
+    }
+
+    return columns;
+  }
+
+  /**
+   * Write instances as a sequence of length delimited chunks of column-major,
+   * little-endian float64 values that python can map straight into numpy
+   * arrays. Missing values are sent as NaN, nominal values as indexes and
+   * (unless all columns are numeric) dates as milliseconds since the epoch in
+   * local time, so that pandas sees the same wall clock time that the CSV
+   * transfer produces.
+   *
+   * @param instances the instances to write
+   * @param allNumeric true if dates are to be sent unchanged
+   * @param outputStream the output stream to write to
+   * @throws IOException if a problem occurs
+   */
+  protected static void writeColumns(Instances instances, boolean allNumeric,
+    OutputStream outputStream) throws IOException {
+    int numAtts = instances.numAttributes();
+    int chunkRows =
+      Math.max(1, COLUMN_CHUNK_BYTES / (8 * Math.max(1, numAtts)));
+    TimeZone tz = TimeZone.getDefault();
+
+    for (int start = 0; start < instances.numInstances(); start += chunkRows) {
+      int rows = Math.min(chunkRows, instances.numInstances() - start);
+      ByteBuffer chunk =
+        ByteBuffer.allocate(rows * numAtts * 8).order(ByteOrder.LITTLE_ENDIAN);
+      for (int j = 0; j < numAtts; j++) {
+        boolean date = !allNumeric && instances.attribute(j).isDate();
+        for (int r = start; r < start + rows; r++) {
+          double value = instances.instance(r).value(j);
+          if (date && !Utils.isMissingValue(value)) {
+            value += tz.getOffset((long) value);
+          }
+          chunk.putDouble(value);
+        }
+      }
+      writeDelimitedToOutputStream(chunk.array(), outputStream);
+    }
+    outputStream.flush();
+  }
+
+  /**
+   * Read instances sent by python as length delimited chunks of column-major,
+   * little-endian float64 values (see writeColumns()). The number of rows in
+   * each chunk is implied by its length.
+   *
+   * @param header the header of the instances being read
+   * @param numInstances the total number of instances to read
+   * @param inputStream the input stream to read from
+   * @return the instances read
+   * @throws IOException if a problem occurs
+   */
+  protected static Instances readColumns(Instances header, int numInstances,
+    InputStream inputStream) throws IOException {
+    int numAtts = header.numAttributes();
+    Instances result = new Instances(header, numInstances);
+    TimeZone tz = TimeZone.getDefault();
+
+    while (result.numInstances() < numInstances) {
+      DoubleBuffer chunk =
+        ByteBuffer.wrap(readDelimitedFromInputStream(inputStream))
+          .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+      int rows = chunk.remaining() / numAtts;
+      if (rows == 0) {
+        throw new IOException("Received an empty chunk of column data!");
+      }
+      double[][] values = new double[rows][numAtts];
+      for (int j = 0; j < numAtts; j++) {
+        boolean date = header.attribute(j).isDate();
+        for (int r = 0; r < rows; r++) {
+          double value = chunk.get(j * rows + r);
+          if (date && !Utils.isMissingValue(value)) {
+            // local wall clock time back to UTC
+            value -= tz.getOffset((long) value - tz.getOffset((long) value));
+          }
+          values[r][j] = value;
+        }
+      }
+      for (int r = 0; r < rows; r++) {
+        result.add(new DenseInstance(1.0, values[r]));
+      }
+    }
+
+    return result;
+  }
+
   /**
    * Send a shutdown command to the micro server
    *
@@ -266,6 +407,8 @@ public class ServerUtils {
     command.put("num_instances", instances.numInstances());
     command.put("header", simpleHeader);
     command.put("debug", debug);
+    command.put("encoding", "binary");
+    command.put("attributes", createColumnDefinitions(instances, true));
     if (inputStream != null && outputStream != null) {
       ByteArrayOutputStream bos = new ByteArrayOutputStream();
       mapper.writeValue(bos, command);
@@ -277,39 +420,8 @@ public class ServerUtils {
         // write the command
         writeDelimitedToOutputStream(bytes, outputStream);
         if (instances.numInstances() > 0) {
-          StringBuilder builder = new StringBuilder();
-
-          // header row
-          for (int i = 0; i < instances.numAttributes(); i++) {
-            builder.append(Utils.quote(instances.attribute(i).name()));
-            if (i < instances.numAttributes() - 1) {
-              builder.append(",");
-            } else {
-              builder.append("\n");
-            }
-          }
-
-          // instances
-          for (int i = 0; i < instances.numInstances(); i++) {
-            Instance current = instances.instance(i);
-            for (int j = 0; j < instances.numAttributes(); j++) {
-              builder.append(current.value(j));
-              if (j < instances.numAttributes() - 1) {
-                builder.append(",");
-              } else {
-                builder.append("\n");
-              }
-            }
-          }
-          if (debug) {
-            System.err.println(builder.toString());
-          }
-          bos = new ByteArrayOutputStream();
-          BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(bos));
-          bw.write(builder.toString());
-          bw.flush();
-          bytes = bos.toByteArray();
-          writeDelimitedToOutputStream(bytes, outputStream);
+          // all values (including the class) go as numbers
+          writeColumns(instances, true, outputStream);
 
           String serverAck = receiveServerAck(inputStream);
           if (serverAck != null) {
@@ -319,7 +431,7 @@ public class ServerUtils {
 
           // execute script to create X (and Y) arrays
           int classIndex = instances.classIndex();
-          builder = new StringBuilder();
+          StringBuilder builder = new StringBuilder();
           for (int i = 0; i < instances.numAttributes(); i++) {
             if (i != classIndex) {
               builder.append(i).append(",");
@@ -361,7 +473,9 @@ public class ServerUtils {
   }
 
   /**
-   * Sends instances to a pandas dataframe in python.
+   * Sends instances to a pandas dataframe in python. Data is sent as chunks of
+   * binary column data unless there are string or relational attributes, in
+   * which case it is sent as CSV.
    *
    * @param instances the instances to transfer
    * @param frameName the name of the data frame to create in python
@@ -383,7 +497,12 @@ public class ServerUtils {
     command.put("header", simpleHeader);
     command.put("debug", debug);
 
-    if (instances.checkForAttributeType(Attribute.DATE)) {
+    // send as binary columns unless there are string/relational attributes
+    boolean binary = canSendColumns(instances);
+    if (binary) {
+      command.put("encoding", "binary");
+      command.put("attributes", createColumnDefinitions(instances, false));
+    } else if (instances.checkForAttributeType(Attribute.DATE)) {
       // ensure a single, consistent date format
       ArrayList<Attribute> newAtts = new ArrayList<Attribute>();
       for (int i = 0; i < instances.numAttributes(); i++) {
@@ -417,8 +536,10 @@ public class ServerUtils {
         // write the command
         writeDelimitedToOutputStream(bytes, outputStream);
 
-        // write instances as CSV
-        if (instances.numInstances() > 0) {
+        if (binary) {
+          writeColumns(instances, false, outputStream);
+        } else if (instances.numInstances() > 0) {
+          // write instances as CSV
           CSVSaver saver = new CSVSaver();
           saver.setInstances(instances);
           bos = new ByteArrayOutputStream();
@@ -963,7 +1084,8 @@ public class ServerUtils {
 
   /**
    * Retrieve a pandas data frame from python. The server sends the header
-   * information in json form followed by CSV data (without a header row).
+   * information in json form followed by either chunks of binary column data
+   * or, if the frame has string columns, CSV data (without a header row).
    *
    * @param frameName the name of the pandas data frame to get from the server
    * @param outputStream the output stream to talk to the server on
@@ -983,6 +1105,7 @@ public class ServerUtils {
     command.put("command", "get_instances");
     command.put("frame_name", frameName);
     command.put("debug", debug);
+    command.put("encoding", "binary");
     ByteArrayOutputStream bos = new ByteArrayOutputStream();
     mapper.writeValue(bos, command);
     byte[] bytes = bos.toByteArray();
@@ -1025,6 +1148,13 @@ public class ServerUtils {
           jsonToInstancesHeader((Map<String, Object>) headerResponse
             .get("header"));
 
+        if (headerResponse.get("encoding") != null
+          && headerResponse.get("encoding").toString().equals("binary")) {
+          return readColumns(header,
+            ((Number) headerResponse.get("num_instances")).intValue(),
+            inputStream);
+        }
+
         // receive the CSV data, append with header, and then create
         // instances
         bytes = readDelimitedFromInputStream(inputStream);
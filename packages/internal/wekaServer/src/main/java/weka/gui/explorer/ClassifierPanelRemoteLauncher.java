@@ -45,7 +45,6 @@ import java.util.Date;
 import java.util.List;
 import java.util.Random;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import javax.swing.JButton;
 import javax.swing.JDialog;
@@ -89,6 +88,7 @@ import weka.gui.visualize.PlotData2D;
 import weka.server.ExecuteTaskServlet;
 import weka.server.GetTaskResultServlet;
 import weka.server.GetTaskStatusServlet;
+import weka.server.Legacy;
 import weka.server.NamedTask;
 import weka.server.PurgeTaskServlet;
 import weka.server.WekaServer;
@@ -597,7 +597,6 @@ public class ClassifierPanelRemoteLauncher extends JPanel implements
      */
     @Override
     public void execute() {
-      ObjectOutputStream oos = null;
       try {
         if (m_compressedTrain == null) {
           // loadResources() must have failed
@@ -663,12 +662,7 @@ public class ClassifierPanelRemoteLauncher extends JPanel implements
         m_result.setTaskResult(results);
 
         try {
-          m_persistedResult = WekaServer.getTempFile();
-          oos =
-            new ObjectOutputStream(new BufferedOutputStream(
-              new GZIPOutputStream(new FileOutputStream(m_persistedResult))));
-          oos.writeObject(results);
-          oos.flush();
+          m_persistedResult = Legacy.persistResult(results);
           // successfully saved result - now save memory
           m_result.setTaskResult(null);
         } catch (Exception e) {
@@ -693,12 +687,6 @@ public class ClassifierPanelRemoteLauncher extends JPanel implements
         // save memory
         m_training = null;
         m_outputCollector = null;
-        if (oos != null) {
-          try {
-            oos.close();
-          } catch (Exception e) {
-          }
-        }
       }
     }
 
@@ -908,7 +896,6 @@ public class ClassifierPanelRemoteLauncher extends JPanel implements
      */
     @Override
     public void execute() {
-      ObjectOutputStream oos = null;
       try {
         if (m_compressedTrain == null) {
           // loadResources() must have failed
@@ -1000,12 +987,7 @@ public class ClassifierPanelRemoteLauncher extends JPanel implements
         m_result.setTaskResult(results);
 
         try {
-          m_persistedResult = WekaServer.getTempFile();
-          oos =
-            new ObjectOutputStream(new BufferedOutputStream(
-              new GZIPOutputStream(new FileOutputStream(m_persistedResult))));
-          oos.writeObject(results);
-          oos.flush();
+          m_persistedResult = Legacy.persistResult(results);
           // successfully saved result - now save memory
           m_result.setTaskResult(null);
         } catch (Exception e) {
@@ -1030,12 +1012,6 @@ public class ClassifierPanelRemoteLauncher extends JPanel implements
         // save memory
         m_train = null;
         m_outputCollector = null;
-        if (oos != null) {
-          try {
-            oos.close();
-          } catch (Exception e) {
-          }
-        }
       }
     }
 
@@ -1223,7 +1199,6 @@ public class ClassifierPanelRemoteLauncher extends JPanel implements
      */
     @Override
     public void execute() {
-      ObjectOutputStream oos = null;
       try {
         if (m_compressedTrain == null) {
           // loadResources() must have failed
@@ -1308,12 +1283,7 @@ public class ClassifierPanelRemoteLauncher extends JPanel implements
         m_classifier = null;
 
         try {
-          m_persistedResult = WekaServer.getTempFile();
-          oos =
-            new ObjectOutputStream(new BufferedOutputStream(
-              new GZIPOutputStream(new FileOutputStream(m_persistedResult))));
-          oos.writeObject(results);
-          oos.flush();
+          m_persistedResult = Legacy.persistResult(results);
 
           // successfully saved the result - now save memory
           m_result.setTaskResult(null);
@@ -1340,12 +1310,6 @@ public class ClassifierPanelRemoteLauncher extends JPanel implements
         m_testFold = null;
         m_outputCollector = null;
         m_outputCollector = null;
-        if (oos != null) {
-          try {
-            oos.close();
-          } catch (Exception e) {
-          }
-        }
       }
     }
 
@@ -0,0 +1,638 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    BinaryProtocol.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.server;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SerializationHelper;
+import weka.core.SparseInstance;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.StringReader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compact binary protocol used for master - slave transfer of tasks and
+ * results. Messages are compressed as they are streamed, so they can be sent
+ * with chunked transfer encoding without being buffered in full first. Any
+ * datasets (Instances) in the object graph of a message are pulled out of the
+ * Java serialization stream, written in a compact row format and identified by
+ * the SHA-1 hash of their encoded bytes. A receiver keeps recently seen
+ * datasets in a {@code DatasetCache}, so a sender that knows the receiver
+ * already has a dataset can leave it out of the message altogether.
+ *
+ * @author agent (agent@local)
+ * @version $Revision: $
+ */
+public class BinaryProtocol {
+
+  /** Request parameter that identifies a binary protocol client */
+  public static final String BINARY_CLIENT_KEY = "binary";
+
+  /**
+   * Response header set by a server that answered in the binary protocol.
+   * Servers that predate the protocol ignore the binary request parameter and
+   * don't set it, which tells the sender to fall back to the old protocol.
+   */
+  public static final String BINARY_ACK_HEADER = "X-Weka-Binary";
+
+  /**
+   * Error message returned by a receiver when a message refers to datasets
+   * that are not in its cache
+   */
+  public static final String MISSING_DATASETS = "Missing datasets";
+
+  /** Identifies the start of a binary protocol message */
+  protected static final int MAGIC = 0x574B4250;
+
+  /** Protocol version */
+  protected static final int VERSION = 1;
+
+  /** Size of the compression buffers */
+  protected static final int BUFFER_SIZE = 64 * 1024;
+
+  /** Dataset encoded row by row with a header in ARFF format */
+  protected static final int FORMAT_ROWS = 0;
+
+  /** Dataset encoded with standard Java serialization */
+  protected static final int FORMAT_SERIALIZED = 1;
+
+  /** Encoded datasets available to DatasetReferences being deserialized */
+  protected static final ThreadLocal<Map<String, byte[]>> s_datasets =
+    new ThreadLocal<Map<String, byte[]>>();
+
+  /**
+   * Stands in for a dataset in the serialized object graph of a message
+   */
+  protected static class DatasetReference implements Serializable {
+
+    /** For serialization */
+    private static final long serialVersionUID = -6360617869785216223L;
+
+    /** Hash of the encoded dataset */
+    protected String m_hash;
+
+    /**
+     * Constructor
+     *
+     * @param hash the hash of the encoded dataset
+     */
+    public DatasetReference(String hash) {
+      m_hash = hash;
+    }
+
+    /**
+     * Replace this reference with the dataset it refers to
+     *
+     * @return the decoded dataset
+     * @throws ObjectStreamException if the dataset is not available
+     */
+    protected Object readResolve() throws ObjectStreamException {
+      Map<String, byte[]> datasets = s_datasets.get();
+      byte[] encoded = datasets != null ? datasets.get(m_hash) : null;
+      if (encoded == null) {
+        throw new InvalidObjectException("Dataset " + m_hash
+          + " is not available");
+      }
+      try {
+        return decodeInstances(encoded);
+      } catch (Exception ex) {
+        InvalidObjectException e =
+          new InvalidObjectException("Unable to decode dataset "
+            + m_hash);
+        e.initCause(ex);
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Exception thrown when a message refers to datasets that the receiver does
+   * not have
+   */
+  public static class MissingDatasetsException extends Exception {
+
+    /** For serialization */
+    private static final long serialVersionUID = 8447024137604963361L;
+
+    /** Hashes of the missing datasets */
+    protected List<String> m_missing;
+
+    /**
+     * Constructor
+     *
+     * @param missing the hashes of the missing datasets
+     */
+    public MissingDatasetsException(List<String> missing) {
+      super(MISSING_DATASETS);
+      m_missing = missing;
+    }
+
+    /**
+     * Get the hashes of the missing datasets
+     *
+     * @return the hashes of the missing datasets
+     */
+    public List<String> getMissing() {
+      return m_missing;
+    }
+  }
+
+  /**
+   * Bounded, least recently used cache of encoded datasets keyed by hash
+   */
+  public static class DatasetCache {
+
+    /** Default maximum size of the cache (256 Mb) */
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024L * 1024L;
+
+    /** Maximum number of bytes to hold */
+    protected long m_maxBytes;
+
+    /** Number of bytes currently held */
+    protected long m_currentBytes;
+
+    /** The cached datasets, in access order */
+    protected LinkedHashMap<String, byte[]> m_datasets =
+      new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+
+    /**
+     * Constructor
+     */
+    public DatasetCache() {
+      this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maxBytes the maximum number of bytes to hold
+     */
+    public DatasetCache(long maxBytes) {
+      m_maxBytes = maxBytes;
+    }
+
+    /**
+     * Get an encoded dataset
+     *
+     * @param hash the hash of the dataset
+     * @return the encoded dataset, or null if it is not in the cache
+     */
+    public synchronized byte[] get(String hash) {
+      return m_datasets.get(hash);
+    }
+
+    /**
+     * Add an encoded dataset to the cache. Least recently used datasets are
+     * evicted to make room if necessary.
+     *
+     * @param hash the hash of the dataset
+     * @param encoded the encoded dataset
+     */
+    public synchronized void put(String hash, byte[] encoded) {
+      if (encoded.length > m_maxBytes) {
+        return;
+      }
+      byte[] old = m_datasets.put(hash, encoded);
+      if (old != null) {
+        m_currentBytes -= old.length;
+      }
+      m_currentBytes += encoded.length;
+
+      Iterator<Map.Entry<String, byte[]>> i =
+        m_datasets.entrySet().iterator();
+      while (m_currentBytes > m_maxBytes && i.hasNext()) {
+        Map.Entry<String, byte[]> e = i.next();
+        if (!e.getKey().equals(hash)) {
+          m_currentBytes -= e.getValue().length;
+          i.remove();
+        }
+      }
+    }
+
+    /**
+     * Get the number of datasets in the cache
+     *
+     * @return the number of cached datasets
+     */
+    public synchronized int size() {
+      return m_datasets.size();
+    }
+  }
+
+  /**
+   * A message ready to be sent. Holds the serialized object graph (minus
+   * datasets) along with the encoded datasets. A message can be written any
+   * number of times, leaving out a different set of datasets each time.
+   */
+  public static class Message {
+
+    /** Serialized object graph */
+    protected byte[] m_object;
+
+    /** Encoded datasets keyed by hash */
+    protected Map<String, byte[]> m_datasets;
+
+    /**
+     * Constructor
+     *
+     * @param object the serialized object graph
+     * @param datasets the encoded datasets referenced by the object graph
+     */
+    protected Message(byte[] object, Map<String, byte[]> datasets) {
+      m_object = object;
+      m_datasets = datasets;
+    }
+
+    /**
+     * Get the hashes of the datasets referenced by this message
+     *
+     * @return the dataset hashes
+     */
+    public Set<String> getDatasetHashes() {
+      return Collections.unmodifiableSet(m_datasets.keySet());
+    }
+
+    /**
+     * Write this message to the supplied stream. The stream is not closed.
+     *
+     * @param out the stream to write to
+     * @param omit hashes of datasets that the receiver already has, and that
+     *          therefore need not be sent (may be null)
+     * @throws IOException if a problem occurs
+     */
+    public void write(OutputStream out, Set<String> omit) throws IOException {
+      Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+      try {
+        DeflaterOutputStream dos =
+          new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+        DataOutputStream dataOut = new DataOutputStream(dos);
+        dataOut.writeInt(MAGIC);
+        dataOut.writeInt(VERSION);
+        dataOut.writeInt(m_datasets.size());
+        for (Map.Entry<String, byte[]> e : m_datasets.entrySet()) {
+          dataOut.writeUTF(e.getKey());
+          boolean include = omit == null || !omit.contains(e.getKey());
+          dataOut.writeBoolean(include);
+          if (include) {
+            dataOut.writeInt(e.getValue().length);
+            dataOut.write(e.getValue());
+          }
+        }
+        dataOut.writeInt(m_object.length);
+        dataOut.write(m_object);
+        dataOut.flush();
+        dos.finish();
+        out.flush();
+      } finally {
+        deflater.end();
+      }
+    }
+  }
+
+  /**
+   * Object output stream that swaps datasets for references to their encoded
+   * form
+   */
+  protected static class DatasetExtractingOutputStream extends
+    ObjectOutputStream {
+
+    /** Datasets encountered so far */
+    protected Map<String, byte[]> m_datasets;
+
+    /**
+     * Constructor
+     *
+     * @param out the stream to write to
+     * @param datasets map to add encoded datasets to
+     * @throws IOException if a problem occurs
+     */
+    public DatasetExtractingOutputStream(OutputStream out,
+      Map<String, byte[]> datasets) throws IOException {
+      super(out);
+      m_datasets = datasets;
+      enableReplaceObject(true);
+    }
+
+    @Override
+    protected Object replaceObject(Object obj) throws IOException {
+      // only replace plain Instances - subclasses may carry extra state
+      if (obj != null && obj.getClass() == Instances.class
+        && ((Instances) obj).numInstances() > 0) {
+        byte[] encoded = encodeInstances((Instances) obj);
+        String hash = hash(encoded);
+        m_datasets.put(hash, encoded);
+        return new DatasetReference(hash);
+      }
+      return obj;
+    }
+  }
+
+  /**
+   * Prepare an object for sending
+   *
+   * @param toSend the object to send
+   * @return a message that can be written to a stream
+   * @throws IOException if a problem occurs
+   */
+  public static Message prepareMessage(Object toSend) throws IOException {
+    Map<String, byte[]> datasets = new LinkedHashMap<String, byte[]>();
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    ObjectOutputStream oos = new DatasetExtractingOutputStream(bos, datasets);
+    oos.writeObject(toSend);
+    oos.flush();
+    oos.close();
+
+    return new Message(bos.toByteArray(), datasets);
+  }
+
+  /**
+   * Write an object (including all datasets that it refers to) to a stream.
+   * The stream is not closed.
+   *
+   * @param out the stream to write to
+   * @param toSend the object to write
+   * @throws IOException if a problem occurs
+   */
+  public static void writeObject(OutputStream out, Object toSend)
+    throws IOException {
+    prepareMessage(toSend).write(out, null);
+  }
+
+  /**
+   * Read an object from a stream. Datasets that were sent with the message are
+   * added to the supplied cache (if any); datasets that were omitted by the
+   * sender are looked up in the cache.
+   *
+   * @param in the stream to read from
+   * @param cache the dataset cache to use (may be null)
+   * @return the object read
+   * @throws MissingDatasetsException if the message refers to datasets that
+   *           were neither sent nor cached
+   * @throws Exception if some other problem occurs
+   */
+  public static Object readObject(InputStream in, DatasetCache cache)
+    throws Exception {
+    Inflater inflater = new Inflater();
+    try {
+      DataInputStream dataIn =
+        new DataInputStream(new InflaterInputStream(in, inflater, BUFFER_SIZE));
+      if (dataIn.readInt() != MAGIC) {
+        throw new IOException("Not a binary protocol message");
+      }
+      int version = dataIn.readInt();
+      if (version > VERSION) {
+        throw new IOException("Unsupported binary protocol version: "
+          + version);
+      }
+
+      int numDatasets = dataIn.readInt();
+      Map<String, byte[]> datasets = new HashMap<String, byte[]>();
+      List<String> missing = new ArrayList<String>();
+      for (int i = 0; i < numDatasets; i++) {
+        String hash = dataIn.readUTF();
+        byte[] encoded = null;
+        if (dataIn.readBoolean()) {
+          encoded = new byte[dataIn.readInt()];
+          dataIn.readFully(encoded);
+          if (cache != null) {
+            cache.put(hash, encoded);
+          }
+        } else if (cache != null) {
+          encoded = cache.get(hash);
+        }
+        if (encoded == null) {
+          missing.add(hash);
+        } else {
+          datasets.put(hash, encoded);
+        }
+      }
+      if (missing.size() > 0) {
+        throw new MissingDatasetsException(missing);
+      }
+
+      byte[] object = new byte[dataIn.readInt()];
+      dataIn.readFully(object);
+
+      s_datasets.set(datasets);
+      ObjectInputStream ois =
+        SerializationHelper.getObjectInputStream(new ByteArrayInputStream(
+          object));
+      try {
+        return ois.readObject();
+      } finally {
+        s_datasets.remove();
+        ois.close();
+      }
+    } finally {
+      inflater.end();
+    }
+  }
+
+  /**
+   * Returns true if a response from a receiver indicates that it was missing
+   * datasets
+   *
+   * @param response the response
+   * @return true if the receiver was missing datasets
+   */
+  public static boolean isMissingDatasetsResponse(Object response) {
+    return response != null
+      && response.toString().startsWith(WekaServlet.RESPONSE_ERROR)
+      && response.toString().contains(MISSING_DATASETS);
+  }
+
+  /**
+   * Compute the hash of some bytes
+   *
+   * @param bytes the bytes to hash
+   * @return the hash as a hex string
+   * @throws IOException if the hash algorithm is unavailable
+   */
+  public static String hash(byte[] bytes) throws IOException {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-1").digest(bytes);
+      StringBuilder b = new StringBuilder();
+      for (byte d : digest) {
+        b.append(String.format("%02x", d & 0xff));
+      }
+      return b.toString();
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IOException(ex);
+    }
+  }
+
+  /**
+   * Returns true if a dataset can be encoded in row format without losing
+   * information
+   *
+   * @param data the dataset to check
+   * @return true if the row format can be used
+   */
+  protected static boolean canEncodeRows(Instances data) {
+    for (int i = 0; i < data.numAttributes(); i++) {
+      // string and relational values live in the header, which the row
+      // format does not carry
+      int type = data.attribute(i).type();
+      if (type == Attribute.STRING || type == Attribute.RELATIONAL) {
+        return false;
+      }
+    }
+    for (int i = 0; i < data.numInstances(); i++) {
+      Class<?> c = data.instance(i).getClass();
+      if (c != DenseInstance.class && c != SparseInstance.class) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Encode a dataset. Datasets containing only nominal, numeric and date
+   * attributes are written as an ARFF header followed by the raw values of
+   * each row; anything else falls back to Java serialization.
+   *
+   * @param data the dataset to encode
+   * @return the encoded bytes
+   * @throws IOException if a problem occurs
+   */
+  public static byte[] encodeInstances(Instances data) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bos);
+
+    if (!canEncodeRows(data)) {
+      out.writeInt(FORMAT_SERIALIZED);
+      ObjectOutputStream oos = new ObjectOutputStream(out);
+      oos.writeObject(data);
+      oos.flush();
+      return bos.toByteArray();
+    }
+
+    out.writeInt(FORMAT_ROWS);
+    byte[] header = new Instances(data, 0).toString().getBytes("UTF-8");
+    out.writeInt(header.length);
+    out.write(header);
+    out.writeInt(data.classIndex());
+    out.writeInt(data.numInstances());
+    int numAtts = data.numAttributes();
+    for (int i = 0; i < data.numInstances(); i++) {
+      Instance inst = data.instance(i);
+      out.writeDouble(inst.weight());
+      if (inst instanceof SparseInstance) {
+        out.writeBoolean(true);
+        out.writeInt(inst.numValues());
+        for (int j = 0; j < inst.numValues(); j++) {
+          out.writeInt(inst.index(j));
+          out.writeDouble(inst.valueSparse(j));
+        }
+      } else {
+        out.writeBoolean(false);
+        for (int j = 0; j < numAtts; j++) {
+          out.writeDouble(inst.value(j));
+        }
+      }
+    }
+    out.flush();
+
+    return bos.toByteArray();
+  }
+
+  /**
+   * Decode a dataset encoded by {@code encodeInstances()}
+   *
+   * @param encoded the encoded bytes
+   * @return the dataset
+   * @throws Exception if a problem occurs
+   */
+  public static Instances decodeInstances(byte[] encoded) throws Exception {
+    DataInputStream in =
+      new DataInputStream(new ByteArrayInputStream(encoded));
+    int format = in.readInt();
+    if (format == FORMAT_SERIALIZED) {
+      ObjectInputStream ois = SerializationHelper.getObjectInputStream(in);
+      try {
+        return (Instances) ois.readObject();
+      } finally {
+        ois.close();
+      }
+    }
+
+    byte[] header = new byte[in.readInt()];
+    in.readFully(header);
+    Instances data =
+      new Instances(new StringReader(new String(header, "UTF-8")));
+    data.setClassIndex(in.readInt());
+    int numInstances = in.readInt();
+    int numAtts = data.numAttributes();
+    Instances result = new Instances(data, numInstances);
+    for (int i = 0; i < numInstances; i++) {
+      double weight = in.readDouble();
+      Instance inst;
+      if (in.readBoolean()) {
+        int numValues = in.readInt();
+        int[] indices = new int[numValues];
+        double[] values = new double[numValues];
+        for (int j = 0; j < numValues; j++) {
+          indices[j] = in.readInt();
+          values[j] = in.readDouble();
+        }
+        inst = new SparseInstance(weight, values, indices, numAtts);
+      } else {
+        double[] values = new double[numAtts];
+        for (int j = 0; j < numAtts; j++) {
+          values[j] = in.readDouble();
+        }
+        inst = new DenseInstance(weight, values);
+      }
+      result.add(inst);
+    }
+
+    return result;
+  }
+}
@@ -89,6 +89,7 @@ public class ExecuteTaskServlet extends WekaServlet {
     InputStream in = null;
     BufferedReader inReader = null;
     ObjectOutputStream oos = null;
+    OutputStream binaryOut = null;
     PrintWriter out = null;
 
     String legacyClientParam = request.getParameter(Legacy.LEGACY_CLIENT_KEY);
@@ -97,11 +98,20 @@ public class ExecuteTaskServlet extends WekaServlet {
       legacyClientParam != null && legacyClientParam.equalsIgnoreCase("y");
     boolean clientNew =
       jsonClientParam != null && jsonClientParam.equalsIgnoreCase("y");
+    String binaryClientParam =
+      request.getParameter(BinaryProtocol.BINARY_CLIENT_KEY);
+    boolean clientBinary =
+      binaryClientParam != null && binaryClientParam.equalsIgnoreCase("y");
     String masterParam = request.getParameter("master");
     boolean fromMaster =
       masterParam != null && masterParam.equalsIgnoreCase("y");
 
-    if (clientLegacy) {
+    if (clientBinary) {
+      in = request.getInputStream();
+      response.setContentType("application/octet-stream");
+      response.setHeader(BinaryProtocol.BINARY_ACK_HEADER, "Y");
+      binaryOut = new BufferedOutputStream(response.getOutputStream());
+    } else if (clientLegacy) {
       in = request.getInputStream();
       // response.setCharacterEncoding("UTF-8");
       // response.setContentType("text/plain");
@@ -128,7 +138,10 @@ public class ExecuteTaskServlet extends WekaServlet {
     Object task = null;
     WekaTaskEntry entry = null;
     try {
-      if (clientLegacy) {
+      if (clientBinary) {
+        // datasets not sent with the task come from our cache
+        task = BinaryProtocol.readObject(in, m_server.getDatasetCache());
+      } else if (clientLegacy) {
         // Deserialize the task
 	GZIPInputStream gzi = new GZIPInputStream(in);
 	ois = SerializationHelper.getObjectInputStream(gzi);        
@@ -179,7 +192,9 @@ public class ExecuteTaskServlet extends WekaServlet {
       }
 
       // send the task name + id to the client
-      if (clientLegacy) {
+      if (clientBinary) {
+        BinaryProtocol.writeObject(binaryOut, entry.toString());
+      } else if (clientLegacy) {
         oos.writeObject(entry.toString());
         oos.flush();
       } else if (clientNew) {
@@ -200,7 +215,10 @@ public class ExecuteTaskServlet extends WekaServlet {
         out.println("</H1>");
       }
     } catch (Exception ex) {
-      if (clientLegacy) {
+      if (clientBinary) {
+        BinaryProtocol.writeObject(binaryOut, WekaServlet.RESPONSE_ERROR + " "
+          + ex.getMessage());
+      } else if (clientLegacy) {
         oos.writeObject(WekaServlet.RESPONSE_ERROR + " " + ex.getMessage());
         oos.flush();
       } else {
@@ -220,7 +238,12 @@ public class ExecuteTaskServlet extends WekaServlet {
         oos = null;
       }
 
-      if (!clientLegacy && !clientNew && out != null) {
+      if (binaryOut != null) {
+        binaryOut.close();
+        binaryOut = null;
+      }
+
+      if (!clientLegacy && !clientNew && !clientBinary && out != null) {
         out.println("<p>");
         out.println("</BODY>");
         out.println("</HTML>");
@@ -31,6 +31,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
@@ -47,6 +48,19 @@ import java.util.zip.GZIPOutputStream;
  * TaskStatusInfo (which encapsulates the result). So in this case is the same
  * as the GetTaskStatusServlet. For browsers the servlet prints out the result
  * as a string.
+ * <p>
+ * 
+ * Large results can be fetched in pieces by supplying an {@code offset} (and
+ * optionally a {@code length}) parameter. In this case the status is written
+ * to the server's {@code ResultStore} when a fetch starts at offset 0, and the
+ * requested range of its bytes is returned. Concatenating the pieces gives the
+ * same GZIP compressed, serialized TaskStatusInfo as a legacy client receives
+ * in one go. The total number of bytes is returned in the
+ * {@code X-Weka-Result-Length} header, and the generation of the bytes being
+ * read in the {@code ETag} header. A client resuming a fetch sends that
+ * generation back in an {@code If-Match} header. The fetch is then served from
+ * the same version of the result, or rejected with 412 (precondition failed)
+ * if that version has been replaced or evicted.
  * 
  * @author Mark Hall (mhall{[at]}pentaho{[dot]}com)
  * @version $Revision$
@@ -56,6 +70,12 @@ public class GetTaskResultServlet extends WekaServlet {
   /** The context path for this servlet */
   public static final String CONTEXT_PATH = "/weka/taskResult";
 
+  /**
+   * Response header that carries the total length of a result that is being
+   * fetched in pieces
+   */
+  public static final String RESULT_LENGTH_HEADER = "X-Weka-Result-Length";
+
   /**
    * For serialization
    */
@@ -89,29 +109,46 @@ public class GetTaskResultServlet extends WekaServlet {
     }
 
     String taskName = request.getParameter("name");
+    if (request.getParameter("offset") != null) {
+      streamResult(request, response, taskName);
+      return;
+    }
+
     String clientParamLegacy = request.getParameter("client");
     String jsonClientParam = request.getParameter(JSONProtocol.JSON_CLIENT_KEY);
     boolean clientNew =
       jsonClientParam != null && jsonClientParam.equalsIgnoreCase("y");
     boolean clientLegacy =
       clientParamLegacy != null && clientParamLegacy.equalsIgnoreCase("y");
+    String binaryClientParam =
+      request.getParameter(BinaryProtocol.BINARY_CLIENT_KEY);
+    boolean clientBinary =
+      binaryClientParam != null && binaryClientParam.equalsIgnoreCase("y");
 
     response.setStatus(HttpServletResponse.SC_OK);
-    if (clientLegacy) {
+    if (clientLegacy || clientBinary) {
       response.setContentType("application/octet-stream");
+      if (clientBinary) {
+        response.setHeader(BinaryProtocol.BINARY_ACK_HEADER, "Y");
+      }
     } else {
       response.setCharacterEncoding("UTF-8");
       response.setContentType("text/html;charset=UTF-8");
     }
 
     ObjectOutputStream oos = null;
+    OutputStream binaryOut = null;
     PrintWriter out = null;
 
     // Get the task
     NamedTask task = m_taskMap.getTask(taskName);
     try {
       if (task == null) {
-        if (clientLegacy) {
+        if (clientBinary) {
+          binaryOut = new BufferedOutputStream(response.getOutputStream());
+          BinaryProtocol.writeObject(binaryOut, WekaServlet.RESPONSE_ERROR
+            + ": Can't find task " + taskName);
+        } else if (clientLegacy) {
           String errorResult =
             WekaServlet.RESPONSE_ERROR + ": Can't find task " + taskName;
           OutputStream outS = response.getOutputStream();
@@ -141,24 +178,15 @@ public class GetTaskResultServlet extends WekaServlet {
           out.println("<p>");
         }
       } else {
-        TaskStatusInfo status = null;
-
-        WekaTaskMap.WekaTaskEntry te = m_taskMap.getTaskKey(taskName);
+        TaskStatusInfo status = getStatus(taskName, task);
 
-        if (te.getServer().equals(
-          m_server.getHostname() + ":" + m_server.getPort())) {
+        if (clientBinary) {
+          // stream the status (and result if ready) back to the client
+          binaryOut = new BufferedOutputStream(response.getOutputStream());
+          BinaryProtocol.writeObject(binaryOut, status);
 
-          // ask the task to load it (if they have persisted it to save memory)
-          task.loadResult();
-          status = task.getTaskStatus();
-        } else {
-          // need to ask the slave for it (and handle error if slave is down...)
-          String slave = te.getServer();
-          String remoteTaskID = te.getRemoteID();
-          status = getResultRemote(m_server, slave, remoteTaskID, taskName);
-        }
-
-        if (clientLegacy) {
+          task.freeMemory();
+        } else if (clientLegacy) {
           // is actually the same as GetTaskStatusServlet, since the task status
           // object encapsulates the result
           OutputStream outS = response.getOutputStream();
@@ -222,7 +250,10 @@ public class GetTaskResultServlet extends WekaServlet {
         }
       }
     } catch (Exception ex) {
-      if (oos != null) {
+      if (binaryOut != null) {
+        BinaryProtocol.writeObject(binaryOut, WekaServlet.RESPONSE_ERROR + " "
+          + ex.getMessage());
+      } else if (oos != null) {
         oos.writeObject(WekaServlet.RESPONSE_ERROR + " " + ex.getMessage());
         oos.flush();
       } else if (clientNew && out != null) {
@@ -243,6 +274,11 @@ public class GetTaskResultServlet extends WekaServlet {
         oos = null;
       }
 
+      if (binaryOut != null) {
+        binaryOut.close();
+        binaryOut = null;
+      }
+
       if (out != null) {
         if (!clientNew) {
           out.println("</BODY>\n</HTML>\n");
@@ -253,6 +289,126 @@ public class GetTaskResultServlet extends WekaServlet {
     }
   }
 
+  /**
+   * Get the status (including the result, if available) of a task
+   * 
+   * @param taskName the name of the task
+   * @param task the task
+   * @return the status of the task
+   * @throws Exception if a problem occurs
+   */
+  protected TaskStatusInfo getStatus(String taskName, NamedTask task)
+    throws Exception {
+    WekaTaskMap.WekaTaskEntry te = m_taskMap.getTaskKey(taskName);
+
+    if (te.getServer().equals(
+      m_server.getHostname() + ":" + m_server.getPort())) {
+
+      // ask the task to load it (if they have persisted it to save memory)
+      task.loadResult();
+      return task.getTaskStatus();
+    }
+
+    // need to ask the slave for it (and handle error if slave is down...)
+    String slave = te.getServer();
+    String remoteTaskID = te.getRemoteID();
+    return getResultRemote(m_server, slave, remoteTaskID, taskName);
+  }
+
+  /**
+   * Send part of the (GZIP compressed, serialized) status of a task to the
+   * client
+   * 
+   * @param request the request
+   * @param response the response
+   * @param taskName the name of the task
+   * @throws IOException if a problem occurs
+   */
+  protected void streamResult(HttpServletRequest request,
+    HttpServletResponse response, String taskName) throws IOException {
+
+    NamedTask task = m_taskMap.getTask(taskName);
+    if (task == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND,
+        "Can't find task " + taskName);
+      return;
+    }
+
+    long offset;
+    long length = -1;
+    try {
+      offset = Long.parseLong(request.getParameter("offset"));
+      if (request.getParameter("length") != null) {
+        length = Long.parseLong(request.getParameter("length"));
+      }
+    } catch (NumberFormatException ex) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+        "Malformed offset or length");
+      return;
+    }
+
+    // a resuming client names the generation it started reading
+    String expectedGeneration = request.getHeader("If-Match");
+    if (expectedGeneration != null) {
+      expectedGeneration = expectedGeneration.replace("\"", "").trim();
+    }
+
+    ResultStore store = ResultStore.getSingleton();
+    File streamFile = store.getStreamFile(taskName);
+    ResultStore.StoredVersion version = null;
+    try {
+      // a fetch starting at the beginning gets an up to date status. The new
+      // version replaces the old one atomically, so other clients part way
+      // through reading the old version are unaffected
+      if (expectedGeneration == null && (offset == 0 || !streamFile.exists())) {
+        TaskStatusInfo status = getStatus(taskName, task);
+        streamFile = store.storeForStreaming(taskName, status);
+        task.freeMemory();
+      }
+      version = store.open(streamFile);
+    } catch (Exception ex) {
+      ex.printStackTrace();
+      response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+        "An error occurred while getting task result: " + ex.getMessage());
+      return;
+    }
+
+    if (expectedGeneration != null
+      && (version == null || !version.getGeneration().equals(
+        expectedGeneration))) {
+      // the bytes the client has come from a version that has since been
+      // replaced or evicted, so it has to start again
+      if (version != null) {
+        version.close();
+      }
+      response.sendError(HttpServletResponse.SC_PRECONDITION_FAILED,
+        "The result of task " + taskName + " has changed - fetch it again "
+          + "from offset 0");
+      return;
+    }
+    if (version == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND,
+        "The result of task " + taskName + " is no longer available");
+      return;
+    }
+
+    try {
+      response.setStatus(HttpServletResponse.SC_OK);
+      response.setContentType("application/octet-stream");
+      response.setHeader(RESULT_LENGTH_HEADER, "" + version.length());
+      response.setHeader("ETag", "\"" + version.getGeneration() + "\"");
+      OutputStream out = response.getOutputStream();
+      try {
+        version.copyRange(offset, length, out);
+        out.flush();
+      } finally {
+        out.close();
+      }
+    } finally {
+      version.close();
+    }
+  }
+
   protected static TaskStatusInfo getResultRemote(WekaServer server,
     String slave, String remoteTaskID, String origTaskID) {
 
@@ -264,7 +420,13 @@ public class GetTaskResultServlet extends WekaServlet {
       String url = "http://" + slave;
       url = url.replace(" ", "%20");
       url += CONTEXT_PATH;
-      url += "/?name=" + URLEncoder.encode(remoteTaskID, "UTF-8") + "&client=Y";
+      // the old client parameter is always sent, so that a slave that
+      // predates the binary protocol answers in the old format
+      url += "/?name=" + URLEncoder.encode(remoteTaskID, "UTF-8") + "&"
+        + Legacy.LEGACY_CLIENT_KEY + "=Y";
+      if (server.slaveUsesBinaryProtocol(slave)) {
+        url += "&" + BinaryProtocol.BINARY_CLIENT_KEY + "=Y";
+      }
       post = new PostMethod(url);
       post.setDoAuthentication(true);
       post.addRequestHeader(new Header("Content-Type", "text/plain"));
@@ -286,10 +448,17 @@ public class GetTaskResultServlet extends WekaServlet {
 
         // the response
         is = post.getResponseBodyAsStream();
-        ObjectInputStream ois =
-          new ObjectInputStream(
-            new BufferedInputStream(new GZIPInputStream(is)));
-        Object response = ois.readObject();
+        Object response;
+        if (post.getResponseHeader(BinaryProtocol.BINARY_ACK_HEADER) != null) {
+          response =
+            BinaryProtocol.readObject(new BufferedInputStream(is), null);
+        } else {
+          server.setSlaveUsesBinaryProtocol(slave, false);
+          ObjectInputStream ois =
+            new ObjectInputStream(new BufferedInputStream(
+              new GZIPInputStream(is)));
+          response = ois.readObject();
+        }
         if (response.toString().startsWith(WekaServlet.RESPONSE_ERROR)) {
           System.err
             .println("[WekaServer] A problem occurred while "
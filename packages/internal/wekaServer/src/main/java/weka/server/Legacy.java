@@ -21,15 +21,7 @@
 
 package weka.server;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 /**
  * Binary/legacy related task stuff. Binary is used for internal execution and
@@ -43,29 +35,16 @@ public class Legacy {
   public static String LEGACY_CLIENT_KEY = "client";
 
   /**
-   * Utility routine to persist a result
+   * Utility routine to persist a result. The result is written to the
+   * server's {@code ResultStore}, which bounds the total size of persisted
+   * results.
    *
    * @param result the result to persist
    * @return the {@code File} the result was persisted to
    * @throws Exception if a problem occurs
    */
   public static File persistResult(Object result) throws Exception {
-    ObjectOutputStream oos = null;
-    File persistedResult = null;
-    try {
-      persistedResult = WekaServer.getTempFile();
-      oos =
-        new ObjectOutputStream(new BufferedOutputStream(new GZIPOutputStream(
-          new FileOutputStream(persistedResult))));
-      oos.writeObject(result);
-      oos.flush();
-    } finally {
-      if (oos != null) {
-        oos.close();
-      }
-    }
-
-    return persistedResult;
+    return ResultStore.getSingleton().store(result);
   }
 
   /**
@@ -76,20 +55,6 @@ public class Legacy {
    * @throws Exception if a problem occurs
    */
   public static Object loadResult(File persistedResult) throws Exception {
-    if (persistedResult == null || !persistedResult.exists()) {
-      throw new Exception("Result file seems to have disapeared!");
-    }
-
-    ObjectInputStream ois = null;
-    try {
-      ois =
-        new ObjectInputStream(new BufferedInputStream(new GZIPInputStream(
-          new FileInputStream(persistedResult))));
-      return  ois.readObject();
-    } finally {
-      if (ois != null) {
-        ois.close();
-      }
-    }
+    return ResultStore.getSingleton().load(persistedResult);
   }
 }
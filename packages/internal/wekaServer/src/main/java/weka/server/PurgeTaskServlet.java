@@ -162,6 +162,7 @@ public class PurgeTaskServlet extends WekaServlet {
           NamedTask task = tasks.get(i);
           task.freeMemory();
           task.purge();
+          ResultStore.getSingleton().removeStreamFile(tn);
           WekaTaskMap.WekaTaskEntry wte = m_taskMap.getTaskKey(tn);
           m_taskMap.removeTask(wte);
 
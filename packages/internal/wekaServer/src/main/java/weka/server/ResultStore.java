@@ -0,0 +1,491 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    ResultStore.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.server;
+
+import weka.core.SerializationHelper;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Disk-backed store for task results. Results are written as compressed,
+ * serialized objects so that tasks only need to hold on to a file reference
+ * between executions. The total size of the store is bounded - when it grows
+ * beyond the maximum size, the least recently used results are deleted (tasks
+ * already report a result file that has disappeared as an unavailable result).
+ * Stored results can also be read in pieces starting from an arbitrary
+ * offset, which allows clients to fetch large results incrementally.
+ * <p>
+ * Files are never rewritten in place. A new version is written to a temporary
+ * file that is then renamed over the old one, so a reader that already has a
+ * file open keeps seeing the version it opened. Each version gets a new
+ * generation, which lets a client resuming a fetch check that it is still
+ * reading the bytes it started with.
+ * <p>
+ * Only results are kept here. The task map itself (names, status and
+ * schedules) stays in memory, with scheduled tasks persisted separately by
+ * the server as before.
+ *
+ * @author agent (agent@local)
+ * @version $Revision: $
+ */
+public class ResultStore {
+
+  /** Directory that results are stored in */
+  public static final String RESULT_DIRECTORY =
+    WekaServer.SERVER_ROOT_DIRECTORY + "results" + File.separator;
+
+  /** Default maximum size of the store (2 Gb) */
+  public static final long DEFAULT_MAX_BYTES = 2048L * 1024L * 1024L;
+
+  /** Prefix for the names of files holding task status for streaming */
+  protected static final String STREAM_PREFIX = "stream-";
+
+  /** Suffix of the temporary files that new versions are written to */
+  protected static final String TEMP_SUFFIX = ".tmp";
+
+  /** The singleton store */
+  private static ResultStore s_resultStore;
+
+  /** The directory that this store writes to */
+  protected File m_directory;
+
+  /** Maximum number of bytes to keep on disk */
+  protected long m_maxBytes = DEFAULT_MAX_BYTES;
+
+  /** Number of bytes currently on disk */
+  protected long m_currentBytes;
+
+  /** Sizes of the stored files, in access order */
+  protected LinkedHashMap<File, Long> m_files = new LinkedHashMap<File, Long>(
+    16, 0.75f, true);
+
+  /** Generation of the current version of each file written by this store */
+  protected Map<File, String> m_generations = new HashMap<File, String>();
+
+  /**
+   * Constructor
+   *
+   * @param directory the directory to store results in
+   */
+  public ResultStore(File directory) {
+    m_directory = directory;
+    if (!m_directory.exists()) {
+      if (!m_directory.mkdirs()) {
+        System.err.println("[WekaServer] Unable to create result "
+          + "directory (" + m_directory + ")");
+      }
+    }
+
+    // pick up results left by a previous run, oldest first, so that they
+    // count towards the size limit
+    File[] contents = m_directory.listFiles();
+    if (contents != null) {
+      Arrays.sort(contents, new Comparator<File>() {
+        @Override
+        public int compare(File f1, File f2) {
+          return Long.valueOf(f1.lastModified()).compareTo(f2.lastModified());
+        }
+      });
+      for (File f : contents) {
+        if (f.isFile() && f.getName().endsWith(TEMP_SUFFIX)) {
+          // left by a write that didn't complete
+          if (!f.delete()) {
+            f.deleteOnExit();
+          }
+        } else if (f.isFile()) {
+          m_files.put(f, f.length());
+          m_currentBytes += f.length();
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the singleton result store
+   *
+   * @return the result store
+   */
+  public static synchronized ResultStore getSingleton() {
+    if (s_resultStore == null) {
+      s_resultStore = new ResultStore(new File(RESULT_DIRECTORY));
+    }
+    return s_resultStore;
+  }
+
+  /**
+   * Set the maximum number of bytes to keep on disk
+   *
+   * @param maxBytes the maximum size of the store
+   */
+  public synchronized void setMaxBytes(long maxBytes) {
+    m_maxBytes = maxBytes;
+    evict(null);
+  }
+
+  /**
+   * Get the maximum number of bytes to keep on disk
+   *
+   * @return the maximum size of the store
+   */
+  public synchronized long getMaxBytes() {
+    return m_maxBytes;
+  }
+
+  /**
+   * Get the number of bytes currently on disk
+   *
+   * @return the current size of the store
+   */
+  public synchronized long getCurrentBytes() {
+    return m_currentBytes;
+  }
+
+  /**
+   * Store a result
+   *
+   * @param result the result to store
+   * @return the file that the result was written to
+   * @throws Exception if a problem occurs
+   */
+  public File store(Object result) throws Exception {
+    File file = new File(m_directory, UUID.randomUUID().toString());
+    write(file, result);
+
+    return file;
+  }
+
+  /**
+   * Write an object to the given file in the store (replacing any existing
+   * contents) and account for it. The object is written to a temporary file
+   * that then replaces the target, so readers never see a partly written
+   * file.
+   *
+   * @param file the file to write
+   * @param toWrite the object to write
+   * @throws Exception if a problem occurs
+   */
+  protected void write(File file, Object toWrite) throws Exception {
+    File temp = File.createTempFile(file.getName() + "-", TEMP_SUFFIX,
+      m_directory);
+    ObjectOutputStream oos = null;
+    try {
+      oos =
+        new ObjectOutputStream(new BufferedOutputStream(new GZIPOutputStream(
+          new FileOutputStream(temp))));
+      oos.writeObject(toWrite);
+      oos.flush();
+      oos.close();
+      oos = null;
+
+      synchronized (this) {
+        try {
+          Files.move(temp.toPath(), file.toPath(),
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+          Files.move(temp.toPath(), file.toPath(),
+            StandardCopyOption.REPLACE_EXISTING);
+        }
+        m_generations.put(file, UUID.randomUUID().toString());
+
+        Long old = m_files.put(file, file.length());
+        if (old != null) {
+          m_currentBytes -= old;
+        }
+        m_currentBytes += file.length();
+        evict(file);
+      }
+    } finally {
+      if (oos != null) {
+        oos.close();
+      }
+      if (temp.exists() && !temp.delete()) {
+        temp.deleteOnExit();
+      }
+    }
+  }
+
+  /**
+   * Load a stored result
+   *
+   * @param file the file that the result was stored in
+   * @return the result
+   * @throws Exception if the result is no longer available
+   */
+  public Object load(File file) throws Exception {
+    if (file == null || !file.exists()) {
+      throw new Exception("Result file seems to have disapeared!");
+    }
+    synchronized (this) {
+      // mark as recently used
+      m_files.get(file);
+    }
+
+    ObjectInputStream ois = null;
+    try {
+      ois =
+        SerializationHelper.getObjectInputStream(new GZIPInputStream(
+          new FileInputStream(file)));
+      return ois.readObject();
+    } finally {
+      if (ois != null) {
+        ois.close();
+      }
+    }
+  }
+
+  /**
+   * Remove a stored result
+   *
+   * @param file the file that the result was stored in
+   */
+  public synchronized void remove(File file) {
+    m_generations.remove(file);
+    Long size = m_files.remove(file);
+    if (size != null) {
+      m_currentBytes -= size;
+    }
+    if (file.exists() && !file.delete()) {
+      file.deleteOnExit();
+    }
+  }
+
+  /**
+   * Get the file used to hold the status (and result) of the named task for
+   * streaming to clients
+   *
+   * @param taskName the name of the task
+   * @return the stream file for the task
+   */
+  public File getStreamFile(String taskName) {
+    try {
+      return new File(m_directory, STREAM_PREFIX
+        + UUID.nameUUIDFromBytes(taskName.getBytes("UTF-8")));
+    } catch (IOException ex) {
+      // UTF-8 is always supported
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /**
+   * Write the status (and result) of a task to its stream file so that it can
+   * be read in pieces
+   *
+   * @param taskName the name of the task
+   * @param status the object to write - normally a TaskStatusInfo
+   * @return the stream file
+   * @throws Exception if a problem occurs
+   */
+  public File storeForStreaming(String taskName, Object status)
+    throws Exception {
+    File file = getStreamFile(taskName);
+    write(file, status);
+
+    return file;
+  }
+
+  /**
+   * Remove the stream file (if any) for the named task
+   *
+   * @param taskName the name of the task
+   */
+  public void removeStreamFile(String taskName) {
+    remove(getStreamFile(taskName));
+  }
+
+  /**
+   * Get the generation of the current version of a stored file. A file left
+   * by a previous run gets a generation derived from its modification time
+   * and size.
+   *
+   * @param file the stored file
+   * @return the generation of the file
+   */
+  protected synchronized String getGeneration(File file) {
+    String generation = m_generations.get(file);
+    if (generation == null) {
+      generation =
+        Long.toHexString(file.lastModified()) + "-"
+          + Long.toHexString(file.length());
+      m_generations.put(file, generation);
+    }
+    return generation;
+  }
+
+  /**
+   * Open the current version of a stored file for reading in pieces. The
+   * returned view keeps reading the version that was opened, even if the file
+   * is replaced or evicted in the meantime.
+   *
+   * @param file the stored file
+   * @return a view of the current version of the file, or null if the file
+   *         does not exist
+   * @throws IOException if a problem occurs
+   */
+  public synchronized StoredVersion open(File file) throws IOException {
+    if (!file.exists()) {
+      return null;
+    }
+    // mark as recently used
+    m_files.get(file);
+
+    return new StoredVersion(new RandomAccessFile(file, "r"),
+      getGeneration(file));
+  }
+
+  /**
+   * One version of a stored file, opened for reading in pieces
+   */
+  public static class StoredVersion implements Closeable {
+
+    /** The open file */
+    protected RandomAccessFile m_file;
+
+    /** The generation of this version */
+    protected String m_generation;
+
+    /**
+     * Constructor
+     *
+     * @param file the open file
+     * @param generation the generation of the version that was opened
+     */
+    protected StoredVersion(RandomAccessFile file, String generation) {
+      m_file = file;
+      m_generation = generation;
+    }
+
+    /**
+     * Get the generation of this version
+     *
+     * @return the generation
+     */
+    public String getGeneration() {
+      return m_generation;
+    }
+
+    /**
+     * Get the number of bytes in this version
+     *
+     * @return the length of this version
+     * @throws IOException if a problem occurs
+     */
+    public long length() throws IOException {
+      return m_file.length();
+    }
+
+    /**
+     * Copy part of this version to a stream
+     *
+     * @param offset the offset to start reading from
+     * @param length the maximum number of bytes to copy (or -1 to copy to the
+     *          end of the file)
+     * @param out the stream to write to
+     * @return the number of bytes copied
+     * @throws IOException if a problem occurs
+     */
+    public long copyRange(long offset, long length, OutputStream out)
+      throws IOException {
+      long remaining = m_file.length() - offset;
+      if (length >= 0 && length < remaining) {
+        remaining = length;
+      }
+      if (remaining <= 0) {
+        return 0;
+      }
+      m_file.seek(offset);
+      byte[] buffer = new byte[64 * 1024];
+      long copied = 0;
+      while (copied < remaining) {
+        int n =
+          m_file.read(buffer, 0,
+            (int) Math.min(buffer.length, remaining - copied));
+        if (n < 0) {
+          break;
+        }
+        out.write(buffer, 0, n);
+        copied += n;
+      }
+      return copied;
+    }
+
+    @Override
+    public void close() throws IOException {
+      m_file.close();
+    }
+  }
+
+  /**
+   * Delete least recently used files until the store is within its size
+   * limit. Files that have been deleted by their owners are forgotten.
+   *
+   * @param keep a file that should not be evicted (may be null)
+   */
+  protected synchronized void evict(File keep) {
+    Iterator<Map.Entry<File, Long>> i = m_files.entrySet().iterator();
+    while (i.hasNext()) {
+      Map.Entry<File, Long> e = i.next();
+      if (!e.getKey().exists()) {
+        m_generations.remove(e.getKey());
+        m_currentBytes -= e.getValue();
+        i.remove();
+      }
+    }
+
+    i = m_files.entrySet().iterator();
+    while (m_currentBytes > m_maxBytes && i.hasNext()) {
+      Map.Entry<File, Long> e = i.next();
+      if (e.getKey().equals(keep)) {
+        continue;
+      }
+      weka.core.logging.Logger.log(weka.core.logging.Logger.Level.INFO,
+        "[WekaServer] Evicting stored result " + e.getKey().getName());
+      m_generations.remove(e.getKey());
+      m_currentBytes -= e.getValue();
+      if (!e.getKey().delete()) {
+        e.getKey().deleteOnExit();
+      }
+      i.remove();
+    }
+  }
+}
@@ -102,6 +102,8 @@ public class SetTaskStatusServlet extends WekaServlet {
         theTask = m_taskMap.getTask(found);
         theTask.getTaskStatus()
           .setExecutionStatus(Integer.parseInt(taskStatus));
+        m_server.taskStatusChanged(found, theTask.getTaskStatus()
+          .getExecutionStatus());
 
         // pass on to our master?
         if (found.getCameFromMaster()) {
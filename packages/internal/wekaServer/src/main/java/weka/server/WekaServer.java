@@ -69,10 +69,15 @@ import java.io.Serializable;
 import java.net.InetAddress;
 import java.net.URLEncoder;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -80,6 +85,7 @@ import java.util.UUID;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPOutputStream;
 
 /**
@@ -178,6 +184,135 @@ public class WekaServer implements CommandlineRunnable {
   /** Map of slaves registered with us */
   protected Map<String, String> m_slaves = new HashMap<String, String>();
 
+  /**
+   * Hashes of the datasets that each slave has been sent (and so should have
+   * in its dataset cache)
+   */
+  protected Map<String, Set<String>> m_slaveDatasets =
+    new HashMap<String, Set<String>>();
+
+  /**
+   * Slaves that did not acknowledge the binary protocol, and so are sent
+   * tasks (and asked for results) using the old protocol
+   */
+  protected Set<String> m_legacyProtocolSlaves = new HashSet<String>();
+
+  /** How long (ms) a polled slave load is trusted for */
+  protected static final long LOAD_CACHE_TIME = 5000;
+
+  /** Maximum time (ms) between passes over the dispatch queue */
+  protected static final long DISPATCH_INTERVAL = 2000;
+
+  /** Number of consecutive failed handoffs before a slave is dropped */
+  protected static final int MAX_SLAVE_FAILURES = 3;
+
+  /**
+   * Dispatch bookkeeping for a slave
+   */
+  protected static class SlaveState {
+
+    /** Load last reported by the slave */
+    protected double m_load = -1;
+
+    /** When the load was last polled */
+    protected long m_polledAt;
+
+    /** Tasks handed to the slave since the load was last polled */
+    protected int m_dispatchedSincePoll;
+
+    /** Number of consecutive failed handoffs */
+    protected int m_failures;
+
+    /** Don't try the slave again until this time */
+    protected long m_retryAfter;
+  }
+
+  /** Dispatch bookkeeping for each slave */
+  protected Map<String, SlaveState> m_slaveStates =
+    new HashMap<String, SlaveState>();
+
+  /**
+   * Tasks waiting for a free execution slot somewhere in the cluster. Tasks
+   * are only bound to a host once it has capacity, so an idle server always
+   * takes the next task that has not yet started, rather than tasks piling up
+   * in the queue of a busy slave.
+   */
+  protected LinkedList<WekaTaskEntry> m_dispatchQueue =
+    new LinkedList<WekaTaskEntry>();
+
+  /** Used to wake the dispatcher when capacity frees up */
+  protected final Object m_dispatchSignal = new Object();
+
+  /** Number of tasks handed to the local executor and not yet finished */
+  protected final AtomicInteger m_localTasks = new AtomicInteger();
+
+  /**
+   * Orders tasks that become due at the same time so that those that have
+   * waited longest since their last execution (never executed first) go
+   * first
+   */
+  protected static final Comparator<WekaTaskEntry> FAIR_SHARE_ORDER =
+    new Comparator<WekaTaskEntry>() {
+      @Override
+      public int compare(WekaTaskEntry o1, WekaTaskEntry o2) {
+        Date d1 = o1.getLastExecution();
+        Date d2 = o2.getLastExecution();
+        if (d1 == null || d2 == null) {
+          return d1 == null ? (d2 == null ? 0 : -1) : 1;
+        }
+        return d1.compareTo(d2);
+      }
+    };
+
+  /** Datasets received from a master (or clients) via the binary protocol */
+  protected BinaryProtocol.DatasetCache m_datasetCache =
+    new BinaryProtocol.DatasetCache();
+
+  /**
+   * Request entity that streams a binary protocol message. The content length
+   * is not known in advance, so the message is sent using chunked transfer
+   * encoding.
+   */
+  protected static class BinaryRequestEntity implements RequestEntity {
+
+    /** The message to send */
+    protected BinaryProtocol.Message m_message;
+
+    /** Hashes of datasets to leave out of the message */
+    protected Set<String> m_omit;
+
+    /**
+     * Constructor
+     *
+     * @param message the message to send
+     * @param omit hashes of datasets that the receiver already has
+     */
+    public BinaryRequestEntity(BinaryProtocol.Message message, Set<String> omit) {
+      m_message = message;
+      m_omit = omit;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+      return true;
+    }
+
+    @Override
+    public void writeRequest(OutputStream out) throws IOException {
+      m_message.write(out, m_omit);
+    }
+
+    @Override
+    public long getContentLength() {
+      return -1;
+    }
+
+    @Override
+    public String getContentType() {
+      return "application/octet-stream";
+    }
+  }
+
   /**
    * Provides singleton access to the Apache commons HTTP connection manager.
    */
@@ -479,6 +614,7 @@ public class WekaServer implements CommandlineRunnable {
       public void run() {
         while (true) {
           List<WekaTaskEntry> tasks = m_taskMap.getTaskList();
+          List<WekaTaskEntry> due = new ArrayList<WekaTaskEntry>();
           for (WekaTaskEntry t : tasks) {
             NamedTask task = m_taskMap.getTask(t);
             if (task instanceof Scheduled
@@ -495,13 +631,18 @@ public class WekaServer implements CommandlineRunnable {
                     + t.toString() + "\n\n" + ex.getMessage());
               }
               if (runIt) {
-                System.out.println("[WekaServer] Starting scheduled task "
-                  + t.toString());
-                executeTask(t);
+                due.add(t);
               }
             }
           }
 
+          Collections.sort(due, FAIR_SHARE_ORDER);
+          for (WekaTaskEntry t : due) {
+            System.out.println("[WekaServer] Starting scheduled task "
+              + t.toString());
+            executeTask(t);
+          }
+
           try {
             // check every 60 seconds
             // wait enough seconds to be on the minute
@@ -515,6 +656,24 @@ public class WekaServer implements CommandlineRunnable {
       }
     };
 
+    // start a thread that hands queued tasks to servers as capacity frees up
+    Thread dispatcher = new Thread() {
+      @Override
+      public void run() {
+        while (true) {
+          dispatchPending();
+          synchronized (m_dispatchSignal) {
+            try {
+              m_dispatchSignal.wait(DISPATCH_INTERVAL);
+            } catch (InterruptedException ie) {
+            }
+          }
+        }
+      }
+    };
+    dispatcher.setDaemon(true);
+    dispatcher.start();
+
     System.out.println("[WekaServer] Starting schedule checker.");
     scheduleChecker.setPriority(Thread.MIN_PRIORITY);
     scheduleChecker.setDaemon(m_daemon);
@@ -626,7 +785,9 @@ public class WekaServer implements CommandlineRunnable {
   }
 
   /**
-   * Excecute a task
+   * Excecute a task. If we have slaves then the task is queued until some
+   * server in the cluster has a free execution slot; otherwise it is handed
+   * straight to the local executor.
    * 
    * @param entry the task to execute
    */
@@ -640,7 +801,67 @@ public class WekaServer implements CommandlineRunnable {
       return;
     }
 
-    String hostToUse = chooseExecutionHost();
+    if (m_slaves.size() == 0 && m_dispatchQueue.size() == 0) {
+      startTask(entry, task, m_hostname + ":" + m_port);
+      return;
+    }
+
+    if (!m_dispatchQueue.contains(entry)) {
+      m_dispatchQueue.add(entry);
+    }
+    requestDispatch();
+  }
+
+  /**
+   * Wake the dispatcher so that queued tasks get handed out
+   */
+  protected void requestDispatch() {
+    synchronized (m_dispatchSignal) {
+      m_dispatchSignal.notifyAll();
+    }
+  }
+
+  /**
+   * Hand queued tasks to servers that have free execution slots. Stops when
+   * the queue is empty or there is no free capacity anywhere in the cluster.
+   */
+  protected synchronized void dispatchPending() {
+    while (m_dispatchQueue.size() > 0) {
+      String hostToUse = chooseExecutionHost();
+      if (hostToUse == null) {
+        // everyone is busy - wait for a slot to free up
+        return;
+      }
+
+      WekaTaskEntry entry = m_dispatchQueue.removeFirst();
+      NamedTask task = m_taskMap.getTask(entry);
+      if (task == null) {
+        // purged while waiting
+        continue;
+      }
+
+      if (!startTask(entry, task, hostToUse)) {
+        // failed to hand off to slave for some reason
+        System.err.println("[WekaServer] Failed to hand task '"
+          + entry.toString() + "' to slave server ('" + hostToUse + ")");
+        slaveFailed(hostToUse);
+        System.out.println("[WekaServer] Re-trying execution of task '"
+          + entry.toString() + "'");
+        m_dispatchQueue.addFirst(entry);
+      }
+    }
+  }
+
+  /**
+   * Start a task on the given host
+   * 
+   * @param entry the task entry for the task
+   * @param task the task to start
+   * @param hostToUse the host to execute on
+   * @return true if the task was started (or handed to a slave) successfully
+   */
+  protected synchronized boolean startTask(final WekaTaskEntry entry,
+    final NamedTask task, String hostToUse) {
 
     if (task instanceof LogHandler) {
       Logger log = ((LogHandler) task).getLog();
@@ -653,42 +874,11 @@ public class WekaServer implements CommandlineRunnable {
       Runnable toRun = new Runnable() {
         @Override
         public void run() {
-
-          Date startTime = new Date();
-          GregorianCalendar cal = new GregorianCalendar();
-          cal.setTime(startTime);
-
-          // We only use resolution down to the minute level
-          cal.set(Calendar.SECOND, 0);
-          cal.set(Calendar.MILLISECOND, 0);
-          // m_taskMap.setExecutionTime(entry, startTime);
-          entry.setLastExecution(cal.getTime());
-          if (entry.getCameFromMaster()) {
-            // Talk back to the master - tell it the execution time,
-            // and that the task is now processing
-            sendExecutionTimeToMaster(entry);
-            sendTaskStatusInfoToMaster(entry, TaskStatusInfo.PROCESSING);
-          }
-
-          // ask the task to load any resources (if necessary)
-          task.loadResources();
-          task.execute();
-
-          // save this task so that we have the last execution
-          // time recorded
-          // if (task instanceof Scheduled) {
-          persistTask(entry, task);
-
-          // save memory (if possible)
-          task.persistResources();
-
-          // }
-
-          if (entry.getCameFromMaster()) {
-            // Talk back to the master - pass on the actual final execution
-            // status
-            sendTaskStatusInfoToMaster(entry, task.getTaskStatus()
-              .getExecutionStatus());
+          try {
+            runTask(entry, task);
+          } finally {
+            m_localTasks.decrementAndGet();
+            requestDispatch();
           }
         }
       };
@@ -698,20 +888,144 @@ public class WekaServer implements CommandlineRunnable {
         // task is pending (WekaTaskMap.WekaTaskEntry.PENDING)
         sendTaskStatusInfoToMaster(entry, WekaTaskMap.WekaTaskEntry.PENDING);
       }
+      m_localTasks.incrementAndGet();
       m_executorPool.execute(toRun);
+
+      return true;
+    }
+
+    boolean success = executeTaskRemote(entry, task, hostToUse);
+    if (success) {
+      SlaveState state = getSlaveState(hostToUse);
+      state.m_dispatchedSincePoll++;
+      state.m_failures = 0;
+    }
+
+    return success;
+  }
+
+  /**
+   * Run a task in the current thread
+   * 
+   * @param entry the task entry for the task
+   * @param task the task to run
+   */
+  protected void runTask(WekaTaskEntry entry, NamedTask task) {
+    Date startTime = new Date();
+    GregorianCalendar cal = new GregorianCalendar();
+    cal.setTime(startTime);
+
+    // We only use resolution down to the minute level
+    cal.set(Calendar.SECOND, 0);
+    cal.set(Calendar.MILLISECOND, 0);
+    // m_taskMap.setExecutionTime(entry, startTime);
+    entry.setLastExecution(cal.getTime());
+    if (entry.getCameFromMaster()) {
+      // Talk back to the master - tell it the execution time,
+      // and that the task is now processing
+      sendExecutionTimeToMaster(entry);
+      sendTaskStatusInfoToMaster(entry, TaskStatusInfo.PROCESSING);
+    }
+
+    // ask the task to load any resources (if necessary)
+    task.loadResources();
+    task.execute();
+
+    // save this task so that we have the last execution
+    // time recorded
+    // if (task instanceof Scheduled) {
+    persistTask(entry, task);
+
+    // save memory (if possible)
+    task.persistResources();
+
+    // }
+
+    if (entry.getCameFromMaster()) {
+      // Talk back to the master - pass on the actual final execution
+      // status
+      sendTaskStatusInfoToMaster(entry, task.getTaskStatus()
+        .getExecutionStatus());
+    }
+  }
+
+  /**
+   * Get the dispatch bookkeeping for a slave
+   * 
+   * @param slave the slave
+   * @return the state of the slave
+   */
+  protected synchronized SlaveState getSlaveState(String slave) {
+    SlaveState state = m_slaveStates.get(slave);
+    if (state == null) {
+      state = new SlaveState();
+      m_slaveStates.put(slave, state);
+    }
+
+    return state;
+  }
+
+  /**
+   * Record a failed handoff to a slave. The slave is backed off for a while,
+   * and dropped after too many consecutive failures.
+   * 
+   * @param slave the slave that failed
+   */
+  protected synchronized void slaveFailed(String slave) {
+    SlaveState state = getSlaveState(slave);
+    state.m_failures++;
+    if (state.m_failures >= MAX_SLAVE_FAILURES) {
+      System.out.println("[WekaServer] removing '" + slave + "' from "
+        + "list of slaves.");
+      removeSlave(slave);
     } else {
-      if (!executeTaskRemote(entry, task, hostToUse)) {
-        // failed to hand off to slave for some reason
-        System.err.println("[WekaServer] Failed to hand task '"
-          + entry.toString() + "' to slave server ('" + hostToUse + ")");
-        System.out.println("[WekaServer] removing '" + hostToUse + "' from "
-          + "list of slaves.");
-        m_slaves.remove(hostToUse);
-        System.out.println("[WekaServer] Re-trying execution of task '"
-          + entry.toString() + "'");
-        executeTask(entry);
+      state.m_retryAfter =
+        System.currentTimeMillis() + state.m_failures * DISPATCH_INTERVAL;
+    }
+  }
+
+  /**
+   * Called when a slave reports that the status of one of our tasks has
+   * changed. A finished or failed task frees a slot on the slave, so the
+   * dispatcher is woken to hand it the next queued task.
+   * 
+   * @param entry the task entry for the task
+   * @param status the new execution status
+   */
+  protected void taskStatusChanged(WekaTaskEntry entry, int status) {
+    if (status == TaskStatusInfo.FINISHED || status == TaskStatusInfo.FAILED) {
+      synchronized (this) {
+        SlaveState state = m_slaveStates.get(entry.getServer());
+        if (state != null) {
+          state.m_polledAt = 0;
+        }
       }
+      requestDispatch();
+    }
+  }
+
+  /**
+   * Get the (possibly cached) load of a slave
+   * 
+   * @param slave the slave
+   * @return the load of the slave, or -1 if it is unavailable
+   */
+  protected synchronized double getSlaveLoad(String slave) {
+    SlaveState state = getSlaveState(slave);
+    long now = System.currentTimeMillis();
+    if (now < state.m_retryAfter) {
+      return -1;
     }
+
+    // a cached load is stale once we've given the slave more work
+    if (state.m_dispatchedSincePoll > 0
+      || now - state.m_polledAt > LOAD_CACHE_TIME) {
+      state.m_load = RootServlet.getSlaveLoad(this, slave);
+      state.m_polledAt = now;
+      state.m_dispatchedSincePoll = 0;
+    }
+
+    return state.m_load;
   }
 
   /**
@@ -725,8 +1039,6 @@ public class WekaServer implements CommandlineRunnable {
   protected synchronized boolean executeTaskRemote(WekaTaskEntry entry,
     NamedTask task, String slave) {
 
-    InputStream is = null;
-    PostMethod post = null;
     boolean success = true;
     NamedTask originalTask = task;
 
@@ -743,15 +1055,152 @@ public class WekaServer implements CommandlineRunnable {
       // before we pass it on
       task.loadResources();
 
+      // slaves that predate the binary protocol don't acknowledge it, in
+      // which case the task is sent again using the old protocol
+      BinaryProtocol.Message message = null;
+      Object response = null;
+      if (slaveUsesBinaryProtocol(slave)) {
+        message = BinaryProtocol.prepareMessage(task);
+        response = sendTaskBinary(message, slave);
+      }
+      if (response == null) {
+        message = null;
+        response = sendTaskLegacy(task, slave);
+      }
+
+      if (response.toString().startsWith(WekaServlet.RESPONSE_ERROR)) {
+        System.err
+          .println("[WekaServer] A problem occurred at the slave sever : \n"
+            + "\t" + response.toString());
+      } else if (message != null) {
+        addSlaveDatasets(slave, message.getDatasetHashes());
+      }
+      entry.setRemoteID(response.toString());
+      entry.setServer(slave);
+
+      // this will not necessarily capture the execution time of
+      // this task as it might get queued at the slave...
+      if (originalTask != null) {
+        persistTask(entry, originalTask);
+      }
+    } catch (Exception ex) {
+      ex.printStackTrace();
+      success = false;
+    } finally {
+      // save memory (if possible)
+      task.persistResources();
+    }
+
+    return success;
+  }
+
+  /**
+   * Send a task to a slave using the binary protocol. Datasets that the slave
+   * has been sent before are left out. If the slave has since evicted any of
+   * them from its cache then everything is sent again. The request also
+   * carries the old client parameter, so a slave that predates the binary
+   * protocol answers in the old format rather than with an HTML page.
+   *
+   * @param message the task, prepared for the binary protocol
+   * @param slave the slave to send to
+   * @return the response from the slave, or null if the slave did not
+   *         acknowledge the binary protocol
+   * @throws Exception if a problem occurs
+   */
+  protected Object sendTaskBinary(BinaryProtocol.Message message, String slave)
+    throws Exception {
+    InputStream is = null;
+    PostMethod post = null;
+    Object response = null;
+    Set<String> slaveDatasets = getSlaveDatasets(slave);
+
+    try {
+      for (int attempt = 0; attempt < 2; attempt++) {
+        if (post != null) {
+          post.releaseConnection();
+        }
+        String url = "http://" + slave;
+        url = url.replace(" ", "%20");
+        url += ExecuteTaskServlet.CONTEXT_PATH;
+        url += "/?" + BinaryProtocol.BINARY_CLIENT_KEY + "=Y&"
+          + Legacy.LEGACY_CLIENT_KEY + "=Y&master=Y";
+        post = new PostMethod(url);
+        post.setRequestEntity(new BinaryRequestEntity(message,
+          attempt == 0 ? slaveDatasets : null));
+        post.setDoAuthentication(true);
+
+        // Get HTTP client
+        HttpClient client = ConnectionManager.getSingleton().createHttpClient();
+        ConnectionManager.addCredentials(client, m_username, m_password);
+
+        // Execute request
+        int result = client.executeMethod(post);
+        System.out.println("[WekaServer] Executing task on slave server : "
+          + slave);
+        System.out.println("[WekaServer] Sending task with "
+          + message.getDatasetHashes().size() + " dataset(s)...");
+        System.out.println("[WekaServer] Response from slave : " + result);
+
+        if (result == 401) {
+          throw new Exception("Unable to send task to slave server (" + slave
+            + ") - authentication required.");
+        }
+        if (post.getResponseHeader(BinaryProtocol.BINARY_ACK_HEADER) == null) {
+          System.out.println("[WekaServer] Slave server " + slave
+            + " does not support the binary protocol - using the old "
+            + "protocol instead");
+          setSlaveUsesBinaryProtocol(slave, false);
+          return null;
+        }
+
+        is = post.getResponseBodyAsStream();
+        response = BinaryProtocol.readObject(is, null);
+        is.close();
+        is = null;
+        if (!BinaryProtocol.isMissingDatasetsResponse(response)) {
+          break;
+        }
+        clearSlaveDatasets(slave);
+      }
+    } finally {
+      if (is != null) {
+        try {
+          is.close();
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      }
+
+      if (post != null) {
+        post.releaseConnection();
+      }
+    }
+
+    return response;
+  }
+
+  /**
+   * Send a task to a slave using the old protocol (a GZIP compressed,
+   * serialized task), for slaves that do not support the binary protocol
+   *
+   * @param task the task to send
+   * @param slave the slave to send to
+   * @return the response from the slave
+   * @throws Exception if a problem occurs
+   */
+  protected Object sendTaskLegacy(NamedTask task, String slave)
+    throws Exception {
+    InputStream is = null;
+    PostMethod post = null;
+
+    try {
       byte[] serializedTask = WekaServer.serializeTask(task);
       String url = "http://" + slave;
       url = url.replace(" ", "%20");
       url += ExecuteTaskServlet.CONTEXT_PATH;
-      url += "/?client=Y&master=Y";
+      url += "/?" + Legacy.LEGACY_CLIENT_KEY + "=Y&master=Y";
       post = new PostMethod(url);
-      RequestEntity entity = new ByteArrayRequestEntity(serializedTask);
-      post.setRequestEntity(entity);
-
+      post.setRequestEntity(new ByteArrayRequestEntity(serializedTask));
       post.setDoAuthentication(true);
       post.addRequestHeader(new Header("Content-Type",
         "application/octect-stream"));
@@ -769,34 +1218,13 @@ public class WekaServer implements CommandlineRunnable {
       System.out.println("[WekaServer] Response from slave : " + result);
 
       if (result == 401) {
-        System.err.println("[WekaServer] Unable to send task to "
-          + "slave server (" + slave + ") - authentication required.\n");
-        success = false;
-      } else {
-        is = post.getResponseBodyAsStream();
-        ObjectInputStream ois = new ObjectInputStream(is);
-        // System.out.println("Number of bytes in response " + ois.available());
-        Object response = ois.readObject();
-
-        if (response.toString().startsWith(WekaServlet.RESPONSE_ERROR)) {
-          System.err
-            .println("[WekaServer] A problem occurred at the slave sever : \n"
-              + "\t" + response.toString());
-        }
-        entry.setRemoteID(response.toString());
-        entry.setServer(slave);
-
-        success = true;
-
-        // this will not necessarily capture the execution time of
-        // this task as it might get queued at the slave...
-        if (originalTask != null) {
-          persistTask(entry, originalTask);
-        }
+        throw new Exception("Unable to send task to slave server (" + slave
+          + ") - authentication required.");
       }
-    } catch (Exception ex) {
-      ex.printStackTrace();
-      success = false;
+
+      is = post.getResponseBodyAsStream();
+      ObjectInputStream ois = new ObjectInputStream(is);
+      return ois.readObject();
     } finally {
       if (is != null) {
         try {
@@ -809,35 +1237,41 @@ public class WekaServer implements CommandlineRunnable {
       if (post != null) {
         post.releaseConnection();
       }
-
-      // save memory (if possible)
-      task.persistResources();
     }
-
-    return success;
   }
 
   /**
-   * Choose a slave (or us if no slave is available) to execute on
+   * Choose a server with a free execution slot to execute on. Prefers the
+   * local server, then the least loaded slave.
    * 
-   * @return the name of the server to execute on
+   * @return the name of the server to execute on, or null if all servers are
+   *         fully loaded
    */
-  protected String chooseExecutionHost() {
-    // start with the local server and load
+  protected synchronized String chooseExecutionHost() {
     String host = m_hostname + ":" + m_port;
-    double minLoad = getServerLoad();
-    // double minLoad = 2.0;
-
-    // run locally if we have some capacity (load < 1)
-    if (m_slaves.size() > 0 && minLoad >= 1.0) {
-      for (String slave : m_slaves.keySet()) {
-        double load = RootServlet.getSlaveLoad(this, slave);
-        System.out
-          .println("[WekaServer] load of slave : " + slave + " " + load);
-        if (load >= 0 && load < minLoad) {
-          minLoad = load;
-          host = slave;
-        }
+    if (m_slaves.size() == 0) {
+      // nowhere else to go, so queue locally
+      return host;
+    }
+
+    // count tasks handed to the executor that it may not report yet
+    double minLoad =
+      Math.max(getServerLoad(), m_localTasks.get() * m_loadAdjust
+        / m_numExecutionSlots);
+    if (minLoad < 1.0) {
+      return host;
+    }
+
+    host = null;
+    minLoad = 1.0;
+    for (String slave : m_slaves.keySet()) {
+      double load = getSlaveLoad(slave);
+      // polled on every dispatcher pass, so only of interest when debugging
+      weka.core.logging.Logger.log(weka.core.logging.Logger.Level.FINE,
+        "[WekaServer] load of slave : " + slave + " " + load);
+      if (load >= 0 && load < minLoad) {
+        minLoad = load;
+        host = slave;
       }
     }
     return host;
@@ -1496,6 +1930,15 @@ public class WekaServer implements CommandlineRunnable {
    */
   protected void addSlave(String slave) {
     m_slaves.put(slave, slave);
+    synchronized (this) {
+      m_slaveStates.remove(slave);
+    }
+    requestDispatch();
+
+    // a (re)registering slave starts with an empty dataset cache, and may
+    // have been upgraded to support the binary protocol
+    clearSlaveDatasets(slave);
+    setSlaveUsesBinaryProtocol(slave, true);
   }
 
   /**
@@ -1506,10 +1949,97 @@ public class WekaServer implements CommandlineRunnable {
    */
   protected boolean removeSlave(String slave) {
     String removed = m_slaves.remove(slave);
+    synchronized (this) {
+      m_slaveStates.remove(slave);
+    }
+    clearSlaveDatasets(slave);
+    setSlaveUsesBinaryProtocol(slave, true);
 
     return (removed != null);
   }
 
+  /**
+   * Get the hashes of the datasets that have been sent to a slave
+   *
+   * @param slave the slave
+   * @return a snapshot of the dataset hashes sent to the slave
+   */
+  protected Set<String> getSlaveDatasets(String slave) {
+    synchronized (m_slaveDatasets) {
+      Set<String> datasets = m_slaveDatasets.get(slave);
+      return datasets == null ? new HashSet<String>() : new HashSet<String>(
+        datasets);
+    }
+  }
+
+  /**
+   * Record that a slave has been sent some datasets
+   *
+   * @param slave the slave
+   * @param hashes the hashes of the datasets sent
+   */
+  protected void addSlaveDatasets(String slave, Set<String> hashes) {
+    synchronized (m_slaveDatasets) {
+      Set<String> datasets = m_slaveDatasets.get(slave);
+      if (datasets == null) {
+        datasets = new HashSet<String>();
+        m_slaveDatasets.put(slave, datasets);
+      }
+      datasets.addAll(hashes);
+    }
+  }
+
+  /**
+   * Forget the datasets that a slave has been sent (e.g. because it has
+   * evicted some of them from its cache)
+   *
+   * @param slave the slave
+   */
+  protected void clearSlaveDatasets(String slave) {
+    synchronized (m_slaveDatasets) {
+      m_slaveDatasets.remove(slave);
+    }
+  }
+
+  /**
+   * Returns true if tasks and results should be exchanged with a slave using
+   * the binary protocol. This is assumed until the slave fails to acknowledge
+   * a binary request, and is checked again if the slave re-registers.
+   *
+   * @param slave the slave
+   * @return true if the slave supports the binary protocol
+   */
+  protected boolean slaveUsesBinaryProtocol(String slave) {
+    synchronized (m_legacyProtocolSlaves) {
+      return !m_legacyProtocolSlaves.contains(slave);
+    }
+  }
+
+  /**
+   * Set whether a slave supports the binary protocol
+   *
+   * @param slave the slave
+   * @param binary true if the slave supports the binary protocol
+   */
+  protected void setSlaveUsesBinaryProtocol(String slave, boolean binary) {
+    synchronized (m_legacyProtocolSlaves) {
+      if (binary) {
+        m_legacyProtocolSlaves.remove(slave);
+      } else {
+        m_legacyProtocolSlaves.add(slave);
+      }
+    }
+  }
+
+  /**
+   * Get the cache of datasets received via the binary protocol
+   *
+   * @return the dataset cache
+   */
+  public BinaryProtocol.DatasetCache getDatasetCache() {
+    return m_datasetCache;
+  }
+
   /**
    * Get the slaves that have reported to this server
    * 
@@ -1527,7 +2057,8 @@ public class WekaServer implements CommandlineRunnable {
   public static String commandLineUsage() {
     return "Usage: WekaServer [-host <hostname>] [-port <port>] "
       + "[-slots <numSlots>] [-load-adjust <value>] [-daemon] "
-      + "[-master <master:port>] [-staleTime <milliseconds>]";
+      + "[-master <master:port>] [-staleTime <milliseconds>] "
+      + "[-result-store-size <megabytes>]";
   }
 
   @Override
@@ -1557,6 +2088,7 @@ public class WekaServer implements CommandlineRunnable {
       double loadAdjust = 0.0;
       String master = null;
       long purgeInterval = 0;
+      long resultStoreSize = 0;
 
       // process options
       for (int i = 0; i < args.length; i++) {
@@ -1596,6 +2128,12 @@ public class WekaServer implements CommandlineRunnable {
             System.exit(1);
           }
           purgeInterval = Long.parseLong(args[i]);
+        } else if (args[i].equalsIgnoreCase("-result-store-size")) {
+          if (++i == args.length) {
+            System.out.println(WekaServer.commandLineUsage());
+            System.exit(1);
+          }
+          resultStoreSize = Long.parseLong(args[i]);
         } else if (args[i].equalsIgnoreCase("-daemon")) {
           daemon = true;
         } else {
@@ -1634,6 +2172,10 @@ public class WekaServer implements CommandlineRunnable {
       if (purgeInterval != 0) {
         server.setStaleTaskTime(purgeInterval);
       }
+      if (resultStoreSize > 0) {
+        ResultStore.getSingleton().setMaxBytes(
+          resultStoreSize * 1024L * 1024L);
+      }
       server.setDaemon(daemon);
       server.setMaster(master);
 
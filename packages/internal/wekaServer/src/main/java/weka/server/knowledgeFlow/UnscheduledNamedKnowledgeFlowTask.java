@@ -185,7 +185,10 @@ public class UnscheduledNamedKnowledgeFlowTask implements NamedTask,
    */
   @Override
   public void freeMemory() {
-
+    // the result can be reloaded from disk if it was persisted
+    if (m_persistedResult != null) {
+      m_result.setTaskResult(null);
+    }
   }
 
   /**
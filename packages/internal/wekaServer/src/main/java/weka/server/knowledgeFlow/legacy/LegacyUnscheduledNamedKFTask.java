@@ -31,18 +31,15 @@ import weka.gui.beans.BeanInstance;
 import weka.gui.beans.FlowRunner;
 import weka.gui.beans.HeadlessEventCollector;
 import weka.gui.beans.xml.XMLBeans;
+import weka.server.Legacy;
 import weka.server.NamedTask;
-import weka.server.WekaServer;
 import weka.server.WekaTaskMap;
 import weka.server.logging.ServerLogger;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.io.StringWriter;
@@ -52,7 +49,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Vector;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 /**
  * @author Mark Hall (mhall{[at]}pentaho{[dot]}com)
@@ -114,8 +110,6 @@ public class LegacyUnscheduledNamedKFTask implements NamedTask, LogHandler,
 
   @Override
   public void execute() {
-    ObjectOutputStream oos = null;
-
     try {
       // deserialize the flow
       m_log.logMessage("UnscheduledNamedTask - deserializing the flow");
@@ -176,22 +170,11 @@ public class LegacyUnscheduledNamedKFTask implements NamedTask, LogHandler,
         }
 
         try {
-          m_persistedResult = WekaServer.getTempFile();
-          oos = new ObjectOutputStream(new BufferedOutputStream(
-            new GZIPOutputStream(new FileOutputStream(m_persistedResult))));
-          oos.writeObject(results);
-          oos.flush();
+          m_persistedResult = Legacy.persistResult(results);
           // successfully saved result - now save memory
           m_result.setTaskResult(null);
         } catch (Exception e) {
           m_persistedResult = null;
-        } finally {
-          if (oos != null) {
-            try {
-              oos.close();
-            } catch (Exception ee) {
-            }
-          }
         }
 
         m_result.setExecutionStatus(TaskStatusInfo.FINISHED);
@@ -268,6 +251,10 @@ public class LegacyUnscheduledNamedKFTask implements NamedTask, LogHandler,
 
   @Override
   public void freeMemory() {
+    // the result can be reloaded from disk if it was persisted
+    if (m_persistedResult != null) {
+      m_result.setTaskResult(null);
+    }
   }
 
   @Override
@@ -0,0 +1,197 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    BinaryProtocolTest.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.server;
+
+import org.junit.Test;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+import weka.core.TestInstances;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for the binary master - slave protocol
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public class BinaryProtocolTest {
+
+  protected Instances makeData(int numString) throws Exception {
+    TestInstances gen = new TestInstances();
+    gen.setNumInstances(50);
+    gen.setNumNominal(2);
+    gen.setNumNumeric(3);
+    gen.setNumDate(1);
+    gen.setNumString(numString);
+    Instances data = gen.generate();
+    // some missing values
+    data.instance(3).setMissing(1);
+    data.instance(7).setMissing(0);
+
+    return data;
+  }
+
+  protected byte[] write(BinaryProtocol.Message message,
+    java.util.Set<String> omit) throws Exception {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    message.write(bos, omit);
+    return bos.toByteArray();
+  }
+
+  protected void assertSameData(Instances expected, Instances actual) {
+    assertEquals(new Instances(expected, 0).toString(),
+      new Instances(actual, 0).toString());
+    assertEquals(expected.classIndex(), actual.classIndex());
+    assertEquals(expected.numInstances(), actual.numInstances());
+    for (int i = 0; i < expected.numInstances(); i++) {
+      assertEquals(expected.instance(i).toString(), actual.instance(i)
+        .toString());
+      assertEquals(expected.instance(i).weight(), actual.instance(i).weight(),
+        0);
+    }
+  }
+
+  @Test
+  public void testRoundTripExtractsDatasets() throws Exception {
+    Instances data = makeData(0);
+    data.instance(0).setWeight(2.5);
+    List<Object> toSend = new ArrayList<Object>();
+    toSend.add("task");
+    toSend.add(data);
+    toSend.add(data);
+
+    BinaryProtocol.Message message = BinaryProtocol.prepareMessage(toSend);
+    // the same dataset referenced twice is only encoded once
+    assertEquals(1, message.getDatasetHashes().size());
+
+    @SuppressWarnings("unchecked")
+    List<Object> received =
+      (List<Object>) BinaryProtocol.readObject(new ByteArrayInputStream(write(
+        message, null)), null);
+    assertEquals("task", received.get(0));
+    assertSameData(data, (Instances) received.get(1));
+    assertSame(received.get(1), received.get(2));
+  }
+
+  @Test
+  public void testSparseAndStringDatasets() throws Exception {
+    Instances sparse = makeData(0);
+    Instances sparseCopy = new Instances(sparse, sparse.numInstances());
+    for (int i = 0; i < sparse.numInstances(); i++) {
+      Instance inst = new SparseInstance(sparse.instance(i));
+      sparseCopy.add(inst);
+    }
+    // string values live in the header, so this one is serialized as is
+    Instances withStrings = makeData(1);
+
+    List<Object> toSend = new ArrayList<Object>();
+    toSend.add(sparseCopy);
+    toSend.add(withStrings);
+    @SuppressWarnings("unchecked")
+    List<Object> received =
+      (List<Object>) BinaryProtocol.readObject(
+        new ByteArrayInputStream(write(BinaryProtocol.prepareMessage(toSend),
+          null)), null);
+
+    Instances sparseReceived = (Instances) received.get(0);
+    assertSameData(sparseCopy, sparseReceived);
+    assertTrue(sparseReceived.instance(0) instanceof SparseInstance);
+    assertSameData(withStrings, (Instances) received.get(1));
+  }
+
+  @Test
+  public void testOmittedDatasetsComeFromCache() throws Exception {
+    Instances data = makeData(0);
+    BinaryProtocol.Message message = BinaryProtocol.prepareMessage(data);
+    BinaryProtocol.DatasetCache cache = new BinaryProtocol.DatasetCache();
+
+    // the first message carries the dataset, which the receiver caches
+    BinaryProtocol.readObject(new ByteArrayInputStream(write(message, null)),
+      cache);
+    assertEquals(1, cache.size());
+
+    // so it can be left out of the next one
+    byte[] withoutData = write(message, message.getDatasetHashes());
+    assertTrue(withoutData.length < write(message, null).length);
+    Instances received =
+      (Instances) BinaryProtocol.readObject(new ByteArrayInputStream(
+        withoutData), cache);
+    assertSameData(data, received);
+
+    // a receiver that doesn't have it reports it as missing
+    try {
+      BinaryProtocol.readObject(new ByteArrayInputStream(withoutData),
+        new BinaryProtocol.DatasetCache());
+      fail("Expected the dataset to be missing");
+    } catch (BinaryProtocol.MissingDatasetsException ex) {
+      assertEquals(new ArrayList<String>(message.getDatasetHashes()),
+        ex.getMissing());
+      assertTrue(BinaryProtocol.isMissingDatasetsResponse(WekaServlet.RESPONSE_ERROR
+        + " " + ex.getMessage()));
+    }
+    assertFalse(BinaryProtocol.isMissingDatasetsResponse("task id"));
+  }
+
+  @Test
+  public void testCacheEvictsLeastRecentlyUsed() {
+    BinaryProtocol.DatasetCache cache = new BinaryProtocol.DatasetCache(100);
+    cache.put("a", new byte[40]);
+    cache.put("b", new byte[40]);
+    assertNotNull(cache.get("a"));
+    cache.put("c", new byte[40]);
+
+    // b was used least recently
+    assertEquals(2, cache.size());
+    assertNotNull(cache.get("a"));
+    assertNull(cache.get("b"));
+    assertNotNull(cache.get("c"));
+
+    // too big to cache at all
+    cache.put("d", new byte[101]);
+    assertNull(cache.get("d"));
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void testRejectsOtherData() throws Exception {
+    try {
+      BinaryProtocol.readObject(
+        new ByteArrayInputStream("not a message".getBytes("UTF-8")), null);
+      fail("Expected a non binary protocol message to be rejected");
+    } catch (Exception ex) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    ResultStoreTest.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.server;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for the result store
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public class ResultStoreTest {
+
+  protected File m_dir;
+
+  @Before
+  public void setUp() throws Exception {
+    m_dir = Files.createTempDirectory("resultStore").toFile();
+    m_dir.deleteOnExit();
+  }
+
+  /**
+   * Random (so incompressible) data of the given size
+   */
+  protected byte[] makeResult(int size, long seed) {
+    byte[] result = new byte[size];
+    new Random(seed).nextBytes(result);
+    return result;
+  }
+
+  /**
+   * Read a version of a stored file in pieces of the given size
+   */
+  protected byte[] readInPieces(ResultStore.StoredVersion version,
+    int pieceSize) throws Exception {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    long offset = 0;
+    long copied;
+    while ((copied = version.copyRange(offset, pieceSize, bos)) > 0) {
+      assertTrue(copied <= pieceSize);
+      offset += copied;
+    }
+    assertEquals(version.length(), offset);
+    return bos.toByteArray();
+  }
+
+  protected Object deserialize(byte[] bytes) throws Exception {
+    ObjectInputStream ois =
+      new ObjectInputStream(new GZIPInputStream(new ByteArrayInputStream(
+        bytes)));
+    try {
+      return ois.readObject();
+    } finally {
+      ois.close();
+    }
+  }
+
+  @Test
+  public void testRangedFetchReassembles() throws Exception {
+    ResultStore store = new ResultStore(m_dir);
+    byte[] result = makeResult(200000, 1);
+    File f = store.storeForStreaming("task", result);
+
+    ResultStore.StoredVersion version = store.open(f);
+    assertNotNull(version);
+    try {
+      byte[] whole = readInPieces(version, 7777);
+      assertArrayEquals(Files.readAllBytes(f.toPath()), whole);
+      assertTrue(Arrays.equals(result, (byte[]) deserialize(whole)));
+
+      // reading past the end copies nothing
+      assertEquals(0,
+        version.copyRange(version.length() + 10, -1, new ByteArrayOutputStream()));
+    } finally {
+      version.close();
+    }
+  }
+
+  @Test
+  public void testRewriteLeavesOpenVersionIntact() throws Exception {
+    ResultStore store = new ResultStore(m_dir);
+    byte[] first = makeResult(100000, 1);
+    byte[] second = makeResult(50000, 2);
+
+    File f = store.storeForStreaming("task", first);
+    ResultStore.StoredVersion v1 = store.open(f);
+    try {
+      // read part of the first version, then replace it
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      long offset = v1.copyRange(0, 1000, bos);
+      store.storeForStreaming("task", second);
+
+      ResultStore.StoredVersion v2 = store.open(f);
+      try {
+        assertFalse(v1.getGeneration().equals(v2.getGeneration()));
+        assertTrue(Arrays.equals(second,
+          (byte[]) deserialize(readInPieces(v2, 4096))));
+      } finally {
+        v2.close();
+      }
+
+      // the rest of the first version is still readable
+      v1.copyRange(offset, -1, bos);
+      assertTrue(Arrays.equals(first, (byte[]) deserialize(bos.toByteArray())));
+    } finally {
+      v1.close();
+    }
+
+    // no temporary files are left behind
+    assertEquals(1, m_dir.listFiles().length);
+  }
+
+  @Test
+  public void testGenerationStableUntilRewritten() throws Exception {
+    ResultStore store = new ResultStore(m_dir);
+    File f = store.storeForStreaming("task", makeResult(1000, 1));
+    String generation = store.getGeneration(f);
+    assertEquals(generation, store.getGeneration(f));
+    store.storeForStreaming("task", makeResult(1000, 1));
+    assertFalse(generation.equals(store.getGeneration(f)));
+
+    store.removeStreamFile("task");
+    assertNull(store.open(f));
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() throws Exception {
+    ResultStore store = new ResultStore(m_dir);
+    File a = store.store(makeResult(10000, 1));
+    File b = store.store(makeResult(10000, 2));
+    long each = a.length();
+    store.setMaxBytes(each * 3);
+    File c = store.store(makeResult(10000, 3));
+
+    // use a, so that b is the least recently used
+    assertTrue(Arrays.equals(makeResult(10000, 1), (byte[]) store.load(a)));
+    File d = store.store(makeResult(10000, 4));
+
+    assertTrue(a.exists());
+    assertFalse(b.exists());
+    assertTrue(c.exists());
+    assertTrue(d.exists());
+    assertTrue(store.getCurrentBytes() <= store.getMaxBytes());
+    try {
+      store.load(b);
+      fail("Expected the evicted result to be unavailable");
+    } catch (Exception ex) {
+      // expected
+    }
+
+    // a result bigger than the store is kept until the next write
+    store.setMaxBytes(each / 2);
+    File e = store.store(makeResult(10000, 5));
+    assertTrue(e.exists());
+    assertEquals(1, m_dir.listFiles().length);
+  }
+
+  @Test
+  public void testStartupAccountsForExistingFiles() throws Exception {
+    ResultStore store = new ResultStore(m_dir);
+    File a = store.store(makeResult(10000, 1));
+    File leftover = new File(m_dir, "partial" + ResultStore.TEMP_SUFFIX);
+    FileOutputStream fos = new FileOutputStream(leftover);
+    fos.write(new byte[100]);
+    fos.close();
+
+    ResultStore restarted = new ResultStore(m_dir);
+    assertEquals(a.length(), restarted.getCurrentBytes());
+    assertFalse(leftover.exists());
+    assertTrue(Arrays.equals(makeResult(10000, 1), (byte[]) restarted.load(a)));
+  }
+}
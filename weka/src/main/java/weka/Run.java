@@ -78,8 +78,20 @@ public class Run {
    */
   public static List<String> findSchemeMatch(Class<?> classType,
     String schemeToFind, boolean matchAnywhere, boolean notJustRunnables) {
-    weka.core.ClassDiscovery.clearCache();
-    ArrayList<String> matches = weka.core.ClassDiscovery.find(schemeToFind);
+    ArrayList<String> matches = new ArrayList<String>();
+    if (!matchAnywhere && schemeToFind.indexOf('.') > 0) {
+      // a fully qualified name can be resolved without scanning the classpath
+      try {
+        WekaPackageClassLoaderManager.forName(schemeToFind);
+        matches.add(schemeToFind);
+      } catch (Throwable ex) {
+        // fall back to a full search
+      }
+    }
+    if (matches.size() == 0) {
+      weka.core.ClassDiscovery.clearCache();
+      matches = weka.core.ClassDiscovery.find(schemeToFind);
+    }
     ArrayList<String> prunedMatches = new ArrayList<String>();
     // prune list for anything that isn't a runnable scheme
     for (int i = 0; i < matches.size(); i++) {
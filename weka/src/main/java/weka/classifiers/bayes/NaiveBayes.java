@@ -88,6 +88,13 @@ import weka.estimators.NormalEstimator;
  *  Display model in old format (good when there are many classes)
  * </pre>
  * 
+ * <pre>
+ * -kernel-cutoff &lt;num&gt;
+ *  Number of standard deviations either side of a value within
+ *  which kernels are summed when using the kernel estimator
+ *  (default 0 - i.e. no cutoff)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Len Trigg (trigg@cs.waikato.ac.nz)
@@ -113,6 +120,12 @@ public class NaiveBayes extends AbstractClassifier implements OptionHandler,
    */
   protected boolean m_UseKernelEstimator = false;
 
+  /**
+   * Number of standard deviations either side of a value within which kernels
+   * are summed by the kernel estimators (0 = no cutoff)
+   */
+  protected double m_KernelSupportCutoff = 0;
+
   /**
    * Whether to use discretization than normal distribution for numeric
    * attributes
@@ -278,7 +291,9 @@ public class NaiveBayes extends AbstractClassifier implements OptionHandler,
         switch (attribute.type()) {
         case Attribute.NUMERIC:
           if (m_UseKernelEstimator) {
-            m_Distributions[attIndex][j] = new KernelEstimator(numPrecision);
+            KernelEstimator ke = new KernelEstimator(numPrecision);
+            ke.setSupportCutoff(m_KernelSupportCutoff);
+            m_Distributions[attIndex][j] = ke;
           } else {
             m_Distributions[attIndex][j] = new NormalEstimator(numPrecision);
           }
@@ -295,16 +310,95 @@ public class NaiveBayes extends AbstractClassifier implements OptionHandler,
     }
 
     // Compute counts
-    Enumeration<Instance> enumInsts = m_Instances.enumerateInstances();
-    while (enumInsts.hasMoreElements()) {
-      Instance instance = enumInsts.nextElement();
-      updateClassifier(instance);
+    if (m_UseKernelEstimator) {
+      updateKernelEstimators(m_Instances);
+    } else {
+      Enumeration<Instance> enumInsts = m_Instances.enumerateInstances();
+      while (enumInsts.hasMoreElements()) {
+        Instance instance = enumInsts.nextElement();
+        updateClassifier(instance);
+      }
     }
 
     // Save space
     m_Instances = new Instances(m_Instances, 0);
   }
 
+  /**
+   * Computes the counts for a batch of training instances when kernel
+   * estimators are used. The values of each numeric attribute are collected
+   * per class and loaded into the kernel estimators with a single sort rather
+   * than being inserted one at a time. The model is the same as the one
+   * obtained by calling updateClassifier() for each instance in turn.
+   * 
+   * @param instances the training instances
+   * @throws Exception if the instances could not be incorporated in the model
+   */
+  protected void updateKernelEstimators(Instances instances) throws Exception {
+
+    int numAtts = m_Distributions.length;
+    int[][] counts = new int[numAtts][m_NumClasses];
+    for (int i = 0; i < instances.numInstances(); i++) {
+      Instance instance = instances.instance(i);
+      if (!instance.classIsMissing()) {
+        Enumeration<Attribute> enumAtts = instances.enumerateAttributes();
+        int attIndex = 0;
+        while (enumAtts.hasMoreElements()) {
+          Attribute attribute = enumAtts.nextElement();
+          if (!instance.isMissing(attribute)) {
+            counts[attIndex][(int) instance.classValue()]++;
+          }
+          attIndex++;
+        }
+      }
+    }
+
+    double[][][] values = new double[numAtts][m_NumClasses][];
+    double[][][] weights = new double[numAtts][m_NumClasses][];
+    for (int i = 0; i < numAtts; i++) {
+      if (m_Distributions[i][0] instanceof KernelEstimator) {
+        for (int j = 0; j < m_NumClasses; j++) {
+          values[i][j] = new double[counts[i][j]];
+          weights[i][j] = new double[counts[i][j]];
+          counts[i][j] = 0;
+        }
+      }
+    }
+
+    for (int i = 0; i < instances.numInstances(); i++) {
+      Instance instance = instances.instance(i);
+      if (!instance.classIsMissing()) {
+        int classIndex = (int) instance.classValue();
+        Enumeration<Attribute> enumAtts = instances.enumerateAttributes();
+        int attIndex = 0;
+        while (enumAtts.hasMoreElements()) {
+          Attribute attribute = enumAtts.nextElement();
+          if (!instance.isMissing(attribute)) {
+            if (values[attIndex][classIndex] != null) {
+              int pos = counts[attIndex][classIndex]++;
+              values[attIndex][classIndex][pos] = instance.value(attribute);
+              weights[attIndex][classIndex][pos] = instance.weight();
+            } else {
+              m_Distributions[attIndex][classIndex].addValue(
+                instance.value(attribute), instance.weight());
+            }
+          }
+          attIndex++;
+        }
+        m_ClassDistribution.addValue(instance.classValue(), instance.weight());
+      }
+    }
+
+    for (int i = 0; i < numAtts; i++) {
+      for (int j = 0; j < m_NumClasses; j++) {
+        if (values[i][j] != null) {
+          ((KernelEstimator) m_Distributions[i][j]).addValues(values[i][j],
+            weights[i][j]);
+        }
+      }
+    }
+  }
+
   /**
    * Updates the classifier with the given instance.
    * 
@@ -403,6 +497,12 @@ public class NaiveBayes extends AbstractClassifier implements OptionHandler,
         "\tDisplay model in old format (good when there are "
           + "many classes)\n", "O", 0, "-O"));
 
+    newVector.addElement(new Option(
+      "\tNumber of standard deviations either side of a value within\n"
+        + "\twhich kernels are summed when using the kernel estimator\n"
+        + "\t(default 0 - i.e. no cutoff)", "kernel-cutoff", 1,
+      "-kernel-cutoff <num>"));
+
     newVector.addAll(Collections.list(super.listOptions()));
 
     return newVector.elements();
@@ -431,6 +531,13 @@ public class NaiveBayes extends AbstractClassifier implements OptionHandler,
    *  Display model in old format (good when there are many classes)
    * </pre>
    * 
+   * <pre>
+   * -kernel-cutoff &lt;num&gt;
+   *  Number of standard deviations either side of a value within
+   *  which kernels are summed when using the kernel estimator
+   *  (default 0 - i.e. no cutoff)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -449,6 +556,12 @@ public class NaiveBayes extends AbstractClassifier implements OptionHandler,
     setUseSupervisedDiscretization(d);
     setUseKernelEstimator(k);
     setDisplayModelInOldFormat(Utils.getFlag('O', options));
+    String cutoff = Utils.getOption("kernel-cutoff", options);
+    if (cutoff.length() > 0) {
+      setKernelSupportCutoff(Double.parseDouble(cutoff));
+    } else {
+      setKernelSupportCutoff(0);
+    }
     Utils.checkForRemainingOptions(options);
   }
 
@@ -476,6 +589,11 @@ public class NaiveBayes extends AbstractClassifier implements OptionHandler,
       options.add("-O");
     }
 
+    if (m_KernelSupportCutoff > 0) {
+      options.add("-kernel-cutoff");
+      options.add("" + m_KernelSupportCutoff);
+    }
+
     return options.toArray(new String[0]);
   }
 
@@ -877,6 +995,39 @@ public class NaiveBayes extends AbstractClassifier implements OptionHandler,
     }
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String kernelSupportCutoffTipText() {
+    return "Number of standard deviations either side of a value within "
+      + "which kernels are summed when using the kernel estimator. Kernels "
+      + "are located by binary search, so predictions only cost time "
+      + "proportional to the number of nearby kernels (0 = no cutoff).";
+  }
+
+  /**
+   * Gets the kernel support cutoff.
+   * 
+   * @return the number of standard deviations (0 for no cutoff)
+   */
+  public double getKernelSupportCutoff() {
+
+    return m_KernelSupportCutoff;
+  }
+
+  /**
+   * Sets the kernel support cutoff.
+   * 
+   * @param cutoff the number of standard deviations (0 for no cutoff)
+   */
+  public void setKernelSupportCutoff(double cutoff) {
+
+    m_KernelSupportCutoff = cutoff;
+  }
+
   /**
    * Returns the tip text for this property
    * 
@@ -31,6 +31,7 @@ import java.util.ArrayList;
 
 import weka.classifiers.Classifier;
 import weka.classifiers.RandomizableParallelIteratedSingleClassifierEnhancer;
+import weka.classifiers.evaluation.AggregateableEvaluation;
 import weka.classifiers.evaluation.Evaluation;
 import weka.core.AdditionalMeasureProducer;
 import weka.core.Aggregateable;
@@ -839,7 +840,7 @@ public class Bagging
       for (int i = 0; i < m_Classifiers.length; i++)
         text.append(m_Classifiers[i].toString() + "\n\n");
     }
-    if (m_CalcOutOfBag) {
+    if (m_CalcOutOfBag && m_OutOfBagEvaluationObject != null) {
       text.append(m_OutOfBagEvaluationObject.toSummaryString("\n\n*** Out-of-bag estimates ***\n", getOutputOutOfBagComplexityStatistics()));
     }
 
@@ -921,6 +922,37 @@ public class Bagging
   
   protected List<Classifier> m_classifiersCache;
 
+  /**
+   * Initializes the ensemble with base classifiers that have already been
+   * built, for example on separate partitions of the training data. The
+   * result can be used for prediction straight away and aggregated with other
+   * ensembles. The configured base classifier is kept as the template, and
+   * the members have to be of its type.
+   *
+   * @param header the header of the training data
+   * @param members the built base classifiers (all of the same type)
+   * @throws Exception if the base classifiers can't be used for some reason
+   */
+  public void setBuiltClassifiers(Instances header, Classifier[] members)
+    throws Exception {
+    if (members == null || members.length == 0) {
+      throw new Exception("No base classifiers supplied");
+    }
+    for (Classifier c : members) {
+      if (!m_Classifier.getClass().isAssignableFrom(c.getClass())) {
+        throw new Exception("Base classifiers must all be of the type of the "
+          + "configured base classifier");
+      }
+    }
+
+    m_Classifiers = members.clone();
+    m_NumIterations = m_Classifiers.length;
+    m_Numeric = header.classAttribute().isNumeric();
+    m_data = new Instances(header, 0);
+    m_OutOfBagEvaluationObject = null;
+    m_inBag = null;
+  }
+
   /**
    * Aggregate an object with this one
    * 
@@ -934,12 +966,29 @@ public class Bagging
     if (!m_Classifier.getClass().isAssignableFrom(toAggregate.m_Classifier.getClass())) {
       throw new Exception("Can't aggregate because base classifiers differ");
     }
+    if (m_Numeric != toAggregate.m_Numeric) {
+      throw new Exception("Can't aggregate because class types differ");
+    }
     
     if (m_classifiersCache == null) {
       m_classifiersCache = new ArrayList<Classifier>();
       m_classifiersCache.addAll(Arrays.asList(m_Classifiers));
     }
     m_classifiersCache.addAll(Arrays.asList(toAggregate.m_Classifiers));
+
+    // the out-of-bag estimates of the parts are pooled; each one only covers
+    // the data that its part was trained on
+    if (m_OutOfBagEvaluationObject != null
+      && toAggregate.m_OutOfBagEvaluationObject != null) {
+      if (!(m_OutOfBagEvaluationObject instanceof AggregateableEvaluation)) {
+        m_OutOfBagEvaluationObject =
+          new AggregateableEvaluation(m_OutOfBagEvaluationObject);
+      }
+      ((AggregateableEvaluation) m_OutOfBagEvaluationObject)
+        .aggregate(toAggregate.m_OutOfBagEvaluationObject);
+    } else {
+      m_OutOfBagEvaluationObject = null;
+    }
     
     return this;
   }
@@ -951,11 +1000,13 @@ public class Bagging
    * @throws Exception if the aggregation can't be finalized for some reason
    */
   @Override
-  public void finalizeAggregation() throws Exception {    
+  public void finalizeAggregation() throws Exception {
+    if (m_classifiersCache == null) {
+      return;
+    }
     m_Classifiers = m_classifiersCache.toArray(new Classifier[1]);
     m_NumIterations = m_Classifiers.length;
     
     m_classifiersCache = null;
   }
 }
-
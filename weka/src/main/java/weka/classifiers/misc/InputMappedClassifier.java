@@ -21,6 +21,7 @@
 
 package weka.classifiers.misc;
 
+import java.io.File;
 import java.io.Serializable;
 import java.util.Collections;
 import java.util.Enumeration;
@@ -30,6 +31,7 @@ import weka.classifiers.Classifier;
 import weka.classifiers.SingleClassifierEnhancer;
 import weka.core.AdditionalMeasureProducer;
 import weka.core.Attribute;
+import weka.core.BatchPredictor;
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
 import weka.core.DenseInstance;
@@ -83,6 +85,13 @@ import weka.core.WeightedInstancesHandler;
  * </pre>
  * 
  * <pre>
+ * -share-model
+ *  Share a model loaded from a file with other classifiers
+ *  in this JVM that load the same file (predictions made with
+ *  the model are then synchronized, unless it is ThreadSafe).
+ * </pre>
+ * 
+ * <pre>
  * -D
  *  If set, classifier is run in debug mode and
  *  may output additional info to the console
@@ -120,6 +129,15 @@ public class InputMappedClassifier extends SingleClassifierEnhancer implements
   /** The path to the serialized model to use (if any) */
   protected String m_modelPath = "";
 
+  /** Share a model loaded from m_modelPath with other classifiers? */
+  protected boolean m_shareModel = false;
+
+  /**
+   * True if calls to m_Classifier are synchronized, because it is a shared
+   * model (from the SharedModelCache) that is not known to be thread safe
+   */
+  protected transient boolean m_lockModel = false;
+
   /** The header of the last known set of incoming test instances */
   protected transient Instances m_inputHeader;
 
@@ -159,9 +177,6 @@ public class InputMappedClassifier extends SingleClassifierEnhancer implements
    */
   protected boolean m_initialTestStructureKnown = false;
 
-  /** Holds values for instances constructed for prediction */
-  protected double[] m_vals;
-
   /**
    * Returns a string describing this classifier
    * 
@@ -307,6 +322,39 @@ public class InputMappedClassifier extends SingleClassifierEnhancer implements
     // loadModel(modelPath);
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String shareModelTipText() {
+    return "If true, a model loaded from the model path is obtained via a "
+      + "process-wide cache so that all classifiers using the same model file "
+      + "share one copy of it in memory. Predictions made with a shared model "
+      + "are synchronized, unless the model implements ThreadSafe.";
+  }
+
+  /**
+   * Set whether a model loaded from the model path is shared with other
+   * classifiers that load the same file.
+   * 
+   * @param share true if the model is to be shared
+   */
+  public void setShareModel(boolean share) {
+    m_shareModel = share;
+  }
+
+  /**
+   * Get whether a model loaded from the model path is shared with other
+   * classifiers that load the same file.
+   * 
+   * @return true if the model is shared
+   */
+  public boolean getShareModel() {
+    return m_shareModel;
+  }
+
   /**
    * Get the path used for loading a model.
    * 
@@ -360,6 +408,13 @@ public class InputMappedClassifier extends SingleClassifierEnhancer implements
    * </pre>
    * 
    * <pre>
+   * -share-model
+   *  Share a model loaded from a file with other classifiers
+   *  in this JVM that load the same file (predictions made with
+   *  the model are then synchronized, unless it is ThreadSafe).
+   * </pre>
+   * 
+   * <pre>
    * -D
    *  If set, classifier is run in debug mode and
    *  may output additional info to the console
@@ -387,7 +442,7 @@ public class InputMappedClassifier extends SingleClassifierEnhancer implements
    */
   @Override
   public Enumeration<Option> listOptions() {
-    Vector<Option> newVector = new Vector<Option>(4);
+    Vector<Option> newVector = new Vector<Option>(5);
 
     newVector.addElement(new Option("\tIgnore case when matching attribute "
       + "names and nominal values.", "I", 0, "-I"));
@@ -402,6 +457,12 @@ public class InputMappedClassifier extends SingleClassifierEnhancer implements
         + "\n\tspecification will be ignored. Environment variables"
         + "\n\tmay be used in the path (e.g. ${HOME}/myModel.model)", "L", 1,
       "-L <path to model to load>"));
+    newVector.addElement(new Option(
+      "\tShare a model loaded from a file with other classifiers\n"
+        + "\tin this JVM that load the same file (predictions made with\n"
+        + "\tthe model are then synchronized, unless it is ThreadSafe).",
+      "share-model", 0,
+      "-share-model"));
 
     newVector.addAll(Collections.list(super.listOptions()));
 
@@ -439,6 +500,13 @@ public class InputMappedClassifier extends SingleClassifierEnhancer implements
    * </pre>
    * 
    * <pre>
+   * -share-model
+   *  Share a model loaded from a file with other classifiers
+   *  in this JVM that load the same file (predictions made with
+   *  the model are then synchronized, unless it is ThreadSafe).
+   * </pre>
+   * 
+   * <pre>
    * -D
    *  If set, classifier is run in debug mode and
    *  may output additional info to the console
@@ -478,6 +546,7 @@ public class InputMappedClassifier extends SingleClassifierEnhancer implements
     if (modelPath.length() > 0) {
       setModelPath(modelPath);
     }
+    setShareModel(Utils.getFlag("share-model", options));
 
     super.setOptions(options);
   }
@@ -490,7 +559,7 @@ public class InputMappedClassifier extends SingleClassifierEnhancer implements
   @Override
   public String[] getOptions() {
     String[] superOptions = super.getOptions();
-    String[] options = new String[superOptions.length + 5];
+    String[] options = new String[superOptions.length + 6];
 
     int current = 0;
     if (getIgnoreCaseForNames()) {
@@ -507,6 +576,9 @@ public class InputMappedClassifier extends SingleClassifierEnhancer implements
       options[current++] = "-L";
       options[current++] = getModelPath();
     }
+    if (getShareModel()) {
+      options[current++] = "-share-model";
+    }
 
     System.arraycopy(superOptions, 0, options, current, superOptions.length);
 
@@ -532,6 +604,7 @@ public class InputMappedClassifier extends SingleClassifierEnhancer implements
   public void setTestStructure(Instances testStructure) {
     m_inputHeader = testStructure;
     m_initialTestStructureKnown = true;
+    m_compiledMapping = null;
   }
 
   /**
@@ -559,7 +632,9 @@ public class InputMappedClassifier extends SingleClassifierEnhancer implements
       }
 
       try {
-        Object[] modelAndHeader = SerializationHelper.readAll(modelPath);
+        Object[] modelAndHeader =
+          m_shareModel ? SharedModelCache.getContents(new File(modelPath))
+            : SerializationHelper.readAll(modelPath);
 
         if (modelAndHeader.length != 2) {
           throw new Exception("[InputMappedClassifier] serialized model file "
@@ -568,6 +643,8 @@ public class InputMappedClassifier extends SingleClassifierEnhancer implements
         } else {
           setClassifier((Classifier) modelAndHeader[0]);
           m_modelHeader = (Instances) modelAndHeader[1];
+          m_lockModel =
+            m_shareModel && SharedModelCache.requiresLock(modelAndHeader[0]);
         }
       } catch (Exception ex) {
         ex.printStackTrace();
@@ -589,6 +666,7 @@ public class InputMappedClassifier extends SingleClassifierEnhancer implements
     }
 
     m_attributeMap = null;
+    m_compiledMapping = null;
 
     if (m_modelPath != null && m_modelPath.length() > 0) {
       return; // Don't build a classifier if a path has been specified
@@ -701,6 +779,7 @@ public class InputMappedClassifier extends SingleClassifierEnhancer implements
   protected static final int OK = -3;
 
   private boolean regenerateMapping() throws Exception {
+    m_compiledMapping = null;
     loadModel(m_modelPath); // load a model (if specified)
 
     if (m_modelHeader == null) {
@@ -794,7 +873,142 @@ public class InputMappedClassifier extends SingleClassifierEnhancer implements
     return m_attributeMap[m_modelHeader.classIndex()];
   }
 
-  public synchronized Instance constructMappedInstance(Instance incoming) throws Exception {
+  /**
+   * The mapping from a particular incoming header to the model header,
+   * compiled into index arrays. Instances of this class are immutable, so a
+   * mapping can be used by several threads without locking.
+   */
+  protected static class CompiledMapping {
+
+    /** Source value for model attributes that are always missing */
+    protected static final int MISSING = -1;
+
+    /**
+     * Value map for model attributes that receive 0 unless the incoming value
+     * is missing (string and relational attributes)
+     */
+    protected static final int[] ZERO = new int[0];
+
+    /** The incoming header this mapping applies to */
+    protected final Instances m_incomingHeader;
+
+    /**
+     * For each model attribute, the index of the incoming attribute that
+     * supplies its value (or MISSING)
+     */
+    protected final int[] m_source;
+
+    /**
+     * For each model attribute, the translation from incoming nominal value
+     * indexes to model value indexes (null if the value is copied as is, ZERO
+     * if the value is replaced by 0)
+     */
+    protected final int[][] m_valueMap;
+
+    /**
+     * Constructor
+     * 
+     * @param incomingHeader the incoming header this mapping applies to
+     * @param source the source index of each model attribute
+     * @param valueMap the nominal value translation of each model attribute
+     */
+    protected CompiledMapping(Instances incomingHeader, int[] source,
+      int[][] valueMap) {
+      m_incomingHeader = incomingHeader;
+      m_source = source;
+      m_valueMap = valueMap;
+    }
+
+    /**
+     * Maps the values of an incoming instance onto the model attributes
+     * 
+     * @param incoming the incoming instance
+     * @return the values for the model attributes
+     */
+    protected double[] map(Instance incoming) {
+      double[] vals = new double[m_source.length];
+      for (int i = 0; i < m_source.length; i++) {
+        int src = m_source[i];
+        if (src == MISSING) {
+          vals[i] = Utils.missingValue();
+          continue;
+        }
+        double v = incoming.value(src);
+        int[] valueMap = m_valueMap[i];
+        if (valueMap != null && !Utils.isMissingValue(v)) {
+          if (valueMap == ZERO) {
+            v = 0;
+          } else {
+            int mapVal = valueMap[(int) v];
+            v = mapVal == NO_MATCH ? Utils.missingValue() : mapVal;
+          }
+        }
+        vals[i] = v;
+      }
+
+      return vals;
+    }
+  }
+
+  /** The mapping for the most recently seen incoming header */
+  protected transient volatile CompiledMapping m_compiledMapping;
+
+  /**
+   * Compiles the current mapping (m_attributeMap, m_attributeStatus and
+   * m_nominalValueMap) for the given incoming header
+   * 
+   * @param incomingHeader the incoming header
+   * @return the compiled mapping
+   */
+  protected CompiledMapping compileMapping(Instances incomingHeader) {
+    int[] source = new int[m_modelHeader.numAttributes()];
+    int[][] valueMap = new int[m_modelHeader.numAttributes()][];
+    for (int i = 0; i < m_modelHeader.numAttributes(); i++) {
+      Attribute modelAtt = m_modelHeader.attribute(i);
+      if (m_attributeStatus[i] != OK) {
+        source[i] = CompiledMapping.MISSING;
+      } else {
+        source[i] = m_attributeMap[i];
+        if (modelAtt.isNominal()) {
+          valueMap[i] = m_nominalValueMap[i];
+        } else if (!modelAtt.isNumeric()) {
+          valueMap[i] = CompiledMapping.ZERO;
+        }
+      }
+    }
+
+    return new CompiledMapping(incomingHeader, source, valueMap);
+  }
+
+  /**
+   * Get the compiled mapping for the header of the supplied instance,
+   * (re)generating the mapping if the header has changed.
+   * 
+   * @param incoming an incoming instance
+   * @return the compiled mapping
+   * @throws Exception if the mapping can't be generated
+   */
+  protected CompiledMapping getCompiledMapping(Instance incoming)
+    throws Exception {
+    CompiledMapping mapping = m_compiledMapping;
+    if (mapping != null && mapping.m_incomingHeader == incoming.dataset()) {
+      return mapping;
+    }
+
+    return updateMapping(incoming);
+  }
+
+  /**
+   * Checks the header of the supplied instance against the last known input
+   * format, regenerating the mapping if necessary, and compiles the mapping
+   * for the instance's header.
+   * 
+   * @param incoming an incoming instance
+   * @return the compiled mapping
+   * @throws Exception if the mapping can't be generated
+   */
+  protected synchronized CompiledMapping updateMapping(Instance incoming)
+    throws Exception {
 
     boolean regenerateMapping = false;
 
@@ -822,7 +1036,6 @@ public class InputMappedClassifier extends SingleClassifierEnhancer implements
 
     if (regenerateMapping) {
       regenerateMapping();
-      m_vals = null;
 
       if (!m_suppressMappingReport) {
         StringBuffer result = createMappingReport();
@@ -830,44 +1043,55 @@ public class InputMappedClassifier extends SingleClassifierEnhancer implements
       }
     }
 
-    m_vals = new double[m_modelHeader.numAttributes()];
+    CompiledMapping mapping = compileMapping(incoming.dataset());
+    m_compiledMapping = mapping;
 
-    for (int i = 0; i < m_modelHeader.numAttributes(); i++) {
-      if (m_attributeStatus[i] == OK) {
-        Attribute modelAtt = m_modelHeader.attribute(i);
-        m_inputHeader.attribute(m_attributeMap[i]);
-
-        if (Utils.isMissingValue(incoming.value(m_attributeMap[i]))) {
-          m_vals[i] = Utils.missingValue();
-          continue;
-        }
+    return mapping;
+  }
 
-        if (modelAtt.isNumeric()) {
-          m_vals[i] = incoming.value(m_attributeMap[i]);
-        } else if (modelAtt.isNominal()) {
-          int mapVal = m_nominalValueMap[i][(int) incoming
-            .value(m_attributeMap[i])];
+  public Instance constructMappedInstance(Instance incoming) throws Exception {
 
-          if (mapVal == NO_MATCH) {
-            m_vals[i] = Utils.missingValue();
-          } else {
-            m_vals[i] = mapVal;
-          }
-        }
-      } else {
-        m_vals[i] = Utils.missingValue();
-      }
-    }
+    double[] vals = getCompiledMapping(incoming).map(incoming);
 
-    Instance newInst = new DenseInstance(incoming.weight(), m_vals);
+    Instance newInst = new DenseInstance(incoming.weight(), vals);
     newInst.setDataset(m_modelHeader);
 
     return newInst;
   }
 
+  /**
+   * Maps a set of incoming instances onto the model header.
+   * 
+   * @param incoming the incoming instances
+   * @return the mapped instances
+   * @throws Exception if the mapping can't be generated
+   */
+  public Instances constructMappedInstances(Instances incoming)
+    throws Exception {
+
+    Instances result = new Instances(m_modelHeader, incoming.numInstances());
+    if (incoming.numInstances() == 0) {
+      return result;
+    }
+    CompiledMapping mapping = getCompiledMapping(incoming.instance(0));
+    for (Instance inst : incoming) {
+      if (inst.dataset() != mapping.m_incomingHeader) {
+        mapping = getCompiledMapping(inst);
+      }
+      result.add(new DenseInstance(inst.weight(), mapping.map(inst)));
+    }
+
+    return result;
+  }
+
   @Override
   public double classifyInstance(Instance inst) throws Exception {
     Instance converted = constructMappedInstance(inst);
+    if (m_lockModel) {
+      synchronized (m_Classifier) {
+        return m_Classifier.classifyInstance(converted);
+      }
+    }
     return m_Classifier.classifyInstance(converted);
   }
 
@@ -875,9 +1099,76 @@ public class InputMappedClassifier extends SingleClassifierEnhancer implements
   public double[] distributionForInstance(Instance inst) throws Exception {
 
     Instance converted = constructMappedInstance(inst);
+    if (m_lockModel) {
+      synchronized (m_Classifier) {
+        return m_Classifier.distributionForInstance(converted);
+      }
+    }
     return m_Classifier.distributionForInstance(converted);
   }
 
+  /**
+   * Batch scoring method. Maps all the instances onto the model header in one
+   * pass and then calls the appropriate method for the base learner if it
+   * implements BatchPredictor. Otherwise it simply calls the base learner's
+   * distributionForInstance() method repeatedly.
+   * 
+   * @param insts the instances to get predictions for
+   * @return an array of probability distributions, one for each instance
+   * @throws Exception if a problem occurs
+   */
+  @Override
+  public double[][] distributionsForInstances(Instances insts)
+    throws Exception {
+
+    Instances converted = constructMappedInstances(insts);
+    if (m_lockModel) {
+      synchronized (m_Classifier) {
+        return distributionsForMappedInstances(converted);
+      }
+    }
+    return distributionsForMappedInstances(converted);
+  }
+
+  /**
+   * Gets predictions from the base learner for instances that have already
+   * been mapped onto the model header.
+   * 
+   * @param converted the mapped instances
+   * @return an array of probability distributions, one for each instance
+   * @throws Exception if a problem occurs
+   */
+  protected double[][] distributionsForMappedInstances(Instances converted)
+    throws Exception {
+
+    if (m_Classifier instanceof BatchPredictor) {
+      return ((BatchPredictor) m_Classifier)
+        .distributionsForInstances(converted);
+    }
+    double[][] result = new double[converted.numInstances()][];
+    for (int i = 0; i < converted.numInstances(); i++) {
+      result[i] = m_Classifier.distributionForInstance(converted.instance(i));
+    }
+    return result;
+  }
+
+  /**
+   * Returns true if the base classifier implements BatchPredictor and is able
+   * to generate batch predictions efficiently
+   * 
+   * @return true if the base classifier can generate batch predictions
+   *         efficiently
+   */
+  @Override
+  public boolean implementsMoreEfficientBatchPrediction() {
+    if (!(m_Classifier instanceof BatchPredictor)) {
+      return super.implementsMoreEfficientBatchPrediction();
+    }
+
+    return ((BatchPredictor) m_Classifier)
+      .implementsMoreEfficientBatchPrediction();
+  }
+
   @Override
   public String toString() {
     StringBuffer buff = new StringBuffer();
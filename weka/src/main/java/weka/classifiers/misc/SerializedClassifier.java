@@ -60,6 +60,13 @@ import weka.core.Utils;
  *  (required)
  * </pre>
  * 
+ * <pre>
+ * -share-model
+ *  Share the model with other classifiers in this JVM that
+ *  load the same file (predictions are then synchronized,
+ *  unless the model is ThreadSafe).
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author fracpete (fracpete at waikato dot ac dot nz)
@@ -76,6 +83,15 @@ public class SerializedClassifier extends AbstractClassifier {
   /** the file where the serialized model is stored */
   protected File m_ModelFile = new File(System.getProperty("user.dir"));
 
+  /** whether to share the model with other classifiers using the same file */
+  protected boolean m_ShareModel = false;
+
+  /**
+   * whether calls to the current model are synchronized, because it is shared
+   * (via the SharedModelCache) and not known to be thread safe
+   */
+  protected transient boolean m_LockModel = false;
+
   /**
    * Returns a string describing classifier
    * 
@@ -103,6 +119,12 @@ public class SerializedClassifier extends AbstractClassifier {
       "\tThe file containing the serialized model.\n" + "\t(required)",
       "model", 1, "-model <filename>"));
 
+    result.addElement(new Option(
+      "\tShare the model with other classifiers in this JVM that\n"
+        + "\tload the same file (predictions are then synchronized,\n"
+        + "\tunless the model is ThreadSafe).",
+      "share-model", 0, "-share-model"));
+
     result.addAll(Collections.list(super.listOptions()));
 
     return result.elements();
@@ -121,6 +143,10 @@ public class SerializedClassifier extends AbstractClassifier {
     result.add("-model");
     result.add("" + getModelFile());
 
+    if (getShareModel()) {
+      result.add("-share-model");
+    }
+
     Collections.addAll(result, super.getOptions());
 
     return result.toArray(new String[result.size()]);
@@ -145,6 +171,13 @@ public class SerializedClassifier extends AbstractClassifier {
    *  (required)
    * </pre>
    * 
+   * <pre>
+   * -share-model
+   *  Share the model with other classifiers in this JVM that
+   *  load the same file (predictions are then synchronized,
+   *  unless the model is ThreadSafe).
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the options to use
@@ -156,6 +189,8 @@ public class SerializedClassifier extends AbstractClassifier {
 
     super.setOptions(options);
 
+    setShareModel(Utils.getFlag("share-model", options));
+
     tmpStr = Utils.getOption("model", options);
     if (tmpStr.length() != 0) {
       setModelFile(new File(tmpStr));
@@ -201,6 +236,44 @@ public class SerializedClassifier extends AbstractClassifier {
     }
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String shareModelTipText() {
+    return "If true, the model is loaded via a process-wide cache so that all "
+      + "classifiers using the same model file share one copy of it in memory. "
+      + "Predictions made with a shared model are synchronized, unless the "
+      + "model implements ThreadSafe.";
+  }
+
+  /**
+   * Gets whether the model is shared with other classifiers that load the same
+   * file.
+   * 
+   * @return true if the model is shared
+   */
+  public boolean getShareModel() {
+    return m_ShareModel;
+  }
+
+  /**
+   * Sets whether the model is shared with other classifiers that load the same
+   * file. A model that has already been loaded from the file is reloaded (on
+   * next use) if this setting changes.
+   * 
+   * @param value true if the model is to be shared
+   */
+  public void setShareModel(boolean value) {
+    if (value != m_ShareModel && m_ModelFile.isFile()) {
+      m_Model = null;
+      m_LockModel = false;
+    }
+    m_ShareModel = value;
+  }
+
   /**
    * Sets the fully built model to use, if one doesn't want to load a model from
    * a file or already deserialized a model from somewhere else.
@@ -210,6 +283,7 @@ public class SerializedClassifier extends AbstractClassifier {
    */
   public void setModel(Classifier value) {
     m_Model = value;
+    m_LockModel = false;
   }
 
   /**
@@ -231,8 +305,13 @@ public class SerializedClassifier extends AbstractClassifier {
    */
   protected void initModel() throws Exception {
     if (m_Model == null) {
-      m_Model = (Classifier) SerializationHelper.read(m_ModelFile
-        .getAbsolutePath());
+      if (m_ShareModel) {
+        m_Model = (Classifier) SharedModelCache.getModel(m_ModelFile);
+        m_LockModel = SharedModelCache.requiresLock(m_Model);
+      } else {
+        m_Model = (Classifier) SerializationHelper.read(m_ModelFile
+          .getAbsolutePath());
+      }
     }
   }
 
@@ -285,7 +364,13 @@ public class SerializedClassifier extends AbstractClassifier {
     // init model if necessary
     initModel();
 
-    result = m_Model.distributionForInstance(instance);
+    if (m_LockModel) {
+      synchronized (m_Model) {
+        result = m_Model.distributionForInstance(instance);
+      }
+    } else {
+      result = m_Model.distributionForInstance(instance);
+    }
 
     return result;
   }
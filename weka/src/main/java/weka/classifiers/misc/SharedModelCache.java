@@ -0,0 +1,184 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    SharedModelCache.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.misc;
+
+import java.io.File;
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.SerializationHelper;
+import weka.core.ThreadSafe;
+
+/**
+ * A process-wide cache of deserialized model files, so that classifiers that
+ * load the same model file (e.g. several SerializedClassifiers or
+ * InputMappedClassifiers in different Knowledge Flow branches) share a single
+ * in-memory copy of the model. Entries are keyed on the canonical path of the
+ * file and are reloaded if the file's size or modification time changes. The
+ * contents of an entry are only softly referenced, so a model that is no
+ * longer used by any classifier can be reclaimed under memory pressure. At
+ * most 16 files are cached by default; this can be changed by setting the
+ * system property weka.classifiers.misc.SharedModelCache.maxEntries.
+ * <p>
+ * The cached objects are shared - clients must not modify them, and calls to a
+ * shared classifier should be synchronized on the classifier unless it is
+ * known to be thread-safe (see {@link #requiresLock(Object)}).
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public class SharedModelCache implements RevisionHandler {
+
+  /** System property for the maximum number of files to cache */
+  public static final String MAX_ENTRIES_PROPERTY =
+    "weka.classifiers.misc.SharedModelCache.maxEntries";
+
+  /** Maximum number of files to cache */
+  protected static final int MAX_ENTRIES = Integer.getInteger(
+    MAX_ENTRIES_PROPERTY, 16);
+
+  /**
+   * A cached file
+   */
+  protected static class Entry {
+
+    /** Size of the file when it was loaded */
+    protected long m_length;
+
+    /** Modification time of the file when it was loaded */
+    protected long m_lastModified;
+
+    /** The objects read from the file */
+    protected SoftReference<Object[]> m_contents;
+
+    /**
+     * Constructor
+     *
+     * @param length size of the file
+     * @param lastModified modification time of the file
+     */
+    protected Entry(long length, long lastModified) {
+      m_length = length;
+      m_lastModified = lastModified;
+    }
+  }
+
+  /** The cached files, in least recently used order */
+  protected static final Map<String, Entry> s_cache =
+    new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+
+      /** For serialization */
+      private static final long serialVersionUID = 6520469224419683155L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > MAX_ENTRIES;
+      }
+    };
+
+  /**
+   * Get all the objects stored in a serialized model file (normally the model
+   * and, optionally, the header of the training data). The file is only read
+   * if it is not in the cache or has changed since it was read. Concurrent
+   * requests for the same file wait for a single read to complete.
+   *
+   * @param file the model file
+   * @return the objects in the file
+   * @throws Exception if the file can't be read
+   */
+  public static Object[] getContents(File file) throws Exception {
+    String key = file.getCanonicalPath();
+    long length = file.length();
+    long lastModified = file.lastModified();
+
+    Entry entry;
+    synchronized (s_cache) {
+      entry = s_cache.get(key);
+      if (entry == null || entry.m_length != length
+        || entry.m_lastModified != lastModified) {
+        entry = new Entry(length, lastModified);
+        s_cache.put(key, entry);
+      }
+    }
+
+    synchronized (entry) {
+      Object[] contents =
+        entry.m_contents != null ? entry.m_contents.get() : null;
+      if (contents == null) {
+        contents = SerializationHelper.readAll(file.getPath());
+        entry.m_contents = new SoftReference<Object[]>(contents);
+      }
+
+      return contents.clone();
+    }
+  }
+
+  /**
+   * Get the model (i.e. the first object) stored in a serialized model file.
+   *
+   * @param file the model file
+   * @return the model
+   * @throws Exception if the file can't be read or is empty
+   */
+  public static Object getModel(File file) throws Exception {
+    Object[] contents = getContents(file);
+    if (contents.length == 0) {
+      throw new Exception("No model stored in '" + file + "'!");
+    }
+
+    return contents[0];
+  }
+
+  /**
+   * Whether calls to a shared model have to be synchronized. This is the case
+   * unless the model implements {@link ThreadSafe}, i.e. it can safely be used
+   * to make predictions from several threads at once.
+   *
+   * @param model the shared model
+   * @return true if calls to the model have to be synchronized
+   */
+  public static boolean requiresLock(Object model) {
+    return !(model instanceof ThreadSafe);
+  }
+
+  /**
+   * Removes all entries from the cache.
+   */
+  public static void clear() {
+    synchronized (s_cache) {
+      s_cache.clear();
+    }
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
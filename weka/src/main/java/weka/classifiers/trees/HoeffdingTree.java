@@ -21,14 +21,24 @@
 
 package weka.classifiers.trees;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import weka.classifiers.AbstractClassifier;
+import weka.classifiers.UpdateableBatchProcessor;
 import weka.classifiers.UpdateableClassifier;
 import weka.classifiers.trees.ht.ActiveHNode;
 import weka.classifiers.trees.ht.GiniSplitMetric;
@@ -151,6 +161,21 @@ import weka.core.WeightedInstancesHandler;
  *  Print leaf models when using naive Bayes at the leaves.
  * </pre>
  * 
+ * <pre>
+ * -update-batch-size &lt;num&gt;
+ *  The number of training instances to buffer before routing them
+ *  to the leaves in one batch. The tree grown is the same as when
+ *  updating one instance at a time.
+ *  (default = 1, i.e. no buffering)
+ * </pre>
+ * 
+ * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of execution slots to use when evaluating candidate splits.
+ *  (default 1 - i.e. no parallelism)
+ *  (use 0 to auto-detect number of cores)
+ * </pre>
+ * 
  <!-- options-end -->
  * 
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
@@ -158,8 +183,9 @@ import weka.core.WeightedInstancesHandler;
  * @version $Revision$
  */
 public class HoeffdingTree extends AbstractClassifier implements
-    UpdateableClassifier, WeightedInstancesHandler, OptionHandler,
-    RevisionHandler, TechnicalInformationHandler, Drawable, Serializable {
+    UpdateableClassifier, UpdateableBatchProcessor, WeightedInstancesHandler,
+    OptionHandler, RevisionHandler, TechnicalInformationHandler, Drawable,
+    Serializable {
 
   /**
    * For serialization
@@ -227,6 +253,21 @@ public class HoeffdingTree extends AbstractClassifier implements
    */
   protected boolean m_printLeafModels;
 
+  /**
+   * The number of training instances to buffer before routing them to the
+   * leaves in one batch (1 = no buffering)
+   */
+  protected int m_updateBatchSize = 1;
+
+  /** The number of threads to use when evaluating candidate splits */
+  protected int m_numExecutionSlots = 1;
+
+  /** Training instances waiting to be routed to the leaves */
+  protected transient List<Instance> m_updateBuffer;
+
+  /** The pool of threads used for evaluating candidate splits */
+  protected transient ExecutorService m_executorPool;
+
   /**
    * Returns a string describing classifier
    * 
@@ -275,6 +316,8 @@ public class HoeffdingTree extends AbstractClassifier implements
 
   protected void reset() {
     m_root = null;
+    m_updateBuffer = null;
+    shutdownExecutorPool();
 
     m_activeLeafCount = 0;
     m_inactiveLeafCount = 0;
@@ -340,6 +383,16 @@ public class HoeffdingTree extends AbstractClassifier implements
             "-N"));
     newVector.add(new Option("\tPrint leaf models when using naive Bayes "
         + "at the leaves.", "P", 0, "-P"));
+    newVector.add(new Option("\tThe number of training instances to buffer "
+        + "before routing them\n\tto the leaves in one batch. The tree grown "
+        + "is the same as when\n\tupdating one instance at a time.\n\t"
+        + "(default = 1, i.e. no buffering)", "update-batch-size", 1,
+        "-update-batch-size <num>"));
+    newVector.add(new Option("\tNumber of execution slots to use when "
+        + "evaluating candidate splits.\n"
+        + "\t(default 1 - i.e. no parallelism)\n"
+        + "\t(use 0 to auto-detect number of cores)", "num-slots", 1,
+        "-num-slots <num>"));
 
     return newVector.elements();
   }
@@ -399,6 +452,21 @@ public class HoeffdingTree extends AbstractClassifier implements
    *  Print leaf models when using naive Bayes at the leaves.
    * </pre>
    * 
+   * <pre>
+   * -update-batch-size &lt;num&gt;
+   *  The number of training instances to buffer before routing them
+   *  to the leaves in one batch. The tree grown is the same as when
+   *  updating one instance at a time.
+   *  (default = 1, i.e. no buffering)
+   * </pre>
+   * 
+   * <pre>
+   * -num-slots &lt;num&gt;
+   *  Number of execution slots to use when evaluating candidate splits.
+   *  (default 1 - i.e. no parallelism)
+   *  (use 0 to auto-detect number of cores)
+   * </pre>
+   * 
    <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -447,6 +515,20 @@ public class HoeffdingTree extends AbstractClassifier implements
     }
 
     m_printLeafModels = Utils.getFlag('P', options);
+
+    opt = Utils.getOption("update-batch-size", options);
+    if (opt.length() > 0) {
+      setUpdateBatchSize(Integer.parseInt(opt));
+    } else {
+      setUpdateBatchSize(1);
+    }
+
+    opt = Utils.getOption("num-slots", options);
+    if (opt.length() > 0) {
+      setNumExecutionSlots(Integer.parseInt(opt));
+    } else {
+      setNumExecutionSlots(1);
+    }
   }
 
   /**
@@ -483,6 +565,12 @@ public class HoeffdingTree extends AbstractClassifier implements
       options.add("-P");
     }
 
+    options.add("-update-batch-size");
+    options.add("" + getUpdateBatchSize());
+
+    options.add("-num-slots");
+    options.add("" + getNumExecutionSlots());
+
     return options.toArray(new String[1]);
   }
 
@@ -718,6 +806,118 @@ public class HoeffdingTree extends AbstractClassifier implements
     return m_nbThreshold;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String updateBatchSizeTipText() {
+    return "The number of training instances to buffer before routing them "
+        + "to the leaves in one batch (1 = no buffering). Buffered instances "
+        + "are incorporated when the buffer is full, at the end of the "
+        + "training stream (batchFinished()) and before the model is "
+        + "serialized; until then predictions are made without them. The "
+        + "tree grown is the same as when updating one instance at a time.";
+  }
+
+  /**
+   * Set the number of training instances to buffer before routing them to the
+   * leaves in one batch
+   * 
+   * @param size the number of instances to buffer
+   */
+  public void setUpdateBatchSize(int size) {
+    m_updateBatchSize = size;
+  }
+
+  /**
+   * Get the number of training instances to buffer before routing them to the
+   * leaves in one batch
+   * 
+   * @return the number of instances to buffer
+   */
+  public int getUpdateBatchSize() {
+    return m_updateBatchSize;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) to use for evaluating "
+        + "candidate splits (0 = use all available cores).";
+  }
+
+  /**
+   * Set the number of execution slots (threads) to use for evaluating
+   * candidate splits.
+   * 
+   * @param numSlots the number of slots to use
+   */
+  public void setNumExecutionSlots(int numSlots) {
+    if (numSlots != m_numExecutionSlots) {
+      shutdownExecutorPool();
+    }
+    m_numExecutionSlots = numSlots;
+  }
+
+  /**
+   * Get the number of execution slots (threads) to use for evaluating
+   * candidate splits.
+   * 
+   * @return the number of slots to use
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
+  /**
+   * Returns the executor to use for evaluating candidate splits, starting it
+   * if necessary.
+   * 
+   * @return the executor, or null if splits are to be evaluated on the calling
+   *         thread
+   */
+  protected synchronized ExecutorService getExecutorPool() {
+    if (m_numExecutionSlots == 1) {
+      return null;
+    }
+
+    if (m_executorPool == null) {
+      int numThreads = m_numExecutionSlots <= 0 ? Runtime.getRuntime()
+          .availableProcessors() : m_numExecutionSlots;
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(numThreads,
+          numThreads, 60, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+              Thread t = new Thread(r, "HoeffdingTree split evaluation");
+              t.setDaemon(true);
+              return t;
+            }
+          });
+      // don't hold on to idle threads while waiting for more training data
+      pool.allowCoreThreadTimeOut(true);
+      m_executorPool = pool;
+    }
+
+    return m_executorPool;
+  }
+
+  /**
+   * Shuts down the executor used for evaluating candidate splits (if running)
+   */
+  protected synchronized void shutdownExecutorPool() {
+    if (m_executorPool != null) {
+      m_executorPool.shutdown();
+      m_executorPool = null;
+    }
+  }
+
   protected static double computeHoeffdingBound(double max, double confidence,
       double weight) {
     return Math.sqrt(((max * max) * Math.log(1.0 / confidence))
@@ -746,6 +946,7 @@ public class HoeffdingTree extends AbstractClassifier implements
     for (int i = 0; i < data.numInstances(); i++) {
       updateClassifier(data.instance(i));
     }
+    batchFinished();
 
     // can classifier handle the data?
     getCapabilities().testWithFail(data);
@@ -766,6 +967,18 @@ public class HoeffdingTree extends AbstractClassifier implements
       return;
     }
 
+    if (m_updateBatchSize > 1) {
+      if (m_updateBuffer == null) {
+        m_updateBuffer = new ArrayList<Instance>(m_updateBatchSize);
+      }
+      // callers may reuse the instance object
+      m_updateBuffer.add((Instance) inst.copy());
+      if (m_updateBuffer.size() >= m_updateBatchSize) {
+        flushUpdateBuffer();
+      }
+      return;
+    }
+
     if (m_root == null) {
       m_root = newLearningNode();
     }
@@ -777,6 +990,125 @@ public class HoeffdingTree extends AbstractClassifier implements
       l.m_parentNode.setChild(l.m_parentBranch, actualNode);
     }
 
+    updateLeaf(actualNode, l.m_parentNode, l.m_parentBranch, inst);
+  }
+
+  /**
+   * Incorporates any buffered training instances into the tree. Called
+   * automatically when the buffer is full, at the end of the training stream
+   * and before the model is serialized. Predictions and the textual and graph
+   * descriptions of the model do not include buffered instances, so that they
+   * never change the tree.
+   * 
+   * @throws Exception if the buffered instances could not be incorporated
+   */
+  public void flushUpdateBuffer() throws Exception {
+    if (m_updateBuffer != null && m_updateBuffer.size() > 0) {
+      List<Instance> batch = m_updateBuffer;
+      m_updateBuffer = null;
+      updateWithBatch(batch);
+    }
+  }
+
+  /**
+   * Signals the end of the training stream (for now): incorporates any
+   * buffered training instances and stops the threads used for evaluating
+   * candidate splits. They are started again if more updates follow.
+   * 
+   * @throws Exception if the buffered instances could not be incorporated
+   */
+  @Override
+  public void batchFinished() throws Exception {
+    flushUpdateBuffer();
+    shutdownExecutorPool();
+  }
+
+  /**
+   * Routes a batch of training instances to the leaves and updates each leaf
+   * with the instances that reach it, in arrival order. Since the statistics
+   * at a leaf (and any split made there) depend only on the instances that
+   * reach that leaf, the resulting tree is identical to the one obtained by
+   * calling updateClassifier() on each instance in turn. If a leaf is split
+   * or deactivated part way through its instances, the remainder are routed
+   * again from the root.
+   * 
+   * @param batch the instances to incorporate
+   * @throws Exception if a problem occurs
+   */
+  protected void updateWithBatch(List<Instance> batch) throws Exception {
+
+    if (m_root == null) {
+      m_root = newLearningNode();
+    }
+
+    Map<HNode, List<Instance>> instsAtNode = new LinkedHashMap<HNode, List<Instance>>();
+    Map<HNode, LeafNode> leafForNode = new LinkedHashMap<HNode, LeafNode>();
+    for (Instance inst : batch) {
+      LeafNode l = m_root.leafForInstance(inst, null, null);
+      HNode actualNode = l.m_theNode;
+      if (actualNode == null) {
+        actualNode = new ActiveHNode();
+        l.m_parentNode.setChild(l.m_parentBranch, actualNode);
+      }
+
+      List<Instance> insts = instsAtNode.get(actualNode);
+      if (insts == null) {
+        insts = new ArrayList<Instance>();
+        instsAtNode.put(actualNode, insts);
+        leafForNode.put(actualNode, l);
+      }
+      insts.add(inst);
+    }
+
+    List<Instance> reroute = new ArrayList<Instance>();
+    for (Map.Entry<HNode, List<Instance>> e : instsAtNode.entrySet()) {
+      HNode actualNode = e.getKey();
+      List<Instance> insts = e.getValue();
+      LeafNode l = leafForNode.get(actualNode);
+
+      for (int i = 0; i < insts.size(); i++) {
+        updateLeaf(actualNode, l.m_parentNode, l.m_parentBranch, insts.get(i));
+
+        if (i < insts.size() - 1
+            && nodeAt(l.m_parentNode, l.m_parentBranch) != actualNode) {
+          reroute.addAll(insts.subList(i + 1, insts.size()));
+          break;
+        }
+      }
+    }
+
+    if (reroute.size() > 0) {
+      updateWithBatch(reroute);
+    }
+  }
+
+  /**
+   * Returns the node currently attached at the given position in the tree
+   * 
+   * @param parent the parent node (null for the root)
+   * @param parentBranch the branch leading to the node
+   * @return the node at that position
+   */
+  protected HNode nodeAt(SplitNode parent, String parentBranch) {
+    if (parent == null) {
+      return m_root;
+    }
+    return parent.getChild(parentBranch);
+  }
+
+  /**
+   * Updates the node reached by an instance and attempts a split if the grace
+   * period has passed
+   * 
+   * @param actualNode the node reached by the instance
+   * @param parent the parent of the node
+   * @param parentBranch the branch leading to the node
+   * @param inst the training instance
+   * @throws Exception if a problem occurs
+   */
+  protected void updateLeaf(HNode actualNode, SplitNode parent,
+      String parentBranch, Instance inst) throws Exception {
+
     if (actualNode instanceof LearningNode) {
       actualNode.updateNode(inst);
 
@@ -786,7 +1118,7 @@ public class HoeffdingTree extends AbstractClassifier implements
             - ((ActiveHNode) actualNode).m_weightSeenAtLastSplitEval > m_gracePeriod) {
 
           // try a split
-          trySplit((ActiveHNode) actualNode, l.m_parentNode, l.m_parentBranch);
+          trySplit((ActiveHNode) actualNode, parent, parentBranch);
 
           ((ActiveHNode) actualNode).m_weightSeenAtLastSplitEval = totalWeight;
         }
@@ -884,7 +1216,8 @@ public class HoeffdingTree extends AbstractClassifier implements
 
     // non-pure?
     if (node.numEntriesInClassDistribution() > 1) {
-      List<SplitCandidate> bestSplits = node.getPossibleSplits(m_splitMetric);
+      List<SplitCandidate> bestSplits = node.getPossibleSplits(m_splitMetric,
+          getExecutorPool());
       Collections.sort(bestSplits);
 
       boolean doSplit = false;
@@ -980,7 +1313,14 @@ public class HoeffdingTree extends AbstractClassifier implements
       return "No model built yet!";
     }
 
-    return m_root.toString(m_printLeafModels);
+    String result = m_root.toString(m_printLeafModels);
+    List<Instance> buffer = m_updateBuffer;
+    if (buffer != null && buffer.size() > 0) {
+      result += "\n(" + buffer.size()
+          + " buffered training instances not yet incorporated)\n";
+    }
+
+    return result;
   }
 
   /**
@@ -993,6 +1333,23 @@ public class HoeffdingTree extends AbstractClassifier implements
     return RevisionUtils.extract("$Revision$");
   }
 
+  /**
+   * Incorporates any buffered training instances before the model is written
+   * 
+   * @param oos the stream to write to
+   * @throws IOException if a problem occurs
+   */
+  private void writeObject(ObjectOutputStream oos) throws IOException {
+    try {
+      flushUpdateBuffer();
+    } catch (IOException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new IOException(ex);
+    }
+    oos.defaultWriteObject();
+  }
+
   public static void main(String[] args) {
     runClassifier(new HoeffdingTree(), args);
   }
@@ -42,6 +42,7 @@ import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Option;
 import weka.core.OptionHandler;
+import weka.core.PackedDoubleArrays;
 import weka.core.PartitionGenerator;
 import weka.core.Randomizable;
 import weka.core.RevisionHandler;
@@ -122,6 +123,151 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
       + "instances into pieces (i.e. as in C4.5).";
   }
 
+  /**
+   * The serialized form of a (sub)tree. The nodes are stored in pre-order in
+   * a few primitive arrays, and turned back into Tree objects when read. Trees
+   * are only ever serialized as part of their REPTree, which is referenced
+   * from here so that the nodes can be recreated.
+   */
+  protected static class FlatTree implements Serializable {
+
+    /** for serialization */
+    private static final long serialVersionUID = 4720374913472281957L;
+
+    /** The REPTree the nodes belong to */
+    protected REPTree m_owner;
+
+    /** The header of each node (normally all the same object) */
+    protected Instances[] m_info;
+
+    /** Number of successors of each node (-1 if none) */
+    protected int[] m_numSuccessors;
+
+    /** The split attribute of each node */
+    protected int[] m_attribute;
+
+    /** The split point of each node */
+    protected double[] m_splitPoint;
+
+    /** The hold-out error of each node */
+    protected double[] m_holdOutError;
+
+    /** The proportions of each node */
+    protected PackedDoubleArrays m_prop = new PackedDoubleArrays();
+
+    /** The class probabilities of each node */
+    protected PackedDoubleArrays m_classProbs = new PackedDoubleArrays();
+
+    /** The class distribution of each node */
+    protected PackedDoubleArrays m_distribution = new PackedDoubleArrays();
+
+    /** The hold-out distribution of each node */
+    protected PackedDoubleArrays m_holdOutDist = new PackedDoubleArrays();
+
+    /** Position of the next node while flattening or rebuilding */
+    protected transient int m_pos;
+
+    /**
+     * Flattens a (sub)tree
+     * 
+     * @param owner the REPTree the nodes belong to
+     * @param root the root of the (sub)tree
+     */
+    protected FlatTree(REPTree owner, Tree root) {
+      m_owner = owner;
+      int numNodes = countNodes(root);
+      m_info = new Instances[numNodes];
+      m_numSuccessors = new int[numNodes];
+      m_attribute = new int[numNodes];
+      m_splitPoint = new double[numNodes];
+      m_holdOutError = new double[numNodes];
+      m_pos = 0;
+      flatten(root);
+      m_prop.trim();
+      m_classProbs.trim();
+      m_distribution.trim();
+      m_holdOutDist.trim();
+    }
+
+    /**
+     * Counts the nodes in a (sub)tree
+     * 
+     * @param node the root of the (sub)tree
+     * @return the number of nodes
+     */
+    protected static int countNodes(Tree node) {
+      int count = 1;
+      if (node.m_Successors != null) {
+        for (Tree successor : node.m_Successors) {
+          count += countNodes(successor);
+        }
+      }
+
+      return count;
+    }
+
+    /**
+     * Adds a node and its descendants
+     * 
+     * @param node the node
+     */
+    protected void flatten(Tree node) {
+      int pos = m_pos++;
+      m_info[pos] = node.m_Info;
+      m_attribute[pos] = node.m_Attribute;
+      m_splitPoint[pos] = node.m_SplitPoint;
+      m_holdOutError[pos] = node.m_HoldOutError;
+      m_prop.add(node.m_Prop);
+      m_classProbs.add(node.m_ClassProbs);
+      m_distribution.add(node.m_Distribution);
+      m_holdOutDist.add(node.m_HoldOutDist);
+      if (node.m_Successors == null) {
+        m_numSuccessors[pos] = -1;
+      } else {
+        m_numSuccessors[pos] = node.m_Successors.length;
+        for (Tree successor : node.m_Successors) {
+          flatten(successor);
+        }
+      }
+    }
+
+    /**
+     * Rebuilds a node and its descendants
+     * 
+     * @return the node
+     */
+    protected Tree rebuild() {
+      int pos = m_pos++;
+      Tree node = m_owner.new Tree();
+      node.m_Info = m_info[pos];
+      node.m_Attribute = m_attribute[pos];
+      node.m_SplitPoint = m_splitPoint[pos];
+      node.m_HoldOutError = m_holdOutError[pos];
+      node.m_Prop = m_prop.get(pos);
+      node.m_ClassProbs = m_classProbs.get(pos);
+      node.m_Distribution = m_distribution.get(pos);
+      node.m_HoldOutDist = m_holdOutDist.get(pos);
+      if (m_numSuccessors[pos] >= 0) {
+        node.m_Successors = new Tree[m_numSuccessors[pos]];
+        for (int i = 0; i < node.m_Successors.length; i++) {
+          node.m_Successors[i] = rebuild();
+        }
+      }
+
+      return node;
+    }
+
+    /**
+     * Turns the deserialized arrays back into a tree
+     * 
+     * @return the root of the tree
+     */
+    protected Object readResolve() {
+      m_pos = 0;
+      return rebuild();
+    }
+  }
+
   /** An inner class for building and storing the tree structure */
   protected class Tree implements Serializable, RevisionHandler {
 
@@ -168,6 +314,16 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
      */
     protected double m_HoldOutError = 0;
 
+    /**
+     * Serializes the subtree rooted at this node in flattened form, which is
+     * much faster to write and read than the graph of node objects.
+     * 
+     * @return the flattened subtree
+     */
+    protected Object writeReplace() {
+      return new FlatTree(REPTree.this, this);
+    }
+
     /**
      * Computes class distribution of an instance using the tree.
      * 
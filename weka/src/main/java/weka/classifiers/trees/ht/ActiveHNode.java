@@ -26,6 +26,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import weka.core.Attribute;
 import weka.core.Instance;
@@ -84,13 +87,7 @@ public class ActiveHNode extends LeafNode implements LearningNode, Serializable
   public List<SplitCandidate> getPossibleSplits(SplitMetric splitMetric) {
 
     List<SplitCandidate> splits = new ArrayList<SplitCandidate>();
-
-    // null split
-    List<Map<String, WeightMass>> nullDist = new ArrayList<Map<String, WeightMass>>();
-    nullDist.add(m_classDistribution);
-    SplitCandidate nullSplit = new SplitCandidate(null, nullDist,
-        splitMetric.evaluateSplit(m_classDistribution, nullDist));
-    splits.add(nullSplit);
+    splits.add(nullSplit(splitMetric));
 
     for (Map.Entry<String, ConditionalSufficientStats> e : m_nodeStats
         .entrySet()) {
@@ -106,4 +103,63 @@ public class ActiveHNode extends LeafNode implements LearningNode, Serializable
 
     return splits;
   }
+
+  /**
+   * Returns a list of split candidates. The best split for each attribute is
+   * evaluated as a separate task using the supplied executor. Candidates are
+   * returned in the same order as {@link #getPossibleSplits(SplitMetric)}, so
+   * the split chosen is the same as in the sequential case.
+   * 
+   * @param splitMetric the splitting metric to use
+   * @param executor the executor to evaluate attributes with (may be null)
+   * @return a list of split candidates
+   * @throws Exception if a problem occurs while evaluating a split
+   */
+  public List<SplitCandidate> getPossibleSplits(final SplitMetric splitMetric,
+      ExecutorService executor) throws Exception {
+
+    if (executor == null || m_nodeStats.size() < 2) {
+      return getPossibleSplits(splitMetric);
+    }
+
+    List<Future<SplitCandidate>> results = new ArrayList<Future<SplitCandidate>>();
+    for (Map.Entry<String, ConditionalSufficientStats> e : m_nodeStats
+        .entrySet()) {
+      final ConditionalSufficientStats stat = e.getValue();
+      final String attName = e.getKey();
+
+      results.add(executor.submit(new Callable<SplitCandidate>() {
+        @Override
+        public SplitCandidate call() throws Exception {
+          return stat.bestSplit(splitMetric, m_classDistribution, attName);
+        }
+      }));
+    }
+
+    List<SplitCandidate> splits = new ArrayList<SplitCandidate>();
+    splits.add(nullSplit(splitMetric));
+    for (Future<SplitCandidate> f : results) {
+      SplitCandidate splitCandidate = f.get();
+
+      if (splitCandidate != null) {
+        splits.add(splitCandidate);
+      }
+    }
+
+    return splits;
+  }
+
+  /**
+   * Returns the candidate for not splitting at all
+   * 
+   * @param splitMetric the splitting metric to use
+   * @return the null split candidate
+   */
+  protected SplitCandidate nullSplit(SplitMetric splitMetric) {
+    List<Map<String, WeightMass>> nullDist = new ArrayList<Map<String, WeightMass>>();
+    nullDist.add(m_classDistribution);
+
+    return new SplitCandidate(null, nullDist, splitMetric.evaluateSplit(
+        m_classDistribution, nullDist));
+  }
 }
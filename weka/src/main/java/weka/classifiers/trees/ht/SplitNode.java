@@ -92,6 +92,16 @@ public class SplitNode extends HNode {
     m_children.put(branch, child);
   }
 
+  /**
+   * Get the child for a branch
+   * 
+   * @param branch the branch to get the child for
+   * @return the child node (or null if there is no child for the branch)
+   */
+  public HNode getChild(String branch) {
+    return m_children.get(branch);
+  }
+
   @Override
   public LeafNode leafForInstance(Instance inst, SplitNode parent,
     String parentBranch) {
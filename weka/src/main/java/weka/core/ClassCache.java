@@ -33,8 +33,6 @@ import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.jar.Attributes;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 
 /**
@@ -251,11 +249,19 @@ public class ClassCache implements RevisionHandler {
     }
 
     Attributes atts;
-    String cp;
-    String[] parts;
 
     atts = manifest.getMainAttributes();
-    cp = atts.getValue("Class-Path");
+    initFromManifestClassPath(atts.getValue("Class-Path"));
+  }
+
+  /**
+   * Adds the jars listed in the "Class-Path" attribute of a jar's manifest.
+   * 
+   * @param cp the value of the "Class-Path" attribute (may be null)
+   */
+  protected void initFromManifestClassPath(String cp) {
+    String[] parts;
+
     if (cp == null) {
       return;
     }
@@ -272,14 +278,14 @@ public class ClassCache implements RevisionHandler {
   }
 
   /**
-   * Fills the class cache with classes from the specified jar.
+   * Fills the class cache with classes from the specified jar. The contents of
+   * the jar are taken from the persistent ClassCacheIndex if the jar has not
+   * changed since it was last scanned.
    * 
    * @param file the jar to inspect
    */
   protected void initFromJar(File file) {
-    JarFile jar;
-    JarEntry entry;
-    Enumeration<JarEntry> enm;
+    ClassCacheIndex.JarContents contents;
 
     if (VERBOSE) {
       System.out.println("Analyzing jar: " + file);
@@ -291,15 +297,11 @@ public class ClassCache implements RevisionHandler {
     }
 
     try {
-      jar = new JarFile(file);
-      enm = jar.entries();
-      while (enm.hasMoreElements()) {
-        entry = enm.nextElement();
-        if (entry.getName().endsWith(".class")) {
-          add(entry.getName());
-        }
+      contents = ClassCacheIndex.getSingleton().getContents(file);
+      for (String classname : contents.getClasses()) {
+        add(classname);
       }
-      initFromManifest(jar.getManifest());
+      initFromManifestClassPath(contents.getManifestClassPath());
     } catch (Exception e) {
       e.printStackTrace();
     }
@@ -401,6 +403,9 @@ public class ClassCache implements RevisionHandler {
     for (String cl : classes) {
       add(cl);
     }
+
+    // store any newly scanned jars for the next JVM
+    ClassCacheIndex.getSingleton().saveIfChanged();
   }
 
   /**
@@ -0,0 +1,391 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * ClassCacheIndex.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * A persistent index of the contents of jar files, used by ClassCache and the
+ * package class loaders so that jar files do not have to be opened and
+ * scanned every time the JVM starts. The entry for a jar is keyed on its
+ * absolute path and is only used while the jar's size and last modification
+ * time are unchanged - otherwise the jar is scanned again and the entry
+ * replaced. The index is stored in WEKA_HOME and can be disabled by setting
+ * the system property weka.core.classIndex.disable to true.
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public class ClassCacheIndex implements RevisionHandler {
+
+  /** The name of the file (in WEKA_HOME) that the index is stored in */
+  public static final String INDEX_FILE_NAME = "classIndex.idx";
+
+  /** System property that disables the persistent index */
+  public static final String DISABLE_PROPERTY = "weka.core.classIndex.disable";
+
+  /** Version of the index file format */
+  protected static final int INDEX_VERSION = 1;
+
+  /**
+   * The indexed contents of a single jar file
+   */
+  public static class JarContents {
+
+    /** Size of the jar when it was indexed */
+    protected long m_length;
+
+    /** Modification time of the jar when it was indexed */
+    protected long m_lastModified;
+
+    /** The (cleaned up) names of the classes in the jar */
+    protected String[] m_classes;
+
+    /** The names of non-class, non-directory entries outside of META-INF */
+    protected String[] m_resources;
+
+    /** The Class-Path attribute of the jar's manifest (may be null) */
+    protected String m_manifestClassPath;
+
+    /**
+     * Get the (cleaned up) names of the classes in the jar
+     *
+     * @return the class names
+     */
+    public String[] getClasses() {
+      return m_classes;
+    }
+
+    /**
+     * Get the names of the resources (non-class, non-directory entries
+     * outside of META-INF) in the jar
+     *
+     * @return the resource names
+     */
+    public String[] getResources() {
+      return m_resources;
+    }
+
+    /**
+     * Get the Class-Path attribute from the jar's manifest
+     *
+     * @return the manifest class path, or null if there is none
+     */
+    public String getManifestClassPath() {
+      return m_manifestClassPath;
+    }
+  }
+
+  /** The singleton index */
+  private static ClassCacheIndex s_index;
+
+  /** The file that the index is stored in (null if not persisted) */
+  protected File m_indexFile;
+
+  /** The indexed jars, keyed by absolute path */
+  protected Map<String, JarContents> m_jars =
+    new HashMap<String, JarContents>();
+
+  /** True if the index has changed since it was loaded */
+  protected boolean m_changed;
+
+  /**
+   * Constructor
+   *
+   * @param indexFile the file to load the index from and store it to (may be
+   *          null for a non-persistent index)
+   */
+  public ClassCacheIndex(File indexFile) {
+    m_indexFile = indexFile;
+    load();
+  }
+
+  /**
+   * Get the singleton index
+   *
+   * @return the index
+   */
+  public static synchronized ClassCacheIndex getSingleton() {
+    if (s_index == null) {
+      File indexFile = null;
+      if (!Boolean.getBoolean(DISABLE_PROPERTY)) {
+        // resolve WEKA_HOME in the same way as WekaPackageManager, but without
+        // initializing the package manager (which command line runs of core
+        // schemes never need)
+        String wekaHome =
+          Environment.getSystemWide().getVariableValue("WEKA_HOME");
+        if (wekaHome == null) {
+          wekaHome =
+            System.getProperty("user.home") + File.separator + "wekafiles";
+        }
+        indexFile = new File(wekaHome, INDEX_FILE_NAME);
+      }
+      s_index = new ClassCacheIndex(indexFile);
+    }
+
+    return s_index;
+  }
+
+  /**
+   * Loads the index from disk. A missing, unreadable or out of date index is
+   * simply treated as empty.
+   */
+  protected synchronized void load() {
+    if (m_indexFile == null || !m_indexFile.exists()) {
+      return;
+    }
+
+    DataInputStream in = null;
+    try {
+      in =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(
+          m_indexFile), 64 * 1024));
+      if (in.readInt() != INDEX_VERSION) {
+        m_changed = true;
+        return;
+      }
+      int numJars = in.readInt();
+      Map<String, JarContents> jars = new HashMap<String, JarContents>();
+      for (int i = 0; i < numJars; i++) {
+        String path = in.readUTF();
+        JarContents contents = new JarContents();
+        contents.m_length = in.readLong();
+        contents.m_lastModified = in.readLong();
+        contents.m_manifestClassPath = in.readBoolean() ? in.readUTF() : null;
+        contents.m_classes = readStrings(in);
+        contents.m_resources = readStrings(in);
+        jars.put(path, contents);
+      }
+      m_jars = jars;
+    } catch (Exception ex) {
+      m_changed = true;
+    } finally {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException e) {
+          // ignore
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads a length-prefixed array of strings
+   *
+   * @param in the stream to read from
+   * @return the strings
+   * @throws IOException if a problem occurs
+   */
+  protected static String[] readStrings(DataInputStream in)
+    throws IOException {
+    String[] result = new String[in.readInt()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = in.readUTF();
+    }
+
+    return result;
+  }
+
+  /**
+   * Writes a length-prefixed array of strings
+   *
+   * @param out the stream to write to
+   * @param strings the strings to write
+   * @throws IOException if a problem occurs
+   */
+  protected static void writeStrings(DataOutputStream out, String[] strings)
+    throws IOException {
+    out.writeInt(strings.length);
+    for (String s : strings) {
+      out.writeUTF(s);
+    }
+  }
+
+  /**
+   * Writes the index to disk if it has changed since it was loaded. Entries
+   * for jars that no longer exist are dropped. The index is written to a
+   * temporary file first so that other JVMs never see a partially written
+   * index.
+   */
+  public synchronized void saveIfChanged() {
+    if (m_indexFile == null || !m_changed) {
+      return;
+    }
+
+    Iterator<String> i = m_jars.keySet().iterator();
+    while (i.hasNext()) {
+      if (!new File(i.next()).exists()) {
+        i.remove();
+      }
+    }
+
+    File parent = m_indexFile.getParentFile();
+    if (parent == null || !parent.isDirectory()) {
+      return;
+    }
+
+    File tmp = null;
+    DataOutputStream out = null;
+    try {
+      tmp = File.createTempFile(INDEX_FILE_NAME, ".tmp", parent);
+      out =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+          tmp), 64 * 1024));
+      out.writeInt(INDEX_VERSION);
+      out.writeInt(m_jars.size());
+      for (Map.Entry<String, JarContents> e : m_jars.entrySet()) {
+        JarContents contents = e.getValue();
+        out.writeUTF(e.getKey());
+        out.writeLong(contents.m_length);
+        out.writeLong(contents.m_lastModified);
+        out.writeBoolean(contents.m_manifestClassPath != null);
+        if (contents.m_manifestClassPath != null) {
+          out.writeUTF(contents.m_manifestClassPath);
+        }
+        writeStrings(out, contents.m_classes);
+        writeStrings(out, contents.m_resources);
+      }
+      out.close();
+      out = null;
+      if (!tmp.renameTo(m_indexFile)) {
+        // e.g. Windows won't rename over an existing file
+        m_indexFile.delete();
+        if (!tmp.renameTo(m_indexFile)) {
+          tmp.delete();
+          return;
+        }
+      }
+      m_changed = false;
+    } catch (IOException ex) {
+      if (tmp != null) {
+        tmp.delete();
+      }
+    } finally {
+      if (out != null) {
+        try {
+          out.close();
+        } catch (IOException e) {
+          // ignore
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the contents of a jar file, scanning the jar only if it is not in the
+   * index or has changed since it was indexed.
+   *
+   * @param jar the jar file
+   * @return the contents of the jar
+   * @throws IOException if the jar needs to be scanned and can't be read
+   */
+  public JarContents getContents(File jar) throws IOException {
+    String key = jar.getAbsolutePath();
+    long length = jar.length();
+    long lastModified = jar.lastModified();
+
+    synchronized (this) {
+      JarContents contents = m_jars.get(key);
+      if (contents != null && contents.m_length == length
+        && contents.m_lastModified == lastModified) {
+        return contents;
+      }
+    }
+
+    JarContents contents = scan(jar);
+    contents.m_length = length;
+    contents.m_lastModified = lastModified;
+    synchronized (this) {
+      m_jars.put(key, contents);
+      m_changed = true;
+    }
+
+    return contents;
+  }
+
+  /**
+   * Scans a jar file
+   *
+   * @param file the jar file to scan
+   * @return the contents of the jar
+   * @throws IOException if the jar can't be read
+   */
+  protected static JarContents scan(File file) throws IOException {
+    List<String> classes = new ArrayList<String>();
+    List<String> resources = new ArrayList<String>();
+    JarContents contents = new JarContents();
+
+    JarFile jar = new JarFile(file);
+    try {
+      Enumeration<JarEntry> enm = jar.entries();
+      while (enm.hasMoreElements()) {
+        JarEntry entry = enm.nextElement();
+        if (entry.getName().endsWith(".class")) {
+          classes.add(ClassCache.cleanUp(entry.getName()));
+        } else if (!entry.isDirectory()
+          && !entry.getName().contains("META-INF")) {
+          resources.add(entry.getName());
+        }
+      }
+
+      Manifest manifest = jar.getManifest();
+      if (manifest != null) {
+        Attributes atts = manifest.getMainAttributes();
+        contents.m_manifestClassPath = atts.getValue("Class-Path");
+      }
+    } finally {
+      jar.close();
+    }
+
+    contents.m_classes = classes.toArray(new String[classes.size()]);
+    contents.m_resources = resources.toArray(new String[resources.size()]);
+
+    return contents;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
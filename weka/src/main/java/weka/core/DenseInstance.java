@@ -58,10 +58,10 @@ import java.util.Enumeration;
  * <p>
  * 
  * All methods that change an instance's attribute values are safe, ie. a change
- * of an instance's attribute values does not affect any other instances. All
- * methods that change an instance's attribute values clone the attribute value
- * vector before it is changed. If your application heavily modifies instance
- * values, it may be faster to create a new instance from scratch.
+ * of an instance's attribute values does not affect any other instances.
+ * Copies of an instance share the attribute value vector with the original
+ * (copy-on-write): the first change to an instance's values clones the vector,
+ * after which further changes to that instance are made in place.
  * 
  * @author Eibe Frank (eibe@cs.waikato.ac.nz)
  * @version $Revision$
@@ -71,6 +71,13 @@ public class DenseInstance extends AbstractInstance {
   /** for serialization */
   static final long serialVersionUID = 1482635194499365122L;
 
+  /**
+   * True if the attribute value vector is known not to be shared with any
+   * other instance (or with the creator of the instance), so that it can be
+   * changed in place
+   */
+  protected transient boolean m_AttValuesOwned;
+
   /**
    * Constructor that copies the attribute values and the weight from the given
    * instance. It does NOT perform a deep copy of the attribute values if the
@@ -87,8 +94,10 @@ public class DenseInstance extends AbstractInstance {
 
     if (instance instanceof DenseInstance) {
       m_AttValues = ((DenseInstance) instance).m_AttValues;
+      ((DenseInstance) instance).m_AttValuesOwned = false;
     } else {
       m_AttValues = instance.toDoubleArray();
+      m_AttValuesOwned = true;
     }
     m_Weight = instance.weight();
     m_Dataset = null;
@@ -125,6 +134,7 @@ public class DenseInstance extends AbstractInstance {
     for (int i = 0; i < m_AttValues.length; i++) {
       m_AttValues[i] = Utils.missingValue();
     }
+    m_AttValuesOwned = true;
     m_Weight = 1;
     m_Dataset = null;
   }
@@ -223,7 +233,7 @@ public class DenseInstance extends AbstractInstance {
   /**
    * Replaces all missing values in the instance with the values contained in
    * the given array. A deep copy of the vector of attribute values is performed
-   * before the values are replaced.
+   * before the values are replaced if it is shared with other instances.
    * 
    * @param array containing the means and modes
    * @throws IllegalArgumentException if numbers of attributes are unequal
@@ -245,7 +255,7 @@ public class DenseInstance extends AbstractInstance {
   /**
    * Sets a specific value in the instance to the given value (internal
    * floating-point format). Performs a deep copy of the vector of attribute
-   * values before the value is set.
+   * values before the value is set if it is shared with other instances.
    * 
    * @param attIndex the attribute's index
    * @param value the new attribute value (If the corresponding attribute is
@@ -262,7 +272,8 @@ public class DenseInstance extends AbstractInstance {
   /**
    * Sets a specific value in the instance to the given value (internal
    * floating-point format). Performs a deep copy of the vector of attribute
-   * values before the value is set. Does exactly the same thing as setValue().
+   * values before the value is set if it is shared with other instances. Does
+   * exactly the same thing as setValue().
    * 
    * @param indexOfIndex the index of the attribute's index
    * @param value the new attribute value (If the corresponding attribute is
@@ -363,6 +374,7 @@ public class DenseInstance extends AbstractInstance {
         m_AttValues.length - (position + 1));
     }
     m_AttValues = newValues;
+    m_AttValuesOwned = true;
   }
 
   /**
@@ -381,15 +393,19 @@ public class DenseInstance extends AbstractInstance {
     System.arraycopy(m_AttValues, position, newValues, position + 1,
       m_AttValues.length - position);
     m_AttValues = newValues;
+    m_AttValuesOwned = true;
   }
 
   /**
    * Clones the attribute vector of the instance and overwrites it with the
-   * clone.
+   * clone, unless the instance is the only owner of the vector.
    */
   private void freshAttributeVector() {
 
-    m_AttValues = toDoubleArray();
+    if (!m_AttValuesOwned) {
+      m_AttValues = toDoubleArray();
+      m_AttValuesOwned = true;
+    }
   }
 
   /**
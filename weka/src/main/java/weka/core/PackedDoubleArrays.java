@@ -0,0 +1,131 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    PackedDoubleArrays.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Stores a sequence of (possibly null) double arrays end to end in a single
+ * array. Used for the serialized form of models that would otherwise consist
+ * of a large number of small objects (e.g. the nodes of a tree), because a
+ * handful of primitive arrays can be written and read far faster by Java
+ * serialization than the equivalent object graph.
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public class PackedDoubleArrays implements Serializable, RevisionHandler {
+
+  /** For serialization */
+  private static final long serialVersionUID = -2410447021947618372L;
+
+  /** The values of all the arrays */
+  protected double[] m_values = new double[16];
+
+  /** The length of each array (-1 for a null array) */
+  protected int[] m_lengths = new int[16];
+
+  /** Number of arrays stored */
+  protected int m_numArrays;
+
+  /** Number of values stored */
+  protected int m_numValues;
+
+  /** Start of each array in m_values (computed on demand) */
+  protected transient int[] m_offsets;
+
+  /**
+   * Appends an array
+   *
+   * @param array the array to append (may be null)
+   */
+  public void add(double[] array) {
+    if (m_numArrays == m_lengths.length) {
+      m_lengths = Arrays.copyOf(m_lengths, m_lengths.length * 2);
+    }
+    if (array == null) {
+      m_lengths[m_numArrays++] = -1;
+      return;
+    }
+    if (m_numValues + array.length > m_values.length) {
+      m_values =
+        Arrays.copyOf(m_values,
+          Math.max(m_values.length * 2, m_numValues + array.length));
+    }
+    System.arraycopy(array, 0, m_values, m_numValues, array.length);
+    m_numValues += array.length;
+    m_lengths[m_numArrays++] = array.length;
+    m_offsets = null;
+  }
+
+  /**
+   * Releases unused capacity. Should be called once all arrays have been
+   * added.
+   */
+  public void trim() {
+    m_values = Arrays.copyOf(m_values, m_numValues);
+    m_lengths = Arrays.copyOf(m_lengths, m_numArrays);
+  }
+
+  /**
+   * Get the number of arrays stored
+   *
+   * @return the number of arrays
+   */
+  public int size() {
+    return m_numArrays;
+  }
+
+  /**
+   * Get a copy of one of the stored arrays
+   *
+   * @param index the index of the array
+   * @return a copy of the array (or null if a null array was stored)
+   */
+  public double[] get(int index) {
+    if (m_offsets == null) {
+      m_offsets = new int[m_numArrays];
+      int offset = 0;
+      for (int i = 0; i < m_numArrays; i++) {
+        m_offsets[i] = offset;
+        offset += Math.max(m_lengths[i], 0);
+      }
+    }
+    if (m_lengths[index] < 0) {
+      return null;
+    }
+
+    return Arrays.copyOfRange(m_values, m_offsets[index], m_offsets[index]
+      + m_lengths[index]);
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -0,0 +1,502 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    QuantileSketch.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A mergeable sketch of the distribution of a numeric variable, based on the
+ * merging variant of Ted Dunning's t-digest. Values (with weights) are added
+ * one at a time in a single pass, the sketch uses memory bounded by its
+ * compression parameter rather than the number of values, and sketches built
+ * on separate parts of the data (e.g. in different threads) can be aggregated
+ * into one. Quantile estimates are most accurate in the tails; the
+ * relative error near the median is roughly 1/compression. When fewer
+ * distinct values than the compression are seen, the sketch is exact.
+ * <p>
+ * For more information, see<br/>
+ * <br/>
+ * Ted Dunning, Otmar Ertl (2019). Computing extremely accurate quantiles using
+ * t-digests. arXiv:1902.04023.
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public class QuantileSketch implements Serializable, RevisionHandler,
+  Aggregateable<QuantileSketch> {
+
+  /** for serialization */
+  private static final long serialVersionUID = -2878524185203463941L;
+
+  /** The default compression */
+  public static final double DEFAULT_COMPRESSION = 100;
+
+  /** The compression - larger values give more accurate estimates */
+  protected double m_compression;
+
+  /** Means of the merged centroids, in ascending order */
+  protected double[] m_means;
+
+  /** Weights of the merged centroids */
+  protected double[] m_weights;
+
+  /** True for merged centroids that hold a single distinct value */
+  protected boolean[] m_singleValued;
+
+  /** Number of merged centroids */
+  protected int m_numCentroids;
+
+  /** Values added since the last merge */
+  protected double[] m_bufferMeans;
+
+  /** Weights of the values added since the last merge */
+  protected double[] m_bufferWeights;
+
+  /** Whether the entries in the buffer hold a single distinct value */
+  protected boolean[] m_bufferSingleValued;
+
+  /** Number of values in the buffer */
+  protected int m_numBuffered;
+
+  /** Total weight of all values added */
+  protected double m_totalWeight;
+
+  /** Smallest value added */
+  protected double m_min = Double.POSITIVE_INFINITY;
+
+  /** Largest value added */
+  protected double m_max = Double.NEGATIVE_INFINITY;
+
+  /**
+   * Constructs a sketch with the default compression
+   */
+  public QuantileSketch() {
+    this(DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * Constructs a sketch
+   *
+   * @param compression the compression to use (at least 10). The number of
+   *          centroids kept is proportional to this value.
+   */
+  public QuantileSketch(double compression) {
+    m_compression = Math.max(10, compression);
+    int size = (int) Math.ceil(2 * m_compression) + 10;
+    m_means = new double[size];
+    m_weights = new double[size];
+    m_singleValued = new boolean[size];
+    m_bufferMeans = new double[5 * size];
+    m_bufferWeights = new double[5 * size];
+    m_bufferSingleValued = new boolean[5 * size];
+  }
+
+  /**
+   * Get the compression of this sketch
+   *
+   * @return the compression
+   */
+  public double getCompression() {
+    return m_compression;
+  }
+
+  /**
+   * Add a value with weight 1. Missing values are ignored.
+   *
+   * @param x the value to add
+   */
+  public void add(double x) {
+    add(x, 1.0);
+  }
+
+  /**
+   * Add a value. Missing values and values with non-positive weight are
+   * ignored.
+   *
+   * @param x the value to add
+   * @param w the weight of the value
+   */
+  public void add(double x, double w) {
+    if (Utils.isMissingValue(x) || !(w > 0)) {
+      return;
+    }
+
+    if (m_numBuffered == m_bufferMeans.length) {
+      compress();
+    }
+    m_bufferMeans[m_numBuffered] = x;
+    m_bufferWeights[m_numBuffered] = w;
+    m_bufferSingleValued[m_numBuffered] = true;
+    m_numBuffered++;
+    m_totalWeight += w;
+    if (x < m_min) {
+      m_min = x;
+    }
+    if (x > m_max) {
+      m_max = x;
+    }
+  }
+
+  /**
+   * Adds the values of an attribute in a set of instances (weighted by the
+   * instance weights) to the sketch
+   *
+   * @param data the instances
+   * @param attIndex the index of the (numeric) attribute
+   */
+  public void add(Instances data, int attIndex) {
+    for (int i = 0; i < data.numInstances(); i++) {
+      Instance inst = data.instance(i);
+      add(inst.value(attIndex), inst.weight());
+    }
+  }
+
+  /**
+   * Merges another sketch into this one. The contents of the other sketch are
+   * not changed.
+   *
+   * @param toAggregate the sketch to merge into this one
+   * @return this sketch
+   */
+  @Override
+  public QuantileSketch aggregate(QuantileSketch toAggregate) {
+    toAggregate.compress();
+
+    // take a copy of the other sketch's centroids (it may be this sketch),
+    // and account for its weight before merging, as compress() relies on the
+    // total weight covering everything in the buffer
+    int numCentroids = toAggregate.m_numCentroids;
+    double[] means = Arrays.copyOf(toAggregate.m_means, numCentroids);
+    double[] weights = Arrays.copyOf(toAggregate.m_weights, numCentroids);
+    boolean[] singleValued =
+      Arrays.copyOf(toAggregate.m_singleValued, numCentroids);
+    m_totalWeight += toAggregate.m_totalWeight;
+    m_min = Math.min(m_min, toAggregate.m_min);
+    m_max = Math.max(m_max, toAggregate.m_max);
+
+    for (int i = 0; i < numCentroids; i++) {
+      if (m_numBuffered == m_bufferMeans.length) {
+        compress();
+      }
+      m_bufferMeans[m_numBuffered] = means[i];
+      m_bufferWeights[m_numBuffered] = weights[i];
+      m_bufferSingleValued[m_numBuffered] = singleValued[i];
+      m_numBuffered++;
+    }
+
+    return this;
+  }
+
+  /**
+   * Completes aggregation by merging any buffered values
+   */
+  @Override
+  public void finalizeAggregation() {
+    compress();
+  }
+
+  /**
+   * The scale function that limits the size of centroids. Centroids near the
+   * tails are kept small, giving accurate estimates of extreme quantiles.
+   *
+   * @param q a quantile
+   * @return the scaled value
+   */
+  protected double scale(double q) {
+    return m_compression * Math.asin(2 * q - 1) / (2 * Math.PI);
+  }
+
+  /**
+   * Merges buffered values into the centroids
+   */
+  protected synchronized void compress() {
+    if (m_numBuffered == 0) {
+      return;
+    }
+
+    int n = m_numCentroids + m_numBuffered;
+    double[] means = new double[n];
+    double[] weights = new double[n];
+    boolean[] single = new boolean[n];
+    System.arraycopy(m_means, 0, means, 0, m_numCentroids);
+    System.arraycopy(m_weights, 0, weights, 0, m_numCentroids);
+    System.arraycopy(m_singleValued, 0, single, 0, m_numCentroids);
+    System.arraycopy(m_bufferMeans, 0, means, m_numCentroids, m_numBuffered);
+    System.arraycopy(m_bufferWeights, 0, weights, m_numCentroids,
+      m_numBuffered);
+    System.arraycopy(m_bufferSingleValued, 0, single, m_numCentroids,
+      m_numBuffered);
+    m_numBuffered = 0;
+
+    int[] order = Utils.sort(means);
+
+    int count = 0;
+    double weightSoFar = 0;
+    double currentMean = means[order[0]];
+    double currentWeight = weights[order[0]];
+    boolean currentSingle = single[order[0]];
+    double scaleLeft = scale(0);
+    for (int i = 1; i < n; i++) {
+      double mean = means[order[i]];
+      double weight = weights[order[i]];
+      double proposed = (weightSoFar + currentWeight + weight) / m_totalWeight;
+      if (mean == currentMean && currentSingle && single[order[i]]) {
+        // repeated values always share a centroid
+        currentWeight += weight;
+      } else if (scale(Math.min(1, proposed)) - scaleLeft <= 1) {
+        currentWeight += weight;
+        currentMean += (mean - currentMean) * weight / currentWeight;
+        currentSingle = false;
+      } else {
+        count = emit(count, currentMean, currentWeight, currentSingle);
+        weightSoFar += currentWeight;
+        scaleLeft = scale(Math.min(1, weightSoFar / m_totalWeight));
+        currentMean = mean;
+        currentWeight = weight;
+        currentSingle = single[order[i]];
+      }
+    }
+    m_numCentroids = emit(count, currentMean, currentWeight, currentSingle);
+  }
+
+  /**
+   * Stores a merged centroid
+   *
+   * @param index the index to store it at
+   * @param mean the mean of the centroid
+   * @param weight the weight of the centroid
+   * @param single true if the centroid holds a single distinct value
+   * @return the index for the next centroid
+   */
+  protected int emit(int index, double mean, double weight, boolean single) {
+    if (index == m_means.length) {
+      m_means = Arrays.copyOf(m_means, index * 2);
+      m_weights = Arrays.copyOf(m_weights, index * 2);
+      m_singleValued = Arrays.copyOf(m_singleValued, index * 2);
+    }
+    m_means[index] = mean;
+    m_weights[index] = weight;
+    m_singleValued[index] = single;
+
+    return index + 1;
+  }
+
+  /**
+   * Get the total weight of the values added
+   *
+   * @return the total weight
+   */
+  public double getTotalWeight() {
+    return m_totalWeight;
+  }
+
+  /**
+   * Get the smallest value added
+   *
+   * @return the smallest value, or a missing value if the sketch is empty
+   */
+  public double getMin() {
+    return m_totalWeight > 0 ? m_min : Utils.missingValue();
+  }
+
+  /**
+   * Get the largest value added
+   *
+   * @return the largest value, or a missing value if the sketch is empty
+   */
+  public double getMax() {
+    return m_totalWeight > 0 ? m_max : Utils.missingValue();
+  }
+
+  /**
+   * Get the number of centroids held (after merging any buffered values)
+   *
+   * @return the number of centroids
+   */
+  public int numCentroids() {
+    compress();
+    return m_numCentroids;
+  }
+
+  /**
+   * Computes the knots of the piecewise linear approximation to the inverse of
+   * the cumulative distribution: pairs of (cumulative weight, value). A
+   * centroid that holds a single distinct value covers its whole weight with
+   * that value; other centroids are placed at the middle of their weight. The
+   * smallest and largest values are the end points.
+   *
+   * @return the positions (first row) and values (second row) of the knots
+   */
+  protected double[][] knots() {
+    compress();
+    double[] positions = new double[2 * m_numCentroids + 2];
+    double[] values = new double[positions.length];
+    int k = 0;
+    positions[k] = 0;
+    values[k++] = m_min;
+    double position = 0;
+    for (int i = 0; i < m_numCentroids; i++) {
+      if (m_singleValued[i]) {
+        positions[k] = position;
+        values[k++] = m_means[i];
+        positions[k] = position + m_weights[i];
+        values[k++] = m_means[i];
+      } else {
+        positions[k] = position + m_weights[i] / 2;
+        values[k++] = m_means[i];
+      }
+      position += m_weights[i];
+    }
+    positions[k] = m_totalWeight;
+    values[k++] = m_max;
+
+    return new double[][] { Arrays.copyOf(positions, k),
+      Arrays.copyOf(values, k) };
+  }
+
+  /**
+   * Estimates a quantile of the distribution. Between centroids the
+   * distribution is treated as piecewise linear.
+   *
+   * @param q the quantile to estimate (between 0 and 1)
+   * @return the estimated quantile, or a missing value if the sketch is empty
+   */
+  public double quantile(double q) {
+    if (q < 0 || q > 1) {
+      throw new IllegalArgumentException("Quantile must be between 0 and 1");
+    }
+    compress();
+    if (m_numCentroids == 0) {
+      return Utils.missingValue();
+    }
+
+    double[][] knots = knots();
+    double[] positions = knots[0];
+    double[] values = knots[1];
+    double index = q * m_totalWeight;
+    for (int i = 1; i < positions.length; i++) {
+      if (index <= positions[i]) {
+        return interpolate(index, positions[i - 1], values[i - 1],
+          positions[i], values[i]);
+      }
+    }
+
+    return m_max;
+  }
+
+  /**
+   * Estimates the cumulative distribution function
+   *
+   * @param x the value to evaluate the function at
+   * @return the estimated fraction of the total weight that is at or below x,
+   *         or a missing value if the sketch is empty
+   */
+  public double cdf(double x) {
+    compress();
+    if (m_numCentroids == 0) {
+      return Utils.missingValue();
+    }
+    if (x < m_min) {
+      return 0;
+    }
+    if (x >= m_max) {
+      return 1;
+    }
+
+    double[][] knots = knots();
+    double[] positions = knots[0];
+    double[] values = knots[1];
+    for (int i = positions.length - 1; i > 0; i--) {
+      if (x >= values[i - 1]) {
+        if (x >= values[i]) {
+          return positions[i] / m_totalWeight;
+        }
+        return interpolate(x, values[i - 1], positions[i - 1], values[i],
+          positions[i]) / m_totalWeight;
+      }
+    }
+
+    return 0;
+  }
+
+  /**
+   * Linear interpolation
+   *
+   * @param x the point to interpolate at
+   * @param x0 the left point
+   * @param y0 the value at the left point
+   * @param x1 the right point
+   * @param y1 the value at the right point
+   * @return the interpolated value
+   */
+  protected static double interpolate(double x, double x0, double y0,
+    double x1, double y1) {
+    if (x1 <= x0) {
+      return y1;
+    }
+    return y0 + (y1 - y0) * (x - x0) / (x1 - x0);
+  }
+
+  /**
+   * Computes cut points that divide the distribution into bins of
+   * (approximately) equal weight. Cut points that would not separate distinct
+   * values are dropped, so fewer bins than requested may result.
+   *
+   * @param numBins the number of bins required
+   * @return the cut points in ascending order (may be empty)
+   */
+  public double[] equalFrequencyCutPoints(int numBins) {
+    if (numBins < 2 || m_totalWeight == 0 || !(m_max > m_min)) {
+      return new double[0];
+    }
+
+    double[] cutPoints = new double[numBins - 1];
+    int count = 0;
+    double last = m_min;
+    for (int i = 1; i < numBins; i++) {
+      double cut = quantile((double) i / numBins);
+      if (cut > last && cut < m_max) {
+        cutPoints[count++] = cut;
+        last = cut;
+      }
+    }
+
+    return Arrays.copyOf(cutPoints, count);
+  }
+
+  @Override
+  public String toString() {
+    return "QuantileSketch: " + numCentroids() + " centroids, total weight "
+      + Utils.doubleToString(m_totalWeight, 4);
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -41,6 +41,7 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.security.ProtectionDomain;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -50,7 +51,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.Vector;
-import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -435,6 +435,8 @@ public class WekaPackageLibIsolatingClassLoader extends URLClassLoader {
    * Stores all the names of all classes in the supplied jar file in the
    * supplied set. Non-class, non-directory entries in jar files at the
    * top-level of the package are stored as resources in a separate lookup set.
+   * Jar contents come from the persistent ClassCacheIndex, so a jar is only
+   * opened if it has changed since it was last scanned.
    * 
    * @param jarFile jar file to process
    * @param repo a set to store class names in
@@ -445,19 +447,11 @@ public class WekaPackageLibIsolatingClassLoader extends URLClassLoader {
     boolean isTopLevelPackageJar) {
     if (jarFile.exists()) {
       try {
-        JarFile jar = new JarFile(jarFile);
-        Enumeration<JarEntry> enm = jar.entries();
-        while (enm.hasMoreElements()) {
-          JarEntry entry = enm.nextElement();
-          if (entry.getName().endsWith(".class")) {
-            String cleanedUp = ClassCache.cleanUp(entry.getName());
-            repo.add(cleanedUp);
-          } else if (!entry.isDirectory()
-            && !entry.getName().contains("META-INF") && isTopLevelPackageJar) {
-            String resource = entry.getName();
-            resource = resource.replace("\\", "/");
-            m_packageJarResources.add(entry.getName());
-          }
+        ClassCacheIndex.JarContents contents =
+          ClassCacheIndex.getSingleton().getContents(jarFile);
+        Collections.addAll(repo, contents.getClasses());
+        if (isTopLevelPackageJar) {
+          Collections.addAll(m_packageJarResources, contents.getResources());
         }
       } catch (IOException e) {
         e.printStackTrace();
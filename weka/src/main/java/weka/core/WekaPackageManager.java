@@ -1309,6 +1309,9 @@ public class WekaPackageManager {
 
     m_initialPackageLoadingInProcess = false;
 
+    // keep the contents of any newly scanned package jars for the next JVM
+    ClassCacheIndex.getSingleton().saveIfChanged();
+
     // it is best to process all of these after all jars have been
     // inserted into the classpath since the dynamic class discovery
     // mechanism will load classes during the process of determining
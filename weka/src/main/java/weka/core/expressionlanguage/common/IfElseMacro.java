@@ -28,6 +28,8 @@ import weka.core.expressionlanguage.core.SemanticException;
 import weka.core.expressionlanguage.common.Primitives.BooleanExpression;
 import weka.core.expressionlanguage.common.Primitives.DoubleExpression;
 import weka.core.expressionlanguage.common.Primitives.StringExpression;
+import weka.core.expressionlanguage.compiler.CodeGenerator;
+import weka.core.expressionlanguage.compiler.Compilable;
 
 /**
  * A macro declaration exposing the <code>ifelse</code> function.</p>
@@ -125,7 +127,7 @@ public class IfElseMacro implements MacroDeclarations, Macro {
     throw new SemanticException("ifelse's second and third parameter must be doubles, booleans or Strings!");
   }
 
-  private static class DoubleIfElse implements DoubleExpression {
+  private static class DoubleIfElse implements DoubleExpression, Compilable {
 
     private final BooleanExpression condition;
     private final DoubleExpression ifPart;
@@ -146,9 +148,14 @@ public class IfElseMacro implements MacroDeclarations, Macro {
         return ifPart.evaluate();
       return elsePart.evaluate();
     }
+
+    @Override
+    public void compile(CodeGenerator code) {
+      code.ifElse(condition, ifPart, elsePart);
+    }
   }
  
-  private static class BooleanIfElse implements BooleanExpression {
+  private static class BooleanIfElse implements BooleanExpression, Compilable {
 
     private final BooleanExpression condition;
     private final BooleanExpression ifPart;
@@ -169,9 +176,14 @@ public class IfElseMacro implements MacroDeclarations, Macro {
         return ifPart.evaluate();
       return elsePart.evaluate();
     }
+
+    @Override
+    public void compile(CodeGenerator code) {
+      code.ifElse(condition, ifPart, elsePart);
+    }
   }
 
-  private static class StringIfElse implements StringExpression {
+  private static class StringIfElse implements StringExpression, Compilable {
 
     private final BooleanExpression condition;
     private final StringExpression ifPart;
@@ -192,6 +204,11 @@ public class IfElseMacro implements MacroDeclarations, Macro {
         return ifPart.evaluate();
       return elsePart.evaluate();
     }
+
+    @Override
+    public void compile(CodeGenerator code) {
+      code.ifElse(condition, ifPart, elsePart);
+    }
   }
 
 }
@@ -29,6 +29,8 @@ import weka.core.expressionlanguage.core.Macro;
 import weka.core.expressionlanguage.core.MacroDeclarations;
 import weka.core.expressionlanguage.core.SemanticException;
 import weka.core.expressionlanguage.common.Primitives.DoubleExpression;
+import weka.core.expressionlanguage.compiler.CodeGenerator;
+import weka.core.expressionlanguage.compiler.Compilable;
 
 /**
  * Macro declarations for common mathematical functions.</p>
@@ -125,7 +127,8 @@ public class MathFunctions implements MacroDeclarations {
     
   }
 
-  private static abstract class DoubleUnaryFunction implements DoubleExpression {
+  private static abstract class DoubleUnaryFunction implements
+    DoubleExpression, Compilable {
 
     final DoubleExpression expr;
     
@@ -133,6 +136,17 @@ public class MathFunctions implements MacroDeclarations {
       this.expr = expr;
     }
 
+    /**
+     * The name of the equivalent static method in {@link java.lang.Math}
+     */
+    abstract String mathMethod();
+
+    @Override
+    public void compile(CodeGenerator code) {
+      code.compile(expr);
+      code.invokeStatic(Math.class, mathMethod(), Double.TYPE, Double.TYPE);
+    }
+
   }
  
   private static class AbsFunction extends DoubleUnaryFunction {
@@ -145,6 +159,11 @@ public class MathFunctions implements MacroDeclarations {
     public double evaluate() {
       return Math.abs(expr.evaluate());
     }
+
+    @Override
+    String mathMethod() {
+      return "abs";
+    }
     
   }
   
@@ -159,6 +178,11 @@ public class MathFunctions implements MacroDeclarations {
       return Math.sqrt(expr.evaluate());
     }
 
+    @Override
+    String mathMethod() {
+      return "sqrt";
+    }
+
   }
   
   private static class LogFunction extends DoubleUnaryFunction {
@@ -171,6 +195,11 @@ public class MathFunctions implements MacroDeclarations {
     public double evaluate() {
       return Math.log(expr.evaluate());
     }
+
+    @Override
+    String mathMethod() {
+      return "log";
+    }
     
   }
   
@@ -184,6 +213,11 @@ public class MathFunctions implements MacroDeclarations {
     public double evaluate() {
       return Math.exp(expr.evaluate());
     }
+
+    @Override
+    String mathMethod() {
+      return "exp";
+    }
     
   }
   
@@ -197,6 +231,11 @@ public class MathFunctions implements MacroDeclarations {
     public double evaluate() {
       return Math.sin(expr.evaluate());
     }
+
+    @Override
+    String mathMethod() {
+      return "sin";
+    }
     
   }
 
@@ -211,6 +250,11 @@ public class MathFunctions implements MacroDeclarations {
     public double evaluate() {
       return Math.cos(expr.evaluate());
     }
+
+    @Override
+    String mathMethod() {
+      return "cos";
+    }
     
   }
   
@@ -224,6 +268,11 @@ public class MathFunctions implements MacroDeclarations {
     public double evaluate() {
       return Math.tan(expr.evaluate());
     }
+
+    @Override
+    String mathMethod() {
+      return "tan";
+    }
     
   }
   
@@ -237,6 +286,11 @@ public class MathFunctions implements MacroDeclarations {
     public double evaluate() {
       return Math.rint(expr.evaluate());
     }
+
+    @Override
+    String mathMethod() {
+      return "rint";
+    }
     
   }
   
@@ -250,6 +304,11 @@ public class MathFunctions implements MacroDeclarations {
     public double evaluate() {
       return Math.floor(expr.evaluate());
     }
+
+    @Override
+    String mathMethod() {
+      return "floor";
+    }
     
   }
   
@@ -263,6 +322,11 @@ public class MathFunctions implements MacroDeclarations {
     public double evaluate() {
       return Math.ceil(expr.evaluate());
     }
+
+    @Override
+    String mathMethod() {
+      return "ceil";
+    }
     
   }
   
@@ -281,7 +345,7 @@ public class MathFunctions implements MacroDeclarations {
     }
   }
   
-  private static class PowFunction implements DoubleExpression {
+  private static class PowFunction implements DoubleExpression, Compilable {
     
     private final DoubleExpression base;
     private final DoubleExpression exponent;
@@ -295,6 +359,14 @@ public class MathFunctions implements MacroDeclarations {
     public double evaluate() {
       return Math.pow(base.evaluate(), exponent.evaluate());
     }
+
+    @Override
+    public void compile(CodeGenerator code) {
+      code.compile(base);
+      code.compile(exponent);
+      code.invokeStatic(Math.class, "pow", Double.TYPE, Double.TYPE,
+        Double.TYPE);
+    }
     
   }
 
@@ -22,12 +22,15 @@
 package weka.core.expressionlanguage.common;
 
 import java.io.Serializable;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import weka.core.expressionlanguage.common.Primitives.BooleanExpression;
 import weka.core.expressionlanguage.common.Primitives.DoubleExpression;
 import weka.core.expressionlanguage.common.Primitives.StringConstant;
 import weka.core.expressionlanguage.common.Primitives.StringExpression;
+import weka.core.expressionlanguage.compiler.CodeGenerator;
+import weka.core.expressionlanguage.compiler.Compilable;
 import weka.core.expressionlanguage.core.Node;
 import weka.core.expressionlanguage.core.SemanticException;
 
@@ -217,7 +220,7 @@ public class Operators {
   }
 
   private static abstract class DoubleBinaryExpression implements
-    DoubleExpression, Serializable {
+    DoubleExpression, Compilable, Serializable {
 
     private static final long serialVersionUID = -5632795030311662604L;
 
@@ -244,6 +247,11 @@ public class Operators {
     public double evaluate() {
       return left.evaluate() + right.evaluate();
     }
+
+    @Override
+    public void compile(CodeGenerator code) {
+      code.arithmetic(CodeGenerator.ADD, left, right);
+    }
   }
 
   private static class Subtraction extends DoubleBinaryExpression implements
@@ -259,6 +267,11 @@ public class Operators {
     public double evaluate() {
       return left.evaluate() - right.evaluate();
     }
+
+    @Override
+    public void compile(CodeGenerator code) {
+      code.arithmetic(CodeGenerator.SUBTRACT, left, right);
+    }
   }
 
   private static class Multiplication extends DoubleBinaryExpression implements
@@ -275,9 +288,15 @@ public class Operators {
       return left.evaluate() * right.evaluate();
     }
 
+    @Override
+    public void compile(CodeGenerator code) {
+      code.arithmetic(CodeGenerator.MULTIPLY, left, right);
+    }
+
   }
 
-  private static class UMinus implements DoubleExpression, Serializable {
+  private static class UMinus implements DoubleExpression, Compilable,
+    Serializable {
 
     private static final long serialVersionUID = 8950381197456945108L;
 
@@ -291,6 +310,11 @@ public class Operators {
     public double evaluate() {
       return -(expr.evaluate());
     }
+
+    @Override
+    public void compile(CodeGenerator code) {
+      code.negate(expr);
+    }
   }
 
   private static class Division extends DoubleBinaryExpression implements
@@ -307,6 +331,11 @@ public class Operators {
       return left.evaluate() / right.evaluate();
     }
 
+    @Override
+    public void compile(CodeGenerator code) {
+      code.arithmetic(CodeGenerator.DIVIDE, left, right);
+    }
+
   }
 
   private static class Pow extends DoubleBinaryExpression implements
@@ -323,10 +352,18 @@ public class Operators {
       return Math.pow(left.evaluate(), right.evaluate());
     }
 
+    @Override
+    public void compile(CodeGenerator code) {
+      code.compile(left);
+      code.compile(right);
+      code.invokeStatic(Math.class, "pow", Double.TYPE, Double.TYPE,
+        Double.TYPE);
+    }
+
   }
 
-  private static abstract class BooleanBinaryExpression<T> implements
-    BooleanExpression, Serializable {
+  private static abstract class BooleanBinaryExpression<T extends Node>
+    implements BooleanExpression, Compilable, Serializable {
 
     private static final long serialVersionUID = -5375209267408472403L;
 
@@ -353,6 +390,11 @@ public class Operators {
       return left.evaluate() < right.evaluate();
     }
 
+    @Override
+    public void compile(CodeGenerator code) {
+      code.compare(CodeGenerator.LESS_THAN, left, right);
+    }
+
   }
 
   private static class LessEqual extends
@@ -369,6 +411,11 @@ public class Operators {
       return left.evaluate() <= right.evaluate();
     }
 
+    @Override
+    public void compile(CodeGenerator code) {
+      code.compare(CodeGenerator.LESS_EQUAL, left, right);
+    }
+
   }
 
   private static class GreaterThan extends
@@ -385,6 +432,11 @@ public class Operators {
       return left.evaluate() > right.evaluate();
     }
 
+    @Override
+    public void compile(CodeGenerator code) {
+      code.compare(CodeGenerator.GREATER_THAN, left, right);
+    }
+
   }
 
   private static class GreaterEqual extends
@@ -401,6 +453,11 @@ public class Operators {
       return left.evaluate() >= right.evaluate();
     }
 
+    @Override
+    public void compile(CodeGenerator code) {
+      code.compare(CodeGenerator.GREATER_EQUAL, left, right);
+    }
+
   }
 
   private static class Equal extends BooleanBinaryExpression<DoubleExpression>
@@ -417,6 +474,11 @@ public class Operators {
       return left.evaluate() == right.evaluate();
     }
 
+    @Override
+    public void compile(CodeGenerator code) {
+      code.compare(CodeGenerator.EQUAL, left, right);
+    }
+
   }
 
   private static class And extends BooleanBinaryExpression<BooleanExpression>
@@ -433,6 +495,11 @@ public class Operators {
       return left.evaluate() && right.evaluate();
     }
 
+    @Override
+    public void compile(CodeGenerator code) {
+      code.and(left, right);
+    }
+
   }
 
   private static class Or extends BooleanBinaryExpression<BooleanExpression>
@@ -449,9 +516,15 @@ public class Operators {
       return left.evaluate() || right.evaluate();
     }
 
+    @Override
+    public void compile(CodeGenerator code) {
+      code.or(left, right);
+    }
+
   }
 
-  private static class Not implements BooleanExpression, Serializable {
+  private static class Not implements BooleanExpression, Compilable,
+    Serializable {
 
     private static final long serialVersionUID = -6235716110409152192L;
 
@@ -465,6 +538,11 @@ public class Operators {
     public boolean evaluate() {
       return !expr.evaluate();
     }
+
+    @Override
+    public void compile(CodeGenerator code) {
+      code.not(expr);
+    }
   }
 
   private static class Is extends BooleanBinaryExpression<StringExpression>
@@ -480,6 +558,13 @@ public class Operators {
     public boolean evaluate() {
       return left.evaluate().equals(right.evaluate());
     }
+
+    @Override
+    public void compile(CodeGenerator code) {
+      code.compile(left);
+      code.compile(right);
+      code.invokeVirtual(String.class, "equals", Boolean.TYPE, Object.class);
+    }
   }
 
   private static class Regexp extends BooleanBinaryExpression<StringExpression>
@@ -495,10 +580,17 @@ public class Operators {
     public boolean evaluate() {
       return left.evaluate().matches(right.evaluate());
     }
+
+    @Override
+    public void compile(CodeGenerator code) {
+      code.compile(left);
+      code.compile(right);
+      code.invokeVirtual(String.class, "matches", Boolean.TYPE, String.class);
+    }
   }
 
   private static class CompiledRegexp implements BooleanExpression,
-    Serializable {
+    Compilable, Serializable {
 
     private static final long serialVersionUID = -224974827347001236L;
 
@@ -514,9 +606,19 @@ public class Operators {
     public boolean evaluate() {
       return pattern.matcher(expr.evaluate()).matches();
     }
+
+    @Override
+    public void compile(CodeGenerator code) {
+      code.pushObject(pattern, Pattern.class);
+      code.compile(expr);
+      code.invokeVirtual(Pattern.class, "matcher", Matcher.class,
+        CharSequence.class);
+      code.invokeVirtual(Matcher.class, "matches", Boolean.TYPE);
+    }
   }
 
-  private static class Concatenation implements StringExpression, Serializable {
+  private static class Concatenation implements StringExpression,
+    Compilable, Serializable {
 
     private static final long serialVersionUID = 2413200029613562555L;
 
@@ -532,5 +634,15 @@ public class Operators {
     public String evaluate() {
       return left.evaluate() + right.evaluate();
     }
+
+    @Override
+    public void compile(CodeGenerator code) {
+      // same as left + right, including the treatment of null
+      code.compile(left);
+      code.invokeStatic(String.class, "valueOf", String.class, Object.class);
+      code.compile(right);
+      code.invokeStatic(String.class, "valueOf", String.class, Object.class);
+      code.invokeVirtual(String.class, "concat", String.class, String.class);
+    }
   }
 }
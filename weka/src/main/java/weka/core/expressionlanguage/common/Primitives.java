@@ -21,6 +21,8 @@
 
 package weka.core.expressionlanguage.common;
 
+import weka.core.expressionlanguage.compiler.CodeGenerator;
+import weka.core.expressionlanguage.compiler.Compilable;
 import weka.core.expressionlanguage.core.Node;
 
 import java.io.Serializable;
@@ -93,7 +95,8 @@ public class Primitives implements Serializable {
    * @author Benjamin Weber ( benweber at student dot ethz dot ch )
    * @version $Revision: 1000 $
    */
-  public static class BooleanConstant implements BooleanExpression, Serializable {
+  public static class BooleanConstant implements BooleanExpression,
+    Compilable, Serializable {
 
     private static final long serialVersionUID = -7104666336890622673L;
 
@@ -107,6 +110,11 @@ public class Primitives implements Serializable {
     public boolean evaluate() {
       return value;
     }
+
+    @Override
+    public void compile(CodeGenerator code) {
+      code.pushBoolean(value);
+    }
   }
 
   /**
@@ -115,7 +123,8 @@ public class Primitives implements Serializable {
    * @author Benjamin Weber ( benweber at student dot ethz dot ch )
    * @version $Revision: 1000 $
    */
-  public static class DoubleConstant implements DoubleExpression, Serializable {
+  public static class DoubleConstant implements DoubleExpression,
+    Compilable, Serializable {
 
     private static final long serialVersionUID = 6876724986473710563L;
 
@@ -130,6 +139,11 @@ public class Primitives implements Serializable {
       return value;
     }
 
+    @Override
+    public void compile(CodeGenerator code) {
+      code.pushDouble(value);
+    }
+
   }
  
   /**
@@ -138,7 +152,8 @@ public class Primitives implements Serializable {
    * @author Benjamin Weber ( benweber at student dot ethz dot ch )
    * @version $Revision: 1000 $
    */
-  public static class StringConstant implements StringExpression, Serializable {
+  public static class StringConstant implements StringExpression,
+    Compilable, Serializable {
 
     private static final long serialVersionUID = 491766938196527684L;
 
@@ -152,6 +167,11 @@ public class Primitives implements Serializable {
     public String evaluate() {
       return value;
     }
+
+    @Override
+    public void compile(CodeGenerator code) {
+      code.pushString(value);
+    }
   }
 
   /**
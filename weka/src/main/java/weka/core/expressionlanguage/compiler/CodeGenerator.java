@@ -0,0 +1,962 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    CodeGenerator.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core.expressionlanguage.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import weka.core.expressionlanguage.common.Primitives.BooleanExpression;
+import weka.core.expressionlanguage.common.Primitives.DoubleExpression;
+import weka.core.expressionlanguage.common.Primitives.StringExpression;
+import weka.core.expressionlanguage.core.Node;
+
+/**
+ * Generates the class file for a compiled program.</p>
+ *
+ * The generated class extends {@link CompiledNode} and implements the
+ * primitive expression interface of the program's root node, with an
+ * <code>evaluate()</code> method containing the code emitted by the
+ * {@link Compilable} nodes of the program. Nodes that are not compilable are
+ * called through their own <code>evaluate()</code> method.</p>
+ *
+ * The methods of this class are meant to be called by
+ * {@link Compilable#compile(CodeGenerator)} implementations. Each of them
+ * emits code that leaves the value of an expression on the operand stack;
+ * boolean values are represented as an int that is either 0 or 1. Class files
+ * are written in the Java 5 format, which the JVM verifies without requiring
+ * stack map frames.
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public class CodeGenerator {
+
+  /** Double addition */
+  public static final int ADD = 0;
+
+  /** Double subtraction */
+  public static final int SUBTRACT = 1;
+
+  /** Double multiplication */
+  public static final int MULTIPLY = 2;
+
+  /** Double division */
+  public static final int DIVIDE = 3;
+
+  /** Less than comparison of doubles */
+  public static final int LESS_THAN = 0;
+
+  /** Less than or equal comparison of doubles */
+  public static final int LESS_EQUAL = 1;
+
+  /** Greater than comparison of doubles */
+  public static final int GREATER_THAN = 2;
+
+  /** Greater than or equal comparison of doubles */
+  public static final int GREATER_EQUAL = 3;
+
+  /** Equality comparison of doubles */
+  public static final int EQUAL = 4;
+
+  /* opcodes */
+  private static final int ICONST_0 = 0x03;
+  private static final int ICONST_1 = 0x04;
+  private static final int BIPUSH = 0x10;
+  private static final int SIPUSH = 0x11;
+  private static final int LDC = 0x12;
+  private static final int LDC_W = 0x13;
+  private static final int LDC2_W = 0x14;
+  private static final int ALOAD_0 = 0x2a;
+  private static final int ALOAD_1 = 0x2b;
+  private static final int ALOAD_2 = 0x2c;
+  private static final int AALOAD = 0x32;
+  private static final int DADD = 0x63;
+  private static final int DSUB = 0x67;
+  private static final int DMUL = 0x6b;
+  private static final int DDIV = 0x6f;
+  private static final int DNEG = 0x77;
+  private static final int IXOR = 0x82;
+  private static final int DCMPL = 0x97;
+  private static final int DCMPG = 0x98;
+  private static final int IFEQ = 0x99;
+  private static final int IFNE = 0x9a;
+  private static final int IFLT = 0x9b;
+  private static final int IFGE = 0x9c;
+  private static final int IFGT = 0x9d;
+  private static final int IFLE = 0x9e;
+  private static final int GOTO = 0xa7;
+  private static final int IRETURN = 0xac;
+  private static final int DRETURN = 0xaf;
+  private static final int ARETURN = 0xb0;
+  private static final int RETURN = 0xb1;
+  private static final int GETFIELD = 0xb4;
+  private static final int INVOKEVIRTUAL = 0xb6;
+  private static final int INVOKESPECIAL = 0xb7;
+  private static final int INVOKESTATIC = 0xb8;
+  private static final int INVOKEINTERFACE = 0xb9;
+  private static final int CHECKCAST = 0xc0;
+
+  /* constant pool tags */
+  private static final int CONSTANT_UTF8 = 1;
+  private static final int CONSTANT_INTEGER = 3;
+  private static final int CONSTANT_DOUBLE = 6;
+  private static final int CONSTANT_CLASS = 7;
+  private static final int CONSTANT_STRING = 8;
+  private static final int CONSTANT_FIELDREF = 9;
+  private static final int CONSTANT_METHODREF = 10;
+  private static final int CONSTANT_INTERFACE_METHODREF = 11;
+  private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+  /** Largest method that can be generated (branch offsets are 16 bit) */
+  private static final int MAX_CODE_LENGTH = Short.MAX_VALUE;
+
+  /**
+   * A position in the generated code that can be jumped to
+   */
+  private static class Label {
+
+    /** The position in the code (-1 if not yet bound) */
+    private int m_position = -1;
+
+    /** The stack depth at this label (-1 if not yet known) */
+    private int m_stack = -1;
+
+    /** The positions of the branch instructions jumping to this label */
+    private final List<Integer> m_branches = new ArrayList<Integer>();
+  }
+
+  /** The internal name of the class being generated */
+  protected final String m_className;
+
+  /** The root of the program being compiled */
+  protected final Node m_root;
+
+  /** The class loader that the generated class will be defined in */
+  protected final ClassLoader m_loader;
+
+  /** The constant pool */
+  protected ByteArrayOutputStream m_pool = new ByteArrayOutputStream();
+
+  /** Output stream writing to the constant pool */
+  protected DataOutputStream m_poolOut = new DataOutputStream(m_pool);
+
+  /** Index of each constant pool entry, keyed by tag and value */
+  protected Map<String, Integer> m_poolIndex = new HashMap<String, Integer>();
+
+  /** The next free constant pool index */
+  protected int m_poolSize = 1;
+
+  /** The code of the evaluate() method */
+  protected byte[] m_code = new byte[256];
+
+  /** The length of the code */
+  protected int m_length;
+
+  /** The current operand stack depth */
+  protected int m_stack;
+
+  /** The maximum operand stack depth */
+  protected int m_maxStack;
+
+  /** The objects referenced by the generated code */
+  protected List<Object> m_constants = new ArrayList<Object>();
+
+  /** Index of each object in m_constants */
+  protected Map<Object, Integer> m_constantIndex =
+    new IdentityHashMap<Object, Integer>();
+
+  /**
+   * Constructor
+   *
+   * @param className the name of the class to generate
+   * @param root the root of the program to compile
+   * @param loader the class loader that the generated class will be defined
+   *          in
+   */
+  protected CodeGenerator(String className, Node root, ClassLoader loader) {
+    m_className = className.replace('.', '/');
+    m_root = root;
+    m_loader = loader;
+  }
+
+  /**
+   * Get the objects that the generated code references, to be passed to the
+   * constructor of the generated class
+   *
+   * @return the objects
+   */
+  protected Object[] getConstants() {
+    return m_constants.toArray();
+  }
+
+  /**
+   * Generates the class file
+   *
+   * @return the class file
+   * @throws IllegalArgumentException if the program can't be compiled
+   * @throws IOException never
+   */
+  protected byte[] generate() throws IOException {
+    Class<?> type = expressionType(m_root);
+
+    // evaluate()
+    compile(m_root);
+    if (type == BooleanExpression.class || type == StringExpression.class) {
+      emit(type == BooleanExpression.class ? IRETURN : ARETURN);
+    } else {
+      emit(DRETURN);
+    }
+    if (m_length > MAX_CODE_LENGTH) {
+      throw new IllegalArgumentException("Program is too large to compile");
+    }
+    byte[] evaluate = Arrays.copyOf(m_code, m_length);
+    int evaluateStack = m_maxStack;
+
+    // constructor
+    m_length = 0;
+    emit(ALOAD_0);
+    emit(ALOAD_1);
+    emit(ALOAD_2);
+    emit(INVOKESPECIAL);
+    emitShort(methodRef(CompiledNode.class, "<init>", "("
+      + descriptor(Node.class) + descriptor(Object[].class) + ")V"));
+    emit(RETURN);
+    byte[] init = Arrays.copyOf(m_code, m_length);
+
+    int thisClass = classRef(m_className);
+    int superClass = classRef(internalName(CompiledNode.class));
+    int iface = classRef(internalName(type));
+    int code = utf8("Code");
+    int initName = utf8("<init>");
+    int initDesc =
+      utf8("(" + descriptor(Node.class) + descriptor(Object[].class) + ")V");
+    int evaluateName = utf8("evaluate");
+    int evaluateDesc = utf8("()" + descriptor(returnType(type)));
+    if (m_poolSize > 0xffff) {
+      throw new IllegalArgumentException("Program is too large to compile");
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(0xcafebabe);
+    out.writeShort(0);
+    out.writeShort(49);
+    out.writeShort(m_poolSize);
+    m_poolOut.flush();
+    m_pool.writeTo(out);
+    out.writeShort(Modifier.PUBLIC | Modifier.FINAL | 0x0020); // ACC_SUPER
+    out.writeShort(thisClass);
+    out.writeShort(superClass);
+    out.writeShort(1);
+    out.writeShort(iface);
+    out.writeShort(0); // fields
+    out.writeShort(2); // methods
+    writeMethod(out, initName, initDesc, code, init, 3, 3);
+    writeMethod(out, evaluateName, evaluateDesc, code, evaluate,
+      evaluateStack, 1);
+    out.writeShort(0); // attributes
+    out.flush();
+
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Writes a public method with a code attribute
+   *
+   * @param out the stream to write to
+   * @param name the constant pool index of the method's name
+   * @param desc the constant pool index of the method's descriptor
+   * @param codeName the constant pool index of "Code"
+   * @param code the method's code
+   * @param maxStack the maximum stack depth of the code
+   * @param maxLocals the number of local variables used by the code
+   * @throws IOException never
+   */
+  protected static void writeMethod(DataOutputStream out, int name, int desc,
+    int codeName, byte[] code, int maxStack, int maxLocals) throws IOException {
+    out.writeShort(Modifier.PUBLIC);
+    out.writeShort(name);
+    out.writeShort(desc);
+    out.writeShort(1);
+    out.writeShort(codeName);
+    out.writeInt(12 + code.length);
+    out.writeShort(maxStack);
+    out.writeShort(maxLocals);
+    out.writeInt(code.length);
+    out.write(code);
+    out.writeShort(0); // exception table
+    out.writeShort(0); // attributes
+  }
+
+  /**
+   * Emits the code for a node. Compilable nodes emit their own code, other
+   * nodes are evaluated by calling their evaluate() method.
+   *
+   * @param node the node
+   * @throws IllegalArgumentException if the node isn't a boolean, double or
+   *           String expression
+   */
+  public void compile(Node node) {
+    if (node instanceof Compilable) {
+      ((Compilable) node).compile(this);
+      return;
+    }
+
+    Class<?> type = expressionType(node);
+    pushObject(node, type);
+    invokeVirtual(type, "evaluate", returnType(type));
+  }
+
+  /**
+   * Pushes a double constant
+   *
+   * @param value the value
+   */
+  public void pushDouble(double value) {
+    emit(LDC2_W);
+    emitShort(constant(CONSTANT_DOUBLE, Double.toString(value),
+      Double.doubleToRawLongBits(value)));
+    adjustStack(2);
+  }
+
+  /**
+   * Pushes a boolean constant
+   *
+   * @param value the value
+   */
+  public void pushBoolean(boolean value) {
+    emit(value ? ICONST_1 : ICONST_0);
+    adjustStack(1);
+  }
+
+  /**
+   * Pushes an int constant
+   *
+   * @param value the value
+   */
+  public void pushInt(int value) {
+    if (value >= -1 && value <= 5) {
+      emit(ICONST_0 + value);
+    } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+      emit(BIPUSH);
+      emit(value & 0xff);
+    } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+      emit(SIPUSH);
+      emitShort(value & 0xffff);
+    } else {
+      emitLdc(constant(CONSTANT_INTEGER, Integer.toString(value), value));
+    }
+    adjustStack(1);
+  }
+
+  /**
+   * Pushes a String constant
+   *
+   * @param value the value (must not be null)
+   */
+  public void pushString(String value) {
+    int utf8 = utf8(value);
+    emitLdc(constant(CONSTANT_STRING, Integer.toString(utf8), utf8));
+    adjustStack(1);
+  }
+
+  /**
+   * Pushes a reference to an object. The object is stored in the compiled
+   * node and is shared by all evaluations.
+   *
+   * @param object the object
+   * @param type the public class or interface to cast the reference to
+   * @throws IllegalArgumentException if the type is not accessible from the
+   *           generated class
+   */
+  public void pushObject(Object object, Class<?> type) {
+    checkAccessible(type);
+    Integer index = m_constantIndex.get(object);
+    if (index == null) {
+      index = m_constants.size();
+      m_constants.add(object);
+      m_constantIndex.put(object, index);
+    }
+
+    emit(ALOAD_0);
+    emit(GETFIELD);
+    emitShort(memberRef(CONSTANT_FIELDREF, internalName(CompiledNode.class),
+      "m_constants", descriptor(Object[].class)));
+    adjustStack(1);
+    pushInt(index);
+    emit(AALOAD);
+    adjustStack(-1);
+    if (type != Object.class) {
+      emit(CHECKCAST);
+      emitShort(classRef(internalName(type)));
+    }
+  }
+
+  /**
+   * Emits an arithmetic operation on two double expressions
+   *
+   * @param operation one of ADD, SUBTRACT, MULTIPLY or DIVIDE
+   * @param left the left operand
+   * @param right the right operand
+   */
+  public void arithmetic(int operation, Node left, Node right) {
+    compile(left);
+    compile(right);
+    switch (operation) {
+    case ADD:
+      emit(DADD);
+      break;
+    case SUBTRACT:
+      emit(DSUB);
+      break;
+    case MULTIPLY:
+      emit(DMUL);
+      break;
+    case DIVIDE:
+      emit(DDIV);
+      break;
+    default:
+      throw new IllegalArgumentException("Unknown operation: " + operation);
+    }
+    adjustStack(-2);
+  }
+
+  /**
+   * Emits the negation of a double expression
+   *
+   * @param expr the expression
+   */
+  public void negate(Node expr) {
+    compile(expr);
+    emit(DNEG);
+  }
+
+  /**
+   * Emits a comparison of two double expressions. As in Java, comparisons
+   * involving NaN are false.
+   *
+   * @param comparison one of LESS_THAN, LESS_EQUAL, GREATER_THAN,
+   *          GREATER_EQUAL or EQUAL
+   * @param left the left operand
+   * @param right the right operand
+   */
+  public void compare(int comparison, Node left, Node right) {
+    compile(left);
+    compile(right);
+    int branch;
+    switch (comparison) {
+    case LESS_THAN:
+      emit(DCMPG);
+      branch = IFLT;
+      break;
+    case LESS_EQUAL:
+      emit(DCMPG);
+      branch = IFLE;
+      break;
+    case GREATER_THAN:
+      emit(DCMPL);
+      branch = IFGT;
+      break;
+    case GREATER_EQUAL:
+      emit(DCMPL);
+      branch = IFGE;
+      break;
+    case EQUAL:
+      emit(DCMPL);
+      branch = IFEQ;
+      break;
+    default:
+      throw new IllegalArgumentException("Unknown comparison: " + comparison);
+    }
+    adjustStack(-3);
+
+    Label isTrue = new Label();
+    Label end = new Label();
+    jump(branch, isTrue);
+    pushBoolean(false);
+    jump(GOTO, end);
+    bind(isTrue);
+    pushBoolean(true);
+    bind(end);
+  }
+
+  /**
+   * Emits the logical negation of a boolean expression
+   *
+   * @param expr the expression
+   */
+  public void not(Node expr) {
+    compile(expr);
+    pushBoolean(true);
+    emit(IXOR);
+    adjustStack(-1);
+  }
+
+  /**
+   * Emits the short-circuit logical and of two boolean expressions
+   *
+   * @param left the left operand
+   * @param right the right operand (only evaluated if left is true)
+   */
+  public void and(Node left, Node right) {
+    Label isFalse = new Label();
+    Label end = new Label();
+    compile(left);
+    jump(IFEQ, isFalse);
+    compile(right);
+    jump(GOTO, end);
+    bind(isFalse);
+    pushBoolean(false);
+    bind(end);
+  }
+
+  /**
+   * Emits the short-circuit logical or of two boolean expressions
+   *
+   * @param left the left operand
+   * @param right the right operand (only evaluated if left is false)
+   */
+  public void or(Node left, Node right) {
+    Label isTrue = new Label();
+    Label end = new Label();
+    compile(left);
+    jump(IFNE, isTrue);
+    compile(right);
+    jump(GOTO, end);
+    bind(isTrue);
+    pushBoolean(true);
+    bind(end);
+  }
+
+  /**
+   * Emits a conditional expression. Only one of the two branches is
+   * evaluated.
+   *
+   * @param condition the boolean condition
+   * @param ifPart the value if the condition is true
+   * @param elsePart the value if the condition is false (must be of the same
+   *          type as ifPart)
+   */
+  public void ifElse(Node condition, Node ifPart, Node elsePart) {
+    Label isFalse = new Label();
+    Label end = new Label();
+    compile(condition);
+    jump(IFEQ, isFalse);
+    compile(ifPart);
+    jump(GOTO, end);
+    bind(isFalse);
+    compile(elsePart);
+    bind(end);
+  }
+
+  /**
+   * Emits a call to a static method. The arguments must have been pushed
+   * already.
+   *
+   * @param owner the public class declaring the method
+   * @param name the name of the method
+   * @param returnType the return type of the method
+   * @param parameterTypes the parameter types of the method
+   * @throws IllegalArgumentException if the method is not accessible from the
+   *           generated class
+   */
+  public void invokeStatic(Class<?> owner, String name, Class<?> returnType,
+    Class<?>... parameterTypes) {
+    invoke(INVOKESTATIC, owner, name, returnType, parameterTypes);
+  }
+
+  /**
+   * Emits a call to an instance method. The object and the arguments must
+   * have been pushed already.
+   *
+   * @param owner the public class or interface declaring the method
+   * @param name the name of the method
+   * @param returnType the return type of the method
+   * @param parameterTypes the parameter types of the method
+   * @throws IllegalArgumentException if the method is not accessible from the
+   *           generated class
+   */
+  public void invokeVirtual(Class<?> owner, String name, Class<?> returnType,
+    Class<?>... parameterTypes) {
+    invoke(owner.isInterface() ? INVOKEINTERFACE : INVOKEVIRTUAL, owner, name,
+      returnType, parameterTypes);
+  }
+
+  /**
+   * Emits a method call
+   *
+   * @param opcode the invoke instruction
+   * @param owner the class declaring the method
+   * @param name the name of the method
+   * @param returnType the return type of the method
+   * @param parameterTypes the parameter types of the method
+   */
+  protected void invoke(int opcode, Class<?> owner, String name,
+    Class<?> returnType, Class<?>[] parameterTypes) {
+    checkAccessible(owner);
+    StringBuilder desc = new StringBuilder("(");
+    int argSize = opcode == INVOKESTATIC ? 0 : 1;
+    for (Class<?> type : parameterTypes) {
+      checkAccessible(type);
+      desc.append(descriptor(type));
+      argSize += size(type);
+    }
+    checkAccessible(returnType);
+    desc.append(')').append(descriptor(returnType));
+
+    emit(opcode);
+    if (opcode == INVOKEINTERFACE) {
+      emitShort(memberRef(CONSTANT_INTERFACE_METHODREF, internalName(owner),
+        name, desc.toString()));
+      emit(argSize);
+      emit(0);
+    } else {
+      emitShort(methodRef(owner, name, desc.toString()));
+    }
+    adjustStack(size(returnType) - argSize);
+  }
+
+  /**
+   * Emits a branch
+   *
+   * @param opcode the branch instruction
+   * @param label the label to jump to
+   */
+  protected void jump(int opcode, Label label) {
+    if (opcode != GOTO) {
+      adjustStack(-1);
+    }
+    if (label.m_stack < 0) {
+      label.m_stack = m_stack;
+    }
+    label.m_branches.add(m_length);
+    emit(opcode);
+    emitShort(0);
+  }
+
+  /**
+   * Binds a label to the current position and resolves the branches to it
+   *
+   * @param label the label
+   */
+  protected void bind(Label label) {
+    label.m_position = m_length;
+    if (label.m_stack >= 0) {
+      m_stack = label.m_stack;
+    }
+    for (int branch : label.m_branches) {
+      int offset = label.m_position - branch;
+      m_code[branch + 1] = (byte) (offset >> 8);
+      m_code[branch + 2] = (byte) offset;
+    }
+  }
+
+  /**
+   * Emits an ldc or ldc_w instruction
+   *
+   * @param index the constant pool index to load
+   */
+  protected void emitLdc(int index) {
+    if (index <= 0xff) {
+      emit(LDC);
+      emit(index);
+    } else {
+      emit(LDC_W);
+      emitShort(index);
+    }
+  }
+
+  /**
+   * Appends a byte to the code
+   *
+   * @param b the byte
+   */
+  protected void emit(int b) {
+    if (m_length == m_code.length) {
+      m_code = Arrays.copyOf(m_code, m_code.length * 2);
+    }
+    m_code[m_length++] = (byte) b;
+  }
+
+  /**
+   * Appends a two byte value to the code
+   *
+   * @param s the value
+   */
+  protected void emitShort(int s) {
+    emit(s >> 8);
+    emit(s);
+  }
+
+  /**
+   * Updates the stack depth
+   *
+   * @param delta the change in the number of stack slots
+   */
+  protected void adjustStack(int delta) {
+    m_stack += delta;
+    m_maxStack = Math.max(m_maxStack, m_stack);
+  }
+
+  /**
+   * Adds a constant to the pool, unless it is there already
+   *
+   * @param tag the tag of the constant
+   * @param key a unique representation of the value
+   * @param value the value (an Integer, Long or String)
+   * @return the index of the constant
+   */
+  protected int constant(int tag, String key, Object value) {
+    String poolKey = tag + ":" + key;
+    Integer index = m_poolIndex.get(poolKey);
+    if (index != null) {
+      return index;
+    }
+
+    try {
+      m_poolOut.writeByte(tag);
+      switch (tag) {
+      case CONSTANT_UTF8:
+        m_poolOut.writeUTF((String) value);
+        break;
+      case CONSTANT_INTEGER:
+        m_poolOut.writeInt((Integer) value);
+        break;
+      case CONSTANT_DOUBLE:
+        m_poolOut.writeLong((Long) value);
+        break;
+      case CONSTANT_CLASS:
+      case CONSTANT_STRING:
+        m_poolOut.writeShort((Integer) value);
+        break;
+      default:
+        // a pair of references to other entries
+        m_poolOut.writeShort((Integer) value >>> 16);
+        m_poolOut.writeShort((Integer) value & 0xffff);
+      }
+    } catch (IOException e) {
+      // e.g. a String constant that is too long
+      throw new IllegalArgumentException(e);
+    }
+
+    index = m_poolSize;
+    m_poolSize += tag == CONSTANT_DOUBLE ? 2 : 1;
+    m_poolIndex.put(poolKey, index);
+
+    return index;
+  }
+
+  /**
+   * Adds a UTF8 constant
+   *
+   * @param s the string
+   * @return the index of the constant
+   */
+  protected int utf8(String s) {
+    return constant(CONSTANT_UTF8, s, s);
+  }
+
+  /**
+   * Adds a class reference
+   *
+   * @param internalName the internal name of the class
+   * @return the index of the constant
+   */
+  protected int classRef(String internalName) {
+    int name = utf8(internalName);
+    return constant(CONSTANT_CLASS, Integer.toString(name), name);
+  }
+
+  /**
+   * Adds a method reference for a class method
+   *
+   * @param owner the class declaring the method
+   * @param name the name of the method
+   * @param desc the descriptor of the method
+   * @return the index of the constant
+   */
+  protected int methodRef(Class<?> owner, String name, String desc) {
+    return memberRef(CONSTANT_METHODREF, internalName(owner), name, desc);
+  }
+
+  /**
+   * Adds a field or method reference
+   *
+   * @param tag the kind of reference
+   * @param owner the internal name of the declaring class
+   * @param name the name of the member
+   * @param desc the descriptor of the member
+   * @return the index of the constant
+   */
+  protected int memberRef(int tag, String owner, String name, String desc) {
+    int ownerIndex = classRef(owner);
+    int nameIndex = utf8(name);
+    int descIndex = utf8(desc);
+    int nameAndType =
+      constant(CONSTANT_NAME_AND_TYPE, nameIndex + ":" + descIndex,
+        (nameIndex << 16) | descIndex);
+    return constant(tag, ownerIndex + ":" + nameAndType, (ownerIndex << 16)
+      | nameAndType);
+  }
+
+  /**
+   * Checks that a class can be referenced by the generated class, i.e. that
+   * it is public and is loaded by the generated class's class loader (or one
+   * of its parents).
+   *
+   * @param type the class
+   * @throws IllegalArgumentException if the class can't be referenced
+   */
+  protected void checkAccessible(Class<?> type) {
+    while (type.isArray()) {
+      type = type.getComponentType();
+    }
+    if (type.isPrimitive()) {
+      return;
+    }
+    for (Class<?> c = type; c != null; c = c.getDeclaringClass()) {
+      if (!Modifier.isPublic(c.getModifiers())) {
+        throw new IllegalArgumentException(type.getName() + " is not public");
+      }
+    }
+    try {
+      if (Class.forName(type.getName(), false, m_loader) == type) {
+        return;
+      }
+    } catch (ClassNotFoundException e) {
+      // fall through
+    }
+    throw new IllegalArgumentException(type.getName()
+      + " is not visible to the generated class");
+  }
+
+  /**
+   * Get the primitive expression interface implemented by a node
+   *
+   * @param node the node
+   * @return BooleanExpression, DoubleExpression or StringExpression
+   * @throws IllegalArgumentException if the node isn't an expression
+   */
+  protected static Class<?> expressionType(Node node) {
+    if (node instanceof DoubleExpression) {
+      return DoubleExpression.class;
+    }
+    if (node instanceof BooleanExpression) {
+      return BooleanExpression.class;
+    }
+    if (node instanceof StringExpression) {
+      return StringExpression.class;
+    }
+    throw new IllegalArgumentException("Node " + node.getClass().getName()
+      + " is not a boolean, double or String expression");
+  }
+
+  /**
+   * Get the type returned by the evaluate() method of an expression interface
+   *
+   * @param type the expression interface
+   * @return the return type
+   */
+  protected static Class<?> returnType(Class<?> type) {
+    if (type == BooleanExpression.class) {
+      return Boolean.TYPE;
+    }
+    if (type == StringExpression.class) {
+      return String.class;
+    }
+    return Double.TYPE;
+  }
+
+  /**
+   * Get the number of stack slots taken by a value of a type
+   *
+   * @param type the type
+   * @return the number of slots
+   */
+  protected static int size(Class<?> type) {
+    if (type == Void.TYPE) {
+      return 0;
+    }
+    if (type == Double.TYPE || type == Long.TYPE) {
+      return 2;
+    }
+    return 1;
+  }
+
+  /**
+   * Get the internal (slash separated) name of a class
+   *
+   * @param type the class
+   * @return the internal name
+   */
+  protected static String internalName(Class<?> type) {
+    return type.getName().replace('.', '/');
+  }
+
+  /**
+   * Get the descriptor of a type
+   *
+   * @param type the type
+   * @return the descriptor
+   */
+  protected static String descriptor(Class<?> type) {
+    if (type.isArray()) {
+      return internalName(type);
+    }
+    if (!type.isPrimitive()) {
+      return "L" + internalName(type) + ";";
+    }
+    if (type == Double.TYPE) {
+      return "D";
+    }
+    if (type == Boolean.TYPE) {
+      return "Z";
+    }
+    if (type == Integer.TYPE) {
+      return "I";
+    }
+    if (type == Long.TYPE) {
+      return "J";
+    }
+    if (type == Float.TYPE) {
+      return "F";
+    }
+    if (type == Character.TYPE) {
+      return "C";
+    }
+    if (type == Byte.TYPE) {
+      return "B";
+    }
+    if (type == Short.TYPE) {
+      return "S";
+    }
+    return "V";
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    Compilable.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core.expressionlanguage.compiler;
+
+import weka.core.expressionlanguage.core.Node;
+
+/**
+ * An AST (abstract syntax tree) node that can emit JVM bytecode computing its
+ * own value.</p>
+ *
+ * When a program is compiled by the {@link ExpressionCompiler}, nodes
+ * implementing this interface are translated into inline bytecode. All other
+ * nodes are still evaluated by calling their <code>evaluate()</code> method
+ * from the generated code, so a node only has to implement this interface to
+ * become faster, never to remain usable.</p>
+ *
+ * The code emitted by {@link #compile(CodeGenerator)} must leave exactly the
+ * value of the node on the operand stack: a double for a double expression, an
+ * int (0 or 1) for a boolean expression and a String reference for a string
+ * expression.
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public interface Compilable extends Node {
+
+  /**
+   * Emits the code that computes the value of this node
+   *
+   * @param code the code generator to emit the code with
+   */
+  void compile(CodeGenerator code);
+}
@@ -0,0 +1,114 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    CompiledNode.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core.expressionlanguage.compiler;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+
+import weka.core.expressionlanguage.core.Node;
+
+/**
+ * Base class of the classes generated by the {@link ExpressionCompiler}.</p>
+ *
+ * A generated class implements the same primitive expression interface as the
+ * AST (abstract syntax tree) it was compiled from and can be used in its
+ * place. Generated classes only exist in the JVM that created them, so a
+ * compiled node is serialized as the AST it was compiled from, which is
+ * compiled again when it is deserialized (e.g. in copies made by
+ * {@link weka.filters.Filter#makeCopy(weka.filters.Filter)}).
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public abstract class CompiledNode implements Node {
+
+  /** For serialization */
+  private static final long serialVersionUID = -1542437711906380512L;
+
+  /** The AST that was compiled */
+  protected final Node m_source;
+
+  /** Objects referenced by the generated code */
+  protected final Object[] m_constants;
+
+  /**
+   * Constructor
+   *
+   * @param source the AST that was compiled
+   * @param constants the objects referenced by the generated code
+   */
+  protected CompiledNode(Node source, Object[] constants) {
+    m_source = source;
+    m_constants = constants;
+  }
+
+  /**
+   * Get the AST that this node was compiled from
+   *
+   * @return the AST
+   */
+  public Node getSource() {
+    return m_source;
+  }
+
+  /**
+   * Serializes the AST instead of the generated class.
+   *
+   * @return a proxy holding the AST
+   * @throws ObjectStreamException never
+   */
+  protected Object writeReplace() throws ObjectStreamException {
+    return new SerializedProgram(m_source);
+  }
+
+  /**
+   * Stands in for a compiled node in serialized form. Holds the AST, and
+   * compiles it again when deserialized.
+   */
+  protected static class SerializedProgram implements Serializable {
+
+    /** For serialization */
+    private static final long serialVersionUID = 4861237529934511843L;
+
+    /** The AST that was compiled */
+    protected final Node m_source;
+
+    /**
+     * Constructor
+     *
+     * @param source the AST that was compiled
+     */
+    protected SerializedProgram(Node source) {
+      m_source = source;
+    }
+
+    /**
+     * Compiles the deserialized AST.
+     *
+     * @return the compiled node, or the AST if it can't be compiled
+     * @throws ObjectStreamException never
+     */
+    protected Object readResolve() throws ObjectStreamException {
+      return ExpressionCompiler.compile(m_source);
+    }
+  }
+}
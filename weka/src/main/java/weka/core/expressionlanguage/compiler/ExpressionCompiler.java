@@ -0,0 +1,118 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    ExpressionCompiler.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core.expressionlanguage.compiler;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import weka.core.expressionlanguage.core.Node;
+
+/**
+ * Compiles a program (i.e. an AST (abstract syntax tree) created by the
+ * parser) into JVM bytecode.</p>
+ *
+ * The result of {@link #compile(Node)} is a node implementing the same
+ * primitive expression interface as the program, so it can be used in place of
+ * the program, with the same semantics, variables and side effects (e.g. the
+ * missing value tracking of
+ * {@link weka.core.expressionlanguage.weka.InstancesHelper}). Instead of
+ * walking the tree for every evaluation, the compiled node runs straight-line
+ * code generated from the {@link Compilable} nodes of the tree, which the JIT
+ * compiler can inline and optimize as a whole.</p>
+ *
+ * Compilation never fails: parts of a program that aren't compilable are
+ * evaluated by the interpreter, and if the program can't be compiled at all
+ * (or compilation has been disabled by setting the system property
+ * weka.core.expressionlanguage.compiler.disable to true) the program itself is
+ * returned.</p>
+ *
+ * Like the program it was compiled from, a compiled node is not thread-safe.
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public class ExpressionCompiler {
+
+  /** System property that disables compilation */
+  public static final String DISABLE_PROPERTY =
+    "weka.core.expressionlanguage.compiler.disable";
+
+  /** Used to give each generated class a unique name */
+  private static final AtomicInteger s_classCounter = new AtomicInteger();
+
+  /**
+   * Loads a single generated class. Each class gets its own loader so that it
+   * can be unloaded once the compiled node is no longer referenced.
+   */
+  private static class GeneratedClassLoader extends ClassLoader {
+
+    /**
+     * Constructor
+     *
+     * @param parent the parent class loader
+     */
+    GeneratedClassLoader(ClassLoader parent) {
+      super(parent);
+    }
+
+    /**
+     * Defines the generated class
+     *
+     * @param name the name of the class
+     * @param bytes the class file
+     * @return the class
+     */
+    Class<?> define(String name, byte[] bytes) {
+      return defineClass(name, bytes, 0, bytes.length);
+    }
+  }
+
+  /**
+   * Compiles a program
+   *
+   * @param program the root node of the program
+   * @return the compiled program, or the program itself if it can't be
+   *         compiled
+   */
+  public static Node compile(Node program) {
+    if (!(program instanceof Compilable)
+      || Boolean.getBoolean(DISABLE_PROPERTY)) {
+      return program;
+    }
+
+    try {
+      ClassLoader parent = CompiledNode.class.getClassLoader();
+      String name =
+        CompiledNode.class.getName() + "_" + s_classCounter.incrementAndGet();
+      CodeGenerator code = new CodeGenerator(name, program, parent);
+      byte[] bytes = code.generate();
+      Class<?> cls = new GeneratedClassLoader(parent).define(name, bytes);
+
+      return (Node) cls.getConstructor(Node.class, Object[].class)
+        .newInstance(program, code.getConstants());
+    } catch (Exception e) {
+      return program;
+    } catch (LinkageError e) {
+      // the generated class failed verification
+      return program;
+    }
+  }
+}
@@ -157,6 +157,13 @@
  * DoubleExpression program = (DoubleExpression) node;
  * </pre></code>
  * 
+ * A program can be evaluated faster by compiling it to JVM bytecode with
+ * {@link weka.core.expressionlanguage.compiler.ExpressionCompiler}, which
+ * returns a node of the same type that can be used in place of the
+ * interpreted program. AST nodes take part in compilation by implementing
+ * {@link weka.core.expressionlanguage.compiler.Compilable}; other nodes are
+ * still interpreted.</p>
+ * 
  * <h1>History</h1>
  * 
  * Previously there were three very similar languages in the
@@ -34,6 +34,8 @@ import weka.core.expressionlanguage.core.VariableDeclarations;
 import weka.core.expressionlanguage.common.Primitives.BooleanExpression;
 import weka.core.expressionlanguage.common.Primitives.DoubleExpression;
 import weka.core.expressionlanguage.common.Primitives.StringExpression;
+import weka.core.expressionlanguage.compiler.CodeGenerator;
+import weka.core.expressionlanguage.compiler.Compilable;
 
 /**
  * A helper class to expose instance values and macros for instance values to a
@@ -152,7 +154,7 @@ public class InstancesHelper implements VariableDeclarations, Macro,
       + " is only applicable to a dataset value!");
   }
 
-  private static class isMissing implements BooleanExpression {
+  private static class isMissing implements BooleanExpression, Compilable {
 
     private static final long serialVersionUID = -3805035561340865906L;
 
@@ -166,6 +168,11 @@ public class InstancesHelper implements VariableDeclarations, Macro,
     public boolean evaluate() {
       return value.isMissing();
     }
+
+    @Override
+    public void compile(CodeGenerator code) {
+      value.compileCall(code, "isMissing", Boolean.TYPE);
+    }
   }
 
   /**
@@ -208,6 +215,46 @@ public class InstancesHelper implements VariableDeclarations, Macro,
     return missingAccessed;
   }
 
+  /**
+   * Whether a value of the current instance is missing
+   * 
+   * @param index the index of the attribute
+   * @return whether the value is missing
+   */
+  public boolean isMissing(int index) {
+    return instance.isMissing(index);
+  }
+
+  /**
+   * Returns a numeric value of the current instance, recording whether a
+   * missing value has been accessed (see {@link #missingAccessed()}).
+   * 
+   * @param index the index of the attribute
+   * @return the value (NaN if missing)
+   */
+  public double value(int index) {
+    if (instance.isMissing(index)) {
+      missingAccessed = true;
+      return Utils.missingValue();
+    }
+    return instance.value(index);
+  }
+
+  /**
+   * Returns a nominal or string value of the current instance, recording
+   * whether a missing value has been accessed (see {@link #missingAccessed()}).
+   * 
+   * @param index the index of the attribute
+   * @return the value (the empty string if missing)
+   */
+  public String stringValue(int index) {
+    if (instance.isMissing(index)) {
+      missingAccessed = true;
+      return "";
+    }
+    return instance.stringValue(index);
+  }
+
   private int getIndex(String attribute) {
 
     if (ATTRIBUTE1.matcher(attribute).matches())
@@ -274,11 +321,23 @@ public class InstancesHelper implements VariableDeclarations, Macro,
     }
 
     public boolean isMissing() {
-      return instance.isMissing(getIndex());
+      return InstancesHelper.this.isMissing(getIndex());
+    }
+
+    /**
+     * Emits a call to one of the value access methods of the enclosing
+     * {@link InstancesHelper}
+     */
+    void compileCall(CodeGenerator code, String method, Class<?> returnType) {
+      code.pushObject(InstancesHelper.this, InstancesHelper.class);
+      code.pushInt(getIndex());
+      code.invokeVirtual(InstancesHelper.class, method, returnType,
+        Integer.TYPE);
     }
   }
 
-  private class DoubleValue extends Value implements DoubleExpression {
+  private class DoubleValue extends Value implements DoubleExpression,
+    Compilable {
 
     private static final long serialVersionUID = -1001674545929082424L;
 
@@ -289,15 +348,17 @@ public class InstancesHelper implements VariableDeclarations, Macro,
 
     @Override
     public double evaluate() {
-      if (isMissing()) {
-        missingAccessed = true;
-        return Utils.missingValue();
-      }
-      return instance.value(getIndex());
+      return value(getIndex());
+    }
+
+    @Override
+    public void compile(CodeGenerator code) {
+      compileCall(code, "value", Double.TYPE);
     }
   }
 
-  private class StringValue extends Value implements StringExpression {
+  private class StringValue extends Value implements StringExpression,
+    Compilable {
 
     private static final long serialVersionUID = -249974216283801876L;
 
@@ -309,11 +370,12 @@ public class InstancesHelper implements VariableDeclarations, Macro,
 
     @Override
     public String evaluate() {
-      if (isMissing()) {
-        missingAccessed = true;
-        return "";
-      }
-      return instance.stringValue(getIndex());
+      return stringValue(getIndex());
+    }
+
+    @Override
+    public void compile(CodeGenerator code) {
+      compileCall(code, "stringValue", String.class);
     }
   }
 }
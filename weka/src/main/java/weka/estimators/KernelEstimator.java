@@ -21,6 +21,8 @@
 
 package weka.estimators;
 
+import java.util.Arrays;
+
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
 import weka.core.Aggregateable;
@@ -62,6 +64,12 @@ public class KernelEstimator extends Estimator implements IncrementalEstimator,
   /** Whether we can optimise the kernel summation */
   private boolean m_AllWeightsOne;
 
+  /**
+   * Number of standard deviations either side of a query value within which
+   * kernels are summed (0 = consider all kernels)
+   */
+  private double m_SupportCutoff;
+
   /** Maximum percentage error permitted in probability calculations */
   private static double MAX_ERROR = 0.01;
 
@@ -178,6 +186,86 @@ public class KernelEstimator extends Estimator implements IncrementalEstimator,
       m_AllWeightsOne = false;
     }
     m_SumOfWeights += weight;
+    updateStandardDev();
+  }
+
+  /**
+   * Add a batch of data values to the current estimator. The values are
+   * sorted once and merged with the existing kernels rather than being
+   * inserted one at a time, which is much faster for large numbers of values.
+   * The resulting estimator is the same as the one obtained by calling
+   * addValue() for each value in turn.
+   * 
+   * @param data the new data values
+   * @param weights the weights assigned to the data values
+   */
+  public void addValues(double[] data, double[] weights) {
+
+    double[] rounded = new double[data.length];
+    for (int i = 0; i < data.length; i++) {
+      rounded[i] = round(data[i]);
+    }
+    int[] sortedIndices = Utils.stableSort(rounded);
+
+    // collapse the new values into distinct kernels, keeping arrival order
+    // within each kernel so that weights are summed as in addValue()
+    double[] newValues = new double[data.length];
+    double[] newWeights = new double[data.length];
+    boolean[] merged = new boolean[data.length];
+    int numNew = 0;
+    for (int index : sortedIndices) {
+      if (weights[index] == 0) {
+        continue;
+      }
+      if (numNew > 0 && newValues[numNew - 1] == rounded[index]) {
+        newWeights[numNew - 1] += weights[index];
+        merged[numNew - 1] = true;
+      } else {
+        newValues[numNew] = rounded[index];
+        newWeights[numNew] = weights[index];
+        numNew++;
+      }
+    }
+    for (int i = 0; i < data.length; i++) {
+      m_SumOfWeights += weights[i];
+    }
+
+    // merge with the existing kernels
+    double[] values = new double[Math.max(m_NumValues + numNew, 50)];
+    double[] kernelWeights = new double[values.length];
+    int i = 0, j = 0, count = 0;
+    while (i < m_NumValues || j < numNew) {
+      if (j == numNew || (i < m_NumValues && m_Values[i] < newValues[j])) {
+        values[count] = m_Values[i];
+        kernelWeights[count++] = m_Weights[i++];
+      } else if (i == m_NumValues || newValues[j] < m_Values[i]) {
+        values[count] = newValues[j];
+        kernelWeights[count++] = newWeights[j];
+        if (merged[j] || newWeights[j] != 1) {
+          m_AllWeightsOne = false;
+        }
+        j++;
+      } else {
+        values[count] = m_Values[i];
+        kernelWeights[count++] = m_Weights[i++] + newWeights[j++];
+        m_AllWeightsOne = false;
+      }
+    }
+    m_Values = values;
+    m_Weights = kernelWeights;
+    m_NumValues = count;
+    updateStandardDev();
+  }
+
+  /**
+   * Recomputes the kernel width from the range of the data and the sum of the
+   * weights
+   */
+  private void updateStandardDev() {
+
+    if (m_NumValues == 0) {
+      return;
+    }
     double range = m_Values[m_NumValues - 1] - m_Values[0];
     if (range > 0) {
       m_StandardDev = Math.max(range / Math.sqrt(m_SumOfWeights),
@@ -203,6 +291,9 @@ public class KernelEstimator extends Estimator implements IncrementalEstimator,
       return (Statistics.normalProbability(zUpper) - Statistics
           .normalProbability(zLower));
     }
+    if (m_SupportCutoff > 0) {
+      return getProbabilityWithinSupport(data);
+    }
     double weightSum = 0;
     int start = findNearestValue(data);
     for (int i = start; i < m_NumValues; i++) {
@@ -238,6 +329,53 @@ public class KernelEstimator extends Estimator implements IncrementalEstimator,
     return sum / m_SumOfWeights;
   }
 
+  /**
+   * Get a probability estimate for a value, summing only the kernels whose
+   * means lie within the support cutoff of the value. The kernels are located
+   * by binary search, so the cost depends on the number of kernels near the
+   * value rather than the total number of kernels.
+   * 
+   * @param data the value to estimate the probability of
+   * @return the estimated probability of the supplied value
+   */
+  private double getProbabilityWithinSupport(double data) {
+
+    double halfWidth = m_SupportCutoff * m_StandardDev + m_Precision / 2;
+    double upper = data + halfWidth;
+    double sum = 0;
+    for (int i = findNearestValue(data - halfWidth); i < m_NumValues
+        && m_Values[i] <= upper; i++) {
+      double delta = m_Values[i] - data;
+      double zLower = (delta - (m_Precision / 2)) / m_StandardDev;
+      double zUpper = (delta + (m_Precision / 2)) / m_StandardDev;
+      sum += (Statistics.normalProbability(zUpper) - Statistics
+          .normalProbability(zLower)) * m_Weights[i];
+    }
+    return sum / m_SumOfWeights;
+  }
+
+  /**
+   * Set the number of standard deviations either side of a query value within
+   * which kernels contribute to the probability estimate. Kernels further
+   * away are ignored. A value of 0 sums kernels outwards from the query value
+   * until the remaining contribution falls below a fixed relative error.
+   * 
+   * @param cutoff the number of standard deviations (0 to disable)
+   */
+  public void setSupportCutoff(double cutoff) {
+    m_SupportCutoff = cutoff;
+  }
+
+  /**
+   * Get the number of standard deviations either side of a query value within
+   * which kernels contribute to the probability estimate.
+   * 
+   * @return the number of standard deviations (0 if disabled)
+   */
+  public double getSupportCutoff() {
+    return m_SupportCutoff;
+  }
+
   /** Display a representation of this estimator */
   @Override
   public String toString() {
@@ -343,9 +481,8 @@ public class KernelEstimator extends Estimator implements IncrementalEstimator,
   public KernelEstimator aggregate(KernelEstimator toAggregate)
       throws Exception {
 
-    for (int i = 0; i < toAggregate.m_NumValues; i++) {
-      addValue(toAggregate.m_Values[i], toAggregate.m_Weights[i]);
-    }
+    addValues(Arrays.copyOf(toAggregate.m_Values, toAggregate.m_NumValues),
+        Arrays.copyOf(toAggregate.m_Weights, toAggregate.m_NumValues));
 
     return this;
   }
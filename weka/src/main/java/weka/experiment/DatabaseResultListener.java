@@ -21,9 +21,14 @@
 
 package weka.experiment;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 
 import weka.core.RevisionUtils;
 
@@ -60,6 +65,29 @@ public class DatabaseResultListener extends DatabaseUtils implements
   /** Stores the cached values */
   protected ArrayList<String> m_Cache = new ArrayList<String>();
 
+  /**
+   * Number of results to collect before inserting them as one batch (1 =
+   * insert each result as it arrives)
+   */
+  protected int m_batchSize = 1;
+
+  /** Whether to load all the keys in the results table up front */
+  protected boolean m_preloadKeys = false;
+
+  /** The keys of results that have not been inserted yet */
+  protected List<Object[]> m_pendingKeys = new ArrayList<Object[]>();
+
+  /** The results that have not been inserted yet */
+  protected List<Object[]> m_pendingResults = new ArrayList<Object[]>();
+
+  /**
+   * The (stored form of the) keys in the results table, when preloading keys
+   */
+  protected HashSet<List<Object>> m_preloadedKeys;
+
+  /** The table that the preloaded keys came from */
+  protected String m_preloadedKeysTable;
+
   /**
    * Returns a string describing this result listener
    * 
@@ -90,6 +118,9 @@ public class DatabaseResultListener extends DatabaseUtils implements
   @Override
   public void preProcess(ResultProducer rp) throws Exception {
 
+    if (m_pendingKeys.size() > 0) {
+      flushPendingResults();
+    }
     m_ResultProducer = rp;
     // Connect to the database and find out what table corresponds to this
     // ResultProducer
@@ -109,7 +140,13 @@ public class DatabaseResultListener extends DatabaseUtils implements
     if (m_ResultProducer != rp) {
       throw new Error("Unrecognized ResultProducer calling postProcess!!");
     }
-    disconnectFromDatabase();
+    try {
+      flushPendingResults();
+    } finally {
+      m_preloadedKeys = null;
+      m_preloadedKeysTable = null;
+      disconnectFromDatabase();
+    }
   }
 
   /**
@@ -182,7 +219,39 @@ public class DatabaseResultListener extends DatabaseUtils implements
 
     // null result could occur from a chain of doRunKeys calls
     if (result != null) {
-      putResultInTable(m_ResultsTableName, rp, key, result);
+      if (m_batchSize > 1) {
+        m_pendingKeys.add(key);
+        m_pendingResults.add(result);
+        if (m_pendingKeys.size() >= m_batchSize) {
+          flushPendingResults();
+        }
+      } else {
+        putResultInTable(m_ResultsTableName, rp, key, result);
+      }
+      if (m_preloadedKeys != null
+        && m_ResultsTableName.equals(m_preloadedKeysTable)) {
+        m_preloadedKeys.add(storedKey(key));
+      }
+    }
+  }
+
+  /**
+   * Inserts any results that are waiting to be sent to the database as a
+   * single batch.
+   * 
+   * @throws Exception if the results couldn't be sent to the database
+   */
+  public void flushPendingResults() throws Exception {
+
+    if (m_pendingKeys.size() == 0) {
+      return;
+    }
+    try {
+      putResultsInTable(m_ResultsTableName, m_ResultProducer, m_pendingKeys,
+        m_pendingResults);
+    } finally {
+      m_pendingKeys.clear();
+      m_pendingResults.clear();
     }
   }
 
@@ -211,8 +280,17 @@ public class DatabaseResultListener extends DatabaseUtils implements
     }
     boolean retval = false;
 
-    // Check the key cache first
-    if (!m_CacheKeyName.equals("")) {
+    if (isKeyPending(key)) {
+      retval = false;
+    } else if (m_preloadKeys && !Arrays.asList(key).contains(null)) {
+      // keys with null (wildcard) entries are looked up in the table
+      if (m_preloadedKeys == null
+        || !m_ResultsTableName.equals(m_preloadedKeysTable)) {
+        preloadKeys(rp);
+      }
+      retval = !m_preloadedKeys.contains(storedKey(key));
+    } else if (!m_CacheKeyName.equals("")) {
+      // Check the key cache first
       if (!isCacheValid(key)) {
         loadCache(rp, key);
       }
@@ -224,7 +302,7 @@ public class DatabaseResultListener extends DatabaseUtils implements
 
     if (m_Debug) {
       System.err.println(" ..." + (retval ? "required" : "not required")
-        + (m_CacheKeyName.equals("") ? "" : " (cache)"));
+        + (m_CacheKeyName.equals("") && !m_preloadKeys ? "" : " (cache)"));
       System.err.flush();
     }
     return retval;
@@ -287,6 +365,147 @@ public class DatabaseResultListener extends DatabaseUtils implements
     m_CacheKeyName = newCacheKeyName;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String batchSizeTipText() {
+    return "The number of results to collect before inserting them into the "
+      + "database in one transaction (1 = insert each result immediately).";
+  }
+
+  /**
+   * Get the number of results to insert in one batch.
+   * 
+   * @return the batch size
+   */
+  public int getBatchSize() {
+
+    return m_batchSize;
+  }
+
+  /**
+   * Set the number of results to insert in one batch.
+   * 
+   * @param batchSize the batch size
+   */
+  public void setBatchSize(int batchSize) {
+
+    m_batchSize = batchSize;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String preloadKeysTipText() {
+    return "Load all the keys in the results table with one query, rather "
+      + "than querying the database each time a result is checked.";
+  }
+
+  /**
+   * Get whether to load all the keys in the results table up front.
+   * 
+   * @return true if the keys are preloaded
+   */
+  public boolean getPreloadKeys() {
+
+    return m_preloadKeys;
+  }
+
+  /**
+   * Set whether to load all the keys in the results table up front.
+   * 
+   * @param preloadKeys true if the keys are to be preloaded
+   */
+  public void setPreloadKeys(boolean preloadKeys) {
+
+    m_preloadKeys = preloadKeys;
+  }
+
+  /**
+   * Returns true if a result for the supplied key is waiting to be inserted.
+   * 
+   * @param key the result key
+   * @return true if the key is in the pending batch
+   */
+  protected boolean isKeyPending(Object[] key) {
+
+    for (Object[] pending : m_pendingKeys) {
+      if (Arrays.equals(pending, key)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Converts a key to the form it has when read back from the results table.
+   * 
+   * @param key the result key
+   * @return the stored form of the key
+   */
+  protected List<Object> storedKey(Object[] key) {
+
+    List<Object> result = new ArrayList<Object>(key.length);
+    for (Object element : key) {
+      if (element instanceof String) {
+        result.add(keyStringValue(element.toString()));
+      } else {
+        result.add(element);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Executes a single database query to load all the keys in the results
+   * table.
+   * 
+   * @param rp the ResultProducer the keys belong to
+   * @throws Exception if an error occurs
+   */
+  protected void preloadKeys(ResultProducer rp) throws Exception {
+
+    if (m_Debug) {
+      System.err.print(" (loading keys)");
+      System.err.flush();
+    }
+    String[] keyNames = rp.getKeyNames();
+    Object[] keyTypes = rp.getKeyTypes();
+    String query = "SELECT ";
+    for (int i = 0; i < keyNames.length; i++) {
+      query += (i == 0 ? "" : ", ") + "Key_" + keyNames[i];
+    }
+    query += " FROM " + m_ResultsTableName;
+
+    HashSet<List<Object>> keys = new HashSet<List<Object>>();
+    ResultSet rs = select(query);
+    try {
+      while (rs.next()) {
+        List<Object> stored = new ArrayList<Object>(keyNames.length);
+        for (int i = 0; i < keyNames.length; i++) {
+          Object value;
+          if (keyTypes[i] instanceof Double) {
+            value = new Double(rs.getDouble(i + 1));
+          } else {
+            value = rs.getString(i + 1);
+          }
+          stored.add(rs.wasNull() ? null : value);
+        }
+        keys.add(stored);
+      }
+    } finally {
+      close(rs);
+    }
+    m_preloadedKeys = keys;
+    m_preloadedKeysTable = m_ResultsTableName;
+  }
+
   /**
    * Checks whether the current cache contents are valid for the supplied key.
    * 
@@ -388,6 +607,25 @@ public class DatabaseResultListener extends DatabaseUtils implements
     m_CacheKey = key.clone();
   }
 
+  /**
+   * Sets defaults for the batching fields when reading listeners that were
+   * saved before batching was added.
+   * 
+   * @param in the stream to read from
+   * @throws IOException if the listener can't be read
+   * @throws ClassNotFoundException if a class can't be found
+   */
+  private void readObject(ObjectInputStream in) throws IOException,
+    ClassNotFoundException {
+
+    m_batchSize = 1;
+    in.defaultReadObject();
+    if (m_pendingKeys == null) {
+      m_pendingKeys = new ArrayList<Object[]>();
+      m_pendingResults = new ArrayList<Object[]>();
+    }
+  }
+
   /**
    * Returns the revision string.
    * 
@@ -44,6 +44,7 @@ import java.sql.Types;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Properties;
 import java.util.StringTokenizer;
 import java.util.Vector;
@@ -1124,6 +1125,131 @@ public class DatabaseUtils implements Serializable, RevisionHandler {
     close();
   }
 
+  /**
+   * Inserts a batch of results into the database using a single prepared
+   * statement. The rows are sent as a JDBC batch (if the driver supports batch
+   * updates) and committed as one transaction. Values are stored in the same
+   * form as by putResultInTable().
+   * 
+   * @param tableName the name of the table where the results are stored
+   * @param rp the ResultProducer that generated the results
+   * @param keys the keys of the results
+   * @param results the results to store (one per key)
+   * @throws Exception if an error occurs
+   */
+  public void putResultsInTable(String tableName, ResultProducer rp,
+    List<Object[]> keys, List<Object[]> results) throws Exception {
+
+    if (keys.size() != results.size()) {
+      throw new Exception("Number of keys and results differ");
+    }
+    if (keys.size() == 0) {
+      return;
+    }
+
+    Object[] keyTypes = rp.getKeyTypes();
+    Object[] resultTypes = rp.getResultTypes();
+    int numColumns = keyTypes.length + resultTypes.length;
+    StringBuffer query = new StringBuffer();
+    query.append("INSERT INTO ").append(tableName).append(" VALUES ( ");
+    for (int i = 0; i < numColumns; i++) {
+      query.append(i == 0 ? "?" : ",?");
+    }
+    query.append(')');
+
+    if (m_Debug) {
+      System.err.println("Submitting " + keys.size() + " results: " + query);
+    }
+
+    boolean autoCommit = m_Connection.getAutoCommit();
+    boolean useBatch = m_Connection.getMetaData().supportsBatchUpdates();
+    PreparedStatement stmt = null;
+    try {
+      if (autoCommit) {
+        m_Connection.setAutoCommit(false);
+      }
+      stmt = m_Connection.prepareStatement(query.toString());
+      for (int n = 0; n < keys.size(); n++) {
+        Object[] key = keys.get(n);
+        Object[] result = results.get(n);
+        for (int i = 0; i < key.length; i++) {
+          setParameter(stmt, i + 1, keyTypes[i], key[i], true);
+        }
+        for (int i = 0; i < result.length; i++) {
+          setParameter(stmt, key.length + i + 1, resultTypes[i], result[i],
+            false);
+        }
+        if (useBatch) {
+          stmt.addBatch();
+        } else {
+          stmt.executeUpdate();
+        }
+      }
+      if (useBatch) {
+        stmt.executeBatch();
+      }
+      m_Connection.commit();
+    } catch (SQLException ex) {
+      try {
+        m_Connection.rollback();
+      } catch (SQLException e) {
+        // ignored
+      }
+      throw ex;
+    } finally {
+      if (stmt != null) {
+        try {
+          stmt.close();
+        } catch (SQLException e) {
+          // ignored
+        }
+      }
+      if (autoCommit) {
+        m_Connection.setAutoCommit(true);
+      }
+    }
+  }
+
+  /**
+   * Sets a parameter of a prepared insert statement, converting the value in
+   * the same way that putResultInTable() does for literal SQL.
+   * 
+   * @param stmt the statement
+   * @param index the (1-based) index of the parameter
+   * @param type the type of the column (a Double or String instance)
+   * @param value the value (may be null)
+   * @param isKey true if the value is part of the key
+   * @throws SQLException if the parameter can't be set
+   */
+  protected void setParameter(PreparedStatement stmt, int index, Object type,
+    Object value, boolean isKey) throws SQLException {
+
+    if (value == null || value instanceof Double && ((Double) value).isNaN()) {
+      // NaN is treated as NULL
+      stmt.setNull(index, type instanceof Double ? Types.DOUBLE
+        : Types.VARCHAR);
+    } else if (value instanceof Double) {
+      stmt.setDouble(index, ((Double) value).doubleValue());
+    } else if (value instanceof String && isKey) {
+      stmt.setString(index, keyStringValue(value.toString()));
+    } else if (value instanceof String) {
+      stmt.setString(index, value.toString());
+    } else {
+      stmt.setObject(index, value);
+    }
+  }
+
+  /**
+   * Returns the value that a string key is stored as in the database (which
+   * is what is returned when the key is read back).
+   * 
+   * @param s the key string
+   * @return the stored form of the key
+   */
+  public static String keyStringValue(String s) {
+    return s.replaceAll("\\\\", "/");
+  }
+
   /**
    * Inserts a + if the double is in scientific notation. MySQL doesn't
    * understand the number otherwise.
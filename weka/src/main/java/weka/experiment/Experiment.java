@@ -27,6 +27,7 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
@@ -97,6 +98,12 @@ import weka.experiment.xml.XMLExperiment;
  * </pre>
  * 
  * <pre>
+ * -num-slots &lt;num&gt;
+ *  The number of iterations to run in parallel.
+ *  (default 1 = sequential, 0 = number of cores)
+ * </pre>
+ * 
+ * <pre>
  * Options specific to result producer weka.experiment.RandomSplitResultProducer:
  * </pre>
  * 
@@ -234,6 +241,12 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
    */
   protected boolean m_AdvanceDataSetFirst = true;
 
+  /**
+   * Number of iterations to run in parallel (1 = run sequentially, 0 = use
+   * the number of available cores)
+   */
+  protected int m_numExecutionSlots = 1;
+
   /**
    * Sets whether the first attribute is treated as the class for all datasets
    * involved in the experiment. This information is not output with the result
@@ -246,6 +259,27 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
     m_ClassFirst = flag;
   }
 
+  /**
+   * Set the number of iterations to run in parallel. 1 (the default) runs the
+   * iterations sequentially and 0 uses the number of available cores.
+   * 
+   * @param slots the number of execution slots
+   */
+  public void setNumExecutionSlots(int slots) {
+
+    m_numExecutionSlots = slots;
+  }
+
+  /**
+   * Get the number of iterations to run in parallel.
+   * 
+   * @return the number of execution slots
+   */
+  public int getNumExecutionSlots() {
+
+    return m_numExecutionSlots;
+  }
+
   /**
    * Get the value of m_DataSetFirstFirst.
    * 
@@ -625,8 +659,27 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
     }
   }
 
+  /**
+   * Runs all iterations of the experiment, continuing past errors. If more
+   * than one execution slot has been configured, the iterations are run in
+   * parallel by a ParallelExperimentRunner; results still reach the result
+   * listener in the same order as for a sequential run.
+   * 
+   * @param verbose true to output progress information to stdout
+   */
   public void runExperiment(boolean verbose) {
 
+    if (m_numExecutionSlots != 1 && hasMoreIterations()) {
+      try {
+        new ParallelExperimentRunner(this, m_numExecutionSlots, verbose).run();
+      } catch (Exception ex) {
+        ex.printStackTrace();
+        System.err.println(ex.getMessage());
+      }
+      m_Finished = true;
+      return;
+    }
+
     while (hasMoreIterations()) {
       try {
         if (verbose) {
@@ -803,7 +856,7 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
   @Override
   public Enumeration<Option> listOptions() {
 
-    Vector<Option> newVector = new Vector<Option>(6);
+    Vector<Option> newVector = new Vector<Option>(7);
 
     newVector.addElement(new Option(
       "\tThe lower run number to start the experiment from.\n"
@@ -826,6 +879,10 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
     newVector.addElement(new Option(
       "\tA string containing any notes about the experiment.\n"
         + "\t(default none)", "N", 1, "-N <string>"));
+    newVector.addElement(new Option(
+      "\tThe number of iterations to run in parallel.\n"
+        + "\t(default 1 = sequential, 0 = number of cores)", "num-slots", 1,
+      "-num-slots <num>"));
 
     if ((m_ResultProducer != null)
       && (m_ResultProducer instanceof OptionHandler)) {
@@ -882,6 +939,12 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
    * </pre>
    * 
    * <pre>
+   * -num-slots &lt;num&gt;
+   *  The number of iterations to run in parallel.
+   *  (default 1 = sequential, 0 = number of cores)
+   * </pre>
+   * 
+   * <pre>
    * Options specific to result producer weka.experiment.RandomSplitResultProducer:
    * </pre>
    * 
@@ -987,6 +1050,13 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
 
     setNotes(Utils.getOption('N', options));
 
+    String slotsString = Utils.getOption("num-slots", options);
+    if (slotsString.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(slotsString));
+    } else {
+      setNumExecutionSlots(1);
+    }
+
     getDatasets().removeAllElements();
     String dataName;
     do {
@@ -1056,7 +1126,7 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
     }
 
     String[] options = new String[rpOptions.length + getDatasets().size() * 2
-      + 11];
+      + 13];
     int current = 0;
 
     options[current++] = "-L";
@@ -1081,6 +1151,10 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
       options[current++] = "-N";
       options[current++] = getNotes();
     }
+    if (getNumExecutionSlots() != 1) {
+      options[current++] = "-num-slots";
+      options[current++] = "" + getNumExecutionSlots();
+    }
     options[current++] = "--";
 
     System.arraycopy(rpOptions, 0, options, current, rpOptions.length);
@@ -1199,6 +1273,21 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
     }
   }
 
+  /**
+   * Restores the number of execution slots to the default (sequential) for
+   * experiments that were saved before the option existed.
+   * 
+   * @param in the stream to read from
+   * @throws IOException if the experiment can't be read
+   * @throws ClassNotFoundException if a class can't be found
+   */
+  private void readObject(ObjectInputStream in) throws IOException,
+    ClassNotFoundException {
+
+    m_numExecutionSlots = 1;
+    in.defaultReadObject();
+  }
+
   /**
    * Configures/Runs the Experiment from the command line.
    * 
@@ -1263,6 +1352,11 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
           }
         } while (dataName.length() != 0);
 
+        // allow the number of execution slots to be overridden too
+        String slotsString = Utils.getOption("num-slots", args);
+        if (slotsString.length() != 0) {
+          exp.setNumExecutionSlots(Integer.parseInt(slotsString));
+        }
       }
       System.err.println("Experiment:\n" + exp.toString());
 
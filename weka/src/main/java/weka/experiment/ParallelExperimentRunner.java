@@ -0,0 +1,477 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    ParallelExperimentRunner.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.experiment;
+
+import java.beans.PropertyDescriptor;
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.SerializedObject;
+import weka.core.converters.AbstractFileLoader;
+import weka.core.converters.ConverterUtils;
+
+/**
+ * Runs the iterations of an (initialized) experiment in parallel on a pool of
+ * local threads. Each unit of work is a single run of the result producer on
+ * one dataset (and one value of the custom property, if the property iterator
+ * is in use), and executes against its own copy of the result producer.
+ * Results produced by a unit are buffered and passed on to the experiment's
+ * result listener in exactly the order that a sequential run would produce
+ * them, so listeners that write files see the same output. Checks for whether
+ * a result is required are passed straight through to the experiment's result
+ * listener, so an interrupted experiment that stores its results in a
+ * database can be resumed.
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public class ParallelExperimentRunner implements RevisionHandler {
+
+  /** The experiment to run */
+  protected Experiment m_experiment;
+
+  /** Number of units to run in parallel (0 = number of cores) */
+  protected int m_numExecutionSlots;
+
+  /** Whether to print progress to stdout */
+  protected boolean m_verbose;
+
+  /** Serialized copy of the experiment's result producer (no listener) */
+  protected SerializedObject m_producerTemplate;
+
+  /** Serialized copies of the values of the custom property */
+  protected SerializedObject[] m_propertyTemplates;
+
+  /** Datasets that are currently loaded, keyed by dataset index */
+  protected Map<Integer, Instances> m_loadedData =
+    new HashMap<Integer, Instances>();
+
+  /** Number of units still to run for each dataset */
+  protected int[] m_unitsRemainingForDataset;
+
+  /**
+   * A unit of work - one run on one dataset for one property value
+   */
+  protected static class Unit {
+
+    /** position of this unit in the sequential ordering */
+    protected int m_index;
+
+    /** the run number */
+    protected int m_run;
+
+    /** the dataset index */
+    protected int m_dataset;
+
+    /** the property index (or -1 if no property iterator) */
+    protected int m_property;
+
+    /**
+     * Constructor
+     *
+     * @param index position in the sequential ordering
+     * @param run the run number
+     * @param dataset the dataset index
+     * @param property the property index
+     */
+    protected Unit(int index, int run, int dataset, int property) {
+      m_index = index;
+      m_run = run;
+      m_dataset = dataset;
+      m_property = property;
+    }
+  }
+
+  /**
+   * Result listener used by the result producer of a single unit. Results are
+   * buffered until the unit finishes; checks for required results are passed
+   * on to the sink.
+   */
+  protected static class UnitResultListener implements ResultListener {
+
+    /** For serialization */
+    private static final long serialVersionUID = -3079453446587913140L;
+
+    /** The sink that results will be passed to */
+    protected transient OrderedResultSink m_sink;
+
+    /** The buffered results as {key, result} pairs */
+    protected List<Object[][]> m_results = new ArrayList<Object[][]>();
+
+    /**
+     * Constructor
+     *
+     * @param sink the sink that results will be passed to
+     */
+    protected UnitResultListener(OrderedResultSink sink) {
+      m_sink = sink;
+    }
+
+    @Override
+    public String[] determineColumnConstraints(ResultProducer rp)
+      throws Exception {
+      // constraints have already been applied to the template producer
+      return null;
+    }
+
+    @Override
+    public void preProcess(ResultProducer rp) throws Exception {
+      // the sink's listener has already been prepared
+    }
+
+    @Override
+    public void postProcess(ResultProducer rp) throws Exception {
+      // the sink's listener is post processed once all units have finished
+    }
+
+    @Override
+    public void acceptResult(ResultProducer rp, Object[] key, Object[] result)
+      throws Exception {
+      m_results.add(new Object[][] { key, result });
+    }
+
+    @Override
+    public boolean isResultRequired(ResultProducer rp, Object[] key)
+      throws Exception {
+      return m_sink.isResultRequired(key);
+    }
+  }
+
+  /**
+   * Passes results to the experiment's result listener in the order of the
+   * units that produced them. Units may finish in any order; results of a unit
+   * are held until all units before it have finished.
+   */
+  protected static class OrderedResultSink {
+
+    /** The experiment's result listener */
+    protected ResultListener m_listener;
+
+    /** The experiment's result producer (what the listener expects) */
+    protected ResultProducer m_producer;
+
+    /** Buffered results of finished units, keyed by unit index */
+    protected Map<Integer, List<Object[][]>> m_finished =
+      new HashMap<Integer, List<Object[][]>>();
+
+    /** Index of the next unit whose results are to be passed on */
+    protected int m_next;
+
+    /**
+     * Constructor
+     *
+     * @param listener the experiment's result listener
+     * @param producer the experiment's result producer
+     */
+    protected OrderedResultSink(ResultListener listener,
+      ResultProducer producer) {
+      m_listener = listener;
+      m_producer = producer;
+    }
+
+    /**
+     * Checks with the listener whether a result is required
+     *
+     * @param key the key of the result
+     * @return true if the result is required
+     * @throws Exception if a problem occurs
+     */
+    protected synchronized boolean isResultRequired(Object[] key)
+      throws Exception {
+      return m_listener.isResultRequired(m_producer, key);
+    }
+
+    /**
+     * Called when a unit has finished (successfully or not)
+     *
+     * @param unitIndex the index of the unit
+     * @param results the results produced by the unit
+     * @throws Exception if the listener fails to accept a result
+     */
+    protected synchronized void unitFinished(int unitIndex,
+      List<Object[][]> results) throws Exception {
+      m_finished.put(unitIndex, results);
+      List<Object[][]> next;
+      while ((next = m_finished.remove(m_next)) != null) {
+        m_next++;
+        for (Object[][] r : next) {
+          m_listener.acceptResult(m_producer, r[0], r[1]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param experiment the experiment to run (must have been initialized)
+   * @param numSlots the number of units to run in parallel (0 = number of
+   *          cores)
+   * @param verbose true to print progress to stdout
+   */
+  public ParallelExperimentRunner(Experiment experiment, int numSlots,
+    boolean verbose) {
+    m_experiment = experiment;
+    m_numExecutionSlots = numSlots;
+    m_verbose = verbose;
+  }
+
+  /**
+   * Enumerates the units of the experiment in the order that a sequential run
+   * would carry them out.
+   *
+   * @return the units
+   */
+  protected List<Unit> createUnits() {
+    int numRuns = m_experiment.getRunUpper() - m_experiment.getRunLower() + 1;
+    int numData = m_experiment.getDatasets().size();
+    int numProps =
+      m_experiment.getUsePropertyIterator() ? m_experiment
+        .getPropertyArrayLength() : 1;
+
+    List<Unit> units = new ArrayList<Unit>();
+    m_unitsRemainingForDataset = new int[numData];
+    for (int outer = 0; outer < (m_experiment.getAdvanceDataSetFirst() ? numProps
+      : numData); outer++) {
+      for (int middle = 0; middle < (m_experiment.getAdvanceDataSetFirst() ? numData
+        : numProps); middle++) {
+        int prop = m_experiment.getAdvanceDataSetFirst() ? outer : middle;
+        int data = m_experiment.getAdvanceDataSetFirst() ? middle : outer;
+        for (int r = 0; r < numRuns; r++) {
+          units.add(new Unit(units.size(), m_experiment.getRunLower() + r,
+            data, m_experiment.getUsePropertyIterator() ? prop : -1));
+          m_unitsRemainingForDataset[data]++;
+        }
+      }
+    }
+
+    return units;
+  }
+
+  /**
+   * Runs all the units of the experiment, continuing past errors in
+   * individual units.
+   *
+   * @throws Exception if the experiment can't be run at all
+   */
+  public void run() throws Exception {
+    if (m_numExecutionSlots < 0) {
+      throw new Exception("Number of execution slots needs to be >= 0!");
+    }
+
+    ResultProducer producer = m_experiment.getResultProducer();
+    ResultListener listener = m_experiment.getResultListener();
+
+    // copy the producer without its listener (the listener may hold a lot of
+    // state, or resources that can't be serialized)
+    producer.setResultListener(null);
+    try {
+      m_producerTemplate = new SerializedObject(producer);
+    } finally {
+      producer.setResultListener(listener);
+    }
+    if (m_experiment.getUsePropertyIterator()) {
+      m_propertyTemplates =
+        new SerializedObject[m_experiment.getPropertyArrayLength()];
+      for (int i = 0; i < m_propertyTemplates.length; i++) {
+        m_propertyTemplates[i] =
+          new SerializedObject(m_experiment.getPropertyArrayValue(i));
+      }
+    }
+
+    final OrderedResultSink sink = new OrderedResultSink(listener, producer);
+    List<Unit> units = createUnits();
+
+    int numThreads =
+      m_numExecutionSlots == 0 ? Runtime.getRuntime().availableProcessors()
+        : m_numExecutionSlots;
+    ExecutorService executorPool = Executors.newFixedThreadPool(numThreads);
+    try {
+      for (final Unit unit : units) {
+        executorPool.submit(new Runnable() {
+          @Override
+          public void run() {
+            UnitResultListener unitListener = new UnitResultListener(sink);
+            try {
+              runUnit(unit, unitListener);
+            } catch (Throwable ex) {
+              // as for a sequential run, report and keep going
+              ex.printStackTrace();
+              System.err.println(ex.getMessage());
+            }
+            try {
+              sink.unitFinished(unit.m_index, unitListener.m_results);
+            } catch (Exception ex) {
+              ex.printStackTrace();
+              System.err.println(ex.getMessage());
+            }
+          }
+        });
+      }
+      executorPool.shutdown();
+      executorPool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    } finally {
+      executorPool.shutdownNow();
+    }
+  }
+
+  /**
+   * Runs a single unit
+   *
+   * @param unit the unit to run
+   * @param unitListener the listener to send the unit's results to
+   * @throws Exception if a problem occurs
+   */
+  protected void runUnit(Unit unit, UnitResultListener unitListener)
+    throws Exception {
+    if (m_verbose) {
+      String current = "Iteration:";
+      if (unit.m_property >= 0) {
+        String ctype =
+          m_experiment.getPropertyArray().getClass().getComponentType()
+            .getName();
+        int lastDot = ctype.lastIndexOf('.');
+        if (lastDot != -1) {
+          ctype = ctype.substring(lastDot + 1);
+        }
+        current +=
+          " " + ctype + "=" + (unit.m_property + 1) + ":"
+            + m_experiment.getPropertyArrayValue(unit.m_property).getClass()
+              .getName();
+      }
+      current +=
+        " Dataset="
+          + ((File) m_experiment.getDatasets().elementAt(unit.m_dataset))
+            .getName() + " Run=" + unit.m_run;
+      System.out.println(current);
+    }
+
+    ResultProducer producer = (ResultProducer) m_producerTemplate.getObject();
+    if (unit.m_property >= 0) {
+      setProperty(0, producer, m_propertyTemplates[unit.m_property].getObject());
+    }
+    producer.setResultListener(unitListener);
+    producer.preProcess();
+    try {
+      producer.setInstances(acquireDataset(unit.m_dataset));
+      producer.doRun(unit.m_run);
+    } finally {
+      releaseDataset(unit.m_dataset);
+      producer.postProcess();
+    }
+  }
+
+  /**
+   * Recursively sets the custom property value, by setting all values along
+   * the property path.
+   *
+   * @param propertyDepth the current position along the property path
+   * @param origValue the object to set the property on
+   * @param value the value to set the property to
+   * @throws Exception if an error occurs
+   */
+  protected void setProperty(int propertyDepth, Object origValue, Object value)
+    throws Exception {
+    PropertyNode[] path = m_experiment.getPropertyPath();
+    PropertyDescriptor current = path[propertyDepth].property;
+    Object subVal = value;
+    if (propertyDepth < path.length - 1) {
+      Method getter = current.getReadMethod();
+      subVal = getter.invoke(origValue);
+      setProperty(propertyDepth + 1, subVal, value);
+    }
+    Method setter = current.getWriteMethod();
+    setter.invoke(origValue, subVal);
+  }
+
+  /**
+   * Get a private copy of a dataset, loading it if no other unit has it
+   * loaded. Datasets are loaded in the same way as by Experiment.
+   *
+   * @param index the index of the dataset
+   * @return a copy of the dataset
+   * @throws Exception if the dataset can't be loaded
+   */
+  protected Instances acquireDataset(int index) throws Exception {
+    Instances data;
+    synchronized (m_loadedData) {
+      data = m_loadedData.get(index);
+    }
+    if (data == null) {
+      File currentFile = (File) m_experiment.getDatasets().elementAt(index);
+      AbstractFileLoader loader = ConverterUtils.getLoaderForFile(currentFile);
+      loader.setFile(currentFile);
+      data = new Instances(loader.getDataSet());
+      // only set class attribute if not already done by loader
+      if (data.classIndex() == -1) {
+        if (m_experiment.m_ClassFirst) {
+          data.setClassIndex(0);
+        } else {
+          data.setClassIndex(data.numAttributes() - 1);
+        }
+      }
+      synchronized (m_loadedData) {
+        if (m_loadedData.containsKey(index)) {
+          data = m_loadedData.get(index);
+        } else {
+          m_loadedData.put(index, data);
+        }
+      }
+    }
+
+    return new Instances(data);
+  }
+
+  /**
+   * Signals that a unit has finished with a dataset, so that it can be
+   * released once no more units need it
+   *
+   * @param index the index of the dataset
+   */
+  protected void releaseDataset(int index) {
+    synchronized (m_loadedData) {
+      if (--m_unitsRemainingForDataset[index] == 0) {
+        m_loadedData.remove(index);
+      }
+    }
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -21,6 +21,7 @@
 
 package weka.filters;
 
+import weka.core.Attribute;
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
 import weka.core.CapabilitiesHandler;
@@ -44,10 +45,18 @@ import weka.core.converters.ConverterUtils.DataSource;
 import java.io.FileOutputStream;
 import java.io.PrintWriter;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * An abstract class for instance filters: objects that take instances as input,
@@ -119,6 +128,9 @@ public abstract class Filter implements Serializable, CapabilitiesHandler,
   /** Whether capabilities should not be checked before classifier is built. */
   protected boolean m_DoNotCheckCapabilities = false;
 
+  /** The minimum number of instances in a chunk filtered in parallel */
+  public static final int MIN_CHUNK_SIZE = 1000;
+
   /**
    * Returns true if the a new batch was started, either a new instance of the
    * filter was created or the batchFinished() method got called.
@@ -700,6 +712,8 @@ public abstract class Filter implements Serializable, CapabilitiesHandler,
      */
     if (filter instanceof SimpleBatchFilter) {
       ((SimpleBatchFilter)filter).input(data);
+    } else if (filter instanceof MultiFilter) {
+      ((MultiFilter) filter).input(data);
     } else {
       for (int i = 0; i < data.numInstances(); i++) {
         filter.input(data.instance(i));
@@ -719,6 +733,231 @@ public abstract class Filter implements Serializable, CapabilitiesHandler,
     return newData;
   }
 
+  /**
+   * Filters an entire set of instances through a filter and returns the new
+   * set. If the filter is a RowParallelFilter whose output format has been
+   * determined already, the data is split into chunks of at least
+   * MIN_CHUNK_SIZE instances that are filtered in parallel by copies of the
+   * filter. The order of the instances is preserved.
+   *
+   * @param data the data to be filtered
+   * @param filter the filter to be used
+   * @param numSlots the number of execution slots (threads) to use, 0 to use
+   *          the number of cores
+   * @return the filtered set of data
+   * @throws Exception if the filter can't be used successfully
+   * @see RowParallelFilter
+   */
+  public static Instances useFilter(Instances data, Filter filter,
+    int numSlots) throws Exception {
+    Instances result;
+
+    if ((numSlots != 1)
+      && (filter instanceof RowParallelFilter)
+      && (filter.isFirstBatchDone() || ((filter instanceof StreamableFilter) && filter
+        .isOutputFormatDefined()))) {
+      result = useFilters(new Filter[] { filter }, 0, 1, data, numSlots);
+      if (result != null) {
+        return result;
+      }
+    }
+
+    return useFilter(data, filter);
+  }
+
+  /**
+   * Filters an entire set of instances through the filters from index
+   * <code>from</code> (inclusive) to index <code>to</code> (exclusive), in
+   * parallel: the data is split into chunks of at least MIN_CHUNK_SIZE
+   * instances, each of which is passed through its own copies of the filters.
+   * The input formats of the filters have to be set already. Afterwards the
+   * batch of the given filters is finished as well. <p/>
+   *
+   * This gives up unless all the filters are RowParallelFilters, as the result
+   * of any other filter may depend on the instances it has seen before (e.g.
+   * the IDs assigned by AddID), and hence on how the data was split up. It
+   * also gives up for data with string or relational attributes, whose values
+   * are stored in the formats of the individual filter copies.
+   *
+   * @param filters the filters
+   * @param from the index of the first filter to apply
+   * @param to the index after the last filter to apply
+   * @param data the data to be filtered
+   * @param numSlots the number of execution slots (threads) to use, 0 to use
+   *          the number of cores
+   * @return the filtered data, or null if the data has to be filtered in a
+   *         single chunk (in which case the filters haven't been used)
+   * @throws Exception if the filters can't be used successfully
+   * @see RowParallelFilter
+   */
+  protected static Instances useFilters(Filter[] filters, final int from,
+    final int to, final Instances data, int numSlots) throws Exception {
+    ExecutorService executor;
+    List<Future<Instances>> chunks;
+    Instances result;
+    Instances chunk;
+    int numChunks;
+    int i;
+    int n;
+
+    numChunks = numSlots <= 0 ? Runtime.getRuntime().availableProcessors()
+      : numSlots;
+    numChunks = Math.min(numChunks, data.numInstances() / MIN_CHUNK_SIZE);
+    for (i = from; i < to; i++) {
+      if (!(filters[i] instanceof RowParallelFilter)) {
+        return null;
+      }
+    }
+    if ((numChunks <= 1) || hasStringOrRelational(data)
+      || hasStringOrRelational(filters[to - 1].getOutputFormat())) {
+      return null;
+    }
+
+    executor = Executors.newFixedThreadPool(numChunks, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "Filter chunk");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+
+    try {
+      chunks = new ArrayList<Future<Instances>>();
+      for (i = 0; i < numChunks; i++) {
+        final int first = (int) ((long) data.numInstances() * i / numChunks);
+        final int last = (int) ((long) data.numInstances() * (i + 1) / numChunks);
+        final Filter[] copies = new Filter[to];
+        for (n = from; n < to; n++) {
+          copies[n] = makeCopy(filters[n]);
+        }
+
+        chunks.add(executor.submit(new Callable<Instances>() {
+          @Override
+          public Instances call() throws Exception {
+            Instances output =
+              new Instances(copies[to - 1].getOutputFormat(), last - first);
+            useFilters(copies, from, to, data, first, last, output);
+            return output;
+          }
+        }));
+      }
+
+      result = new Instances(filters[to - 1].getOutputFormat(),
+        data.numInstances());
+      for (Future<Instances> future : chunks) {
+        try {
+          chunk = future.get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception) {
+            throw (Exception) e.getCause();
+          }
+          throw e;
+        }
+
+        for (n = 0; n < chunk.numInstances(); n++) {
+          result.add(chunk.instance(n));
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // finish the batch of the original filters, too
+    useFilters(filters, from, to, data, 0, 0, result);
+
+    return result;
+  }
+
+  /**
+   * Passes the instances from index <code>first</code> (inclusive) to index
+   * <code>last</code> (exclusive) through the filters from index
+   * <code>from</code> (inclusive) to index <code>to</code> (exclusive) and
+   * finishes the batch of each of the filters, adding the output of the last
+   * filter to the given dataset. Each instance is passed through all the
+   * filters before the next one, so that no intermediate datasets get created.
+   * The input formats of the filters have to be set already.
+   *
+   * @param filters the filters
+   * @param from the index of the first filter to apply
+   * @param to the index after the last filter to apply
+   * @param data the data to be filtered
+   * @param first the index of the first instance to filter
+   * @param last the index after the last instance to filter
+   * @param output the dataset to add the filtered instances to
+   * @return false if any of the filters only output instances at the end of
+   *         the batch
+   * @throws Exception if the filters can't be used successfully
+   */
+  protected static boolean useFilters(Filter[] filters, int from, int to,
+    Instances data, int first, int last, Instances output) throws Exception {
+    boolean result;
+    Instance processed;
+    int i;
+
+    if ((filters[from] instanceof SimpleBatchFilter) && (last > first)) {
+      // hand the data to the first filter in one go
+      if (((SimpleBatchFilter) filters[from]).input(new Instances(data, first,
+        last - first))) {
+        while ((processed = filters[from].output()) != null) {
+          pass(filters, from + 1, to, processed, output);
+        }
+      }
+    } else {
+      for (i = first; i < last; i++) {
+        pass(filters, from, to, data.instance(i), output);
+      }
+    }
+
+    // finish the batch filter by filter, passing on instances held back
+    result = true;
+    for (i = from; i < to; i++) {
+      filters[i].batchFinished();
+      while ((processed = filters[i].output()) != null) {
+        result = false;
+        pass(filters, i + 1, to, processed, output);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Passes an instance through the filters from index <code>from</code>
+   * (inclusive) to index <code>to</code> (exclusive), adding the output of the
+   * last filter to the given dataset.
+   *
+   * @param filters the filters
+   * @param from the index of the first filter to apply
+   * @param to the index after the last filter to apply
+   * @param instance the instance to filter
+   * @param output the dataset to add the filtered instances to
+   * @throws Exception if the filters can't be used successfully
+   */
+  protected static void pass(Filter[] filters, int from, int to,
+    Instance instance, Instances output) throws Exception {
+    Instance processed;
+
+    if (from == to) {
+      output.add(instance);
+    } else if (filters[from].input(instance)) {
+      while ((processed = filters[from].output()) != null) {
+        pass(filters, from + 1, to, processed, output);
+      }
+    }
+  }
+
+  /**
+   * Checks whether the given dataset has string or relational attributes.
+   *
+   * @param data the dataset to check
+   * @return true if the dataset has string or relational attributes
+   */
+  protected static boolean hasStringOrRelational(Instances data) {
+    return data.checkForStringAttributes()
+      || data.checkForAttributeType(Attribute.RELATIONAL);
+  }
+
   /**
    * Returns a description of the filter, by default only the classname.
    *
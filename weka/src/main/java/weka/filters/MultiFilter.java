@@ -30,6 +30,10 @@ import weka.core.*;
 /**
  * <!-- globalinfo-start --> Applies several filters successively. In case all
  * supplied filters are StreamableFilters, it will act as a streamable one, too.
+ * Successive streamable filters (and, once the first batch has been processed,
+ * all filters) are applied in a single pass over the data, each instance being
+ * passed through all of them in turn, and can be applied to chunks of the data
+ * in parallel.
  * <p/>
  * <!-- globalinfo-end -->
  * 
@@ -46,6 +50,13 @@ import weka.core.*;
  *  A filter to apply (can be specified multiple times).
  * </pre>
  * 
+ * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of execution slots to use when filtering a batch.
+ *  (default 1 - i.e. no parallelism)
+ *  (use 0 to auto-detect number of cores)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author FracPete (fracpete at waikato dot ac dot nz)
@@ -66,6 +77,9 @@ public class MultiFilter extends SimpleStreamFilter implements WeightedAttribute
   /** whether we already checked the streamable state */
   protected boolean m_StreamableChecked = false;
 
+  /** The number of threads to use when filtering a batch */
+  protected int m_numExecutionSlots = 1;
+
   /**
    * Returns a string describing this filter
    * 
@@ -75,7 +89,11 @@ public class MultiFilter extends SimpleStreamFilter implements WeightedAttribute
   @Override
   public String globalInfo() {
     return "Applies several filters successively. In case all supplied filters "
-      + "are StreamableFilters, it will act as a streamable one, too.";
+      + "are StreamableFilters, it will act as a streamable one, too. "
+      + "Successive streamable filters (and, once the first batch has been "
+      + "processed, all filters) are applied in a single pass over the data, "
+      + "each instance being passed through all of them in turn, and can be "
+      + "applied to chunks of the data in parallel.";
   }
 
   /**
@@ -91,6 +109,11 @@ public class MultiFilter extends SimpleStreamFilter implements WeightedAttribute
       "\tA filter to apply (can be specified multiple times).", "F", 1,
       "-F <classname [options]>"));
 
+    result.addElement(new Option("\tNumber of execution slots to use when "
+      + "filtering a batch.\n" + "\t(default 1 - i.e. no parallelism)\n"
+      + "\t(use 0 to auto-detect number of cores)", "num-slots", 1,
+      "-num-slots <num>"));
+
     result.addAll(Collections.list(super.listOptions()));
 
     return result.elements();
@@ -113,6 +136,13 @@ public class MultiFilter extends SimpleStreamFilter implements WeightedAttribute
    *  A filter to apply (can be specified multiple times).
    * </pre>
    * 
+   * <pre>
+   * -num-slots &lt;num&gt;
+   *  Number of execution slots to use when filtering a batch.
+   *  (default 1 - i.e. no parallelism)
+   *  (use 0 to auto-detect number of cores)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -141,6 +171,13 @@ public class MultiFilter extends SimpleStreamFilter implements WeightedAttribute
     }
 
     setFilters(filters.toArray(new Filter[filters.size()]));
+
+    tmpStr = Utils.getOption("num-slots", options);
+    if (tmpStr.length() > 0) {
+      setNumExecutionSlots(Integer.parseInt(tmpStr));
+    } else {
+      setNumExecutionSlots(1);
+    }
   }
 
   /**
@@ -166,6 +203,11 @@ public class MultiFilter extends SimpleStreamFilter implements WeightedAttribute
       result.add(getFilterSpec(getFilter(i)));
     }
 
+    if (getNumExecutionSlots() != 1) {
+      result.add("-num-slots");
+      result.add("" + getNumExecutionSlots());
+    }
+
     return result.toArray(new String[result.size()]);
   }
 
@@ -240,6 +282,40 @@ public class MultiFilter extends SimpleStreamFilter implements WeightedAttribute
     return m_Filters[index];
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) to use when filtering a "
+      + "batch. Successive filters that process each instance independently "
+      + "of the others (RowParallelFilters) are then applied to chunks of the "
+      + "data in parallel, each chunk by its own copy of the filters. 0 means "
+      + "auto-detect the number of cores.";
+  }
+
+  /**
+   * Sets the number of execution slots (threads) to use when filtering a
+   * batch.
+   * 
+   * @param numSlots the number of slots, 0 to use the number of cores
+   */
+  public void setNumExecutionSlots(int numSlots) {
+    m_numExecutionSlots = numSlots;
+  }
+
+  /**
+   * Gets the number of execution slots (threads) to use when filtering a
+   * batch.
+   * 
+   * @return the number of slots
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
   /**
    * returns the filter classname and the options as one string
    * 
@@ -275,13 +351,7 @@ public class MultiFilter extends SimpleStreamFilter implements WeightedAttribute
       m_StreamableChecked = true;
 
       for (i = 0; i < getFilters().length; i++) {
-        if (getFilter(i) instanceof MultiFilter) {
-          m_Streamable = ((MultiFilter) getFilter(i)).isStreamableFilter();
-        } else if (getFilter(i) instanceof StreamableFilter) {
-          m_Streamable = true;
-        } else {
-          m_Streamable = false;
-        }
+        m_Streamable = isStreamable(getFilter(i));
 
         if (!m_Streamable) {
           break;
@@ -296,6 +366,20 @@ public class MultiFilter extends SimpleStreamFilter implements WeightedAttribute
     return m_Streamable;
   }
 
+  /**
+   * tests whether the given filter is streamable
+   * 
+   * @param filter the filter to test
+   * @return true if the filter is streamable
+   */
+  protected boolean isStreamable(Filter filter) {
+    if (filter instanceof MultiFilter) {
+      return ((MultiFilter) filter).isStreamableFilter();
+    } else {
+      return (filter instanceof StreamableFilter);
+    }
+  }
+
   /**
    * Returns true if the output format is immediately available after the input
    * format has been set and not only after all the data has been seen (see
@@ -373,30 +457,168 @@ public class MultiFilter extends SimpleStreamFilter implements WeightedAttribute
     return result;
   }
 
+  /**
+   * Input an instance for filtering. If the data is to be filtered in parallel,
+   * the instances of the first batch are collected and only filtered in
+   * batchFinished(), otherwise they are processed immediately.
+   * 
+   * @param instance the input instance
+   * @return true if the filtered instance may now be collected with output().
+   * @throws IllegalStateException if no input structure has been defined
+   * @throws Exception if something goes wrong
+   * @see #batchFinished()
+   */
+  @Override
+  public boolean input(Instance instance) throws Exception {
+    if ((getNumExecutionSlots() == 1) || isFirstBatchDone()
+      || !isStreamableFilter()) {
+      return super.input(instance);
+    }
+
+    if (getInputFormat() == null) {
+      throw new IllegalStateException("No input instance format defined");
+    }
+
+    if (m_NewBatch) {
+      resetQueue();
+      m_NewBatch = false;
+    }
+
+    bufferInput(instance);
+
+    return false;
+  }
+
+  /**
+   * Input a batch of instances for filtering. Once the first batch has been
+   * processed, the complete batch is filtered in a single pass (in parallel,
+   * if more than one execution slot is available) and the filtered instances
+   * are made available immediately. Before that, the instances are input one
+   * by one.
+   * 
+   * @param instances the input instances
+   * @return true if there are instances pending output
+   * @throws IllegalStateException if no input structure has been defined
+   * @throws Exception if something goes wrong
+   * @see #input(Instance)
+   */
+  public boolean input(Instances instances) throws Exception {
+    Instances filtered;
+    int i;
+
+    if (!isFirstBatchDone()) {
+      for (i = 0; i < instances.numInstances(); i++) {
+        input(instances.instance(i));
+      }
+
+      return isOutputFormatDefined() && (numPendingOutput() != 0);
+    }
+
+    if (getInputFormat() == null) {
+      throw new IllegalStateException("No input instance format defined");
+    }
+
+    if (m_NewBatch) {
+      resetQueue();
+      m_NewBatch = false;
+    }
+
+    filtered = process(instances);
+    for (i = 0; i < filtered.numInstances(); i++) {
+      push(filtered.instance(i), false); // No need to copy instance
+    }
+
+    return (numPendingOutput() != 0);
+  }
+
   /**
    * Processes the given data (may change the provided dataset) and returns the
-   * modified version. This method is called in batchFinished(). This
-   * implementation only calls process(Instance) for each instance in the given
-   * dataset.
+   * modified version. This method is called in batchFinished(). Successive
+   * filters that can process the data in a single pass (streamable filters, or
+   * any filters once the first batch has been processed) are applied together,
+   * each instance being passed through all of them before the next one, so
+   * that no intermediate datasets get created. All other filters are applied
+   * to the complete output of the previous filter.
    * 
    * @param instances the data to process
    * @return the modified data
    * @throws Exception in case the processing goes wrong
    * @see #batchFinished()
-   * @see #process(Instance)
+   * @see #processFused(Instances, int, int)
    */
   @Override
   protected Instances process(Instances instances) throws Exception {
     Instances result;
+    Instances format;
     int i;
+    int end;
 
     result = instances;
 
-    for (i = 0; i < getFilters().length; i++) {
-      if (!isFirstBatchDone()) {
-        getFilter(i).setInputFormat(result);
+    i = 0;
+    while (i < getFilters().length) {
+      // determine the filters that can be applied in a single pass
+      format = result;
+      end = i;
+      while (end < getFilters().length) {
+        if (!isFirstBatchDone()) {
+          if (!isStreamable(getFilter(end))
+            || !getFilter(end).setInputFormat(format)) {
+            break;
+          }
+          format = getFilter(end).getOutputFormat();
+        }
+        end++;
+      }
+
+      if (end > i) {
+        result = processFused(result, i, end);
+        i = end;
+      } else {
+        if (!isFirstBatchDone()) {
+          getFilter(i).setInputFormat(result);
+        }
+        result = Filter.useFilter(result, getFilter(i),
+          getNumExecutionSlots());
+        i++;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Applies the filters from index <code>from</code> (inclusive) to index
+   * <code>to</code> (exclusive) in a single pass over the data. The input
+   * formats of the filters have to be set already. If more than one execution
+   * slot is available and all the filters are RowParallelFilters, the data is
+   * split into chunks that are filtered in parallel by copies of the filters.
+   * 
+   * @param instances the data to process
+   * @param from the index of the first filter to apply
+   * @param to the index after the last filter to apply
+   * @return the filtered data
+   * @throws Exception in case the processing goes wrong
+   * @see Filter#useFilters(Filter[], int, int, Instances, int)
+   */
+  protected Instances processFused(Instances instances, int from, int to)
+    throws Exception {
+    Instances result;
+
+    result = null;
+    if (getNumExecutionSlots() != 1) {
+      result = useFilters(getFilters(), from, to, instances,
+        getNumExecutionSlots());
+      if ((result == null) && getDebug()) {
+        System.out.println("Filtering the data in a single chunk");
       }
-      result = Filter.useFilter(result, getFilter(i));
+    }
+
+    if (result == null) {
+      result = new Instances(getFilter(to - 1).getOutputFormat(),
+        instances.numInstances());
+      useFilters(getFilters(), from, to, instances, 0,
+        instances.numInstances(), result);
     }
 
     return result;
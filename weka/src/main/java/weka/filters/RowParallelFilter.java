@@ -0,0 +1,40 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    RowParallelFilter.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.filters;
+
+/**
+ * Interface for filters that filter each instance independently of the other
+ * instances of a batch, once the output format has been determined (i.e. after
+ * the first batch, or right away for streamable filters with an immediate
+ * output format). Chunks of such a batch can be filtered in parallel by copies
+ * of the filter, see Filter.useFilter(Instances, Filter, int).
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public interface RowParallelFilter {
+
+  /**
+   * Empty interface, to be used as a hint of the filters behaviour.
+   */
+
+}
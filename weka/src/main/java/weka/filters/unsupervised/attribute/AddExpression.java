@@ -31,6 +31,7 @@ import weka.core.expressionlanguage.common.JavaMacro;
 import weka.core.expressionlanguage.common.MacroDeclarationsCompositor;
 import weka.core.expressionlanguage.common.MathFunctions;
 import weka.core.expressionlanguage.common.Primitives.DoubleExpression;
+import weka.core.expressionlanguage.compiler.ExpressionCompiler;
 import weka.core.expressionlanguage.core.Node;
 import weka.core.expressionlanguage.parser.Parser;
 import weka.core.expressionlanguage.weka.InstancesHelper;
@@ -357,7 +358,7 @@ public class AddExpression extends Filter implements UnsupervisedFilter,
     if (!(node instanceof DoubleExpression))
       throw new Exception("Expression must be of double type!");
     
-    m_Expression = (DoubleExpression) node;
+    m_Expression = (DoubleExpression) ExpressionCompiler.compile(node);
 
     super.setInputFormat(instanceInfo);
 
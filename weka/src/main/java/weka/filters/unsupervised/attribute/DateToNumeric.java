@@ -24,6 +24,7 @@ import java.util.*;
 
 import weka.core.*;
 import weka.core.Capabilities.Capability;
+import weka.filters.RowParallelFilter;
 import weka.filters.SimpleBatchFilter;
 
 /**
@@ -55,7 +56,7 @@ import weka.filters.SimpleBatchFilter;
  * @author eibe (eibe at waikato dot ac dot nz)
  * @version $Revision: 14274 $
  */
-public class DateToNumeric extends SimpleBatchFilter implements WeightedInstancesHandler, WeightedAttributesHandler {
+public class DateToNumeric extends SimpleBatchFilter implements RowParallelFilter, WeightedInstancesHandler, WeightedAttributesHandler {
 
   /** for serialization */
   private static final long serialVersionUID = -6614650822291796239L;
@@ -21,6 +21,14 @@
 
 package weka.filters.unsupervised.attribute;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.*;
 
 import weka.core.*;
@@ -99,6 +107,16 @@ import weka.filters.UnsupervisedFilter;
  *  When generating binary attributes, spread weight of old
  *  attribute across new attributes. Do not give each new attribute the old weight.</pre>
  *
+ * <pre>-sketch
+ *  Use mergeable quantile sketches instead of sorting to find
+ *  the cut points. Needs one pass and bounded memory per
+ *  attribute, but equal-frequency cut points are approximate.</pre>
+ *
+ * <pre>-sketch-compression &lt;num&gt;
+ *  Compression of the quantile sketches. Larger values give
+ *  more accurate cut points.
+ *  (default = 100)</pre>
+ *
  * <!-- options-end -->
  * 
  * @author Len Trigg (trigg@cs.waikato.ac.nz)
@@ -144,6 +162,30 @@ public class Discretize extends PotentialClassIgnorer implements
   /** Whether to spread attribute weight when creating binary attributes */
   protected boolean m_SpreadAttributeWeight = false;
 
+  /** Use quantile sketches rather than sorting to find the cut points */
+  protected boolean m_UseQuantileSketch = false;
+
+  /** Compression of the quantile sketches */
+  protected double m_SketchCompression = QuantileSketch.DEFAULT_COMPRESSION;
+
+  /** Quantile sketches for the attributes, built as the first batch arrives */
+  protected QuantileSketch[] m_Sketches = null;
+
+  /**
+   * Temporary file holding the first batch in sketch mode, so that it is not
+   * kept in memory
+   */
+  protected transient File m_SpoolFile = null;
+
+  /** Writes the first batch to the spool file */
+  protected transient DataOutputStream m_SpoolOut = null;
+
+  /** Reads the first batch back from the spool file as output is collected */
+  protected transient DataInputStream m_SpoolIn = null;
+
+  /** The number of spooled instances not yet read back */
+  protected transient int m_NumSpooled = 0;
+
   /** Constructor - initialises the filter */
   public Discretize() {
 
@@ -217,6 +259,17 @@ public class Discretize extends PotentialClassIgnorer implements
                     + "attribute across new attributes. Do not give each new attribute the old weight.\n\t",
                     "spread-attribute-weight", 0, "-spread-attribute-weight"));
 
+    result.addElement(new Option(
+      "\tUse mergeable quantile sketches instead of sorting to find\n"
+        + "\tthe cut points. Needs one pass and bounded memory per\n"
+        + "\tattribute, but equal-frequency cut points are approximate.",
+      "sketch", 0, "-sketch"));
+
+    result.addElement(new Option(
+      "\tCompression of the quantile sketches. Larger values give\n"
+        + "\tmore accurate cut points.\n" + "\t(default = 100)",
+      "sketch-compression", 1, "-sketch-compression <num>"));
+
     result.addAll(Collections.list(super.listOptions()));
 
     return result.elements();
@@ -291,6 +344,16 @@ public class Discretize extends PotentialClassIgnorer implements
    *  When generating binary attributes, spread weight of old
    *  attribute across new attributes. Do not give each new attribute the old weight.</pre>
    *
+   * <pre>-sketch
+   *  Use mergeable quantile sketches instead of sorting to find
+   *  the cut points. Needs one pass and bounded memory per
+   *  attribute, but equal-frequency cut points are approximate.</pre>
+   *
+   * <pre>-sketch-compression &lt;num&gt;
+   *  Compression of the quantile sketches. Larger values give
+   *  more accurate cut points.
+   *  (default = 100)</pre>
+   *
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -333,6 +396,15 @@ public class Discretize extends PotentialClassIgnorer implements
 
     setSpreadAttributeWeight(Utils.getFlag("spread-attribute-weight", options));
 
+    setUseQuantileSketch(Utils.getFlag("sketch", options));
+
+    String compressionS = Utils.getOption("sketch-compression", options);
+    if (compressionS.length() > 0) {
+      setSketchCompression(Double.parseDouble(compressionS));
+    } else {
+      setSketchCompression(QuantileSketch.DEFAULT_COMPRESSION);
+    }
+
     if (getInputFormat() != null) {
       setInputFormat(getInputFormat());
     }
@@ -390,6 +462,12 @@ public class Discretize extends PotentialClassIgnorer implements
       result.add("-spread-attribute-weight");
     }
 
+    if (getUseQuantileSketch()) {
+      result.add("-sketch");
+      result.add("-sketch-compression");
+      result.add("" + getSketchCompression());
+    }
+
     Collections.addAll(result, super.getOptions());
 
     return result.toArray(new String[result.size()]);
@@ -441,6 +519,8 @@ public class Discretize extends PotentialClassIgnorer implements
 
     m_DiscretizeCols.setUpper(instanceInfo.numAttributes() - 1);
     m_CutPoints = null;
+    m_Sketches = null;
+    closeSpool();
 
     if (getFindNumBins() && getUseEqualFrequency()) {
       throw new IllegalArgumentException(
@@ -478,10 +558,238 @@ public class Discretize extends PotentialClassIgnorer implements
       return true;
     }
 
+    if (m_UseQuantileSketch) {
+      updateQuantileSketches(instance);
+      if (canSpoolInput()) {
+        spoolInput(instance);
+        return false;
+      }
+    }
     bufferInput(instance);
     return false;
   }
 
+  /**
+   * Whether finding the number of bins needs the buffered first batch, rather
+   * than just the quantile sketches.
+   * 
+   * @return true if the data is needed
+   */
+  protected boolean findNumBinsNeedsData() {
+    return m_FindNumBins;
+  }
+
+  /**
+   * Whether the first batch can be written to a temporary file rather than
+   * buffered in memory. This is the case in sketch mode, unless the number of
+   * bins is to be found from the data, or there are string or relational
+   * attributes (whose values are held by the input format).
+   * 
+   * @return true if the first batch can be spooled
+   */
+  protected boolean canSpoolInput() {
+    return m_UseQuantileSketch && !findNumBinsNeedsData()
+      && m_InputStringAtts.getAttributeIndices().length == 0
+      && m_InputRelAtts.getAttributeIndices().length == 0;
+  }
+
+  /**
+   * Writes an instance of the first batch to the spool file, creating the file
+   * if necessary.
+   * 
+   * @param instance the instance to spool
+   * @throws IllegalStateException if the instance can't be written
+   */
+  protected void spoolInput(Instance instance) {
+
+    try {
+      if (m_SpoolOut == null) {
+        m_SpoolFile = File.createTempFile("weka-discretize", ".tmp");
+        m_SpoolFile.deleteOnExit();
+        m_SpoolOut =
+          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+            m_SpoolFile)));
+        m_NumSpooled = 0;
+      }
+      boolean sparse = instance instanceof SparseInstance;
+      m_SpoolOut.writeDouble(instance.weight());
+      m_SpoolOut.writeBoolean(sparse);
+      m_SpoolOut.writeInt(instance.numValues());
+      for (int i = 0; i < instance.numValues(); i++) {
+        if (sparse) {
+          m_SpoolOut.writeInt(instance.index(i));
+        }
+        m_SpoolOut.writeDouble(instance.valueSparse(i));
+      }
+      m_NumSpooled++;
+    } catch (IOException ex) {
+      closeSpool();
+      throw new IllegalStateException("Unable to spool instance: "
+        + ex.getMessage());
+    }
+  }
+
+  /**
+   * Reads the next spooled instance back, converts it and adds it to the
+   * output queue.
+   * 
+   * @throws IllegalStateException if the instance can't be read
+   */
+  protected void convertSpooledInstance() {
+
+    try {
+      if (m_SpoolIn == null) {
+        m_SpoolIn =
+          new DataInputStream(new BufferedInputStream(new FileInputStream(
+            m_SpoolFile)));
+      }
+      double weight = m_SpoolIn.readDouble();
+      boolean sparse = m_SpoolIn.readBoolean();
+      int numValues = m_SpoolIn.readInt();
+      double[] vals = new double[numValues];
+      int[] indices = sparse ? new int[numValues] : null;
+      for (int i = 0; i < numValues; i++) {
+        if (sparse) {
+          indices[i] = m_SpoolIn.readInt();
+        }
+        vals[i] = m_SpoolIn.readDouble();
+      }
+      m_NumSpooled--;
+
+      Instance instance;
+      if (sparse) {
+        instance =
+          new SparseInstance(weight, vals, indices, getInputFormat()
+            .numAttributes());
+      } else {
+        instance = new DenseInstance(weight, vals);
+      }
+      instance.setDataset(getInputFormat());
+      convertInstance(instance);
+    } catch (IOException ex) {
+      closeSpool();
+      throw new IllegalStateException("Unable to read spooled instance: "
+        + ex.getMessage());
+    }
+    if (m_NumSpooled == 0) {
+      closeSpool();
+    }
+  }
+
+  /**
+   * Closes and deletes the spool file, discarding any instances not yet read
+   * back.
+   */
+  protected void closeSpool() {
+
+    try {
+      if (m_SpoolOut != null) {
+        m_SpoolOut.close();
+      }
+      if (m_SpoolIn != null) {
+        m_SpoolIn.close();
+      }
+    } catch (IOException ex) {
+      // nothing more can be done with the file
+    }
+    if (m_SpoolFile != null) {
+      m_SpoolFile.delete();
+    }
+    m_SpoolOut = null;
+    m_SpoolIn = null;
+    m_SpoolFile = null;
+    m_NumSpooled = 0;
+  }
+
+  /**
+   * Clears the output queue, along with any spooled instances.
+   */
+  @Override
+  protected void resetQueue() {
+
+    super.resetQueue();
+    closeSpool();
+  }
+
+  /**
+   * Output an instance after filtering and remove from the output queue.
+   * Spooled instances are converted as they are collected.
+   * 
+   * @return the instance that has most recently been filtered (or null if the
+   *         queue is empty).
+   * @throws NullPointerException if no output structure has been defined
+   */
+  @Override
+  public Instance output() {
+
+    if (m_NumSpooled > 0 && m_SpoolOut == null
+      && super.numPendingOutput() == 0) {
+      convertSpooledInstance();
+    }
+    return super.output();
+  }
+
+  /**
+   * Output an instance after filtering but do not remove from the output
+   * queue. Spooled instances are converted as they are collected.
+   * 
+   * @return the instance that has most recently been filtered (or null if the
+   *         queue is empty).
+   * @throws NullPointerException if no input structure has been defined
+   */
+  @Override
+  public Instance outputPeek() {
+
+    if (m_NumSpooled > 0 && m_SpoolOut == null
+      && super.numPendingOutput() == 0) {
+      convertSpooledInstance();
+    }
+    return super.outputPeek();
+  }
+
+  /**
+   * Returns the number of instances pending output, including spooled
+   * instances that are yet to be converted.
+   * 
+   * @return the number of instances pending output
+   * @throws NullPointerException if no output structure has been defined
+   */
+  @Override
+  public int numPendingOutput() {
+
+    int pending = super.numPendingOutput();
+    if (m_SpoolOut == null) {
+      pending += m_NumSpooled;
+    }
+    return pending;
+  }
+
+  /**
+   * Adds the values of an instance to the quantile sketches of the attributes
+   * to be discretized, creating the sketches if necessary.
+   * 
+   * @param instance the instance to add
+   */
+  protected void updateQuantileSketches(Instance instance) {
+
+    if (m_Sketches == null) {
+      Instances format = getInputFormat();
+      m_Sketches = new QuantileSketch[format.numAttributes()];
+      for (int i = 0; i < format.numAttributes(); i++) {
+        if (m_DiscretizeCols.isInRange(i) && format.attribute(i).isNumeric()
+          && format.classIndex() != i) {
+          m_Sketches[i] = new QuantileSketch(m_SketchCompression);
+        }
+      }
+    }
+
+    for (int i = 0; i < m_Sketches.length; i++) {
+      if (m_Sketches[i] != null) {
+        m_Sketches[i].add(instance.value(i), instance.weight());
+      }
+    }
+  }
+
   /**
    * Signifies that this batch of input to the filter is finished. If the filter
    * requires all instances prior to filtering, output() may now be called to
@@ -498,6 +806,7 @@ public class Discretize extends PotentialClassIgnorer implements
     }
     if (m_CutPoints == null) {
       calculateCutPoints();
+      m_Sketches = null;
 
       setOutputFormat();
 
@@ -507,6 +816,18 @@ public class Discretize extends PotentialClassIgnorer implements
       for (int i = 0; i < getInputFormat().numInstances(); i++) {
         convertInstance(getInputFormat().instance(i));
       }
+
+      // Spooled instances are converted as they are collected
+      if (m_SpoolOut != null) {
+        try {
+          m_SpoolOut.close();
+        } catch (IOException ex) {
+          closeSpool();
+          throw new IllegalStateException("Unable to spool instances: "
+            + ex.getMessage());
+        }
+        m_SpoolOut = null;
+      }
     }
     flushInput();
 
@@ -868,6 +1189,67 @@ public class Discretize extends PotentialClassIgnorer implements
     return m_BinRangePrecision;
   }
 
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String useQuantileSketchTipText() {
+    return "Use mergeable quantile sketches instead of sorting the data to find "
+      + "the cut points. The sketches are built in one pass using bounded memory "
+      + "per attribute, but equal-frequency cut points are approximate.";
+  }
+
+  /**
+   * Set whether to use quantile sketches rather than sorting to find the cut
+   * points
+   *
+   * @param useSketch true if quantile sketches are to be used
+   */
+  public void setUseQuantileSketch(boolean useSketch) {
+    m_UseQuantileSketch = useSketch;
+  }
+
+  /**
+   * Get whether to use quantile sketches rather than sorting to find the cut
+   * points
+   *
+   * @return true if quantile sketches are to be used
+   */
+  public boolean getUseQuantileSketch() {
+    return m_UseQuantileSketch;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String sketchCompressionTipText() {
+    return "The compression of the quantile sketches. Larger values give more "
+      + "accurate cut points at the cost of more memory.";
+  }
+
+  /**
+   * Set the compression of the quantile sketches
+   *
+   * @param compression the compression
+   */
+  public void setSketchCompression(double compression) {
+    m_SketchCompression = compression;
+  }
+
+  /**
+   * Get the compression of the quantile sketches
+   *
+   * @return the compression
+   */
+  public double getSketchCompression() {
+    return m_SketchCompression;
+  }
+
   /**
    * Gets the cut points for an attribute
    * 
@@ -971,18 +1353,25 @@ public class Discretize extends PotentialClassIgnorer implements
     // Scan for max and min values
     double max = 0, min = 1, currentVal;
     Instance currentInstance;
-    for (int i = 0; i < getInputFormat().numInstances(); i++) {
-      currentInstance = getInputFormat().instance(i);
-      if (!currentInstance.isMissing(index)) {
-        currentVal = currentInstance.value(index);
-        if (max < min) {
-          max = min = currentVal;
-        }
-        if (currentVal > max) {
-          max = currentVal;
-        }
-        if (currentVal < min) {
-          min = currentVal;
+    if (m_Sketches != null && m_Sketches[index] != null) {
+      if (m_Sketches[index].getTotalWeight() > 0) {
+        min = m_Sketches[index].getMin();
+        max = m_Sketches[index].getMax();
+      }
+    } else {
+      for (int i = 0; i < getInputFormat().numInstances(); i++) {
+        currentInstance = getInputFormat().instance(i);
+        if (!currentInstance.isMissing(index)) {
+          currentVal = currentInstance.value(index);
+          if (max < min) {
+            max = min = currentVal;
+          }
+          if (currentVal > max) {
+            max = currentVal;
+          }
+          if (currentVal < min) {
+            min = currentVal;
+          }
         }
       }
     }
@@ -1004,6 +1393,11 @@ public class Discretize extends PotentialClassIgnorer implements
    */
   protected void calculateCutPointsByEqualFrequencyBinning(int index) {
 
+    if (m_Sketches != null && m_Sketches[index] != null) {
+      calculateCutPointsFromQuantileSketch(index);
+      return;
+    }
+
     // Copy data so that it can be sorted
     Instances data = new Instances(getInputFormat());
 
@@ -1089,6 +1483,24 @@ public class Discretize extends PotentialClassIgnorer implements
     }
   }
 
+  /**
+   * Set cutpoints for a single attribute from its quantile sketch, using
+   * (approximately) equal-frequency binning.
+   * 
+   * @param index the index of the attribute to set cutpoints for
+   */
+  protected void calculateCutPointsFromQuantileSketch(int index) {
+
+    QuantileSketch sketch = m_Sketches[index];
+    int numBins = m_NumBins;
+    if (getDesiredWeightOfInstancesPerInterval() > 0) {
+      numBins =
+        (int) (sketch.getTotalWeight() / getDesiredWeightOfInstancesPerInterval()) + 1;
+    }
+    double[] cutPoints = sketch.equalFrequencyCutPoints(numBins);
+    m_CutPoints[index] = cutPoints.length > 0 ? cutPoints : null;
+  }
+
   /**
    * Optimizes the number of bins using leave-one-out cross-validation.
    * 
@@ -27,6 +27,7 @@ import java.util.Vector;
 
 import weka.core.*;
 import weka.core.Capabilities.Capability;
+import weka.filters.RowParallelFilter;
 import weka.filters.SimpleBatchFilter;
 
 /**
@@ -102,6 +103,20 @@ import weka.filters.SimpleBatchFilter;
  * Note: implicitely sets '-P'. (default: off)
  * </pre>
  * 
+ * <pre>
+ * -sketch
+ *  Estimates the quartiles with mergeable quantile sketches
+ *  (one pass, bounded memory) instead of sorting each attribute.
+ *  (default: off)
+ * </pre>
+ * 
+ * <pre>
+ * -sketch-compression &lt;num&gt;
+ *  Compression of the quantile sketches. Larger values give
+ *  more accurate quartiles.
+ *  (default: 100)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * Thanks to Dale for a few brainstorming sessions.
@@ -110,7 +125,7 @@ import weka.filters.SimpleBatchFilter;
  * @author fracpete (fracpete at waikato dot ac dot nz)
  * @version $Revision$
  */
-public class InterquartileRange extends SimpleBatchFilter implements WeightedAttributesHandler {
+public class InterquartileRange extends SimpleBatchFilter implements RowParallelFilter, WeightedAttributesHandler {
 
   /** for serialization */
   private static final long serialVersionUID = -227879653639723030L;
@@ -173,6 +188,12 @@ public class InterquartileRange extends SimpleBatchFilter implements WeightedAtt
    */
   protected boolean m_OutputOffsetMultiplier = false;
 
+  /** whether to estimate the quartiles with quantile sketches */
+  protected boolean m_UseQuantileSketch = false;
+
+  /** the compression of the quantile sketches */
+  protected double m_SketchCompression = QuantileSketch.DEFAULT_COMPRESSION;
+
   /**
    * Returns a string describing this filter
    * 
@@ -230,6 +251,16 @@ public class InterquartileRange extends SimpleBatchFilter implements WeightedAtt
           + "\t   value = median + 'multiplier' * IQR\n"
           + "Note: implicitely sets '-P'." + "\t(default: off)", "M", 0, "-M"));
 
+    result.addElement(new Option(
+      "\tEstimates the quartiles with mergeable quantile sketches\n"
+        + "\t(one pass, bounded memory) instead of sorting each attribute.\n"
+        + "\t(default: off)", "sketch", 0, "-sketch"));
+
+    result.addElement(new Option(
+      "\tCompression of the quantile sketches. Larger values give\n"
+        + "\tmore accurate quartiles.\n" + "\t(default: 100)",
+      "sketch-compression", 1, "-sketch-compression <num>"));
+
     result.addAll(Collections.list(super.listOptions()));
 
     return result.elements();
@@ -289,6 +320,20 @@ public class InterquartileRange extends SimpleBatchFilter implements WeightedAtt
    * Note: implicitely sets '-P'. (default: off)
    * </pre>
    * 
+   * <pre>
+   * -sketch
+   *  Estimates the quartiles with mergeable quantile sketches
+   *  (one pass, bounded memory) instead of sorting each attribute.
+   *  (default: off)
+   * </pre>
+   * 
+   * <pre>
+   * -sketch-compression &lt;num&gt;
+   *  Compression of the quantile sketches. Larger values give
+   *  more accurate quartiles.
+   *  (default: 100)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -324,6 +369,15 @@ public class InterquartileRange extends SimpleBatchFilter implements WeightedAtt
 
     setOutputOffsetMultiplier(Utils.getFlag("M", options));
 
+    setUseQuantileSketch(Utils.getFlag("sketch", options));
+
+    tmpStr = Utils.getOption("sketch-compression", options);
+    if (tmpStr.length() != 0) {
+      setSketchCompression(Double.parseDouble(tmpStr));
+    } else {
+      setSketchCompression(QuantileSketch.DEFAULT_COMPRESSION);
+    }
+
     super.setOptions(options);
 
     Utils.checkForRemainingOptions(options);
@@ -364,6 +418,12 @@ public class InterquartileRange extends SimpleBatchFilter implements WeightedAtt
       result.add("-M");
     }
 
+    if (getUseQuantileSketch()) {
+      result.add("-sketch");
+      result.add("-sketch-compression");
+      result.add("" + getSketchCompression());
+    }
+
     Collections.addAll(result, super.getOptions());
 
     return result.toArray(new String[result.size()]);
@@ -588,6 +648,65 @@ public class InterquartileRange extends SimpleBatchFilter implements WeightedAtt
     return m_OutputOffsetMultiplier;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String useQuantileSketchTipText() {
+    return "Whether to estimate the quartiles with mergeable quantile sketches, "
+      + "built in one pass with bounded memory, instead of sorting the values "
+      + "of each attribute.";
+  }
+
+  /**
+   * Set whether to estimate the quartiles with quantile sketches
+   * 
+   * @param value true if quantile sketches are to be used
+   */
+  public void setUseQuantileSketch(boolean value) {
+    m_UseQuantileSketch = value;
+  }
+
+  /**
+   * Get whether to estimate the quartiles with quantile sketches
+   * 
+   * @return true if quantile sketches are to be used
+   */
+  public boolean getUseQuantileSketch() {
+    return m_UseQuantileSketch;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String sketchCompressionTipText() {
+    return "The compression of the quantile sketches; larger values give more "
+      + "accurate quartiles.";
+  }
+
+  /**
+   * Set the compression of the quantile sketches
+   * 
+   * @param value the compression
+   */
+  public void setSketchCompression(double value) {
+    m_SketchCompression = value;
+  }
+
+  /**
+   * Get the compression of the quantile sketches
+   * 
+   * @return the compression
+   */
+  public double getSketchCompression() {
+    return m_SketchCompression;
+  }
+
   /**
    * Returns the Capabilities of this filter.
    * 
@@ -731,12 +850,25 @@ public class InterquartileRange extends SimpleBatchFilter implements WeightedAtt
     m_Median = new double[m_AttributeIndices.length];
     m_IQR = new double[m_AttributeIndices.length];
 
+    QuantileSketch[] sketches = null;
+    if (getUseQuantileSketch()) {
+      sketches = buildQuantileSketches(instances);
+    }
+
     for (i = 0; i < m_AttributeIndices.length; i++) {
       // non-numeric attribute?
       if (m_AttributeIndices[i] == NON_NUMERIC) {
         continue;
       }
 
+      if (sketches != null) {
+        q1 = sketches[i].quantile(0.25);
+        q2 = sketches[i].quantile(0.5);
+        q3 = sketches[i].quantile(0.75);
+        setThresholds(i, q1, q2, q3);
+        continue;
+      }
+
       // sort attribute data
       values = instances.attributeToDoubleArray(m_AttributeIndices[i]);
       sortedIndices = Utils.sort(values);
@@ -760,16 +892,57 @@ public class InterquartileRange extends SimpleBatchFilter implements WeightedAtt
           - quarter]]) / 2;
       }
 
-      // determine thresholds and other values
-      m_Median[i] = q2;
-      m_IQR[i] = q3 - q1;
-      m_UpperExtremeValue[i] = q3 + getExtremeValuesFactor() * m_IQR[i];
-      m_UpperOutlier[i] = q3 + getOutlierFactor() * m_IQR[i];
-      m_LowerOutlier[i] = q1 - getOutlierFactor() * m_IQR[i];
-      m_LowerExtremeValue[i] = q1 - getExtremeValuesFactor() * m_IQR[i];
+      setThresholds(i, q1, q2, q3);
     }
   }
 
+  /**
+   * determines the thresholds and other values for an attribute from its
+   * quartiles
+   * 
+   * @param i the position of the attribute in the attribute indices
+   * @param q1 the first quartile
+   * @param q2 the median
+   * @param q3 the third quartile
+   */
+  protected void setThresholds(int i, double q1, double q2, double q3) {
+    m_Median[i] = q2;
+    m_IQR[i] = q3 - q1;
+    m_UpperExtremeValue[i] = q3 + getExtremeValuesFactor() * m_IQR[i];
+    m_UpperOutlier[i] = q3 + getOutlierFactor() * m_IQR[i];
+    m_LowerOutlier[i] = q1 - getOutlierFactor() * m_IQR[i];
+    m_LowerExtremeValue[i] = q1 - getExtremeValuesFactor() * m_IQR[i];
+  }
+
+  /**
+   * builds quantile sketches for the numeric attributes to work on, in a
+   * single pass over the data
+   * 
+   * @param instances the data to work on
+   * @return the sketches, in the order of the attribute indices (null for
+   *         non-numeric attributes)
+   */
+  protected QuantileSketch[] buildQuantileSketches(Instances instances) {
+    QuantileSketch[] sketches = new QuantileSketch[m_AttributeIndices.length];
+    for (int i = 0; i < m_AttributeIndices.length; i++) {
+      if (m_AttributeIndices[i] != NON_NUMERIC) {
+        sketches[i] = new QuantileSketch(getSketchCompression());
+      }
+    }
+
+    for (int n = 0; n < instances.numInstances(); n++) {
+      Instance inst = instances.instance(n);
+      for (int i = 0; i < m_AttributeIndices.length; i++) {
+        if (sketches[i] != null) {
+          // unweighted, like the exact quartiles
+          sketches[i].add(inst.value(m_AttributeIndices[i]));
+        }
+      }
+    }
+
+    return sketches;
+  }
+
   /**
    * Returns the values for the specified type.
    * 
@@ -35,11 +35,13 @@ import weka.core.expressionlanguage.common.Primitives.DoubleExpression;
 import weka.core.expressionlanguage.common.SimpleVariableDeclarations;
 import weka.core.expressionlanguage.common.SimpleVariableDeclarations.VariableInitializer;
 import weka.core.expressionlanguage.common.VariableDeclarationsCompositor;
+import weka.core.expressionlanguage.compiler.ExpressionCompiler;
 import weka.core.expressionlanguage.core.Node;
 import weka.core.expressionlanguage.parser.Parser;
 import weka.core.expressionlanguage.weka.InstancesHelper;
 import weka.core.expressionlanguage.weka.StatsHelper;
 import weka.experiment.Stats;
+import weka.filters.RowParallelFilter;
 import weka.filters.UnsupervisedFilter;
 
 /**
@@ -86,7 +88,8 @@ import weka.filters.UnsupervisedFilter;
  * @version $Revision$
  */
 public class MathExpression extends PotentialClassIgnorer implements
-  UnsupervisedFilter, WeightedInstancesHandler, WeightedAttributesHandler {
+  UnsupervisedFilter, RowParallelFilter, WeightedInstancesHandler,
+  WeightedAttributesHandler {
 
   /** for serialization */
   static final long serialVersionUID = -3713222714671997901L;
@@ -229,7 +232,7 @@ public class MathExpression extends PotentialClassIgnorer implements
     
     m_CurrentValue = currentValueDeclaration.getInitializer();
 
-    m_CompiledExpression = (DoubleExpression) node;
+    m_CompiledExpression = (DoubleExpression) ExpressionCompiler.compile(node);
     
   }
 
@@ -26,6 +26,7 @@ import java.util.Vector;
 
 import weka.core.*;
 import weka.core.Capabilities.Capability;
+import weka.filters.RowParallelFilter;
 import weka.filters.SimpleStreamFilter;
 
 /**
@@ -111,7 +112,7 @@ import weka.filters.SimpleStreamFilter;
  * @author fracpete (fracpete at waikato dot ac dot nz)
  * @version $Revision$
  */
-public class NumericCleaner extends SimpleStreamFilter implements WeightedAttributesHandler, WeightedInstancesHandler {
+public class NumericCleaner extends SimpleStreamFilter implements RowParallelFilter, WeightedAttributesHandler, WeightedInstancesHandler {
 
   /** for serialization */
   private static final long serialVersionUID = -352890679895066592L;
@@ -28,6 +28,7 @@ import java.util.Vector;
 
 import weka.core.*;
 import weka.core.Capabilities.Capability;
+import weka.filters.RowParallelFilter;
 import weka.filters.SimpleBatchFilter;
 
 /**
@@ -64,7 +65,7 @@ import weka.filters.SimpleBatchFilter;
  * @author eibe (eibe at waikato dot ac dot nz)
  * @version $Revision: 14274 $
  */
-public class NumericToDate extends SimpleBatchFilter implements WeightedAttributesHandler, WeightedInstancesHandler {
+public class NumericToDate extends SimpleBatchFilter implements RowParallelFilter, WeightedAttributesHandler, WeightedInstancesHandler {
 
   /** for serialization */
   private static final long serialVersionUID = -6514657821295776239L;
@@ -29,6 +29,7 @@ import java.util.Vector;
 import weka.core.*;
 import weka.core.Capabilities.Capability;
 import weka.filters.Filter;
+import weka.filters.RowParallelFilter;
 import weka.filters.StreamableFilter;
 import weka.filters.UnsupervisedFilter;
 
@@ -70,7 +71,8 @@ import weka.filters.UnsupervisedFilter;
  * @version $Revision$
  */
 public class NumericTransform extends Filter implements UnsupervisedFilter,
-  StreamableFilter, OptionHandler, WeightedInstancesHandler, WeightedAttributesHandler {
+  StreamableFilter, RowParallelFilter, OptionHandler, WeightedInstancesHandler,
+  WeightedAttributesHandler {
 
   /** for serialization */
   static final long serialVersionUID = -8561413333351366934L;
@@ -84,6 +84,16 @@ import weka.core.TechnicalInformation.Type;
  *  Output binary attributes for discretized attributes.
  * </pre>
  * 
+ * <pre>-sketch
+ *  Use mergeable quantile sketches instead of sorting to find
+ *  the cut points. Needs one pass and bounded memory per
+ *  attribute, but the cut points are approximate.</pre>
+ * 
+ * <pre>-sketch-compression &lt;num&gt;
+ *  Compression of the quantile sketches. Larger values give
+ *  more accurate cut points.
+ *  (default = 100)</pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
@@ -112,6 +122,17 @@ public class PKIDiscretize extends Discretize implements
     return super.setInputFormat(instanceInfo);
   }
 
+  /**
+   * The number of bins is found from the quantile sketches when they are used,
+   * so the first batch need not be buffered.
+   * 
+   * @return true if the data is needed
+   */
+  @Override
+  protected boolean findNumBinsNeedsData() {
+    return !m_UseQuantileSketch;
+  }
+
   /**
    * Finds the number of bins to use and creates the cut points.
    * 
@@ -120,13 +141,15 @@ public class PKIDiscretize extends Discretize implements
   @Override
   protected void findNumBins(int index) {
 
-    Instances toFilter = getInputFormat();
-
     // Find number of instances for attribute where not missing
     double sum = 0;
-    for (Instance inst : toFilter) {
-      if (!inst.isMissing(index)) {
-        sum += inst.weight();
+    if (m_Sketches != null && m_Sketches[index] != null) {
+      sum = m_Sketches[index].getTotalWeight();
+    } else {
+      for (Instance inst : getInputFormat()) {
+        if (!inst.isMissing(index)) {
+          sum += inst.weight();
+        }
       }
     }
 
@@ -163,6 +186,17 @@ public class PKIDiscretize extends Discretize implements
     result.addElement(new Option(
       "\tOutput binary attributes for discretized attributes.", "D", 0, "-D"));
 
+    result.addElement(new Option(
+      "\tUse mergeable quantile sketches instead of sorting to find\n"
+        + "\tthe cut points. Needs one pass and bounded memory per\n"
+        + "\tattribute, but the cut points are approximate.", "sketch", 0,
+      "-sketch"));
+
+    result.addElement(new Option(
+      "\tCompression of the quantile sketches. Larger values give\n"
+        + "\tmore accurate cut points.\n" + "\t(default = 100)",
+      "sketch-compression", 1, "-sketch-compression <num>"));
+
     return result.elements();
   }
 
@@ -196,6 +230,16 @@ public class PKIDiscretize extends Discretize implements
    *  Output binary attributes for discretized attributes.
    * </pre>
    * 
+   * <pre>-sketch
+   *  Use mergeable quantile sketches instead of sorting to find
+   *  the cut points. Needs one pass and bounded memory per
+   *  attribute, but the cut points are approximate.</pre>
+   * 
+   * <pre>-sketch-compression &lt;num&gt;
+   *  Compression of the quantile sketches. Larger values give
+   *  more accurate cut points.
+   *  (default = 100)</pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -215,6 +259,15 @@ public class PKIDiscretize extends Discretize implements
       setAttributeIndices("first-last");
     }
 
+    setUseQuantileSketch(Utils.getFlag("sketch", options));
+
+    String compressionS = Utils.getOption("sketch-compression", options);
+    if (compressionS.length() > 0) {
+      setSketchCompression(Double.parseDouble(compressionS));
+    } else {
+      setSketchCompression(QuantileSketch.DEFAULT_COMPRESSION);
+    }
+
     if (getInputFormat() != null) {
       setInputFormat(getInputFormat());
     }
@@ -245,6 +298,12 @@ public class PKIDiscretize extends Discretize implements
       result.add(getAttributeIndices());
     }
 
+    if (getUseQuantileSketch()) {
+      result.add("-sketch");
+      result.add("-sketch-compression");
+      result.add("" + getSketchCompression());
+    }
+
     return result.toArray(new String[result.size()]);
   }
 
@@ -28,6 +28,7 @@ import java.util.Vector;
 import weka.core.*;
 import weka.core.Capabilities.Capability;
 import weka.filters.Filter;
+import weka.filters.RowParallelFilter;
 import weka.filters.StreamableFilter;
 import weka.filters.UnsupervisedFilter;
 
@@ -59,7 +60,8 @@ import weka.filters.UnsupervisedFilter;
  * @version $Revision$
  */
 public class Remove extends Filter implements UnsupervisedFilter,
-  StreamableFilter, OptionHandler, WeightedAttributesHandler, WeightedInstancesHandler {
+  StreamableFilter, RowParallelFilter, OptionHandler, WeightedAttributesHandler,
+  WeightedInstancesHandler {
 
   /** for serialization */
   static final long serialVersionUID = 5011337331921522847L;
@@ -23,6 +23,7 @@ package weka.filters.unsupervised.attribute;
 
 import weka.core.*;
 import weka.core.Capabilities.Capability;
+import weka.filters.RowParallelFilter;
 import weka.filters.Sourcable;
 import weka.filters.UnsupervisedFilter;
 
@@ -49,7 +50,7 @@ import weka.filters.UnsupervisedFilter;
  * @version $Revision$
  */
 public class ReplaceMissingValues extends PotentialClassIgnorer implements
-  UnsupervisedFilter, Sourcable, WeightedInstancesHandler,
+  UnsupervisedFilter, Sourcable, RowParallelFilter, WeightedInstancesHandler,
   WeightedAttributesHandler {
 
   /** for serialization */
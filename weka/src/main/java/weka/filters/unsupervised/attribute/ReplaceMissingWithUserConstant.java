@@ -31,6 +31,7 @@ import java.util.Vector;
 
 import weka.core.*;
 import weka.core.Capabilities.Capability;
+import weka.filters.RowParallelFilter;
 import weka.filters.StreamableFilter;
 import weka.filters.UnsupervisedFilter;
 
@@ -45,8 +46,8 @@ import weka.filters.UnsupervisedFilter;
  * @version $Revision$
  */
 public class ReplaceMissingWithUserConstant extends PotentialClassIgnorer
-  implements UnsupervisedFilter, StreamableFilter, EnvironmentHandler,
-        WeightedInstancesHandler, WeightedAttributesHandler {
+  implements UnsupervisedFilter, StreamableFilter, RowParallelFilter,
+        EnvironmentHandler, WeightedInstancesHandler, WeightedAttributesHandler {
 
   /** For serialization */
   private static final long serialVersionUID = -7334039452189350356L;
@@ -31,9 +31,11 @@ import weka.core.expressionlanguage.common.JavaMacro;
 import weka.core.expressionlanguage.common.MacroDeclarationsCompositor;
 import weka.core.expressionlanguage.common.MathFunctions;
 import weka.core.expressionlanguage.common.Primitives.BooleanExpression;
+import weka.core.expressionlanguage.compiler.ExpressionCompiler;
 import weka.core.expressionlanguage.core.Node;
 import weka.core.expressionlanguage.parser.Parser;
 import weka.core.expressionlanguage.weka.InstancesHelper;
+import weka.filters.RowParallelFilter;
 import weka.filters.SimpleBatchFilter;
 
 /**
@@ -77,7 +79,7 @@ import weka.filters.SimpleBatchFilter;
  * @version $Revision$
  */
 public class SubsetByExpression extends SimpleBatchFilter
-  implements WeightedInstancesHandler, WeightedAttributesHandler{
+  implements RowParallelFilter, WeightedInstancesHandler, WeightedAttributesHandler{
 
   /** for serialization. */
   private static final long serialVersionUID = 5628686110979589602L;
@@ -403,7 +405,8 @@ public class SubsetByExpression extends SimpleBatchFilter
       if (!(node instanceof BooleanExpression))
         throw new Exception("Expression must be of boolean type!");
       
-      BooleanExpression condition = (BooleanExpression) node;
+      BooleanExpression condition =
+        (BooleanExpression) ExpressionCompiler.compile(node);
 
       // filter dataset
       for (int i = 0; i < instances.numInstances(); i++) {
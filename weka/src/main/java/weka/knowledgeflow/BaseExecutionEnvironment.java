@@ -21,18 +21,26 @@
 
 package weka.knowledgeflow;
 
+import weka.core.Attribute;
 import weka.core.Defaults;
 import weka.core.Environment;
+import weka.core.Instance;
+import weka.core.Instances;
 import weka.core.Settings;
 import weka.core.WekaException;
 import weka.gui.Logger;
 import weka.core.PluginManager;
 import weka.gui.knowledgeflow.GraphicalEnvironmentCommandHandler;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Base class for execution environments
@@ -98,6 +106,30 @@ public class BaseExecutionEnvironment implements ExecutionEnvironment {
    */
   protected transient ExecutorService m_singleThreadService;
 
+  /**
+   * True if steps receiving streaming instance data should each run in their
+   * own thread, fed by a bounded queue, rather than on the thread of the step
+   * producing the data
+   */
+  protected boolean m_pipelinedStreaming =
+    BaseExecutionEnvironmentDefaults.STREAMING_PIPELINE;
+
+  /** Capacity of the queue in front of each pipelined step */
+  protected int m_pipelineQueueSize =
+    BaseExecutionEnvironmentDefaults.STREAMING_PIPELINE_QUEUE_SIZE;
+
+  /** Runs the workers of the pipelined steps (if pipelining is turned on) */
+  protected transient ExecutorService m_pipelineExecutorService;
+
+  /** The pipeline stages created during the current execution */
+  protected transient List<StreamPipelineStage> m_pipelineStages;
+
+  /**
+   * Number of Data objects queued for, or being processed by, the pipeline
+   * stages. Shared by all the stages so that it can be checked atomically
+   */
+  protected final AtomicInteger m_pipelineInFlight = new AtomicInteger();
+
   /** The log */
   protected transient Logger m_log;
 
@@ -190,6 +222,13 @@ public class BaseExecutionEnvironment implements ExecutionEnvironment {
     m_logHandler.setLoggingLevel(m_settings.getSetting(
       KFDefaults.MAIN_PERSPECTIVE_ID, KFDefaults.LOGGING_LEVEL_KEY,
       KFDefaults.LOGGING_LEVEL));
+
+    setPipelinedStreaming(m_settings.getSetting(KFDefaults.APP_ID,
+      BaseExecutionEnvironmentDefaults.STREAMING_PIPELINE_KEY,
+      BaseExecutionEnvironmentDefaults.STREAMING_PIPELINE));
+    setPipelineQueueSize(m_settings.getSetting(KFDefaults.APP_ID,
+      BaseExecutionEnvironmentDefaults.STREAMING_PIPELINE_QUEUE_SIZE_KEY,
+      BaseExecutionEnvironmentDefaults.STREAMING_PIPELINE_QUEUE_SIZE));
   }
 
   @Override
@@ -201,6 +240,46 @@ public class BaseExecutionEnvironment implements ExecutionEnvironment {
     return m_settings;
   }
 
+  /**
+   * Set whether steps receiving streaming instance data should run in their
+   * own thread, fed by a bounded queue. When false (the default) streaming
+   * data is processed on the thread of the step producing it.
+   *
+   * @param pipelined true to pipeline streaming instance connections
+   */
+  public void setPipelinedStreaming(boolean pipelined) {
+    m_pipelinedStreaming = pipelined;
+  }
+
+  /**
+   * Get whether steps receiving streaming instance data run in their own
+   * thread, fed by a bounded queue
+   *
+   * @return true if streaming instance connections are pipelined
+   */
+  public boolean getPipelinedStreaming() {
+    return m_pipelinedStreaming;
+  }
+
+  /**
+   * Set the capacity of the queue in front of each pipelined step. A producer
+   * blocks when the queue of a downstream step is full.
+   *
+   * @param size the capacity of the queue
+   */
+  public void setPipelineQueueSize(int size) {
+    m_pipelineQueueSize = size;
+  }
+
+  /**
+   * Get the capacity of the queue in front of each pipelined step
+   *
+   * @return the capacity of the queue
+   */
+  public int getPipelineQueueSize() {
+    return m_pipelineQueueSize;
+  }
+
   /**
    * Get the log in use
    * 
@@ -288,6 +367,7 @@ public class BaseExecutionEnvironment implements ExecutionEnvironment {
       m_executorService.shutdownNow();
       m_executorService = null;
     }
+    stopPipelineStages(false);
   }
 
   /**
@@ -358,6 +438,140 @@ public class BaseExecutionEnvironment implements ExecutionEnvironment {
           .availableProcessors());
 
     m_singleThreadService = Executors.newSingleThreadExecutor();
+
+    stopPipelineStages(false);
+    if (m_pipelinedStreaming) {
+      m_logHandler.logDebug("Pipelining streaming connections (queue size "
+        + m_pipelineQueueSize + ")");
+      m_pipelineExecutorService =
+        Executors.newCachedThreadPool(new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "KF pipeline stage");
+            t.setDaemon(true);
+            return t;
+          }
+        });
+    }
+  }
+
+  /**
+   * Returns true if there is streaming data queued for, or being processed
+   * by, any pipeline stage. Data handed from one stage to the next is counted
+   * before the sending stage finishes with its own data, so this does not
+   * report false while data is moving between stages.
+   *
+   * @return true if any pipeline stage is busy
+   */
+  public boolean isPipelineBusy() {
+    return m_pipelineInFlight.get() > 0;
+  }
+
+  /**
+   * Stop any pipeline stages and shut down the service running them
+   *
+   * @param drain true if this is normal completion of the flow, in which case
+   *          the stages are first given the chance to process everything
+   *          still queued (including end of stream markers). Otherwise queued
+   *          data is discarded and the stage workers are interrupted.
+   */
+  protected void stopPipelineStages(boolean drain) {
+    if (drain) {
+      try {
+        while (isPipelineBusy() && m_pipelineExecutorService != null
+          && (getFlowExecutor() == null || !getFlowExecutor().wasStopped())) {
+          Thread.sleep(StreamPipelineStage.POLL_INTERVAL);
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        drain = false;
+      }
+    }
+
+    ExecutorService pipelineService;
+    synchronized (this) {
+      if (m_pipelineStages != null) {
+        for (StreamPipelineStage stage : m_pipelineStages) {
+          stage.stop();
+        }
+        m_pipelineStages = null;
+      }
+      pipelineService = m_pipelineExecutorService;
+      m_pipelineExecutorService = null;
+    }
+
+    if (pipelineService != null) {
+      if (drain) {
+        // the stages are idle, so their workers exit on the next poll
+        pipelineService.shutdown();
+      } else {
+        pipelineService.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Get the pipeline stage for the supplied step, creating and starting it
+   * the first time that the step receives streaming data. Only steps whose
+   * incoming connections are all instance connections are pipelined, and only
+   * if the stream has no string or relational attributes (the values of these
+   * are held in the header, which the producer overwrites for each instance).
+   * Incremental classifier and chart connections always pass the live object
+   * being updated, so they are never pipelined.
+   *
+   * @param step the step receiving streaming data
+   * @param data the data being sent to the step
+   * @return the pipeline stage for the step, or null if the step should
+   *         process the data directly
+   */
+  protected StreamPipelineStage getPipelineStage(StepManagerImpl step,
+    Data data) {
+    ExecutorService pipelineService = m_pipelineExecutorService;
+    if (pipelineService == null) {
+      return null;
+    }
+
+    synchronized (step) {
+      if (!step.m_pipelineStageChecked) {
+        step.m_pipelineStageChecked = true;
+
+        boolean pipeline =
+          data.getConnectionName().equals(StepManager.CON_INSTANCE);
+        for (Map.Entry<String, List<StepManager>> e : step.m_connectedByTypeIncoming
+          .entrySet()) {
+          if (e.getValue().size() > 0
+            && !e.getKey().equals(StepManager.CON_INSTANCE)) {
+            pipeline = false;
+          }
+        }
+        Object payload = data.getPrimaryPayload();
+        if (pipeline && payload instanceof Instance
+          && ((Instance) payload).dataset() != null) {
+          Instances header = ((Instance) payload).dataset();
+          pipeline =
+            !header.checkForStringAttributes()
+              && !header.checkForAttributeType(Attribute.RELATIONAL);
+        }
+
+        if (pipeline) {
+          StreamPipelineStage stage =
+            new StreamPipelineStage(step, m_pipelineQueueSize,
+              m_pipelineInFlight);
+          synchronized (this) {
+            if (m_pipelineStages == null) {
+              m_pipelineStages = new ArrayList<StreamPipelineStage>();
+            }
+            m_pipelineStages.add(stage);
+          }
+          pipelineService.submit(stage);
+          step.m_pipelineStage = stage;
+          m_logHandler.logDebug("Pipelining streaming input to "
+            + step.getName());
+        }
+      }
+    }
+
+    return step.m_pipelineStage;
   }
 
   /**
@@ -393,6 +607,8 @@ public class BaseExecutionEnvironment implements ExecutionEnvironment {
     if (m_singleThreadService != null) {
       m_singleThreadService.shutdown();
     }
+
+    stopPipelineStages(true);
   }
 
   /**
@@ -460,8 +676,15 @@ public class BaseExecutionEnvironment implements ExecutionEnvironment {
       if (data.length == 1
         && (StepManagerImpl.connectionIsIncremental(data[0]))) {
         // we don't want the overhead of spinning up a thread for single
-        // instance (streaming) connections.
-        step.processIncoming(data[0]);
+        // instance (streaming) connections. If pipelining is turned on, the
+        // data is queued for the step's own worker instead. Producers often
+        // reuse their Data object, so the queue gets a copy.
+        StreamPipelineStage stage = getPipelineStage(step, data[0]);
+        if (stage != null) {
+          stage.put(data[0].shallowCopy());
+        } else {
+          step.processIncoming(data[0]);
+        }
       } else {
         String taskType =
           step.getStepMustRunSingleThreaded() ? " (single-threaded)" : (step
@@ -529,6 +752,26 @@ public class BaseExecutionEnvironment implements ExecutionEnvironment {
 
     /** Default (0) means use as many threads as there are cpu processors */
     public static final int RESOURCE_INTENSIVE_EXECUTOR_SERVICE_NUM_THREADS = 0;
+
+    public static final Settings.SettingKey STREAMING_PIPELINE_KEY =
+      new Settings.SettingKey(KFDefaults.APP_ID + ".streamingPipeline",
+        "Pipeline streaming instance connections",
+        "<html>Run each step that receives streaming instances in its own<br>"
+          + "thread, fed by a bounded queue. Upstream steps block when<br>"
+          + "the queue is full.</html>");
+    public static final boolean STREAMING_PIPELINE = false;
+
+    public static final Settings.SettingKey STREAMING_PIPELINE_QUEUE_SIZE_KEY =
+      new Settings.SettingKey(KFDefaults.APP_ID + ".streamingPipelineQueueSize",
+        "Queue size for pipelined streaming steps", "");
+    public static final int STREAMING_PIPELINE_QUEUE_SIZE = 1000;
+
+    public static final Settings.SettingKey STREAMING_BATCH_SIZE_KEY =
+      new Settings.SettingKey(KFDefaults.APP_ID + ".streamingBatchSize",
+        "Number of instances per streaming data event",
+        "<html>Streaming sources send this many instances in each data<br>"
+          + "event. 1 = send each instance in its own event.</html>");
+    public static final int STREAMING_BATCH_SIZE = 1;
     private static final long serialVersionUID = -3386792058002464330L;
 
     public BaseExecutionEnvironmentDefaults() {
@@ -538,6 +781,10 @@ public class BaseExecutionEnvironment implements ExecutionEnvironment {
         STEP_EXECUTOR_SERVICE_NUM_THREADS);
       m_defaults.put(RESOURCE_INTENSIVE_EXECUTOR_SERVICE_NUM_THREADS_KEY,
         RESOURCE_INTENSIVE_EXECUTOR_SERVICE_NUM_THREADS);
+      m_defaults.put(STREAMING_PIPELINE_KEY, STREAMING_PIPELINE);
+      m_defaults.put(STREAMING_PIPELINE_QUEUE_SIZE_KEY,
+        STREAMING_PIPELINE_QUEUE_SIZE);
+      m_defaults.put(STREAMING_BATCH_SIZE_KEY, STREAMING_BATCH_SIZE);
     }
   }
 }
@@ -202,6 +202,22 @@ public class Data implements Serializable {
     m_payloadMap.clear();
   }
 
+  /**
+   * Returns a shallow copy of this Data object. The copy has its own payload
+   * map, so it is unaffected if the producer later reuses this Data object,
+   * but the payload elements themselves are not copied.
+   *
+   * @return a shallow copy of this Data object
+   */
+  public Data shallowCopy() {
+    Data copy = new Data();
+    copy.m_connectionName = m_connectionName;
+    copy.m_sourceStep = m_sourceStep;
+    copy.m_payloadMap.putAll(m_payloadMap);
+
+    return copy;
+  }
+
   /**
    * Return true if the connection specified for this data object is incremental
    *
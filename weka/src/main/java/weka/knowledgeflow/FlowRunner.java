@@ -588,6 +588,12 @@ public class FlowRunner implements FlowExecutor, CommandlineRunnable {
    */
   public boolean flowBusy() {
     boolean busy = false;
+    // checked first, and in a single read, so that streaming data being
+    // handed between pipelined steps is not missed by the per-step checks
+    if (m_execEnv != null && m_execEnv.isPipelineBusy()) {
+      m_logHandler.logDebug("Pipelined streaming data is still in flight.");
+      busy = true;
+    }
     Iterator<StepManagerImpl> iter = m_flow.iterator();
     while (iter.hasNext()) {
       StepManagerImpl s = iter.next();
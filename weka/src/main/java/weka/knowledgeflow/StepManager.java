@@ -85,6 +85,15 @@ public interface StepManager {
     "incremental_stream_end";
   public static final String CON_AUX_DATA_IS_INCREMENTAL = "incremental_stream";
 
+  /**
+   * Payload element of an instance connection Data object holding a
+   * List&lt;Instance&gt; to be processed in order. The primary payload of such a
+   * Data object is the first instance in the batch. Steps that are not marked
+   * with the {@code InstanceBatchCapable} annotation receive the instances
+   * one at a time.
+   */
+  public static final String CON_AUX_DATA_INSTANCE_BATCH = "aux_instance_batch";
+
   /**
    * Get the name of the step managed by this StepManager
    * 
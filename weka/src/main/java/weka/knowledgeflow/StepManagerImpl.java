@@ -22,6 +22,7 @@
 package weka.knowledgeflow;
 
 import weka.core.Environment;
+import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.OptionHandler;
 import weka.core.Settings;
@@ -64,6 +65,22 @@ public class StepManagerImpl implements StepManager {
   /** True if, at the current time, the managed step is busy with processing */
   protected boolean m_stepIsBusy;
 
+  /**
+   * True if the managed step can process Data objects carrying a batch of
+   * instances
+   */
+  protected boolean m_stepAcceptsInstanceBatches;
+
+  /**
+   * Queue and worker used to feed streaming data to the step when pipelined
+   * streaming is turned on in the execution environment. Null if the step
+   * processes streaming data on the thread of the upstream step.
+   */
+  protected transient StreamPipelineStage m_pipelineStage;
+
+  /** True once it has been decided whether to use a pipeline stage */
+  protected transient boolean m_pipelineStageChecked;
+
   /** True if the step is finished with processing (as far as it can tell) */
   protected boolean m_stepIsFinished;
 
@@ -193,6 +210,9 @@ public class StepManagerImpl implements StepManager {
 
     a = step.getClass().getAnnotation(SingleThreadedExecution.class);
     m_stepMustRunSingleThreaded = a != null;
+
+    a = step.getClass().getAnnotation(InstanceBatchCapable.class);
+    m_stepAcceptsInstanceBatches = a != null;
   }
 
   /**
@@ -403,6 +423,8 @@ public class StepManagerImpl implements StepManager {
     m_stepIsBusy = false;
     m_stopRequested = false;
     m_stepIsFinished = false;
+    m_pipelineStage = null;
+    m_pipelineStageChecked = false;
     try {
       getManagedStep().stepInit();
       // getManagedStep().init();
@@ -426,7 +448,8 @@ public class StepManagerImpl implements StepManager {
    */
   @Override
   public boolean isStepBusy() {
-    return m_stepIsBusy;
+    StreamPipelineStage stage = m_pipelineStage;
+    return m_stepIsBusy || (stage != null && stage.isBusy());
   }
 
   /**
@@ -896,6 +919,25 @@ public class StepManagerImpl implements StepManager {
     List<StepOutputListener> listenersForType =
       m_outputListeners.get(data.getConnectionName());
     if (listenersForType != null) {
+      List<Instance> batch =
+        data.getPayloadElement(CON_AUX_DATA_INSTANCE_BATCH);
+      if (batch != null) {
+        // listeners always see individual instances
+        Data single = new Data(data.getConnectionName());
+        single.setSourceStep(data.getSourceStep());
+        for (Instance inst : batch) {
+          single.setPayloadElement(data.getConnectionName(), inst);
+          for (StepOutputListener l : listenersForType) {
+            if (!l.dataFromStep(single)) {
+              logWarning("StepOutputListener '"
+                + l.getClass().getCanonicalName() + "' "
+                + "did not process data '" + data.getConnectionName()
+                + "' successfully'");
+            }
+          }
+        }
+        return;
+      }
       for (StepOutputListener l : listenersForType) {
         if (!l.dataFromStep(data)) {
           logWarning("StepOutputListener '" + l.getClass().getCanonicalName()
@@ -1057,7 +1099,22 @@ public class StepManagerImpl implements StepManager {
    */
   protected void processIncoming(Data data) {
     try {
-      getManagedStep().processIncoming(data);
+      List<Instance> batch =
+        data.getPayloadElement(CON_AUX_DATA_INSTANCE_BATCH);
+      if (batch != null && !m_stepAcceptsInstanceBatches) {
+        // deliver the batch one instance at a time
+        Data single = new Data(data.getConnectionName());
+        single.setSourceStep(data.getSourceStep());
+        for (Instance inst : batch) {
+          if (isStopRequested()) {
+            break;
+          }
+          single.setPayloadElement(data.getConnectionName(), inst);
+          getManagedStep().processIncoming(single);
+        }
+      } else {
+        getManagedStep().processIncoming(data);
+      }
     } catch (WekaException ex) {
       interrupted();
       logError(ex.getMessage(), ex);
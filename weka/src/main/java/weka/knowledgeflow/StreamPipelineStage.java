@@ -0,0 +1,159 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    StreamPipelineStage.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.knowledgeflow;
+
+import weka.core.WekaException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds a bounded queue of incoming streaming data for a step, along with the
+ * worker that feeds the queued data to the step. Used by the execution
+ * environment when pipelined streaming is turned on, so that each step in an
+ * instance stream runs in its own thread. Upstream steps block when the queue
+ * is full, so a slow step applies backpressure to the steps feeding it rather
+ * than letting data accumulate in memory.
+ *
+ * @author agent (agent@local)
+ * @version $Revision: $
+ */
+public class StreamPipelineStage implements Runnable {
+
+  /** How long to wait on the queue before re-checking for a stop (ms) */
+  protected static final long POLL_INTERVAL = 100L;
+
+  /** The step that receives the queued data */
+  protected final StepManagerImpl m_step;
+
+  /** Data waiting to be processed by the step */
+  protected final BlockingQueue<Data> m_queue;
+
+  /** Number of Data objects queued or currently being processed */
+  protected final AtomicInteger m_pending = new AtomicInteger();
+
+  /**
+   * Number of Data objects queued or being processed across all the stages of
+   * the flow. Shared with the execution environment. A stage increments it
+   * before handing data on and decrements it only once the step has finished
+   * with the data, so (unlike checking the stages one at a time) it never
+   * drops to zero while data is moving between stages.
+   */
+  protected final AtomicInteger m_inFlight;
+
+  /** True once the stage has been stopped */
+  protected volatile boolean m_stopped;
+
+  /**
+   * Constructor
+   *
+   * @param step the step that will receive the data
+   * @param capacity the maximum number of Data objects to queue
+   * @param inFlight the count of Data objects in flight across all stages
+   */
+  public StreamPipelineStage(StepManagerImpl step, int capacity,
+    AtomicInteger inFlight) {
+    m_step = step;
+    m_queue = new ArrayBlockingQueue<Data>(Math.max(1, capacity));
+    m_inFlight = inFlight;
+  }
+
+  /**
+   * Queue a Data object for the step. Blocks while the queue is full.
+   *
+   * @param data the data to queue
+   * @throws WekaException if interrupted while waiting for space in the queue
+   */
+  public void put(Data data) throws WekaException {
+    m_inFlight.incrementAndGet();
+    m_pending.incrementAndGet();
+    try {
+      while (!m_stopped && !m_step.isStopRequested()) {
+        if (m_queue.offer(data, POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+          return;
+        }
+      }
+      done();
+    } catch (InterruptedException ex) {
+      done();
+      Thread.currentThread().interrupt();
+      throw new WekaException(ex);
+    }
+  }
+
+  /**
+   * Feed queued data to the step until the stage is stopped
+   */
+  @Override
+  public void run() {
+    while (!m_stopped) {
+      Data data;
+      try {
+        data = m_queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException ex) {
+        break;
+      }
+      if (data == null) {
+        continue;
+      }
+
+      try {
+        if (!m_stopped && !m_step.isStopRequested()) {
+          m_step.processIncoming(data);
+        }
+      } finally {
+        done();
+      }
+    }
+  }
+
+  /**
+   * Account for a Data object that has been processed or dropped
+   */
+  protected void done() {
+    m_pending.decrementAndGet();
+    m_inFlight.decrementAndGet();
+  }
+
+  /**
+   * Returns true if there is data queued for, or being processed by, the step
+   *
+   * @return true if the stage is busy
+   */
+  public boolean isBusy() {
+    return !m_stopped && m_pending.get() > 0;
+  }
+
+  /**
+   * Stop the stage. Any data still in the queue is discarded, so on normal
+   * completion of a flow the execution environment waits for all the stages
+   * to drain before calling this.
+   */
+  public void stop() {
+    m_stopped = true;
+    while (m_queue.poll() != null) {
+      done();
+    }
+  }
+}
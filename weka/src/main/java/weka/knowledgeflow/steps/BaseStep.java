@@ -26,7 +26,9 @@ import weka.core.Instances;
 import weka.core.WekaException;
 import weka.gui.ProgrammaticProperty;
 import weka.gui.knowledgeflow.StepInteractiveViewer;
+import weka.knowledgeflow.BaseExecutionEnvironment;
 import weka.knowledgeflow.Data;
+import weka.knowledgeflow.KFDefaults;
 import weka.knowledgeflow.LoggingLevel;
 import weka.knowledgeflow.StepManager;
 import weka.knowledgeflow.StepManagerImpl;
@@ -315,6 +317,20 @@ public abstract class BaseStep implements Step, BaseStepExtender, Serializable {
     return getStepManager().isStopRequested();
   }
 
+  /**
+   * Get the number of instances that streaming steps should send in each
+   * instance connection Data object, as configured in the settings of the
+   * execution environment
+   *
+   * @return the number of instances per streaming Data object
+   */
+  public int getStreamingBatchSize() {
+    return getStepManager().getSettings().getSetting(
+      KFDefaults.APP_ID,
+      BaseExecutionEnvironment.BaseExecutionEnvironmentDefaults.STREAMING_BATCH_SIZE_KEY,
+      BaseExecutionEnvironment.BaseExecutionEnvironmentDefaults.STREAMING_BATCH_SIZE);
+  }
+
   /**
    * Substitute the values of environment variables in the given string
    * 
@@ -27,6 +27,7 @@ import weka.core.Instances;
 import weka.core.WekaException;
 import weka.gui.knowledgeflow.KFGUIConsts;
 import weka.knowledgeflow.Data;
+import weka.knowledgeflow.InstanceBatchCapable;
 import weka.knowledgeflow.StepManager;
 
 import java.util.ArrayList;
@@ -43,6 +44,7 @@ import java.util.List;
   toolTipText = "Designate which column is to be considered the class column "
     + "in incoming data.",
   iconPath = KFGUIConsts.BASE_ICON_PATH + "ClassAssigner.gif")
+@InstanceBatchCapable
 public class ClassAssigner extends BaseStep {
 
   private static final long serialVersionUID = -4269063233834866140L;
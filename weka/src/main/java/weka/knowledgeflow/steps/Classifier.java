@@ -39,6 +39,7 @@ import weka.gui.ProgrammaticProperty;
 import weka.gui.knowledgeflow.KFGUIConsts;
 import weka.gui.knowledgeflow.StepVisual;
 import weka.knowledgeflow.Data;
+import weka.knowledgeflow.InstanceBatchCapable;
 import weka.knowledgeflow.LoggingLevel;
 import weka.knowledgeflow.SingleThreadedExecution;
 import weka.knowledgeflow.StepManager;
@@ -65,6 +66,7 @@ import java.util.List;
 @KFStep(name = "Classifier", category = "Classifiers",
   toolTipText = "Weka classifier wrapper", iconPath = "",
   resourceIntensive = true)
+@InstanceBatchCapable
 public class Classifier extends WekaAlgorithmWrapper implements
   PairedDataHelper.PairedProcessor<weka.classifiers.Classifier> {
 
@@ -595,6 +597,28 @@ public class Classifier extends WekaAlgorithmWrapper implements
       return;
     }
 
+    List<Instance> batch =
+      data.getPayloadElement(StepManager.CON_AUX_DATA_INSTANCE_BATCH);
+    if (batch != null) {
+      for (Instance i : batch) {
+        if (isStopRequested()) {
+          return;
+        }
+        processStreaming(i);
+      }
+    } else {
+      processStreaming(inst);
+    }
+  }
+
+  /**
+   * Test the classifier on, and then (optionally) train it with, a single
+   * streaming instance
+   *
+   * @param inst the instance to process
+   * @throws WekaException if a problem occurs
+   */
+  protected void processStreaming(Instance inst) throws WekaException {
     // test on the instance
     m_incrementalData.setPayloadElement(StepManager.CON_AUX_DATA_TEST_INSTANCE,
       inst);
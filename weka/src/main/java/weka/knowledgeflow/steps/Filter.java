@@ -21,6 +21,7 @@
 
 package weka.knowledgeflow.steps;
 
+import weka.core.Attribute;
 import weka.core.EnvironmentHandler;
 import weka.core.Instance;
 import weka.core.Instances;
@@ -29,6 +30,7 @@ import weka.filters.StreamableFilter;
 import weka.gui.ProgrammaticProperty;
 import weka.gui.knowledgeflow.StepVisual;
 import weka.knowledgeflow.Data;
+import weka.knowledgeflow.InstanceBatchCapable;
 import weka.knowledgeflow.StepManager;
 
 import java.util.ArrayList;
@@ -46,6 +48,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 @KFStep(name = "Filter", category = "Filters",
   toolTipText = "Weka filter wrapper", iconPath = "")
+@InstanceBatchCapable
 public class Filter extends WekaAlgorithmWrapper {
   private static final long serialVersionUID = 6857031910153224479L;
 
@@ -64,6 +67,12 @@ public class Filter extends WekaAlgorithmWrapper {
   /** True if string attributes are present in streaming case */
   protected boolean m_stringAttsPresent;
 
+  /**
+   * True if incoming batches of instances can be output as batches in the
+   * streaming case (i.e. the output has no string or relational attributes)
+   */
+  protected boolean m_batchOutput;
+
   /** Map of filters that have processed the first batch */
   protected Map<Integer, weka.filters.Filter> m_filterMap =
     new HashMap<Integer, weka.filters.Filter>();
@@ -232,6 +241,7 @@ public class Filter extends WekaAlgorithmWrapper {
     m_waitingTestData.clear();
     m_streaming = false;
     m_stringAttsPresent = false;
+    m_batchOutput = false;
     m_isReset = true;
   }
 
@@ -260,8 +270,11 @@ public class Filter extends WekaAlgorithmWrapper {
         try {
           m_streamingFilter = weka.filters.Filter.makeCopy(m_filterTemplate);
           m_streamingFilter.setInputFormat(incomingStructure);
-          m_stringAttsPresent =
-            m_streamingFilter.getOutputFormat().checkForStringAttributes();
+          Instances outputFormat = m_streamingFilter.getOutputFormat();
+          m_stringAttsPresent = outputFormat.checkForStringAttributes();
+          m_batchOutput =
+            !m_stringAttsPresent
+              && !outputFormat.checkForAttributeType(Attribute.RELATIONAL);
         } catch (Exception ex) {
           throw new WekaException(ex);
         }
@@ -421,13 +434,46 @@ public class Filter extends WekaAlgorithmWrapper {
   }
 
   /**
-   * Process an instance
+   * Process an instance, or a batch of instances
    *
-   * @param data the {@code Data} object containing the instance
+   * @param data the {@code Data} object containing the instance(s)
    * @throws WekaException if a problem occurs
    */
   protected void processStreaming(Data data) throws WekaException {
-    Instance toFilter = data.getPrimaryPayload();
+    List<Instance> batch =
+      data.getPayloadElement(StepManager.CON_AUX_DATA_INSTANCE_BATCH);
+    if (batch == null) {
+      processStreaming((Instance) data.getPrimaryPayload(), null);
+      return;
+    }
+
+    List<Instance> filtered =
+      m_batchOutput ? new ArrayList<Instance>(batch.size()) : null;
+    for (Instance toFilter : batch) {
+      if (isStopRequested()) {
+        return;
+      }
+      processStreaming(toFilter, filtered);
+    }
+
+    if (filtered != null && filtered.size() > 0 && !isStopRequested()) {
+      Data output = new Data(StepManager.CON_INSTANCE, filtered.get(0));
+      output.setPayloadElement(StepManager.CON_AUX_DATA_INSTANCE_BATCH,
+        filtered);
+      getStepManager().outputData(output);
+    }
+  }
+
+  /**
+   * Process an instance
+   *
+   * @param toFilter the instance to process
+   * @param filtered a list to add the filtered instance to, or null to output
+   *          the filtered instance immediately
+   * @throws WekaException if a problem occurs
+   */
+  protected void processStreaming(Instance toFilter, List<Instance> filtered)
+    throws WekaException {
     getStepManager().throughputUpdateStart();
     try {
       if (m_streamingFilter.input(toFilter)) {
@@ -442,10 +488,14 @@ public class Filter extends WekaAlgorithmWrapper {
             }
           }
         }
-        m_incrementalData
-          .setPayloadElement(StepManager.CON_INSTANCE, filteredI);
-        if (!isStopRequested()) {
-          getStepManager().outputData(m_incrementalData);
+        if (filtered != null) {
+          filtered.add(filteredI);
+        } else {
+          m_incrementalData.setPayloadElement(StepManager.CON_INSTANCE,
+            filteredI);
+          if (!isStopRequested()) {
+            getStepManager().outputData(m_incrementalData);
+          }
         }
       }
     } catch (Exception ex) {
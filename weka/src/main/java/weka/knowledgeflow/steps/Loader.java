@@ -21,6 +21,7 @@
 
 package weka.knowledgeflow.steps;
 
+import weka.core.Attribute;
 import weka.core.Environment;
 import weka.core.EnvironmentHandler;
 import weka.core.Instance;
@@ -191,6 +192,8 @@ public class Loader extends WekaAlgorithmWrapper implements Serializable {
       Instances structureCopy = null;
       Instances currentStructure = null;
       boolean stringAttsPresent = false;
+      List<Instance> batch = null;
+      int batchSize = 1;
 
       try {
         theLoader.reset();
@@ -202,6 +205,17 @@ public class Loader extends WekaAlgorithmWrapper implements Serializable {
           stringAttsPresent = true;
         }
         currentStructure = structure;
+
+        // string and relational values are held in the header, which gets
+        // overwritten as each instance is read, so these streams are always
+        // sent one instance at a time
+        if (!stringAttsPresent
+          && !structure.checkForAttributeType(Attribute.RELATIONAL)) {
+          batchSize = getStreamingBatchSize();
+        }
+        if (batchSize > 1) {
+          batch = new ArrayList<Instance>(batchSize);
+        }
       } catch (Exception ex) {
         throw new WekaException(ex);
       }
@@ -229,8 +243,12 @@ public class Loader extends WekaAlgorithmWrapper implements Serializable {
           }
         }
 
-        m_instanceData
-          .setPayloadElement(StepManager.CON_INSTANCE, nextInstance);
+        if (batch != null) {
+          batch.add(nextInstance);
+        } else {
+          m_instanceData.setPayloadElement(StepManager.CON_INSTANCE,
+            nextInstance);
+        }
 
         try {
           nextInstance = theLoader.getNextInstance(currentStructure);
@@ -239,7 +257,16 @@ public class Loader extends WekaAlgorithmWrapper implements Serializable {
           throw new WekaException(ex);
         }
         getStepManager().throughputUpdateEnd(); // finished read operation
-        getStepManager().outputData(StepManager.CON_INSTANCE, m_instanceData);
+        if (batch == null) {
+          getStepManager().outputData(StepManager.CON_INSTANCE, m_instanceData);
+        } else if (batch.size() == batchSize || nextInstance == null) {
+          // downstream steps may hold on to the batch, so start a new list
+          Data batchData = new Data(StepManager.CON_INSTANCE, batch.get(0));
+          batchData.setPayloadElement(StepManager.CON_AUX_DATA_INSTANCE_BATCH,
+            batch);
+          getStepManager().outputData(StepManager.CON_INSTANCE, batchData);
+          batch = new ArrayList<Instance>(batchSize);
+        }
 
         m_flowThroughput.updateEnd(((StepManagerImpl) getStepManager())
           .getLog());
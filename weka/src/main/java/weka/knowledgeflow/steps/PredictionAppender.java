@@ -63,6 +63,15 @@ public class PredictionAppender extends BaseStep {
   /** Keep track of indexes of string attributes in the streaming case */
   protected List<Integer> m_stringAttIndexes;
 
+  /**
+   * Instances with predictions waiting to be output as a batch in the
+   * streaming case. Null if instances are output one at a time.
+   */
+  protected List<Instance> m_outputBatch;
+
+  /** Number of instances to output in each batch in the streaming case */
+  protected int m_outputBatchSize;
+
   /**
    * Initialize the step
    *
@@ -71,6 +80,7 @@ public class PredictionAppender extends BaseStep {
   @Override
   public void stepInit() throws WekaException {
     m_streamingOutputStructure = null;
+    m_outputBatch = null;
   }
 
   /**
@@ -154,6 +164,7 @@ public class PredictionAppender extends BaseStep {
 
     if (getStepManager().isStreamFinished(data)) {
       // done
+      outputBatch();
       // notify downstream steps of end of stream
       Data d = new Data(StepManager.CON_INSTANCE);
       getStepManager().throughputFinished(d);
@@ -188,6 +199,18 @@ public class PredictionAppender extends BaseStep {
       } catch (Exception ex) {
         throw new WekaException(ex);
       }
+
+      // string and relational values are held in the header, so these
+      // streams are output one instance at a time
+      m_outputBatchSize = 1;
+      if (m_stringAttIndexes.size() == 0
+        && !m_streamingOutputStructure
+          .checkForAttributeType(Attribute.RELATIONAL)) {
+        m_outputBatchSize = getStreamingBatchSize();
+      }
+      m_outputBatch =
+        m_outputBatchSize > 1 ? new ArrayList<Instance>(m_outputBatchSize)
+          : null;
     }
 
     double[] instanceVals =
@@ -226,6 +249,15 @@ public class PredictionAppender extends BaseStep {
       }
     }
 
+    if (m_outputBatch != null) {
+      m_outputBatch.add(newInst);
+      getStepManager().throughputUpdateEnd();
+      if (m_outputBatch.size() == m_outputBatchSize) {
+        outputBatch();
+      }
+      return;
+    }
+
     m_instanceData.setPayloadElement(StepManagerImpl.CON_INSTANCE, newInst);
     if (isStopRequested()) {
       return;
@@ -235,6 +267,25 @@ public class PredictionAppender extends BaseStep {
       m_instanceData);
   }
 
+  /**
+   * Output any instances waiting in the current streaming batch
+   *
+   * @throws WekaException if a problem occurs
+   */
+  protected void outputBatch() throws WekaException {
+    if (m_outputBatch == null || m_outputBatch.size() == 0
+      || isStopRequested()) {
+      return;
+    }
+
+    Data batchData = new Data(StepManager.CON_INSTANCE, m_outputBatch.get(0));
+    batchData.setPayloadElement(StepManager.CON_AUX_DATA_INSTANCE_BATCH,
+      m_outputBatch);
+    // downstream steps may hold on to the batch, so start a new list
+    m_outputBatch = new ArrayList<Instance>(m_outputBatchSize);
+    getStepManager().outputData(StepManager.CON_INSTANCE, batchData);
+  }
+
   /**
    * Process a batch classifier
    *
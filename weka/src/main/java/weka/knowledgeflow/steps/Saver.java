@@ -32,6 +32,7 @@ import weka.core.converters.DatabaseSaver;
 import weka.gui.ProgrammaticProperty;
 import weka.gui.knowledgeflow.StepVisual;
 import weka.knowledgeflow.Data;
+import weka.knowledgeflow.InstanceBatchCapable;
 import weka.knowledgeflow.StepManager;
 import weka.knowledgeflow.StepManagerImpl;
 
@@ -48,6 +49,7 @@ import java.util.List;
  */
 @KFStep(name = "Saver", category = "DataSinks",
   toolTipText = "Weka saver wrapper", iconPath = "")
+@InstanceBatchCapable
 public class Saver extends WekaAlgorithmWrapper implements Serializable {
 
   private static final long serialVersionUID = 6831606284211403465L;
@@ -305,6 +307,23 @@ public class Saver extends WekaAlgorithmWrapper implements Serializable {
         return;
       }
 
+      List<Instance> batch =
+        data.getPayloadElement(StepManager.CON_AUX_DATA_INSTANCE_BATCH);
+      if (batch != null) {
+        for (Instance inst : batch) {
+          if (isStopRequested()) {
+            break;
+          }
+          getStepManager().throughputUpdateStart();
+          m_saver.writeIncremental(inst);
+          getStepManager().throughputUpdateEnd();
+        }
+        if (isStopRequested()) {
+          m_saver.writeIncremental(null);
+        }
+        return;
+      }
+
       if (!isStopRequested()) {
         getStepManager().throughputUpdateStart();
         m_saver.writeIncremental(toSave);
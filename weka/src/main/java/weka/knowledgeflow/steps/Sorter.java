@@ -21,14 +21,15 @@
 
 package weka.knowledgeflow.steps;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -36,12 +37,21 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import weka.core.Attribute;
+import weka.core.DenseInstance;
 import weka.core.Environment;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.OptionMetadata;
+import weka.core.SparseInstance;
 import weka.core.WekaException;
 import weka.gui.FilePropertyMetadata;
 import weka.gui.ProgrammaticProperty;
@@ -61,9 +71,9 @@ import weka.knowledgeflow.StepManager;
     + "according to multiple attributes (defined in order). Handles datasets "
     + "larger than can be fit into main memory via instance connections and "
     + "specifying the in-memory buffer size. Implements a merge-sort by writing "
-    + "the sorted in-memory buffer to a file when full and then interleaving "
-    + "instances from the disk-based file(s) when the incoming stream has "
-    + "finished.",
+    + "the sorted in-memory buffer to a file when full (in the background, "
+    + "while the buffer refills) and then merging instances from the "
+    + "disk-based file(s) when the incoming stream has finished.",
   iconPath = KFGUIConsts.BASE_ICON_PATH + "Sorter.gif")
 public class Sorter extends BaseStep {
 
@@ -78,6 +88,18 @@ public class Sorter extends BaseStep {
   /** List of sorted temp files for incremental operation */
   protected transient List<File> m_bufferFiles;
 
+  /** Readers for the temp files during the merge phase */
+  protected transient List<RunReader> m_runReaders;
+
+  /** Sorts and writes full buffers in the background */
+  protected transient ExecutorService m_runWriterPool;
+
+  /** The buffer currently being sorted and written in the background */
+  protected transient Future<Void> m_pendingRun;
+
+  /** Encoding for string values in temp files */
+  protected static final Charset UTF8 = Charset.forName("UTF-8");
+
   /** Size of the in-memory buffer */
   protected String m_bufferSize = "10000";
 
@@ -87,6 +109,9 @@ public class Sorter extends BaseStep {
   /** Holds indexes of string attributes, keyed by attribute name */
   protected Map<String, Integer> m_stringAttIndexes;
 
+  /** Names of string attributes, in a fixed order */
+  protected String[] m_stringAttNames;
+
   /** Holds the internal textual description of the sort definitions */
   protected String m_sortDetails;
 
@@ -178,10 +203,15 @@ public class Sorter extends BaseStep {
    */
   @Override
   public void stepInit() throws WekaException {
+    if (m_bufferFiles != null) {
+      // remove anything left over from a previous (stopped) run
+      cleanupRuns();
+    }
     m_isReset = true;
     m_streaming = false;
     m_stringAttIndexes = new HashMap<String, Integer>();
     m_bufferFiles = new ArrayList<File>();
+    m_runReaders = new ArrayList<RunReader>();
     m_streamingData = new Data(StepManager.CON_INSTANCE);
   }
 
@@ -268,6 +298,10 @@ public class Sorter extends BaseStep {
     }
     if (m_stringAttIndexes.size() == 0) {
       m_stringAttIndexes = null;
+      m_stringAttNames = null;
+    } else {
+      m_stringAttNames = m_stringAttIndexes.keySet().toArray(
+        new String[m_stringAttIndexes.size()]);
     }
 
     if (m_streaming) {
@@ -354,11 +388,16 @@ public class Sorter extends BaseStep {
    */
   protected void processIncremental(Data data) throws WekaException {
     if (isStopRequested()) {
+      cleanupRuns();
       return;
     }
 
     if (getStepManager().isStreamFinished(data)) {
-      emitBufferedInstances();
+      try {
+        emitBufferedInstances();
+      } finally {
+        cleanupRuns();
+      }
     } else {
       getStepManager().throughputUpdateStart();
       InstanceHolder tempH = new InstanceHolder();
@@ -372,7 +411,7 @@ public class Sorter extends BaseStep {
       if (m_incrementalBuffer.size() == m_bufferSizeI) {
         // time to sort and write this to a temp file
         try {
-          sortBuffer(true);
+          spillBuffer();
         } catch (Exception ex) {
           throw new WekaException(ex);
         }
@@ -382,7 +421,8 @@ public class Sorter extends BaseStep {
   }
 
   /**
-   * Output any buffered instances
+   * Output any buffered instances. If runs have been written to disk, then
+   * these are merged with the in-memory buffer by a k-way merge.
    *
    * @throws WekaException if a problem occurs
    */
@@ -391,252 +431,283 @@ public class Sorter extends BaseStep {
       return;
     }
 
-    if (m_incrementalBuffer.size() > 0) {
-      try {
+    try {
+      getStepManager().throughputUpdateStart();
+      waitForPendingRun();
+      getStepManager().logBasic("Sorting in memory buffer");
+      Collections.sort(m_incrementalBuffer, m_sortComparator);
+      getStepManager().throughputUpdateEnd();
+    } catch (Exception ex) {
+      throw new WekaException(ex);
+    }
+
+    if (m_bufferFiles.size() == 0 && m_incrementalBuffer.size() > 0) {
+      // we only have the in memory buffer
+      getStepManager().logDetailed("Emitting in memory buffer");
+      Instances newHeader =
+        new Instances(m_incrementalBuffer.get(0).m_instance.dataset(), 0);
+      for (int i = 0; i < m_incrementalBuffer.size(); i++) {
         getStepManager().throughputUpdateStart();
-        sortBuffer(false);
-        getStepManager().throughputUpdateEnd();
-      } catch (Exception ex) {
-        throw new WekaException(ex);
-      }
-
-      if (m_bufferFiles.size() == 0) {
-        // we only have the in memory buffer
-        getStepManager().logDetailed("Emitting in memory buffer");
-        Instances newHeader =
-          new Instances(m_incrementalBuffer.get(0).m_instance.dataset(), 0);
-        for (int i = 0; i < m_incrementalBuffer.size(); i++) {
-          getStepManager().throughputUpdateStart();
-          InstanceHolder currentH = m_incrementalBuffer.get(i);
-          currentH.m_instance.setDataset(newHeader);
-          if (m_stringAttIndexes != null) {
-            for (String attName : m_stringAttIndexes.keySet()) {
-              boolean setValToZero =
-                newHeader.attribute(attName).numValues() > 0;
-              newHeader.attribute(attName).setStringValue(
-                currentH.m_stringVals.get(attName));
-              if (setValToZero) {
-                currentH.m_instance.setValue(newHeader.attribute(attName), 0);
-              }
-            }
-          }
-          if (isStopRequested()) {
-            return;
-          }
-          m_streamingData.setPayloadElement(StepManager.CON_INSTANCE,
-            currentH.m_instance);
-          getStepManager().throughputUpdateEnd();
-          getStepManager().outputData(m_streamingData);
-          if (i == m_incrementalBuffer.size() - 1) {
-            // end of stream
-            m_streamingData.clearPayload();
-            getStepManager().throughputFinished(m_streamingData);
-          }
+        InstanceHolder currentH = m_incrementalBuffer.get(i);
+        prepareForOutput(currentH, newHeader);
+        if (isStopRequested()) {
+          return;
         }
-        return;
+        m_streamingData.setPayloadElement(StepManager.CON_INSTANCE,
+          currentH.m_instance);
+        getStepManager().throughputUpdateEnd();
+        getStepManager().outputData(m_streamingData);
       }
-    }
+      m_incrementalBuffer.clear();
 
-    List<ObjectInputStream> inputStreams = new ArrayList<ObjectInputStream>();
-    // for the interleaving part of the merge sort
-    List<InstanceHolder> merger = new ArrayList<InstanceHolder>();
+      // end of stream
+      m_streamingData.clearPayload();
+      getStepManager().throughputFinished(m_streamingData);
+      return;
+    }
 
     Instances tempHeader = new Instances(m_connectedFormat, 0);
 
-    // add an instance from the in-memory buffer first
-    if (m_incrementalBuffer.size() > 0) {
-      InstanceHolder tempH = m_incrementalBuffer.remove(0);
-      merger.add(tempH);
-    }
-
-    if (isStopRequested()) {
-      return;
-    }
+    // runs are numbered in the order they were written, with the in-memory
+    // buffer (the most recent instances) last. Ties are broken on the run
+    // number, so the merge is stable
+    final int memoryRun = m_bufferFiles.size();
+    PriorityQueue<InstanceHolder> merger =
+      new PriorityQueue<InstanceHolder>(memoryRun + 1,
+        new Comparator<InstanceHolder>() {
+          @Override
+          public int compare(InstanceHolder o1, InstanceHolder o2) {
+            int cmp = m_sortComparator.compare(o1, o2);
+            if (cmp == 0) {
+              cmp = o1.m_fileNumber < o2.m_fileNumber ? -1
+                : (o1.m_fileNumber == o2.m_fileNumber ? 0 : 1);
+            }
+            return cmp;
+          }
+        });
 
-    if (m_bufferFiles.size() > 0) {
-      getStepManager().logDetailed("Merging temp files");
+    if (memoryRun > 0) {
+      getStepManager().logDetailed("Merging " + memoryRun + " temp files");
     }
-    // open all temp buffer files and read one instance from each
-    for (int i = 0; i < m_bufferFiles.size(); i++) {
-      ObjectInputStream ois = null;
-      try {
-        FileInputStream fis = new FileInputStream(m_bufferFiles.get(i));
-        BufferedInputStream bis = new BufferedInputStream(fis, 50000);
-        ois = new ObjectInputStream(bis);
-
-        InstanceHolder tempH = (InstanceHolder) ois.readObject();
+    try {
+      // open all temp run files and read one instance from each
+      for (int i = 0; i < memoryRun; i++) {
+        RunReader reader =
+          new RunReader(m_bufferFiles.get(i), m_connectedFormat,
+            m_stringAttNames);
+        m_runReaders.add(reader);
+        InstanceHolder tempH = reader.read();
         if (tempH != null) {
-          inputStreams.add(ois);
-
           tempH.m_fileNumber = i;
           merger.add(tempH);
-        } else {
-          // no instances?!??
-          ois.close();
         }
-      } catch (Exception ex) {
-        if (ois != null) {
-          try {
-            ois.close();
-          } catch (Exception e) {
-            throw new WekaException(e);
-          }
-        }
-        throw new WekaException(ex);
       }
+    } catch (IOException ex) {
+      throw new WekaException(ex);
+    }
+
+    int memoryIndex = 0;
+    if (m_incrementalBuffer.size() > 0) {
+      InstanceHolder tempH = m_incrementalBuffer.get(memoryIndex++);
+      tempH.m_fileNumber = memoryRun;
+      merger.add(tempH);
     }
-    Collections.sort(merger, m_sortComparator);
 
     int mergeCount = 0;
-    do {
+    while (merger.size() > 0) {
       if (isStopRequested()) {
         return;
       }
-      InstanceHolder holder = merger.remove(0);
-      holder.m_instance.setDataset(tempHeader);
+      getStepManager().throughputUpdateStart();
+      InstanceHolder holder = merger.poll();
+      int source = holder.m_fileNumber;
 
-      if (m_stringAttIndexes != null) {
-        for (String attName : m_stringAttIndexes.keySet()) {
-          boolean setValToZero =
-            (tempHeader.attribute(attName).numValues() > 1);
-          tempHeader.attribute(attName).setStringValue(
-            holder.m_stringVals.get(attName));
-          if (setValToZero) {
-            holder.m_instance.setValue(tempHeader.attribute(attName), 0);
-          }
+      // now get another instance from the same run
+      InstanceHolder nextH = null;
+      if (source == memoryRun) {
+        if (memoryIndex < m_incrementalBuffer.size()) {
+          nextH = m_incrementalBuffer.get(memoryIndex);
+          m_incrementalBuffer.set(memoryIndex++, null);
+        }
+      } else {
+        try {
+          nextH = m_runReaders.get(source).read();
+        } catch (IOException ex) {
+          throw new WekaException(ex);
         }
       }
+      if (nextH != null) {
+        nextH.m_fileNumber = source;
+        merger.add(nextH);
+      }
 
+      prepareForOutput(holder, tempHeader);
       m_streamingData.setPayloadElement(StepManager.CON_INSTANCE,
         holder.m_instance);
       mergeCount++;
+      getStepManager().throughputUpdateEnd();
       getStepManager().outputData(m_streamingData);
-      getStepManager().throughputUpdateStart();
 
       if (mergeCount % m_bufferSizeI == 0) {
         getStepManager().logDetailed("Merged " + mergeCount + " instances");
       }
-      int smallest = holder.m_fileNumber;
-
-      // now get another instance from the source of "smallest"
-      InstanceHolder nextH = null;
-      if (smallest == -1) {
-        if (m_incrementalBuffer.size() > 0) {
-          nextH = m_incrementalBuffer.remove(0);
-          nextH.m_fileNumber = -1;
-        }
-      } else {
-        ObjectInputStream tis = inputStreams.get(smallest);
-
-        try {
-          InstanceHolder tempH = (InstanceHolder) tis.readObject();
-          if (tempH != null) {
-            nextH = tempH;
-            nextH.m_fileNumber = smallest;
-          } else {
-            throw new Exception("end of buffer");
-          }
-        } catch (Exception ex) {
-          // EOF
-          try {
-            getStepManager().logDetailed("Closing temp file");
-            tis.close();
-          } catch (Exception e) {
-            throw new WekaException(ex);
-          }
-          File file = m_bufferFiles.remove(smallest);
-          // file.delete();
-          inputStreams.remove(smallest);
-
-          // update file numbers
-          for (InstanceHolder h : merger) {
-            if (h.m_fileNumber != -1 && h.m_fileNumber > smallest) {
-              h.m_fileNumber--;
-            }
-          }
-        }
-      }
-
-      if (nextH != null) {
-        // find the correct position (i.e. interleave) for this new Instance
-        int index = Collections.binarySearch(merger, nextH, m_sortComparator);
-        if (index < 0) {
-          merger.add(index * -1 - 1, nextH);
-        } else {
-          merger.add(index, nextH);
-        }
-        nextH = null;
-      }
-      getStepManager().throughputUpdateEnd();
-    } while (merger.size() > 0 && !isStopRequested());
+    }
+    m_incrementalBuffer.clear();
 
     if (!isStopRequested()) {
       // signal end of stream
       m_streamingData.clearPayload();
       getStepManager().throughputFinished(m_streamingData);
-    } else {
-      // try an close any input streams still open...
-      for (ObjectInputStream is : inputStreams) {
-        try {
-          is.close();
-        } catch (Exception ex) {
-          // ignore
+    }
+  }
+
+  /**
+   * Set the header of an instance that is about to be output, and restore the
+   * values of any string attributes into it
+   *
+   * @param holder the holder of the instance
+   * @param header the header to use
+   */
+  protected void prepareForOutput(InstanceHolder holder, Instances header) {
+    holder.m_instance.setDataset(header);
+    if (m_stringAttIndexes != null) {
+      for (String attName : m_stringAttNames) {
+        Attribute att = header.attribute(attName);
+        att.setStringValue(holder.m_stringVals.get(attName));
+        if (!holder.m_instance.isMissing(att)) {
+          holder.m_instance.setValue(att, 0);
         }
       }
     }
   }
 
   /**
-   * Sort the buffer
+   * Hand the (full) in-memory buffer to a background thread to be sorted and
+   * written to a temp file, and start a new buffer. At most one buffer is
+   * written at any one time, so memory use is bounded by two buffers.
    *
-   * @param write true if the buffer sould be written to a tmp file
    * @throws Exception if a problem occurs
    */
-  private void sortBuffer(boolean write) throws Exception {
-    getStepManager().logBasic("Sorting in memory buffer");
-    Collections.sort(m_incrementalBuffer, m_sortComparator);
-    if (!write) {
+  protected void spillBuffer() throws Exception {
+    waitForPendingRun();
+    if (isStopRequested()) {
       return;
     }
 
-    if (isStopRequested()) {
-      return;
+    final List<InstanceHolder> run = m_incrementalBuffer;
+    final File tempFile = createTempFile();
+    m_incrementalBuffer = new ArrayList<InstanceHolder>(m_bufferSizeI);
+    m_bufferFiles.add(tempFile);
+    getStepManager().logDetailed(
+      "Writing buffer to temp file " + m_bufferFiles.size()
+        + ". Buffer contains " + run.size() + " instances");
+
+    if (m_runWriterPool == null) {
+      m_runWriterPool = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "Sorter run writer");
+          t.setDaemon(true);
+          return t;
+        }
+      });
     }
+    m_pendingRun = m_runWriterPool.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        Collections.sort(run, m_sortComparator);
+        RunWriter writer = new RunWriter(tempFile, m_stringAttNames);
+        try {
+          for (InstanceHolder h : run) {
+            if (isStopRequested()) {
+              break;
+            }
+            writer.write(h);
+          }
+        } finally {
+          writer.close();
+        }
+        return null;
+      }
+    });
+  }
 
-    String tmpDir = m_tempDirectory.toString();
-    File tempFile = File.createTempFile("Sorter", ".tmp");
+  /**
+   * Wait for the run being written in the background (if any) to complete
+   *
+   * @throws Exception if writing the run failed
+   */
+  protected void waitForPendingRun() throws Exception {
+    if (m_pendingRun != null) {
+      try {
+        m_pendingRun.get();
+      } catch (ExecutionException ex) {
+        if (ex.getCause() instanceof Exception) {
+          throw (Exception) ex.getCause();
+        }
+        throw ex;
+      } finally {
+        m_pendingRun = null;
+      }
+    }
+  }
 
+  /**
+   * Create a temp file to hold a sorted run
+   *
+   * @return the temp file
+   * @throws IOException if the file can't be created
+   */
+  protected File createTempFile() throws IOException {
+    File tempFile = null;
+    String tmpDir = m_tempDirectory.toString();
     if (tmpDir != null && tmpDir.length() > 0) {
       tmpDir = environmentSubstitute(tmpDir);
       File tempDir = new File(tmpDir);
       if (tempDir.exists() && tempDir.canWrite()) {
-        String filename = tempFile.getName();
-        tempFile = new File(tmpDir + File.separator + filename);
-        tempFile.deleteOnExit();
+        tempFile = File.createTempFile("Sorter", ".tmp", tempDir);
       }
     }
+    if (tempFile == null) {
+      tempFile = File.createTempFile("Sorter", ".tmp");
+    }
+    tempFile.deleteOnExit();
     getStepManager().logDebug("Temp file: " + tempFile.toString());
 
-    m_bufferFiles.add(tempFile);
-    FileOutputStream fos = new FileOutputStream(tempFile);
-    BufferedOutputStream bos = new BufferedOutputStream(fos, 50000);
-    ObjectOutputStream oos = new ObjectOutputStream(bos);
-    getStepManager().logDetailed(
-      "Writing buffer to temp file " + m_bufferFiles.size()
-        + ". Buffer contains " + m_incrementalBuffer.size() + " instances");
+    return tempFile;
+  }
 
-    for (int i = 0; i < m_incrementalBuffer.size(); i++) {
-      InstanceHolder temp = m_incrementalBuffer.get(i);
-      temp.m_instance.setDataset(null);
-      oos.writeObject(temp);
-      if (i % (m_bufferSizeI / 10) == 0) {
-        oos.reset();
+  /**
+   * Close any open run readers, stop the background writer and delete the
+   * temp files
+   */
+  protected void cleanupRuns() {
+    if (m_pendingRun != null) {
+      try {
+        m_pendingRun.get();
+      } catch (Exception ex) {
+        // ignore
       }
+      m_pendingRun = null;
     }
-
-    bos.flush();
-    oos.close();
-    m_incrementalBuffer.clear();
+    if (m_runWriterPool != null) {
+      m_runWriterPool.shutdown();
+      m_runWriterPool = null;
+    }
+    for (RunReader r : m_runReaders) {
+      try {
+        r.close();
+      } catch (IOException ex) {
+        // ignore
+      }
+    }
+    m_runReaders.clear();
+    for (File f : m_bufferFiles) {
+      if (!f.delete()) {
+        getStepManager().logDebug("Unable to delete temp file " + f);
+      }
+    }
+    m_bufferFiles.clear();
   }
 
   private void copyStringAttVals(InstanceHolder holder) {
@@ -676,6 +747,246 @@ public class Sorter extends BaseStep {
     protected Map<String, String> m_stringVals;
   }
 
+  /**
+   * Writes a sorted run of instances to a temp file in a compact binary
+   * format. Each record is length-prefixed and holds the instance weight, its
+   * (dense or sparse) values and the values of any string attributes.
+   */
+  protected static class RunWriter {
+
+    /** Record type for a dense instance */
+    protected static final byte DENSE = 0;
+
+    /** Record type for a sparse instance */
+    protected static final byte SPARSE = 1;
+
+    /** The channel to write to */
+    protected FileChannel m_channel;
+
+    /** Buffer for outgoing records */
+    protected ByteBuffer m_buffer = ByteBuffer.allocateDirect(1 << 16);
+
+    /** Names of string attributes, in the order their values are written */
+    protected String[] m_stringAttNames;
+
+    /**
+     * Constructor
+     *
+     * @param file the file to write to
+     * @param stringAttNames the names of any string attributes (may be null)
+     * @throws IOException if the file can't be opened
+     */
+    public RunWriter(File file, String[] stringAttNames) throws IOException {
+      m_channel = new FileOutputStream(file).getChannel();
+      m_stringAttNames = stringAttNames;
+    }
+
+    /**
+     * Write an instance
+     *
+     * @param holder the holder of the instance to write
+     * @throws IOException if a problem occurs
+     */
+    public void write(InstanceHolder holder) throws IOException {
+      Instance inst = holder.m_instance;
+      boolean sparse = !(inst instanceof DenseInstance);
+      int numValues = sparse ? inst.numValues() : inst.numAttributes();
+
+      byte[][] strings = null;
+      int size = 1 + 8 + 4 + numValues * (sparse ? 12 : 8);
+      if (m_stringAttNames != null) {
+        strings = new byte[m_stringAttNames.length][];
+        for (int i = 0; i < m_stringAttNames.length; i++) {
+          String val = holder.m_stringVals.get(m_stringAttNames[i]);
+          if (val != null) {
+            strings[i] = val.getBytes(UTF8);
+            size += strings[i].length;
+          }
+          size += 4;
+        }
+      }
+
+      if (m_buffer.remaining() < size + 4) {
+        flush();
+        if (m_buffer.capacity() < size + 4) {
+          m_buffer = ByteBuffer.allocateDirect(size + 4);
+        }
+      }
+      m_buffer.putInt(size);
+      m_buffer.put(sparse ? SPARSE : DENSE);
+      m_buffer.putDouble(inst.weight());
+      m_buffer.putInt(numValues);
+      for (int i = 0; i < numValues; i++) {
+        if (sparse) {
+          m_buffer.putInt(inst.index(i));
+          m_buffer.putDouble(inst.valueSparse(i));
+        } else {
+          m_buffer.putDouble(inst.value(i));
+        }
+      }
+      if (strings != null) {
+        for (byte[] val : strings) {
+          if (val == null) {
+            m_buffer.putInt(-1);
+          } else {
+            m_buffer.putInt(val.length);
+            m_buffer.put(val);
+          }
+        }
+      }
+    }
+
+    /**
+     * Write out the contents of the buffer
+     *
+     * @throws IOException if a problem occurs
+     */
+    protected void flush() throws IOException {
+      m_buffer.flip();
+      while (m_buffer.hasRemaining()) {
+        m_channel.write(m_buffer);
+      }
+      m_buffer.clear();
+    }
+
+    /**
+     * Flush and close the file
+     *
+     * @throws IOException if a problem occurs
+     */
+    public void close() throws IOException {
+      try {
+        flush();
+      } finally {
+        m_channel.close();
+      }
+    }
+  }
+
+  /**
+   * Reads back a run written by {@code RunWriter}, using a buffered channel.
+   */
+  protected static class RunReader {
+
+    /** The channel to read from */
+    protected FileChannel m_channel;
+
+    /** Buffer of incoming records */
+    protected ByteBuffer m_buffer = ByteBuffer.allocateDirect(1 << 16);
+
+    /** Number of attributes in the instances */
+    protected int m_numAttributes;
+
+    /** Names of string attributes, in the order their values were written */
+    protected String[] m_stringAttNames;
+
+    /**
+     * Constructor
+     *
+     * @param file the file to read from
+     * @param format the format of the instances in the file
+     * @param stringAttNames the names of any string attributes (may be null)
+     * @throws IOException if the file can't be opened
+     */
+    public RunReader(File file, Instances format, String[] stringAttNames)
+      throws IOException {
+      m_channel = new FileInputStream(file).getChannel();
+      m_numAttributes = format.numAttributes();
+      m_stringAttNames = stringAttNames;
+      m_buffer.flip();
+    }
+
+    /**
+     * Make sure that the buffer holds at least the given number of bytes
+     *
+     * @param numBytes the number of bytes required
+     * @return false if the end of the file is reached first
+     * @throws IOException if a problem occurs
+     */
+    protected boolean fill(int numBytes) throws IOException {
+      if (m_buffer.remaining() >= numBytes) {
+        return true;
+      }
+      if (m_buffer.capacity() < numBytes) {
+        ByteBuffer bigger = ByteBuffer.allocateDirect(numBytes);
+        bigger.put(m_buffer);
+        m_buffer = bigger;
+      } else {
+        m_buffer.compact();
+      }
+      while (m_buffer.position() < numBytes) {
+        if (m_channel.read(m_buffer) < 0) {
+          break;
+        }
+      }
+      m_buffer.flip();
+
+      return m_buffer.remaining() >= numBytes;
+    }
+
+    /**
+     * Read the next instance
+     *
+     * @return the next instance, or null if the end of the run has been
+     *         reached
+     * @throws IOException if a problem occurs
+     */
+    public InstanceHolder read() throws IOException {
+      if (!fill(4)) {
+        return null;
+      }
+      int size = m_buffer.getInt();
+      if (!fill(size)) {
+        throw new EOFException("Truncated record in sort run");
+      }
+
+      InstanceHolder holder = new InstanceHolder();
+      boolean sparse = m_buffer.get() == RunWriter.SPARSE;
+      double weight = m_buffer.getDouble();
+      int numValues = m_buffer.getInt();
+      double[] values = new double[numValues];
+      if (sparse) {
+        int[] indices = new int[numValues];
+        for (int i = 0; i < numValues; i++) {
+          indices[i] = m_buffer.getInt();
+          values[i] = m_buffer.getDouble();
+        }
+        holder.m_instance =
+          new SparseInstance(weight, values, indices, m_numAttributes);
+      } else {
+        for (int i = 0; i < numValues; i++) {
+          values[i] = m_buffer.getDouble();
+        }
+        holder.m_instance = new DenseInstance(weight, values);
+      }
+
+      if (m_stringAttNames != null) {
+        holder.m_stringVals = new HashMap<String, String>();
+        for (String attName : m_stringAttNames) {
+          int length = m_buffer.getInt();
+          String val = null;
+          if (length >= 0) {
+            byte[] bytes = new byte[length];
+            m_buffer.get(bytes);
+            val = new String(bytes, UTF8);
+          }
+          holder.m_stringVals.put(attName, val);
+        }
+      }
+
+      return holder;
+    }
+
+    /**
+     * Close the file
+     *
+     * @throws IOException if a problem occurs
+     */
+    public void close() throws IOException {
+      m_channel.close();
+    }
+  }
+
   /**
    * Comparator that applies the sort rules to {@code InstanceHolder}s
    */
@@ -0,0 +1,112 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka;
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import weka.classifiers.Classifier;
+import weka.core.ClassDiscovery;
+
+/**
+ * Tests Run. Run from the command line with:<p/>
+ * java weka.RunTest
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public class RunTest extends TestCase {
+
+  /** the package that the cache probe looks at */
+  protected static final String PROBE_PACKAGE = "weka.classifiers.trees";
+
+  /**
+   * Gives access to ClassDiscovery's cache, which is cleared whenever the
+   * classpath is searched for a scheme.
+   */
+  protected static class CacheProbe extends ClassDiscovery {
+
+    /**
+     * Fills the cache for the probe package
+     */
+    public static void fill() {
+      find(Classifier.class, PROBE_PACKAGE);
+    }
+
+    /**
+     * Checks whether the cache still holds the probe package
+     *
+     * @return true if the classpath has not been searched since fill()
+     */
+    public static boolean isFilled() {
+      return getCache(Classifier.class, PROBE_PACKAGE) != null;
+    }
+  }
+
+  public RunTest(String name) {
+    super(name);
+  }
+
+  public void testFullyQualifiedNameIsNotSearched() throws Exception {
+    CacheProbe.fill();
+    assertTrue(CacheProbe.isFilled());
+
+    List<String> matches =
+      Run.findSchemeMatch("weka.classifiers.trees.J48", false);
+    assertEquals(Arrays.asList("weka.classifiers.trees.J48"), matches);
+    assertTrue("Classpath should not have been searched",
+      CacheProbe.isFilled());
+  }
+
+  public void testPartialNameIsSearched() throws Exception {
+    CacheProbe.fill();
+
+    List<String> matches = Run.findSchemeMatch("trees.J48", false);
+    assertEquals(Arrays.asList("weka.classifiers.trees.J48"), matches);
+    assertFalse("Classpath should have been searched", CacheProbe.isFilled());
+  }
+
+  public void testUnknownFullyQualifiedName() throws Exception {
+    CacheProbe.fill();
+
+    List<String> matches =
+      Run.findSchemeMatch("weka.classifiers.trees.NoSuchScheme", false);
+    assertTrue(matches.isEmpty());
+    assertFalse("Classpath should have been searched", CacheProbe.isFilled());
+  }
+
+  public void testMatchAnywhereIsSearched() throws Exception {
+    CacheProbe.fill();
+
+    Run.findSchemeMatch("weka.classifiers.trees.J48", true);
+    assertFalse("Classpath should have been searched", CacheProbe.isFilled());
+  }
+
+  public static Test suite() {
+    return new TestSuite(RunTest.class);
+  }
+
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
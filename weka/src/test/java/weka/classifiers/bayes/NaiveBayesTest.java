@@ -21,6 +21,10 @@ package weka.classifiers.bayes;
 
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.TestInstances;
+import weka.estimators.KernelEstimator;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -41,6 +45,63 @@ public class NaiveBayesTest extends AbstractClassifierTest {
     return new NaiveBayes();
   }
 
+  /**
+   * Tests the support cutoff of the kernel estimators: a wide cutoff gives
+   * the same predictions as no cutoff, a very narrow one changes the estimates
+   * for values not seen during training.
+   */
+  public void testKernelSupportCutoff() throws Exception {
+    TestInstances test = new TestInstances();
+    test.setNumNominal(0);
+    test.setNumNumeric(3);
+    test.setClassType(Attribute.NOMINAL);
+    test.setNumInstances(200);
+    Instances data = test.generate();
+    test.setSeed(2);
+    Instances queries = test.generate();
+
+    NaiveBayes full = new NaiveBayes();
+    full.setUseKernelEstimator(true);
+    full.buildClassifier(data);
+    NaiveBayes wide = new NaiveBayes();
+    wide.setUseKernelEstimator(true);
+    wide.setKernelSupportCutoff(10);
+    wide.buildClassifier(data);
+    NaiveBayes narrow = new NaiveBayes();
+    narrow.setUseKernelEstimator(true);
+    narrow.setKernelSupportCutoff(0.001);
+    narrow.buildClassifier(data);
+
+    boolean differs = false;
+    for (int i = 0; i < queries.numInstances(); i++) {
+      double[] expected = full.distributionForInstance(queries.instance(i));
+      double[] actual = wide.distributionForInstance(queries.instance(i));
+      for (int j = 0; j < expected.length; j++) {
+        assertEquals(expected[j], actual[j], 1e-6);
+      }
+    }
+    for (int att = 0; att < data.numAttributes(); att++) {
+      if (att == data.classIndex()) {
+        continue;
+      }
+      for (int cls = 0; cls < data.numClasses(); cls++) {
+        KernelEstimator fullEst =
+          (KernelEstimator) full.getConditionalEstimators()[att][cls];
+        KernelEstimator narrowEst =
+          (KernelEstimator) narrow.getConditionalEstimators()[att][cls];
+        assertEquals(0.001, narrowEst.getSupportCutoff());
+        for (int i = 0; i < queries.numInstances(); i++) {
+          double x = queries.instance(i).value(att);
+          if (Math.abs(fullEst.getProbability(x)
+            - narrowEst.getProbability(x)) > 1e-6) {
+            differs = true;
+          }
+        }
+      }
+    }
+    assertTrue("narrow cutoff has no effect", differs);
+  }
+
   public static Test suite() {
     return new TestSuite(NaiveBayesTest.class);
   }
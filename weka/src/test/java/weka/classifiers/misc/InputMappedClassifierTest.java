@@ -222,6 +222,88 @@ public class InputMappedClassifierTest extends AbstractClassifierTest {
     performTest(false, 4, 3, true, true, false);
   }
   
+  /**
+   * Checks that batch predictions (which map the whole set of instances in
+   * one pass) match predictions for one instance at a time, both on the
+   * training structure and on a permuted version of it
+   */
+  protected void performBatchTest(boolean nomClass, boolean reorderAtts,
+      boolean reorderNomLabels, boolean reorderClassLabels) {
+    Instances train = null;
+    Instances test = null;
+
+    try {
+      train = generateData(nomClass, 4, 3, 3);
+      test = new Instances(train);
+      if (reorderNomLabels) {
+        test = swapValues(1, test);
+      }
+      if (reorderClassLabels && nomClass) {
+        test = swapValues(7, test);
+      }
+      if (reorderAtts) {
+        test = reorderAtts(test);
+      }
+    } catch (Exception ex) {
+      fail("Generating data failed: " + ex);
+    }
+
+    InputMappedClassifier toUse = trainClassifier(train, nomClass);
+
+    try {
+      double[][] expected = new double[train.numInstances()][];
+      for (int i = 0; i < train.numInstances(); i++) {
+        expected[i] = toUse.distributionForInstance(train.instance(i));
+      }
+
+      // alternate between the headers so the mapping is regenerated
+      for (int r = 0; r < 2; r++) {
+        compareDistributions("batch on training structure", expected,
+          toUse.distributionsForInstances(train));
+        compareDistributions("batch on test structure", expected,
+          toUse.distributionsForInstances(test));
+
+        double[][] single = new double[test.numInstances()][];
+        for (int i = 0; i < test.numInstances(); i++) {
+          single[i] = toUse.distributionForInstance(test.instance(i));
+        }
+        compareDistributions("single on test structure", expected, single);
+      }
+
+      assertEquals(0,
+        toUse.distributionsForInstances(new Instances(test, 0)).length);
+    } catch (Exception ex) {
+      fail("Batch prediction failed: " + ex);
+    }
+  }
+
+  /**
+   * Checks that two sets of distributions are the same
+   */
+  protected void compareDistributions(String message, double[][] expected,
+      double[][] actual) {
+    assertEquals(message, expected.length, actual.length);
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(message, expected[i].length, actual[i].length);
+      for (int j = 0; j < expected[i].length; j++) {
+        assertEquals(message + " #" + (i + 1), expected[i][j], actual[i][j],
+          1e-12);
+      }
+    }
+  }
+
+  public void testNominalClassBatch() {
+    performBatchTest(true, false, false, false);
+  }
+
+  public void testNominalClassBatchSwapNominalValuesSwapClassValuesReorderAtts() {
+    performBatchTest(true, true, true, true);
+  }
+
+  public void testNumericClassBatchSwapNominalValuesReorderAtts() {
+    performBatchTest(false, true, true, false);
+  }
+
   protected InputMappedClassifier trainClassifier(Instances data, boolean nominalClass) {
     InputMappedClassifier toUse = new InputMappedClassifier();
     if (nominalClass) {
@@ -0,0 +1,280 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.misc;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import weka.classifiers.Classifier;
+import weka.classifiers.bayes.NaiveBayes;
+import weka.classifiers.rules.ZeroR;
+import weka.core.Instances;
+import weka.core.SerializationHelper;
+import weka.core.TestInstances;
+import weka.core.ThreadSafe;
+
+/**
+ * Tests SharedModelCache, and the sharing of models by SerializedClassifier
+ * and InputMappedClassifier. Run from the command line with:
+ * <p>
+ * java weka.classifiers.misc.SharedModelCacheTest
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public class SharedModelCacheTest extends TestCase {
+
+  /** the number of threads used for concurrent scoring */
+  protected static final int NUM_THREADS = 4;
+
+  /** temporary model files */
+  protected List<File> m_Files;
+
+  /** the training data */
+  protected Instances m_Data;
+
+  /**
+   * A ZeroR that declares itself safe for concurrent predictions
+   */
+  public static class ThreadSafeZeroR extends ZeroR implements ThreadSafe {
+
+    /** for serialization */
+    private static final long serialVersionUID = -5317286411284432609L;
+  }
+
+  /**
+   * initializes the test
+   *
+   * @param name the name of the test
+   */
+  public SharedModelCacheTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Called by JUnit before each test method.
+   *
+   * @throws Exception if the data can't be generated
+   */
+  @Override
+  protected void setUp() throws Exception {
+    SharedModelCache.clear();
+    m_Files = new ArrayList<File>();
+
+    TestInstances test = new TestInstances();
+    test.setNumNominal(3);
+    test.setNumNumeric(2);
+    test.setNumInstances(200);
+    test.setClassType(weka.core.Attribute.NOMINAL);
+    m_Data = test.generate();
+  }
+
+  /** Called by JUnit after each test method */
+  @Override
+  protected void tearDown() throws Exception {
+    SharedModelCache.clear();
+    for (File file : m_Files) {
+      file.delete();
+    }
+    m_Files = null;
+    m_Data = null;
+  }
+
+  /**
+   * Trains a classifier and writes it, along with the header of the training
+   * data, to a temporary file
+   *
+   * @param classifier the classifier to train
+   * @return the file
+   * @throws Exception if training or writing fails
+   */
+  protected File writeModel(Classifier classifier) throws Exception {
+    classifier.buildClassifier(m_Data);
+    File file = File.createTempFile("SharedModelCacheTest", ".model");
+    m_Files.add(file);
+    SerializationHelper.writeAll(file.getAbsolutePath(), new Object[] {
+      classifier, new Instances(m_Data, 0) });
+    return file;
+  }
+
+  /**
+   * Tests that repeated requests for a file return the same model, and that a
+   * changed file is read again
+   */
+  public void testCacheHit() throws Exception {
+    File file = writeModel(new NaiveBayes());
+
+    Object first = SharedModelCache.getModel(file);
+    assertSame(first, SharedModelCache.getModel(file));
+    assertSame(first, SharedModelCache.getContents(file)[0]);
+    assertEquals(2, SharedModelCache.getContents(file).length);
+
+    // the contents array is a copy, so clients can't change the cache
+    SharedModelCache.getContents(file)[0] = null;
+    assertSame(first, SharedModelCache.getModel(file));
+
+    SerializationHelper.writeAll(file.getAbsolutePath(), new Object[] {
+      new ZeroR(), new Instances(m_Data, 0) });
+    file.setLastModified(file.lastModified() + 2000);
+    Object reloaded = SharedModelCache.getModel(file);
+    assertNotSame(first, reloaded);
+    assertTrue(reloaded instanceof ZeroR);
+  }
+
+  /**
+   * Tests that the least recently used file is evicted once the cache is full
+   */
+  public void testEviction() throws Exception {
+    File[] files = new File[SharedModelCache.MAX_ENTRIES + 1];
+    Object[] models = new Object[files.length];
+    for (int i = 0; i < files.length; i++) {
+      files[i] = writeModel(new ZeroR());
+      models[i] = SharedModelCache.getModel(files[i]);
+      // keep the first file the most recently used until the last one
+      if (i > 0 && i < files.length - 1) {
+        assertSame(models[0], SharedModelCache.getModel(files[0]));
+      }
+    }
+
+    assertTrue(SharedModelCache.s_cache.size() <= SharedModelCache.MAX_ENTRIES);
+    // the second file was the least recently used
+    assertFalse(SharedModelCache.s_cache.containsKey(files[1]
+      .getCanonicalPath()));
+    assertTrue(SharedModelCache.s_cache.containsKey(files[0]
+      .getCanonicalPath()));
+    assertNotSame(models[1], SharedModelCache.getModel(files[1]));
+    assertSame(models[files.length - 1],
+      SharedModelCache.getModel(files[files.length - 1]));
+  }
+
+  /**
+   * Tests that SerializedClassifiers sharing a model lock it only if it is not
+   * thread safe
+   */
+  public void testLocking() throws Exception {
+    SerializedClassifier unsafe = new SerializedClassifier();
+    unsafe.setModelFile(writeModel(new NaiveBayes()));
+    unsafe.setShareModel(true);
+    unsafe.distributionForInstance(m_Data.instance(0));
+    assertTrue(unsafe.m_LockModel);
+
+    SerializedClassifier safe = new SerializedClassifier();
+    safe.setModelFile(writeModel(new ThreadSafeZeroR()));
+    safe.setShareModel(true);
+    safe.distributionForInstance(m_Data.instance(0));
+    assertFalse(safe.m_LockModel);
+
+    InputMappedClassifier mapped = new InputMappedClassifier();
+    mapped.setModelPath(safe.getModelFile().getAbsolutePath());
+    mapped.setShareModel(true);
+    mapped.setSuppressMappingReport(true);
+    mapped.distributionForInstance(m_Data.instance(0));
+    assertFalse(mapped.m_lockModel);
+    assertSame(safe.getCurrentModel(), mapped.getClassifier());
+  }
+
+  /**
+   * Tests that classifiers sharing a model, used from several threads at once,
+   * make the same predictions as a private copy of the model
+   */
+  public void testSharedScoring() throws Exception {
+    final File file = writeModel(new NaiveBayes());
+
+    SerializedClassifier unshared = new SerializedClassifier();
+    unshared.setModelFile(file);
+    final double[][] expected = new double[m_Data.numInstances()][];
+    for (int i = 0; i < m_Data.numInstances(); i++) {
+      expected[i] = unshared.distributionForInstance(m_Data.instance(i));
+    }
+
+    final Classifier[] classifiers = new Classifier[NUM_THREADS];
+    for (int t = 0; t < NUM_THREADS; t++) {
+      if (t % 2 == 0) {
+        SerializedClassifier c = new SerializedClassifier();
+        c.setModelFile(file);
+        c.setShareModel(true);
+        classifiers[t] = c;
+      } else {
+        InputMappedClassifier c = new InputMappedClassifier();
+        c.setModelPath(file.getAbsolutePath());
+        c.setShareModel(true);
+        c.setSuppressMappingReport(true);
+        classifiers[t] = c;
+      }
+    }
+
+    final Throwable[] failures = new Throwable[NUM_THREADS];
+    Thread[] threads = new Thread[NUM_THREADS];
+    for (int t = 0; t < NUM_THREADS; t++) {
+      final int index = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int r = 0; r < 20; r++) {
+              for (int i = 0; i < m_Data.numInstances(); i++) {
+                double[] dist =
+                  classifiers[index].distributionForInstance(m_Data
+                    .instance(i));
+                for (int j = 0; j < dist.length; j++) {
+                  assertEquals(expected[i][j], dist[j], 1e-12);
+                }
+              }
+            }
+          } catch (Throwable e) {
+            failures[index] = e;
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (Throwable failure : failures) {
+      if (failure != null) {
+        throw new Exception(failure);
+      }
+    }
+
+    Object model = ((SerializedClassifier) classifiers[0]).getCurrentModel();
+    for (int t = 0; t < NUM_THREADS; t++) {
+      if (t % 2 == 0) {
+        assertSame(model,
+          ((SerializedClassifier) classifiers[t]).getCurrentModel());
+      } else {
+        assertSame(model, ((InputMappedClassifier) classifiers[t])
+          .getClassifier());
+      }
+    }
+  }
+
+  public static Test suite() {
+    return new TestSuite(SharedModelCacheTest.class);
+  }
+
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
@@ -21,6 +21,10 @@ package weka.classifiers.trees;
 
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.datagenerators.classifiers.classification.RandomRBF;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -41,6 +45,117 @@ public class HoeffdingTreeTest extends AbstractClassifierTest {
     return new HoeffdingTree();
   }
 
+  /**
+   * Tests that buffering instances into batches and evaluating splits in
+   * parallel grows the same tree as sequential updating.
+   */
+  /**
+   * Generates a stream for the update tests
+   */
+  protected Instances getStream() throws Exception {
+    RandomRBF generator = new RandomRBF();
+    generator.setNumExamples(20000);
+    generator.setNumAttributes(8);
+    generator.setNumClasses(3);
+    generator.setSeed(1);
+    generator.setDatasetFormat(generator.defineDataFormat());
+    Instances data = generator.generateExamples();
+    data.setClassIndex(data.numAttributes() - 1);
+    return data;
+  }
+
+  public void testBatchedUpdatingEquality() throws Exception {
+    Instances data = getStream();
+
+    HoeffdingTree sequential = new HoeffdingTree();
+    sequential.setGracePeriod(50);
+    sequential.setSplitConfidence(0.01);
+    sequential.buildClassifier(data);
+
+    HoeffdingTree batched = new HoeffdingTree();
+    batched.setGracePeriod(50);
+    batched.setSplitConfidence(0.01);
+    batched.setUpdateBatchSize(256);
+    batched.setNumExecutionSlots(4);
+    batched.buildClassifier(new Instances(data, 0));
+    for (int i = 0; i < data.numInstances(); i++) {
+      batched.updateClassifier(data.instance(i));
+    }
+    batched.batchFinished();
+
+    assertTrue("Sequential tree should have split",
+      sequential.m_decisionNodeCount > 0);
+    assertEquals(sequential.toString(), batched.toString());
+    assertEquals(sequential.m_activeLeafCount, batched.m_activeLeafCount);
+    for (int i = 0; i < data.numInstances(); i += 50) {
+      double[] expected = sequential.distributionForInstance(data.instance(i));
+      double[] actual = batched.distributionForInstance(data.instance(i));
+      for (int j = 0; j < expected.length; j++) {
+        assertEquals(expected[j], actual[j], 1e-12);
+      }
+    }
+  }
+
+  public void testReusedInstanceIsCopied() throws Exception {
+    Instances data = getStream();
+
+    HoeffdingTree sequential = new HoeffdingTree();
+    sequential.setGracePeriod(50);
+    sequential.buildClassifier(data);
+
+    HoeffdingTree batched = new HoeffdingTree();
+    batched.setGracePeriod(50);
+    batched.setUpdateBatchSize(256);
+    batched.buildClassifier(new Instances(data, 0));
+    Instance reused = new DenseInstance(data.numAttributes());
+    reused.setDataset(data);
+    for (int i = 0; i < data.numInstances(); i++) {
+      for (int j = 0; j < data.numAttributes(); j++) {
+        reused.setValue(j, data.instance(i).value(j));
+      }
+      batched.updateClassifier(reused);
+    }
+    batched.batchFinished();
+
+    assertEquals(sequential.toString(), batched.toString());
+  }
+
+  public void testPredictionDoesNotFlush() throws Exception {
+    Instances data = getStream();
+    Instances first = new Instances(data, 0, 10000);
+
+    HoeffdingTree partial = new HoeffdingTree();
+    partial.setGracePeriod(50);
+    partial.setUpdateBatchSize(20000);
+    partial.setNumExecutionSlots(2);
+    partial.buildClassifier(first);
+    assertNull("Executor should be shut down after training",
+      partial.m_executorPool);
+
+    String model = partial.toString();
+    for (int i = 10000; i < data.numInstances(); i++) {
+      partial.updateClassifier(data.instance(i));
+    }
+
+    HoeffdingTree reference = new HoeffdingTree();
+    reference.setGracePeriod(50);
+    reference.buildClassifier(first);
+    for (int i = 0; i < data.numInstances(); i += 50) {
+      double[] expected = reference.distributionForInstance(data.instance(i));
+      double[] actual = partial.distributionForInstance(data.instance(i));
+      for (int j = 0; j < expected.length; j++) {
+        assertEquals(expected[j], actual[j], 1e-12);
+      }
+    }
+    assertEquals(10000, partial.m_updateBuffer.size());
+    assertTrue(partial.toString().startsWith(model));
+    assertEquals(reference.graph(), partial.graph());
+
+    partial.batchFinished();
+    assertNull(partial.m_updateBuffer);
+    assertNull(partial.m_executorPool);
+  }
+
   public static Test suite() {
     return new TestSuite(HoeffdingTreeTest.class);
   }
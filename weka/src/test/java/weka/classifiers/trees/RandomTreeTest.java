@@ -19,8 +19,18 @@
 
 package weka.classifiers.trees;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.SerializationHelper;
+import weka.core.TestInstances;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -44,6 +54,98 @@ public class RandomTreeTest
     return new RandomTree();
   }
 
+  /**
+   * Writes trees the way earlier versions did, as a graph of Tree objects
+   * rather than in flattened form.
+   */
+  protected static class OldFormatOutputStream extends ObjectOutputStream {
+
+    public OldFormatOutputStream(OutputStream out) throws IOException {
+      super(out);
+      enableReplaceObject(true);
+    }
+
+    @Override
+    protected Object replaceObject(Object obj) {
+      if (obj instanceof RandomTree.FlatTree) {
+        return ((RandomTree.FlatTree) obj).readResolve();
+      }
+      return obj;
+    }
+  }
+
+  /**
+   * Generates data to build trees from
+   * 
+   * @param classType the type of the class attribute
+   * @return the data
+   */
+  protected Instances generateData(int classType) throws Exception {
+    TestInstances test = new TestInstances();
+    test.setClassType(classType);
+    test.setNumClasses(3);
+    test.setNumNominal(3);
+    test.setNumNumeric(3);
+    test.setNumInstances(500);
+    return test.generate();
+  }
+
+  /**
+   * Checks that two trees describe and predict identically
+   * 
+   * @param expected the original tree
+   * @param actual the deserialized tree
+   * @param data the data to predict
+   */
+  protected void assertSameTree(RandomTree expected, RandomTree actual, Instances data)
+    throws Exception {
+    assertEquals(expected.toString(), actual.toString());
+    for (int i = 0; i < data.numInstances(); i++) {
+      double[] e = expected.distributionForInstance(data.instance(i));
+      double[] a = actual.distributionForInstance(data.instance(i));
+      assertEquals(e.length, a.length);
+      for (int j = 0; j < e.length; j++) {
+        assertEquals(e[j], a[j], 0);
+      }
+    }
+  }
+
+  public void testSerializationRoundTrip() throws Exception {
+    for (int classType : new int[] { Attribute.NOMINAL, Attribute.NUMERIC }) {
+      Instances data = generateData(classType);
+      RandomTree tree = new RandomTree();
+      tree.buildClassifier(data);
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      SerializationHelper.write(bytes, tree);
+      assertTrue("Nodes should be stored in flattened form",
+        new String(bytes.toByteArray(), "ISO-8859-1").contains("FlatTree"));
+
+      RandomTree loaded = (RandomTree) SerializationHelper.read(
+        new ByteArrayInputStream(bytes.toByteArray()));
+      assertSameTree(tree, loaded, data);
+    }
+  }
+
+  public void testLoadOldFormat() throws Exception {
+    for (int classType : new int[] { Attribute.NOMINAL, Attribute.NUMERIC }) {
+      Instances data = generateData(classType);
+      RandomTree tree = new RandomTree();
+      tree.buildClassifier(data);
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream oos = new OldFormatOutputStream(bytes);
+      oos.writeObject(tree);
+      oos.close();
+      assertFalse("Nodes should be stored as Tree objects",
+        new String(bytes.toByteArray(), "ISO-8859-1").contains("FlatTree"));
+
+      RandomTree loaded = (RandomTree) SerializationHelper.read(
+        new ByteArrayInputStream(bytes.toByteArray()));
+      assertSameTree(tree, loaded, data);
+    }
+  }
+
   public static Test suite() {
     return new TestSuite(RandomTreeTest.class);
   }
@@ -0,0 +1,248 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.core;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests ClassCacheIndex. Run from the command line with:<p/>
+ * java weka.core.ClassCacheIndexTest
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public class ClassCacheIndexTest extends TestCase {
+
+  /** the directory holding the jar and the index */
+  protected File m_dir;
+
+  /** the jar to index */
+  protected File m_jar;
+
+  /** the index file */
+  protected File m_indexFile;
+
+  public ClassCacheIndexTest(String name) {
+    super(name);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    m_dir = File.createTempFile("ClassCacheIndexTest", "");
+    m_dir.delete();
+    m_dir.mkdir();
+    m_jar = new File(m_dir, "test.jar");
+    m_indexFile = new File(m_dir, ClassCacheIndex.INDEX_FILE_NAME);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    File[] files = m_dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    m_dir.delete();
+
+    super.tearDown();
+  }
+
+  /**
+   * Writes the test jar
+   *
+   * @param classes the (path) names of the class entries to write
+   */
+  protected void writeJar(String... classes) throws Exception {
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, "lib.jar");
+    JarOutputStream out =
+      new JarOutputStream(new FileOutputStream(m_jar), manifest);
+    for (String name : classes) {
+      JarEntry entry = new JarEntry(name);
+      entry.setTime(0);
+      out.putNextEntry(entry);
+      out.write(new byte[] { (byte) 0xCA, (byte) 0xFE, (byte) 0xBA,
+        (byte) 0xBE });
+      out.closeEntry();
+    }
+    JarEntry entry = new JarEntry("test/resource.props");
+    entry.setTime(0);
+    out.putNextEntry(entry);
+    out.write("key=value".getBytes("UTF-8"));
+    out.closeEntry();
+    out.close();
+  }
+
+  /**
+   * Sets the modification time of the test jar
+   *
+   * @param time the time to set
+   */
+  protected void setJarTime(long time) {
+    assertTrue(m_jar.setLastModified(time));
+    assertEquals(time, m_jar.lastModified());
+  }
+
+  /**
+   * Indexes the test jar and saves the index
+   *
+   * @return the index
+   */
+  protected ClassCacheIndex buildIndex() throws Exception {
+    writeJar("test/A.class", "test/B.class");
+    setJarTime(1000000000000L);
+    ClassCacheIndex index = new ClassCacheIndex(m_indexFile);
+    index.getContents(m_jar);
+    index.saveIfChanged();
+    assertTrue(m_indexFile.exists());
+
+    return index;
+  }
+
+  /**
+   * Checks that a jar's indexed contents are as written by buildIndex()
+   *
+   * @param contents the contents to check
+   */
+  protected void assertOriginalContents(ClassCacheIndex.JarContents contents) {
+    assertEquals(Arrays.asList("test.A", "test.B"),
+      Arrays.asList(contents.getClasses()));
+    assertEquals(Arrays.asList("test/resource.props"),
+      Arrays.asList(contents.getResources()));
+    assertEquals("lib.jar", contents.getManifestClassPath());
+  }
+
+  public void testScan() throws Exception {
+    ClassCacheIndex index = buildIndex();
+    assertOriginalContents(index.getContents(m_jar));
+    assertFalse(index.m_changed);
+  }
+
+  public void testReuse() throws Exception {
+    buildIndex();
+
+    // garbage of the same size and modification time must not be read
+    RandomAccessFile raf = new RandomAccessFile(m_jar, "rw");
+    raf.write(new byte[(int) raf.length()]);
+    raf.close();
+    setJarTime(1000000000000L);
+
+    ClassCacheIndex index = new ClassCacheIndex(m_indexFile);
+    assertOriginalContents(index.getContents(m_jar));
+    assertFalse(index.m_changed);
+  }
+
+  public void testSizeChangeInvalidates() throws Exception {
+    buildIndex();
+    writeJar("test/A.class", "test/B.class", "test/C.class");
+    setJarTime(1000000000000L);
+
+    ClassCacheIndex index = new ClassCacheIndex(m_indexFile);
+    assertEquals(Arrays.asList("test.A", "test.B", "test.C"),
+      Arrays.asList(index.getContents(m_jar).getClasses()));
+    assertTrue(index.m_changed);
+
+    index.saveIfChanged();
+    index = new ClassCacheIndex(m_indexFile);
+    assertEquals(3, index.getContents(m_jar).getClasses().length);
+    assertFalse(index.m_changed);
+  }
+
+  public void testModificationTimeInvalidates() throws Exception {
+    buildIndex();
+    long length = m_jar.length();
+    writeJar("test/X.class", "test/Y.class");
+    assertEquals(length, m_jar.length());
+    setJarTime(1000000002000L);
+
+    ClassCacheIndex index = new ClassCacheIndex(m_indexFile);
+    assertEquals(Arrays.asList("test.X", "test.Y"),
+      Arrays.asList(index.getContents(m_jar).getClasses()));
+    assertTrue(index.m_changed);
+  }
+
+  public void testCorruptIndexIgnored() throws Exception {
+    buildIndex();
+    long length = m_indexFile.length();
+
+    // truncated
+    RandomAccessFile raf = new RandomAccessFile(m_indexFile, "rw");
+    raf.setLength(length / 2);
+    raf.close();
+    ClassCacheIndex index = new ClassCacheIndex(m_indexFile);
+    assertTrue(index.m_jars.isEmpty());
+    assertTrue(index.m_changed);
+    assertOriginalContents(index.getContents(m_jar));
+
+    // garbage
+    FileOutputStream out = new FileOutputStream(m_indexFile);
+    out.write("not an index".getBytes("UTF-8"));
+    out.close();
+    index = new ClassCacheIndex(m_indexFile);
+    assertTrue(index.m_jars.isEmpty());
+    assertOriginalContents(index.getContents(m_jar));
+
+    // a rescan replaces the corrupt index
+    index.saveIfChanged();
+    assertEquals(length, m_indexFile.length());
+    index = new ClassCacheIndex(m_indexFile);
+    assertEquals(1, index.m_jars.size());
+  }
+
+  public void testOldVersionIgnored() throws Exception {
+    buildIndex();
+
+    DataOutputStream out =
+      new DataOutputStream(new FileOutputStream(m_indexFile));
+    out.writeInt(ClassCacheIndex.INDEX_VERSION - 1);
+    out.writeInt(1);
+    out.writeUTF(m_jar.getAbsolutePath());
+    out.close();
+
+    ClassCacheIndex index = new ClassCacheIndex(m_indexFile);
+    assertTrue(index.m_jars.isEmpty());
+    assertTrue(index.m_changed);
+    assertOriginalContents(index.getContents(m_jar));
+  }
+
+  public static Test suite() {
+    return new TestSuite(ClassCacheIndexTest.class);
+  }
+
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.core;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests DenseInstance, in particular that copies sharing an attribute value
+ * vector (copy-on-write) never see each other's changes. Run from the command
+ * line with:<p/>
+ * java weka.core.InstanceTest
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public class InstanceTest extends TestCase {
+
+  /** the values of the test instance */
+  protected static final double[] VALUES = { 1, 2, 3, 4 };
+
+  /**
+   * Constructs the <code>InstanceTest</code>.
+   *
+   * @param name the name of the test
+   */
+  public InstanceTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Creates an instance with the test values
+   *
+   * @return the instance
+   */
+  protected DenseInstance create() {
+    DenseInstance result = new DenseInstance(VALUES.length);
+    for (int i = 0; i < VALUES.length; i++) {
+      result.setValue(i, VALUES[i]);
+    }
+    return result;
+  }
+
+  /**
+   * Checks the values of an instance
+   *
+   * @param message the message to report a difference with
+   * @param expected the expected values
+   * @param actual the instance
+   */
+  protected void assertValues(String message, double[] expected,
+    Instance actual) {
+    assertEquals(message, expected.length, actual.numAttributes());
+    for (int i = 0; i < expected.length; i++) {
+      if (Utils.isMissingValue(expected[i])) {
+        assertTrue(message + " value " + i, actual.isMissing(i));
+      } else {
+        assertEquals(message + " value " + i, expected[i], actual.value(i), 0);
+      }
+    }
+  }
+
+  /**
+   * Tests changing a copy first, then the original
+   */
+  public void testChangeCopyThenSource() {
+    DenseInstance source = create();
+    DenseInstance copy = new DenseInstance(source);
+
+    copy.setValue(0, 10);
+    assertValues("source", new double[] { 1, 2, 3, 4 }, source);
+    assertValues("copy", new double[] { 10, 2, 3, 4 }, copy);
+
+    source.setValue(1, 20);
+    assertValues("source", new double[] { 1, 20, 3, 4 }, source);
+    assertValues("copy", new double[] { 10, 2, 3, 4 }, copy);
+
+    // both now own their vectors, and further changes stay separate
+    copy.setValue(2, 30);
+    source.setValue(3, 40);
+    assertValues("source", new double[] { 1, 20, 3, 40 }, source);
+    assertValues("copy", new double[] { 10, 2, 30, 4 }, copy);
+  }
+
+  /**
+   * Tests changing the original first, then a copy
+   */
+  public void testChangeSourceThenCopy() {
+    DenseInstance source = create();
+    DenseInstance copy = (DenseInstance) source.copy();
+
+    source.setValue(0, 10);
+    assertValues("source", new double[] { 10, 2, 3, 4 }, source);
+    assertValues("copy", new double[] { 1, 2, 3, 4 }, copy);
+
+    copy.setValueSparse(1, 20);
+    assertValues("source", new double[] { 10, 2, 3, 4 }, source);
+    assertValues("copy", new double[] { 1, 20, 3, 4 }, copy);
+  }
+
+  /**
+   * Tests that an instance that has been copied more than once, and has
+   * already made its own vector, still leaves all its copies alone
+   */
+  public void testRepeatedCopies() {
+    DenseInstance source = create();
+    DenseInstance first = new DenseInstance(source);
+    source.setValue(0, 10);
+    DenseInstance second = new DenseInstance(source);
+    source.setValue(0, 100);
+    second.setValue(1, 20);
+
+    assertValues("source", new double[] { 100, 2, 3, 4 }, source);
+    assertValues("first", new double[] { 1, 2, 3, 4 }, first);
+    assertValues("second", new double[] { 10, 20, 3, 4 }, second);
+  }
+
+  /**
+   * Tests that an instance created from an array supplied by the caller never
+   * writes to that array, and is not affected by the caller changing it after
+   * the first change to the instance
+   */
+  public void testCallerArray() {
+    double[] array = VALUES.clone();
+    DenseInstance inst = new DenseInstance(1.0, array);
+    DenseInstance copy = new DenseInstance(inst);
+
+    inst.setValue(0, 10);
+    assertValues("array", VALUES, new DenseInstance(1.0, array));
+    assertValues("copy", VALUES, copy);
+
+    array[1] = 20;
+    assertValues("instance", new double[] { 10, 2, 3, 4 }, inst);
+
+    // the copy still shares the caller's array, but doesn't write to it
+    copy.setValue(2, 30);
+    assertEquals(3.0, array[2], 0);
+    assertValues("copy", new double[] { 1, 20, 30, 4 }, copy);
+  }
+
+  /**
+   * Tests that a deserialized instance, whose ownership flag is transient,
+   * doesn't change the values of copies made from it
+   */
+  public void testDeserialized() throws Exception {
+    DenseInstance source = create();
+    DenseInstance restored =
+      (DenseInstance) new SerializedObject(source).getObject();
+    assertValues("restored", VALUES, restored);
+
+    DenseInstance copy = new DenseInstance(restored);
+    restored.setValue(0, 10);
+    copy.setValue(1, 20);
+    assertValues("restored", new double[] { 10, 2, 3, 4 }, restored);
+    assertValues("copy", new double[] { 1, 20, 3, 4 }, copy);
+    assertValues("source", VALUES, source);
+
+    // an owned instance that is serialized and restored is changed safely too
+    restored = (DenseInstance) new SerializedObject(restored).getObject();
+    copy = new DenseInstance(restored);
+    restored.setValue(2, 30);
+    assertValues("restored", new double[] { 10, 2, 30, 4 }, restored);
+    assertValues("copy", new double[] { 10, 2, 3, 4 }, copy);
+  }
+
+  /**
+   * Tests that replacing missing values in a copy leaves the original alone,
+   * and vice versa
+   */
+  public void testReplaceMissingValues() {
+    double missing = Utils.missingValue();
+    double[] means = { 5, 6, 7, 8 };
+    DenseInstance source = create();
+    source.setMissing(1);
+    source.setMissing(3);
+
+    DenseInstance copy = new DenseInstance(source);
+    copy.replaceMissingValues(means);
+    assertValues("source", new double[] { 1, missing, 3, missing }, source);
+    assertValues("copy", new double[] { 1, 6, 3, 8 }, copy);
+
+    copy = new DenseInstance(source);
+    source.replaceMissingValues(means);
+    assertValues("source", new double[] { 1, 6, 3, 8 }, source);
+    assertValues("copy", new double[] { 1, missing, 3, missing }, copy);
+
+    double[] array = { missing, 2 };
+    new DenseInstance(1.0, array).replaceMissingValues(new double[] { 9, 9 });
+    assertTrue(Utils.isMissingValue(array[0]));
+  }
+
+  public static Test suite() {
+    return new TestSuite(InstanceTest.class);
+  }
+
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.core;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests QuantileSketch. Run from the command line with:<p/>
+ * java weka.core.QuantileSketchTest
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public class QuantileSketchTest extends TestCase {
+
+  /** the number of values to add */
+  protected static final int NUM_VALUES = 100000;
+
+  /** the quantiles to check */
+  protected static final double[] QUANTILES = { 0.001, 0.01, 0.1, 0.25, 0.5,
+    0.75, 0.9, 0.99, 0.999 };
+
+  /**
+   * Constructs the <code>QuantileSketchTest</code>.
+   *
+   * @param name the name of the test class
+   */
+  public QuantileSketchTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Generates some skewed values
+   *
+   * @param seed the seed for the random number generator
+   * @return the values
+   */
+  protected double[] values(long seed) {
+    Random r = new Random(seed);
+    double[] values = new double[NUM_VALUES];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = Math.exp(r.nextGaussian());
+    }
+    return values;
+  }
+
+  /**
+   * Checks the estimated quantiles of a sketch against the exact quantiles of
+   * the (sorted) values, in terms of rank error.
+   *
+   * @param sketch the sketch to check
+   * @param sorted the values added to the sketch, sorted
+   * @param tolerance the largest rank error allowed, as a fraction of the
+   *          number of values
+   */
+  protected void checkQuantiles(QuantileSketch sketch, double[] sorted,
+    double tolerance) {
+    assertEquals((double) sorted.length, sketch.getTotalWeight(), 1e-6);
+    assertEquals(sorted[0], sketch.getMin(), 0);
+    assertEquals(sorted[sorted.length - 1], sketch.getMax(), 0);
+    for (double q : QUANTILES) {
+      double estimate = sketch.quantile(q);
+      assertFalse("quantile " + q + " is NaN", Double.isNaN(estimate));
+      int rank = Arrays.binarySearch(sorted, estimate);
+      if (rank < 0) {
+        rank = -rank - 1;
+      }
+      double error = Math.abs((double) rank / sorted.length - q);
+      assertTrue("rank error " + error + " at quantile " + q,
+        error <= tolerance);
+    }
+  }
+
+  /**
+   * Tests the quantiles of a single sketch
+   */
+  public void testQuantiles() {
+    double[] values = values(1);
+    QuantileSketch sketch = new QuantileSketch();
+    for (double v : values) {
+      sketch.add(v);
+    }
+    Arrays.sort(values);
+    checkQuantiles(sketch, values, 0.005);
+    assertTrue(sketch.numCentroids() <= 2 * QuantileSketch
+      .DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * Tests that merging the sketches of parts of the data gives much the same
+   * quantiles as a single sketch of all the data
+   */
+  public void testAggregate() {
+    double[] values = values(2);
+    QuantileSketch single = new QuantileSketch();
+    QuantileSketch[] parts = new QuantileSketch[10];
+    for (int i = 0; i < parts.length; i++) {
+      parts[i] = new QuantileSketch();
+    }
+    for (int i = 0; i < values.length; i++) {
+      single.add(values[i]);
+      parts[i % parts.length].add(values[i]);
+    }
+
+    QuantileSketch merged = new QuantileSketch();
+    for (QuantileSketch part : parts) {
+      merged.aggregate(part);
+    }
+    merged.finalizeAggregation();
+
+    Arrays.sort(values);
+    checkQuantiles(single, values, 0.005);
+    checkQuantiles(merged, values, 0.01);
+    for (double q : QUANTILES) {
+      assertEquals(single.cdf(single.quantile(q)),
+        merged.cdf(merged.quantile(q)), 0.01);
+    }
+  }
+
+  /**
+   * Tests aggregating a sketch with more centroids than fit in the buffer of
+   * the (empty) sketch it is merged into, which has to merge part way through
+   */
+  public void testAggregateLargerThanBuffer() {
+    double[] values = values(3);
+    QuantileSketch large = new QuantileSketch(2000);
+    for (double v : values) {
+      large.add(v);
+    }
+    QuantileSketch small = new QuantileSketch(20);
+    assertTrue(large.numCentroids() > 5 * (2 * 20 + 10));
+
+    small.aggregate(large);
+    small.finalizeAggregation();
+
+    Arrays.sort(values);
+    checkQuantiles(small, values, 0.05);
+    assertTrue(small.numCentroids() <= 2 * 20 + 10);
+  }
+
+  /**
+   * Tests aggregating a sketch into itself, which doubles the weights
+   */
+  public void testAggregateSelf() {
+    double[] values = values(4);
+    QuantileSketch sketch = new QuantileSketch();
+    for (double v : values) {
+      sketch.add(v);
+    }
+    double median = sketch.quantile(0.5);
+    sketch.aggregate(sketch);
+    sketch.finalizeAggregation();
+
+    assertEquals(2.0 * NUM_VALUES, sketch.getTotalWeight(), 1e-6);
+    assertEquals(median, sketch.quantile(0.5), 0.01 * median);
+  }
+
+  /**
+   * Tests that an empty sketch gives missing values
+   */
+  public void testEmpty() {
+    QuantileSketch sketch = new QuantileSketch();
+    sketch.add(Utils.missingValue());
+    sketch.add(1, 0);
+    assertEquals(0.0, sketch.getTotalWeight(), 0);
+    assertTrue(Utils.isMissingValue(sketch.quantile(0.5)));
+    assertTrue(Utils.isMissingValue(sketch.getMin()));
+    assertEquals(0, sketch.equalFrequencyCutPoints(4).length);
+  }
+
+  public static Test suite() {
+    return new TestSuite(QuantileSketchTest.class);
+  }
+
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,289 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    ExpressionCompilerTest.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core.expressionlanguage.compiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SerializedObject;
+import weka.core.Utils;
+import weka.core.expressionlanguage.common.IfElseMacro;
+import weka.core.expressionlanguage.common.JavaMacro;
+import weka.core.expressionlanguage.common.MacroDeclarationsCompositor;
+import weka.core.expressionlanguage.common.MathFunctions;
+import weka.core.expressionlanguage.common.Primitives.BooleanExpression;
+import weka.core.expressionlanguage.common.Primitives.DoubleExpression;
+import weka.core.expressionlanguage.common.Primitives.StringExpression;
+import weka.core.expressionlanguage.common.SimpleVariableDeclarations;
+import weka.core.expressionlanguage.core.Node;
+import weka.core.expressionlanguage.parser.Parser;
+import weka.core.expressionlanguage.weka.InstancesHelper;
+
+/**
+ * Tests the ExpressionCompiler by comparing compiled programs with the
+ * interpreted ones.</p>
+ *
+ * Run from command line with:</br>
+ * java weka.core.expressionlanguage.compiler.ExpressionCompilerTest
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public class ExpressionCompilerTest extends TestCase {
+
+  /** Programs over A, B (doubles), C (boolean) and D (String) */
+  protected static final String[] PROGRAMS = { "A + B * 2 - B / 3 ^ A",
+    "-A + +B", "pow(A, 2) + sqrt(abs(B)) - log(exp(A))",
+    "sin(A) * cos(B) / tan(A) + rint(B) - floor(A) + ceil(B)",
+    "ifelse(A < B & !C, A, ifelse(A >= B | C, B, 42))",
+    "ifelse(A <= B, 1, 0) + ifelse(A > B, 2, 0) + ifelse(A = B, 4, 0)",
+    "A < B", "A <= B", "A > B", "A >= B", "A = B", "not (A = B) and C",
+    "C or A > 0", "ifelse(C, A > B, A < B)", "D + 'x' + D", "D is 'abc'",
+    "D regexp 'a.*'", "D + 'z' regexp '[a-z]*'", "ifelse(C, D, 'other')",
+    "java('java.lang.Math', 'double max(double, double)', A, B) * 2",
+    "java('java.lang.String', 'String valueOf(double)', A) + D" };
+
+  /** Values for the variable A and B */
+  protected static final double[] VALUES = { 0.0, -0.0, 1.0, -2.5, 3.0,
+    Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+
+  /** Values for the variable D */
+  protected static final String[] STRINGS = { "", "abc", "a1", "xyz" };
+
+  /**
+   * Constructs the {@link ExpressionCompilerTest}
+   *
+   * @param name the name of the test
+   */
+  public ExpressionCompilerTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Returns the result of evaluating a program
+   *
+   * @param program the program
+   * @return the result
+   */
+  protected static Object evaluate(Node program) {
+    if (program instanceof DoubleExpression) {
+      return ((DoubleExpression) program).evaluate();
+    }
+    if (program instanceof BooleanExpression) {
+      return ((BooleanExpression) program).evaluate();
+    }
+    return ((StringExpression) program).evaluate();
+  }
+
+  /**
+   * Tests that compiled programs compute the same values as the interpreter
+   *
+   * @throws Exception if something goes wrong
+   */
+  public void testOperatorsAndMacros() throws Exception {
+    for (String expr : PROGRAMS) {
+      SimpleVariableDeclarations variables = new SimpleVariableDeclarations();
+      variables.addDouble("A");
+      variables.addDouble("B");
+      variables.addBoolean("C");
+      variables.addString("D");
+      Node program =
+        Parser.parse(expr, variables, new MacroDeclarationsCompositor(
+          new MathFunctions(), new IfElseMacro(), new JavaMacro()));
+      Node compiled = ExpressionCompiler.compile(program);
+      assertTrue("'" + expr + "' not compiled",
+        compiled instanceof CompiledNode);
+
+      SimpleVariableDeclarations.VariableInitializer init =
+        variables.getInitializer();
+      for (double a : VALUES) {
+        for (double b : VALUES) {
+          for (boolean c : new boolean[] { true, false }) {
+            for (String d : STRINGS) {
+              if (init.hasVariable("A")) {
+                init.setDouble("A", a);
+              }
+              if (init.hasVariable("B")) {
+                init.setDouble("B", b);
+              }
+              if (init.hasVariable("C")) {
+                init.setBoolean("C", c);
+              }
+              if (init.hasVariable("D")) {
+                init.setString("D", d);
+              }
+              assertEquals("'" + expr + "' with A=" + a + ", B=" + b + ", C="
+                + c + ", D=" + d, evaluate(program), evaluate(compiled));
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests compiled programs over instances, including the tracking of missing
+   * values
+   *
+   * @throws Exception if something goes wrong
+   */
+  public void testInstanceValues() throws Exception {
+    ArrayList<Attribute> atts = new ArrayList<Attribute>();
+    atts.add(new Attribute("num1"));
+    atts.add(new Attribute("num2"));
+    atts.add(new Attribute("nom", Arrays.asList("red", "green", "blue")));
+    Instances data = new Instances("test", atts, 0);
+    data.setClassIndex(1);
+    Random r = new Random(1);
+    for (int i = 0; i < 200; i++) {
+      double[] vals = new double[3];
+      vals[0] = r.nextInt(5) == 0 ? Utils.missingValue() : r.nextGaussian();
+      vals[1] = r.nextInt(5) == 0 ? Utils.missingValue() : r.nextGaussian();
+      vals[2] = r.nextInt(5) == 0 ? Utils.missingValue() : r.nextInt(3);
+      data.add(new DenseInstance(1.0, vals));
+    }
+
+    String[] programs = { "A1 * 2 + CLASS", "ifelse(ismissing(A1), -1, A1)",
+      "ifelse(ATT3 is 'red', A1, A2)", "ismissing(A3) | A1 > A2",
+      "A3 + '-' + A3" };
+    for (String expr : programs) {
+      InstancesHelper helper = new InstancesHelper(data);
+      Node program =
+        Parser.parse(expr, helper, new MacroDeclarationsCompositor(helper,
+          new MathFunctions(), new IfElseMacro()));
+      Node compiled = ExpressionCompiler.compile(program);
+      assertTrue("'" + expr + "' not compiled",
+        compiled instanceof CompiledNode);
+
+      for (Instance inst : data) {
+        helper.setInstance(inst);
+        Object expected = evaluate(program);
+        boolean expectedMissing = helper.missingAccessed();
+        helper.setInstance(inst);
+        assertEquals("'" + expr + "' on " + inst, expected,
+          evaluate(compiled));
+        assertEquals("'" + expr + "' on " + inst, expectedMissing,
+          helper.missingAccessed());
+      }
+    }
+  }
+
+  /**
+   * Tests that compiled programs are serialized as the original program, and
+   * compiled again when deserialized
+   *
+   * @throws Exception if something goes wrong
+   */
+  public void testSerialization() throws Exception {
+    SimpleVariableDeclarations variables = new SimpleVariableDeclarations();
+    variables.addDouble("A");
+    Node program =
+      Parser.parse("sqrt(A) + 1", variables, new MathFunctions());
+    variables.getInitializer().setDouble("A", 4.0);
+    Node compiled = ExpressionCompiler.compile(program);
+    assertTrue(compiled instanceof CompiledNode);
+
+    Node copy = (Node) new SerializedObject(compiled).getObject();
+    assertTrue(copy instanceof CompiledNode);
+    assertNotSame(compiled.getClass(), copy.getClass());
+    assertEquals(program.getClass(),
+      ((CompiledNode) copy).getSource().getClass());
+    assertEquals(3.0, ((DoubleExpression) copy).evaluate());
+  }
+
+  /**
+   * Tests that a deserialized compiled program reads the variables of the
+   * deserialized helper it was serialized with, as in copies of the filters
+   *
+   * @throws Exception if something goes wrong
+   */
+  public void testSerializationSharesVariables() throws Exception {
+    ArrayList<Attribute> atts = new ArrayList<Attribute>();
+    atts.add(new Attribute("num1"));
+    Instances data = new Instances("test", atts, 0);
+    data.add(new DenseInstance(1.0, new double[] { 2.0 }));
+    data.add(new DenseInstance(1.0, new double[] { 5.0 }));
+
+    InstancesHelper helper = new InstancesHelper(data);
+    Node program =
+      Parser.parse("A1 * 3", helper, new MacroDeclarationsCompositor(helper,
+        new MathFunctions()));
+    Object[] copy =
+      (Object[]) new SerializedObject(new Object[] { helper,
+        ExpressionCompiler.compile(program) }).getObject();
+    InstancesHelper helperCopy = (InstancesHelper) copy[0];
+    assertTrue(copy[1] instanceof CompiledNode);
+
+    for (Instance inst : data) {
+      helperCopy.setInstance(inst);
+      assertEquals(inst.value(0) * 3,
+        ((DoubleExpression) copy[1]).evaluate());
+    }
+  }
+
+  /**
+   * Tests that programs that can't be compiled are returned unchanged
+   *
+   * @throws Exception if something goes wrong
+   */
+  public void testFallback() throws Exception {
+    SimpleVariableDeclarations variables = new SimpleVariableDeclarations();
+    variables.addDouble("A");
+    Node program = Parser.parse("A", variables, new MathFunctions());
+    assertSame(program, ExpressionCompiler.compile(program));
+
+    program = Parser.parse("A + 1", variables, new MathFunctions());
+    System.setProperty(ExpressionCompiler.DISABLE_PROPERTY, "true");
+    try {
+      assertSame(program, ExpressionCompiler.compile(program));
+    } finally {
+      System.clearProperty(ExpressionCompiler.DISABLE_PROPERTY);
+    }
+  }
+
+  /**
+   * Returns the test suite.
+   *
+   * @return the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(ExpressionCompilerTest.class);
+  }
+
+  /**
+   * Executes the test from command-line.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+}
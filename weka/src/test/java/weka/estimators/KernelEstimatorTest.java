@@ -0,0 +1,184 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    KernelEstimatorTest.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.estimators;
+
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+/**
+ * Tests the KernelEstimator. Run from the command line with:</p>
+ *
+ * java weka.estimators.KernelEstimatorTest
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public class KernelEstimatorTest extends TestCase {
+
+  /** the precision of the estimators */
+  protected static final double PRECISION = 0.01;
+
+  /**
+   * Constructs the {@link KernelEstimatorTest}
+   *
+   * @param name the name of the test
+   */
+  public KernelEstimatorTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Generates values with many duplicates after rounding
+   *
+   * @param rand the random number generator to use
+   * @param num the number of values
+   * @return the values
+   */
+  protected double[] generateValues(Random rand, int num) {
+    double[] result = new double[num];
+    for (int i = 0; i < num; i++) {
+      result[i] = Math.round(rand.nextGaussian() * 100) / 50.0 + 3;
+    }
+    return result;
+  }
+
+  /**
+   * Generates weights, some of them zero
+   *
+   * @param rand the random number generator to use
+   * @param num the number of weights
+   * @return the weights
+   */
+  protected double[] generateWeights(Random rand, int num) {
+    double[] result = new double[num];
+    for (int i = 0; i < num; i++) {
+      result[i] = rand.nextInt(10) == 0 ? 0 : rand.nextInt(3) + 0.5;
+    }
+    return result;
+  }
+
+  /**
+   * Checks that two estimators have the same kernels and estimates
+   *
+   * @param expected the expected estimator
+   * @param actual the actual estimator
+   */
+  protected void assertSameEstimator(KernelEstimator expected,
+    KernelEstimator actual) {
+    assertEquals(expected.getNumKernels(), actual.getNumKernels());
+    for (int i = 0; i < expected.getNumKernels(); i++) {
+      assertEquals("mean " + i, expected.getMeans()[i], actual.getMeans()[i]);
+      assertEquals("weight " + i, expected.getWeights()[i],
+        actual.getWeights()[i], 1e-10);
+    }
+    assertEquals(expected.getStdDev(), actual.getStdDev(), 1e-10);
+    for (double x = -2; x <= 8; x += 0.037) {
+      assertEquals("probability of " + x, expected.getProbability(x),
+        actual.getProbability(x), 1e-10);
+    }
+  }
+
+  /**
+   * Tests that bulk loading gives the same estimator as adding the values one
+   * at a time, also when merging with existing kernels
+   */
+  public void testBulkLoading() {
+    Random rand = new Random(1);
+    double[] values1 = generateValues(rand, 500);
+    double[] weights1 = generateWeights(rand, 500);
+    double[] values2 = generateValues(rand, 300);
+    double[] weights2 = generateWeights(rand, 300);
+
+    KernelEstimator incremental = new KernelEstimator(PRECISION);
+    for (int i = 0; i < values1.length; i++) {
+      incremental.addValue(values1[i], weights1[i]);
+    }
+    KernelEstimator bulk = new KernelEstimator(PRECISION);
+    bulk.addValues(values1, weights1);
+    assertSameEstimator(incremental, bulk);
+
+    for (int i = 0; i < values2.length; i++) {
+      incremental.addValue(values2[i], weights2[i]);
+    }
+    bulk.addValues(values2, weights2);
+    assertSameEstimator(incremental, bulk);
+  }
+
+  /**
+   * Tests that the support cutoff only ignores kernels far away from the
+   * query value
+   */
+  public void testSupportCutoff() {
+    Random rand = new Random(2);
+    double[] values = generateValues(rand, 1000);
+    double[] weights = generateWeights(rand, 1000);
+
+    KernelEstimator full = new KernelEstimator(PRECISION);
+    full.addValues(values, weights);
+    KernelEstimator wide = new KernelEstimator(PRECISION);
+    wide.addValues(values, weights);
+    wide.setSupportCutoff(6);
+    KernelEstimator narrow = new KernelEstimator(PRECISION);
+    narrow.addValues(values, weights);
+    narrow.setSupportCutoff(0.01);
+
+    boolean differs = false;
+    for (double x = 0; x <= 6; x += 0.05) {
+      // without a cutoff, summing stops once the relative error is small
+      double expected = full.getProbability(x);
+      assertEquals("probability of " + x, expected, wide.getProbability(x),
+        expected * 1e-3);
+      assertTrue(narrow.getProbability(x) <= wide.getProbability(x) + 1e-15);
+      if (narrow.getProbability(x) < expected * 0.99) {
+        differs = true;
+      }
+    }
+    assertTrue("narrow cutoff has no effect", differs);
+
+    // far away from all kernels
+    double x = values[0] + 1000;
+    assertTrue(full.getProbability(x) >= 0);
+    assertEquals(0.0, wide.getProbability(x));
+  }
+
+  /**
+   * Returns the test suite.
+   *
+   * @return the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(KernelEstimatorTest.class);
+  }
+
+  /**
+   * Executes the test from command-line.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+}
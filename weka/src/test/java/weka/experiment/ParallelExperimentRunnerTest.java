@@ -0,0 +1,288 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package weka.experiment;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.core.Instances;
+import weka.core.TestInstances;
+
+/**
+ * Tests running experiments in parallel with ParallelExperimentRunner.
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public class ParallelExperimentRunnerTest extends TestCase {
+
+  /** Number of times a result has actually been computed (all copies) */
+  protected static final AtomicInteger COMPUTED = new AtomicInteger();
+
+  /** The datasets used by the experiments */
+  protected List<File> m_datasets = new ArrayList<File>();
+
+  /** The output files written by the experiments */
+  protected List<File> m_outputs = new ArrayList<File>();
+
+  /**
+   * A result producer with deterministic results. Runs take longer for lower
+   * run numbers, so that units finish out of order when run in parallel.
+   */
+  protected static class DeterministicResultProducer implements
+    ResultProducer {
+
+    /** For serialization */
+    private static final long serialVersionUID = 3329146214384870530L;
+
+    /** The dataset */
+    protected Instances m_instances;
+
+    /** The listener to send results to */
+    protected ResultListener m_listener;
+
+    @Override
+    public void setInstances(Instances instances) {
+      m_instances = instances;
+    }
+
+    @Override
+    public void setResultListener(ResultListener listener) {
+      m_listener = listener;
+    }
+
+    @Override
+    public void setAdditionalMeasures(String[] additionalMeasures) {
+    }
+
+    @Override
+    public void preProcess() throws Exception {
+      m_listener.preProcess(this);
+    }
+
+    @Override
+    public void postProcess() throws Exception {
+      m_listener.postProcess(this);
+    }
+
+    @Override
+    public void doRun(int run) throws Exception {
+      Object[] key = { m_instances.relationName(), "" + run };
+      if (!m_listener.isResultRequired(this, key)) {
+        return;
+      }
+      COMPUTED.incrementAndGet();
+      Thread.sleep(5 * (5 - run));
+
+      Instances data = new Instances(m_instances);
+      data.randomize(new Random(run));
+      double sum = 0;
+      for (int i = 0; i < data.numInstances() / 2; i++) {
+        sum += data.instance(i).value(0) * (i + 1);
+      }
+      m_listener.acceptResult(this, key, new Object[] {
+        new Double(data.numInstances()), new Double(sum) });
+    }
+
+    @Override
+    public void doRunKeys(int run) throws Exception {
+      m_listener.acceptResult(this, new Object[] { m_instances.relationName(),
+        "" + run }, null);
+    }
+
+    @Override
+    public String[] getKeyNames() {
+      return new String[] { "Dataset", "Run" };
+    }
+
+    @Override
+    public Object[] getKeyTypes() {
+      return new Object[] { "", "" };
+    }
+
+    @Override
+    public String[] getResultNames() {
+      return new String[] { "Num_instances", "Checksum" };
+    }
+
+    @Override
+    public Object[] getResultTypes() {
+      return new Object[] { new Double(0), new Double(0) };
+    }
+
+    @Override
+    public String getCompatibilityState() {
+      return "";
+    }
+  }
+
+  /**
+   * A file-based listener that treats some results as already stored, as
+   * when resuming an interrupted experiment.
+   */
+  protected static class ResumingResultListener extends CSVResultListener {
+
+    /** For serialization */
+    private static final long serialVersionUID = -5340452587224869167L;
+
+    /** Keys (dataset:run) of results that are already stored */
+    protected Set<String> m_stored = new HashSet<String>();
+
+    @Override
+    public boolean isResultRequired(ResultProducer rp, Object[] key)
+      throws Exception {
+      return !m_stored.contains(key[0] + ":" + key[1]);
+    }
+  }
+
+  public ParallelExperimentRunnerTest(String name) {
+    super(name);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    for (int i = 0; i < 3; i++) {
+      TestInstances test = new TestInstances();
+      test.setRelation("data" + i);
+      test.setSeed(i + 1);
+      test.setNumInstances(50 + 25 * i);
+      test.setNumNominal(0);
+      test.setNumNumeric(3);
+      Instances data = test.generate();
+
+      File file = File.createTempFile("ParallelExperimentRunnerTest", ".arff");
+      FileWriter writer = new FileWriter(file);
+      writer.write(data.toString());
+      writer.close();
+      m_datasets.add(file);
+    }
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    for (File file : m_datasets) {
+      file.delete();
+    }
+    for (File file : m_outputs) {
+      file.delete();
+    }
+    m_datasets.clear();
+    m_outputs.clear();
+
+    super.tearDown();
+  }
+
+  /**
+   * Runs an experiment over the datasets, writing results to a file
+   *
+   * @param listener the listener to use
+   * @param numSlots the number of execution slots
+   * @return the contents of the output file
+   * @throws Exception if a problem occurs
+   */
+  protected String runExperiment(CSVResultListener listener, int numSlots)
+    throws Exception {
+    File output = File.createTempFile("ParallelExperimentRunnerTest", ".csv");
+    m_outputs.add(output);
+    listener.setOutputFile(output);
+
+    Experiment exp = new Experiment();
+    exp.setResultProducer(new DeterministicResultProducer());
+    exp.setResultListener(listener);
+    exp.setRunLower(1);
+    exp.setRunUpper(4);
+    for (File file : m_datasets) {
+      exp.getDatasets().addElement(file);
+    }
+    exp.setUsePropertyIterator(false);
+    exp.setNumExecutionSlots(numSlots);
+
+    exp.initialize();
+    exp.runExperiment();
+    exp.postProcess();
+
+    StringBuilder result = new StringBuilder();
+    BufferedReader reader = new BufferedReader(new FileReader(output));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      result.append(line).append("\n");
+    }
+    reader.close();
+
+    return result.toString();
+  }
+
+  public void testParallelMatchesSequential() throws Exception {
+    String sequential = runExperiment(new CSVResultListener(), 1);
+    String parallel = runExperiment(new CSVResultListener(), 4);
+
+    // header plus one line per dataset and run
+    assertEquals(1 + 3 * 4, sequential.split("\n").length);
+    assertEquals(sequential, parallel);
+  }
+
+  public void testResumeSkipsStoredResults() throws Exception {
+    ResumingResultListener listener = new ResumingResultListener();
+    String complete = runExperiment(listener, 1);
+
+    listener = new ResumingResultListener();
+    listener.m_stored.add("data0:1");
+    listener.m_stored.add("data1:3");
+    listener.m_stored.add("data2:4");
+    COMPUTED.set(0);
+    String resumed = runExperiment(listener, 4);
+
+    assertEquals(3 * 4 - 3, COMPUTED.get());
+    List<String> expected = new ArrayList<String>();
+    for (String line : complete.split("\n")) {
+      if (!line.startsWith("data0,1,") && !line.startsWith("data1,3,")
+        && !line.startsWith("data2,4,")) {
+        expected.add(line);
+      }
+    }
+    List<String> actual = new ArrayList<String>();
+    for (String line : resumed.split("\n")) {
+      actual.add(line);
+    }
+    assertEquals(expected, actual);
+  }
+
+  public static Test suite() {
+    return new TestSuite(ParallelExperimentRunnerTest.class);
+  }
+
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+}
@@ -970,4 +970,51 @@ public abstract class AbstractFilterTest
       fail("Failed to apply filter for 2nd time: " + e);
     }
   }
+
+  /**
+   * Tests whether filtering chunks of the data in parallel gives the same
+   * result as filtering the data in one go (only for RowParallelFilters).
+   */
+  public void testRowParallel() {
+    Instances 	data;
+    Instances 	sequential;
+    Instances 	parallel;
+    Filter	copy;
+    String 	msg;
+
+    if (!(m_Filter instanceof RowParallelFilter))
+      return;
+
+    data = new Instances(m_Instances, 0);
+    while (data.numInstances() < 4 * Filter.MIN_CHUNK_SIZE) {
+      for (int i = 0; i < m_Instances.numInstances(); i++)
+	data.add(m_Instances.instance(i));
+    }
+
+    try {
+      copy = Filter.makeCopy(m_Filter);
+      m_Filter.setInputFormat(data);
+      copy.setInputFormat(data);
+    }
+    catch (Exception e) {
+      fail("Failed to use setInputFormat: " + e);
+      return;
+    }
+
+    for (int batch = 1; batch <= 2; batch++) {
+      try {
+	sequential = Filter.useFilter(data, m_Filter);
+	parallel   = Filter.useFilter(data, copy, 4);
+      }
+      catch (Exception e) {
+	e.printStackTrace();
+	fail("Failed to apply filter in parallel (" + batch + ". batch): " + e);
+	return;
+      }
+      assertEquals("Number of instances (" + batch + ". batch)",
+	  sequential.numInstances(), parallel.numInstances());
+      msg = compareDatasets(sequential, parallel);
+      assertNull("Parallel filtering differs (" + batch + ". batch): " + msg, msg);
+    }
+  }
 }
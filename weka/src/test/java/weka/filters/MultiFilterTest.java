@@ -19,11 +19,25 @@
 
 package weka.filters;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.Utils;
 import weka.filters.unsupervised.attribute.Add;
+import weka.filters.unsupervised.attribute.AddID;
 import weka.filters.unsupervised.attribute.AddExpression;
 import weka.filters.unsupervised.attribute.Center;
+import weka.filters.unsupervised.attribute.NumericTransform;
+import weka.filters.unsupervised.attribute.Remove;
 import weka.filters.unsupervised.attribute.ReplaceMissingValues;
+import weka.filters.unsupervised.instance.ReservoirSample;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -37,6 +51,25 @@ import junit.framework.TestSuite;
  * @version $Revision$
  */
 public class MultiFilterTest extends AbstractFilterTest {
+
+  /** the names of the threads that ThreadProbe filters were used on */
+  protected static final Set<String> THREADS = Collections
+    .synchronizedSet(new HashSet<String>());
+
+  /**
+   * NumericTransform that records the names of the threads it is used on.
+   */
+  public static class ThreadProbe extends NumericTransform {
+
+    /** for serialization */
+    private static final long serialVersionUID = 2465720541203532947L;
+
+    @Override
+    public boolean input(Instance instance) throws Exception {
+      THREADS.add(Thread.currentThread().getName());
+      return super.input(instance);
+    }
+  }
   
   public MultiFilterTest(String name) { 
     super(name);  
@@ -105,6 +138,162 @@ public class MultiFilterTest extends AbstractFilterTest {
     assertEquals(m_Instances.numInstances(),  result.numInstances());
   }
 
+  /**
+   * Creates a numeric dataset with missing values.
+   * 
+   * @param numInstances the number of instances
+   * @return the dataset
+   */
+  protected Instances getNumericData(int numInstances) {
+    ArrayList<Attribute> atts = new ArrayList<Attribute>();
+    for (int i = 0; i < 5; i++) {
+      atts.add(new Attribute("att" + (i + 1)));
+    }
+    Instances result = new Instances("numeric", atts, numInstances);
+    Random rand = new Random(42);
+    for (int n = 0; n < numInstances; n++) {
+      double[] values = new double[atts.size()];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = rand.nextInt(10) == 0 ? Utils.missingValue() : rand
+          .nextGaussian();
+      }
+      result.add(new DenseInstance(1.0, values));
+    }
+
+    return result;
+  }
+
+  /**
+   * Creates ReplaceMissingValues + Remove + NumericTransform filters.
+   * 
+   * @return the filters
+   */
+  protected Filter[] getChain() {
+    Filter[] filters = new Filter[3];
+    filters[0] = new ReplaceMissingValues();
+    filters[1] = new Remove();
+    ((Remove) filters[1]).setAttributeIndices("2");
+    filters[2] = new ThreadProbe();
+
+    return filters;
+  }
+
+  /**
+   * Applies the given filters one after the other to the data.
+   * 
+   * @param filters the filters
+   * @param data the data
+   * @param first whether this is the first batch
+   * @return the filtered data
+   * @throws Exception if filtering fails
+   */
+  protected Instances applySuccessively(Filter[] filters, Instances data,
+    boolean first) throws Exception {
+    for (Filter filter : filters) {
+      if (first) {
+        filter.setInputFormat(data);
+      }
+      data = Filter.useFilter(data, filter);
+    }
+
+    return data;
+  }
+
+  /**
+   * Checks that two datasets contain the same instances.
+   * 
+   * @param expected the expected data
+   * @param actual the actual data
+   */
+  protected void assertSameData(Instances expected, Instances actual) {
+    assertEquals(expected.numAttributes(), actual.numAttributes());
+    assertEquals(expected.numInstances(), actual.numInstances());
+    for (int i = 0; i < expected.numInstances(); i++) {
+      assertEquals("instance " + i, expected.instance(i).toString(), actual
+        .instance(i).toString());
+    }
+  }
+
+  /**
+   * tests that applying the filters in a single pass (sequentially and in
+   * parallel) gives the same result as applying them one after the other, for
+   * the first and the second batch, and that the parallel path is taken
+   */
+  public void testFused() throws Exception {
+    Instances train = getNumericData(5000);
+    Instances test = getNumericData(3000);
+    Filter[] filters = getChain();
+    Instances expectedTrain = applySuccessively(filters, train, true);
+    Instances expectedTest = applySuccessively(filters, test, false);
+
+    for (int slots : new int[] { 1, 4 }) {
+      MultiFilter multi = new MultiFilter();
+      multi.setFilters(getChain());
+      multi.setNumExecutionSlots(slots);
+      multi.setInputFormat(train);
+      THREADS.clear();
+      assertSameData(expectedTrain, Filter.useFilter(train, multi));
+      assertEquals("chunks filtered in parallel (1. batch)", slots > 1,
+        THREADS.contains("Filter chunk"));
+      THREADS.clear();
+      assertSameData(expectedTest, Filter.useFilter(test, multi));
+      assertEquals("chunks filtered in parallel (2. batch)", slots > 1,
+        THREADS.contains("Filter chunk"));
+    }
+  }
+
+  /**
+   * tests that filters that aren't RowParallelFilters, such as one that only
+   * outputs instances at the end of the batch, are not applied to chunks of
+   * the data in parallel
+   */
+  public void testParallelHoldingBack() throws Exception {
+    Instances data = getNumericData(5000);
+    Filter[] filters = new Filter[2];
+    filters[0] = new Remove();
+    ((Remove) filters[0]).setAttributeIndices("1");
+    filters[1] = new ReservoirSample();
+    ((ReservoirSample) filters[1]).setSampleSize(500);
+    Instances expected = applySuccessively(filters, data, true);
+
+    MultiFilter multi = new MultiFilter();
+    multi.setFilters(new Filter[] { new Remove(), new ReservoirSample() });
+    ((Remove) multi.getFilter(0)).setAttributeIndices("1");
+    ((ReservoirSample) multi.getFilter(1)).setSampleSize(500);
+    multi.setNumExecutionSlots(4);
+    multi.setInputFormat(data);
+    assertSameData(expected, Filter.useFilter(data, multi));
+  }
+
+  /**
+   * tests that a filter that keeps state from one instance to the next (AddID)
+   * is not applied to chunks of the data in parallel, in either batch, even
+   * though it outputs each instance right away
+   */
+  public void testParallelStateful() throws Exception {
+    Instances train = getNumericData(20000);
+    Instances test = getNumericData(20000);
+    Filter[] filters = new Filter[] { new AddID() };
+    Instances expectedTrain = applySuccessively(filters, train, true);
+    Instances expectedTest = applySuccessively(filters, test, false);
+    assertEquals(40000.0, expectedTest.lastInstance().value(0), 0);
+
+    MultiFilter multi = new MultiFilter();
+    multi.setFilters(new Filter[] { new AddID() });
+    multi.setNumExecutionSlots(4);
+    multi.setInputFormat(train);
+    assertSameData(expectedTrain, Filter.useFilter(train, multi));
+    assertSameData(expectedTest, Filter.useFilter(test, multi));
+
+    Set<Double> ids = new HashSet<Double>();
+    Instances third = Filter.useFilter(test, multi);
+    for (int i = 0; i < third.numInstances(); i++) {
+      ids.add(third.instance(i).value(0));
+    }
+    assertEquals(third.numInstances(), ids.size());
+    assertEquals(60000.0, third.lastInstance().value(0), 0);
+  }
+
   public static Test suite() {
     return new TestSuite(MultiFilterTest.class);
   }
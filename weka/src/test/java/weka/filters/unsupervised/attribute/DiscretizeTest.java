@@ -19,8 +19,15 @@
 
 package weka.filters.unsupervised.attribute;
 
+import java.util.ArrayList;
+import java.util.Random;
+
 import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.SparseInstance;
+import weka.core.Utils;
 import weka.filters.AbstractFilterTest;
 import weka.filters.Filter;
 
@@ -141,6 +148,89 @@ public class DiscretizeTest extends AbstractFilterTest {
     assertTrue(5 >= result.attribute(2).numValues());
   }
 
+  /**
+   * Generates numeric data, some of it sparse and with missing values
+   * 
+   * @return the data
+   */
+  protected Instances numericData() {
+    ArrayList<Attribute> atts = new ArrayList<Attribute>();
+    for (int i = 0; i < 3; i++) {
+      atts.add(new Attribute("a" + i));
+    }
+    Instances data = new Instances("numeric", atts, 0);
+    Random r = new Random(1);
+    for (int i = 0; i < 1000; i++) {
+      double[] vals = new double[3];
+      vals[0] = r.nextGaussian();
+      vals[1] = r.nextInt(3) == 0 ? 0 : r.nextDouble();
+      vals[2] = r.nextInt(10) == 0 ? Utils.missingValue() : r.nextInt(20);
+      Instance inst;
+      if (i % 2 == 0) {
+        inst = new SparseInstance(1 + r.nextInt(3), vals);
+      } else {
+        inst = new DenseInstance(1 + r.nextInt(3), vals);
+      }
+      data.add(inst);
+    }
+    return data;
+  }
+
+  /**
+   * Equal-width cut points from the sketches use the exact range, so the
+   * output must match the buffered output, instance for instance, even though
+   * the first batch is spooled to disk rather than held in memory
+   */
+  public void testSketchEqualWidth() throws Exception {
+    Instances data = numericData();
+
+    Discretize buffered = new Discretize();
+    buffered.setInputFormat(data);
+    Instances expected = Filter.useFilter(data, buffered);
+
+    Discretize sketch = new Discretize();
+    sketch.setUseQuantileSketch(true);
+    sketch.setInputFormat(data);
+    for (int i = 0; i < data.numInstances(); i++) {
+      assertFalse(sketch.input(data.instance(i)));
+    }
+    assertNotNull(sketch.m_SpoolFile);
+    assertTrue(sketch.batchFinished());
+    assertEquals(data.numInstances(), sketch.numPendingOutput());
+
+    for (int i = 0; i < expected.numInstances(); i++) {
+      Instance exp = expected.instance(i);
+      assertEquals(exp.toString(), sketch.outputPeek().toString());
+      Instance out = sketch.output();
+      assertEquals(exp.toString(), out.toString());
+      assertEquals(exp.weight(), out.weight(), 0);
+      assertEquals(exp instanceof SparseInstance,
+        out instanceof SparseInstance);
+    }
+    assertEquals(0, sketch.numPendingOutput());
+    assertNull(sketch.output());
+    assertNull(sketch.m_SpoolFile);
+
+    // later batches are converted straight away
+    assertTrue(sketch.input(data.instance(0)));
+    assertEquals(expected.instance(0).toString(), sketch.output().toString());
+  }
+
+  /**
+   * The sketch compression is only part of the options in sketch mode
+   */
+  public void testSketchOptions() throws Exception {
+    Discretize f = new Discretize();
+    assertEquals(-1, Utils.getOptionPos("sketch-compression", f.getOptions()));
+
+    f.setUseQuantileSketch(true);
+    f.setSketchCompression(50);
+    Discretize g = new Discretize();
+    g.setOptions(f.getOptions());
+    assertTrue(g.getUseQuantileSketch());
+    assertEquals(50.0, g.getSketchCompression(), 0);
+  }
+
   public static Test suite() {
     return new TestSuite(DiscretizeTest.class);
   }
@@ -0,0 +1,267 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    InstanceBatchTest.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.knowledgeflow;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Settings;
+import weka.core.TestInstances;
+import weka.core.converters.ArffLoader;
+import weka.knowledgeflow.steps.BaseStep;
+import weka.knowledgeflow.steps.Loader;
+import weka.knowledgeflow.steps.Step;
+
+/**
+ * Tests sending batches of instances from a streaming Loader to steps and
+ * listeners that don't support batches. Run from the command line with:
+ * <p>
+ * java weka.knowledgeflow.InstanceBatchTest
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public class InstanceBatchTest extends TestCase {
+
+  /** the number of instances to stream (not a multiple of the batch size) */
+  protected static final int NUM_INSTANCES = 1003;
+
+  /** the batch size to use */
+  protected static final int BATCH_SIZE = 64;
+
+  /** the data streamed by the loader */
+  protected Instances m_data;
+
+  /** the ARFF file holding the data */
+  protected File m_file;
+
+  /**
+   * Constructs the {@link InstanceBatchTest}
+   *
+   * @param name the name of the test
+   */
+  public InstanceBatchTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Records the incoming instances, and the number of events they arrived
+   * in. Has no InstanceBatchCapable annotation.
+   */
+  protected static class Collect extends BaseStep implements
+    StepOutputListener {
+
+    private static final long serialVersionUID = 4421870046427405391L;
+
+    protected List<String> m_instances = Collections
+      .synchronizedList(new ArrayList<String>());
+    protected volatile int m_numEvents;
+    protected volatile boolean m_batchSeen;
+    protected volatile boolean m_streamEnded;
+
+    @Override
+    public void stepInit() {
+    }
+
+    @Override
+    public void processIncoming(Data data) {
+      dataFromStep(data);
+    }
+
+    @Override
+    public boolean dataFromStep(Data data) {
+      m_numEvents++;
+      if (data.getPayloadElement(StepManager.CON_AUX_DATA_INSTANCE_BATCH) != null) {
+        m_batchSeen = true;
+      }
+      Instance inst = data.getPrimaryPayload();
+      if (inst != null) {
+        m_instances.add(inst.toString());
+      }
+      Boolean end =
+        data.getPayloadElement(StepManager.CON_AUX_DATA_INCREMENTAL_STREAM_END);
+      if (end != null && end) {
+        m_streamEnded = true;
+      }
+      return true;
+    }
+
+    @Override
+    public List<String> getIncomingConnectionTypes() {
+      return Arrays.asList(StepManager.CON_INSTANCE);
+    }
+
+    @Override
+    public List<String> getOutgoingConnectionTypes() {
+      return new ArrayList<String>();
+    }
+  }
+
+  /**
+   * Records the batches arriving at a step that supports them
+   */
+  @InstanceBatchCapable
+  protected static class CollectBatches extends Collect {
+
+    private static final long serialVersionUID = -2250717403531904463L;
+
+    protected volatile int m_largestBatch;
+
+    @Override
+    public void processIncoming(Data data) {
+      List<Instance> batch =
+        data.getPayloadElement(StepManager.CON_AUX_DATA_INSTANCE_BATCH);
+      if (batch == null) {
+        dataFromStep(data);
+        return;
+      }
+      m_numEvents++;
+      m_batchSeen = true;
+      m_largestBatch = Math.max(m_largestBatch, batch.size());
+      for (Instance inst : batch) {
+        m_instances.add(inst.toString());
+      }
+    }
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    TestInstances test = new TestInstances();
+    test.setNumInstances(NUM_INSTANCES);
+    test.setNumNominal(2);
+    test.setNumNumeric(3);
+    m_data = test.generate();
+
+    m_file = File.createTempFile("InstanceBatchTest", ".arff");
+    FileWriter writer = new FileWriter(m_file);
+    writer.write(m_data.toString());
+    writer.close();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    m_file.delete();
+
+    super.tearDown();
+  }
+
+  /**
+   * Runs a flow that streams the test data from a Loader to the given steps
+   *
+   * @param batchSize the streaming batch size
+   * @param listener a listener for the loader's output
+   * @param targets the steps to connect to the loader
+   */
+  protected void runFlow(int batchSize, StepOutputListener listener,
+    Step... targets) throws Exception {
+    ArffLoader arff = new ArffLoader();
+    arff.setFile(m_file);
+    Loader loader = new Loader();
+    loader.setLoader(arff);
+
+    Flow flow = new Flow();
+    StepManagerImpl loaderManager = new StepManagerImpl(loader);
+    flow.addStep(loaderManager);
+    for (Step target : targets) {
+      StepManagerImpl targetManager = new StepManagerImpl(target);
+      flow.addStep(targetManager);
+      assertTrue(loaderManager.addOutgoingConnection(StepManager.CON_INSTANCE,
+        targetManager));
+    }
+    loaderManager.addStepOutputListener(listener, StepManager.CON_INSTANCE);
+
+    Settings settings = new Settings("weka", KFDefaults.APP_ID);
+    settings.applyDefaults(new KFDefaults());
+    settings.setSetting(KFDefaults.APP_ID,
+      BaseExecutionEnvironment.BaseExecutionEnvironmentDefaults.STREAMING_BATCH_SIZE_KEY,
+      batchSize);
+    FlowRunner runner = new FlowRunner(settings);
+    runner.setFlow(flow);
+    runner.run();
+    runner.waitUntilFinished();
+  }
+
+  /**
+   * Checks that the recorded instances are the test data, in order
+   *
+   * @param collect the step or listener that recorded them
+   */
+  protected void assertAllInOrder(Collect collect) {
+    assertEquals(NUM_INSTANCES, collect.m_instances.size());
+    for (int i = 0; i < NUM_INSTANCES; i++) {
+      assertEquals(m_data.instance(i).toString(), collect.m_instances.get(i));
+    }
+  }
+
+  public void testStepWithoutBatchSupport() throws Exception {
+    Collect unbatched = new Collect();
+    Collect unbatchedListener = new Collect();
+    runFlow(1, unbatchedListener, unbatched);
+
+    Collect batched = new Collect();
+    Collect batchedListener = new Collect();
+    runFlow(BATCH_SIZE, batchedListener, batched);
+
+    assertAllInOrder(unbatched);
+    assertEquals(unbatched.m_instances, batched.m_instances);
+    assertFalse(batched.m_batchSeen);
+    assertTrue(batched.m_streamEnded);
+
+    assertAllInOrder(unbatchedListener);
+    assertEquals(unbatchedListener.m_instances, batchedListener.m_instances);
+    assertFalse(batchedListener.m_batchSeen);
+    assertTrue(batchedListener.m_streamEnded);
+  }
+
+  public void testStepWithBatchSupport() throws Exception {
+    CollectBatches batchCapable = new CollectBatches();
+    Collect plain = new Collect();
+    runFlow(BATCH_SIZE, new Collect(), batchCapable, plain);
+
+    assertAllInOrder(batchCapable);
+    assertAllInOrder(plain);
+    assertTrue(batchCapable.m_batchSeen);
+    assertEquals(BATCH_SIZE, batchCapable.m_largestBatch);
+    assertTrue(batchCapable.m_numEvents < NUM_INSTANCES);
+    assertFalse(plain.m_batchSeen);
+  }
+
+  public static Test suite() {
+    return new TestSuite(InstanceBatchTest.class);
+  }
+
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    StreamPipelineTest.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.knowledgeflow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.WekaException;
+import weka.knowledgeflow.steps.BaseStep;
+
+/**
+ * Tests pipelined streaming in the BaseExecutionEnvironment. Run from the
+ * command line with:
+ * <p>
+ * java weka.knowledgeflow.StreamPipelineTest
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public class StreamPipelineTest extends TestCase {
+
+  /** the number of instances to stream */
+  protected static final int NUM_INSTANCES = 20000;
+
+  /**
+   * Constructs the {@link StreamPipelineTest}
+   *
+   * @param name the name of the test
+   */
+  public StreamPipelineTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Passes each incoming instance on to the next step, via the execution
+   * environment
+   */
+  protected static class Forward extends BaseStep {
+
+    private static final long serialVersionUID = 8043532137396227613L;
+
+    protected BaseExecutionEnvironment m_env;
+    protected StepManagerImpl m_next;
+
+    public Forward(BaseExecutionEnvironment env, StepManagerImpl next) {
+      m_env = env;
+      m_next = next;
+    }
+
+    @Override
+    public void stepInit() {
+    }
+
+    @Override
+    public void processIncoming(Data data) throws WekaException {
+      m_env.sendDataToStep(m_next, data);
+    }
+
+    @Override
+    public List<String> getIncomingConnectionTypes() {
+      return Arrays.asList(StepManager.CON_INSTANCE);
+    }
+
+    @Override
+    public List<String> getOutgoingConnectionTypes() {
+      return Arrays.asList(StepManager.CON_INSTANCE);
+    }
+  }
+
+  /**
+   * Counts the incoming instances, checking that they arrive in order, and
+   * records whether the end of stream marker arrived
+   */
+  protected static class Count extends BaseStep {
+
+    private static final long serialVersionUID = -2409367315009546702L;
+
+    protected volatile int m_count;
+    protected volatile boolean m_outOfOrder;
+    protected volatile boolean m_streamEnded;
+
+    @Override
+    public void stepInit() {
+    }
+
+    @Override
+    public void processIncoming(Data data) {
+      Instance inst = data.getPrimaryPayload();
+      if (inst.value(0) != m_count) {
+        m_outOfOrder = true;
+      }
+      m_count++;
+      Boolean end =
+        data.getPayloadElement(StepManager.CON_AUX_DATA_INCREMENTAL_STREAM_END);
+      if (end != null && end) {
+        m_streamEnded = true;
+      }
+    }
+
+    @Override
+    public List<String> getIncomingConnectionTypes() {
+      return Arrays.asList(StepManager.CON_INSTANCE);
+    }
+
+    @Override
+    public List<String> getOutgoingConnectionTypes() {
+      return new ArrayList<String>();
+    }
+  }
+
+  /**
+   * Streams instances through two pipelined steps and shuts the environment
+   * down straight after sending the last one, as StepInjectorFlowRunner does.
+   * Every instance, and the end of stream marker, must still arrive.
+   */
+  public void testStreamTailArrives() throws Exception {
+    BaseExecutionEnvironment env = new BaseExecutionEnvironment();
+    env.setLog(new FlowRunner.SimpleLogger());
+    env.setPipelinedStreaming(true);
+    // a small queue, so that the producer is repeatedly blocked
+    env.setPipelineQueueSize(4);
+    env.startClientExecutionService(1, 1);
+
+    Count count = new Count();
+    StepManagerImpl countManager = new StepManagerImpl(count);
+    StepManagerImpl forwardManager =
+      new StepManagerImpl(new Forward(env, countManager));
+
+    ArrayList<Attribute> atts = new ArrayList<Attribute>();
+    atts.add(new Attribute("x"));
+    Instances header = new Instances("stream", atts, 0);
+
+    // the producer reuses its Data object, as the loaders do
+    Data data = new Data(StepManager.CON_INSTANCE);
+    for (int i = 0; i < NUM_INSTANCES; i++) {
+      Instance inst = new DenseInstance(1.0, new double[] { i });
+      inst.setDataset(header);
+      data.setPayloadElement(StepManager.CON_INSTANCE, inst);
+      data.setPayloadElement(StepManager.CON_AUX_DATA_INCREMENTAL_STREAM_END,
+        i == NUM_INSTANCES - 1);
+      env.sendDataToStep(forwardManager, data);
+    }
+    assertNotNull(forwardManager.m_pipelineStage);
+    assertNotNull(countManager.m_pipelineStage);
+
+    env.stopClientExecutionService();
+
+    assertEquals(NUM_INSTANCES, count.m_count);
+    assertFalse(count.m_outOfOrder);
+    assertTrue(count.m_streamEnded);
+    assertFalse(env.isPipelineBusy());
+  }
+
+  /**
+   * Stopping the flow discards queued data, and leaves nothing counted as in
+   * flight
+   */
+  public void testStopDiscards() throws Exception {
+    BaseExecutionEnvironment env = new BaseExecutionEnvironment();
+    env.setLog(new FlowRunner.SimpleLogger());
+    env.setPipelinedStreaming(true);
+    env.setPipelineQueueSize(NUM_INSTANCES);
+    env.startClientExecutionService(1, 1);
+
+    Count count = new Count();
+    StepManagerImpl countManager = new StepManagerImpl(count);
+
+    ArrayList<Attribute> atts = new ArrayList<Attribute>();
+    atts.add(new Attribute("x"));
+    Instances header = new Instances("stream", atts, 0);
+    Data data = new Data(StepManager.CON_INSTANCE);
+    for (int i = 0; i < NUM_INSTANCES; i++) {
+      Instance inst = new DenseInstance(1.0, new double[] { i });
+      inst.setDataset(header);
+      data.setPayloadElement(StepManager.CON_INSTANCE, inst);
+      env.sendDataToStep(countManager, data);
+    }
+
+    env.stopProcessing();
+
+    // the worker may be part way through a step when interrupted
+    for (int i = 0; i < 50 && env.isPipelineBusy(); i++) {
+      Thread.sleep(StreamPipelineStage.POLL_INTERVAL);
+    }
+    assertFalse(env.isPipelineBusy());
+    assertTrue(count.m_count <= NUM_INSTANCES);
+  }
+
+  public static Test suite() {
+    return new TestSuite(StreamPipelineTest.class);
+  }
+
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,232 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    SorterTest.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.knowledgeflow.steps;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.TestInstances;
+import weka.core.converters.ArffLoader;
+import weka.knowledgeflow.Data;
+import weka.knowledgeflow.Flow;
+import weka.knowledgeflow.FlowRunner;
+import weka.knowledgeflow.StepManager;
+import weka.knowledgeflow.StepManagerImpl;
+
+/**
+ * Tests the external (streaming) sort of the Sorter step. Run from the command
+ * line with:
+ * <p>
+ * java weka.knowledgeflow.steps.SorterTest
+ *
+ * @author agent (agent@local)
+ * @version $Revision$
+ */
+public class SorterTest extends TestCase {
+
+  /** the number of instances to sort (not a multiple of the buffer size) */
+  protected static final int NUM_INSTANCES = 1050;
+
+  /** the buffer size that makes the sorter spill to several runs */
+  protected static final int SMALL_BUFFER = 100;
+
+  /** sort on two nominal attributes, so that there are many ties */
+  protected static final String SORT_DETAILS = "Nominal1@@SR@@N"
+    + "@@sort-rule@@" + "Nominal2@@SR@@Y";
+
+  /** the ARFF file holding the data */
+  protected File m_file;
+
+  /**
+   * Constructs the {@link SorterTest}
+   *
+   * @param name the name of the test
+   */
+  public SorterTest(String name) {
+    super(name);
+  }
+
+  /**
+   * A Sorter that counts the runs it writes to disk
+   */
+  protected static class CountingSorter extends Sorter {
+
+    private static final long serialVersionUID = -6108497932213367470L;
+
+    protected int m_numRuns;
+
+    @Override
+    protected File createTempFile() throws IOException {
+      m_numRuns++;
+      return super.createTempFile();
+    }
+  }
+
+  /**
+   * Records the incoming instances
+   */
+  protected static class Collect extends BaseStep {
+
+    private static final long serialVersionUID = 2785401329851376019L;
+
+    protected List<String> m_instances = new ArrayList<String>();
+    protected List<Instance> m_copies = new ArrayList<Instance>();
+
+    @Override
+    public void stepInit() {
+    }
+
+    @Override
+    public void processIncoming(Data data) {
+      Instance inst = data.getPrimaryPayload();
+      if (inst != null) {
+        m_instances.add(inst.toString());
+        m_copies.add((Instance) inst.copy());
+      }
+    }
+
+    @Override
+    public List<String> getIncomingConnectionTypes() {
+      return Arrays.asList(StepManager.CON_INSTANCE);
+    }
+
+    @Override
+    public List<String> getOutgoingConnectionTypes() {
+      return new ArrayList<String>();
+    }
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    TestInstances test = new TestInstances();
+    test.setNumInstances(NUM_INSTANCES);
+    test.setNumNominal(2);
+    test.setNumNominalValues(3);
+    test.setNumNumeric(1);
+    test.setNumString(1);
+    Instances data = test.generate();
+
+    // number the instances, so that stability can be checked
+    data.insertAttributeAt(new Attribute("id"), 0);
+    for (int i = 0; i < data.numInstances(); i++) {
+      data.instance(i).setValue(0, i);
+    }
+
+    m_file = File.createTempFile("SorterTest", ".arff");
+    FileWriter writer = new FileWriter(m_file);
+    writer.write(data.toString());
+    writer.close();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    m_file.delete();
+
+    super.tearDown();
+  }
+
+  /**
+   * Streams the test data through a sorter
+   *
+   * @param sorter the sorter to use
+   * @param bufferSize the in-memory buffer size for the sorter
+   * @return the sorted instances
+   */
+  protected Collect sort(Sorter sorter, int bufferSize) throws Exception {
+    ArffLoader arff = new ArffLoader();
+    arff.setFile(m_file);
+    Loader loader = new Loader();
+    loader.setLoader(arff);
+    sorter.setSortDetails(SORT_DETAILS);
+    sorter.setBufferSize("" + bufferSize);
+    Collect collect = new Collect();
+
+    Flow flow = new Flow();
+    StepManagerImpl loaderManager = new StepManagerImpl(loader);
+    StepManagerImpl sorterManager = new StepManagerImpl(sorter);
+    StepManagerImpl collectManager = new StepManagerImpl(collect);
+    flow.addStep(loaderManager);
+    flow.addStep(sorterManager);
+    flow.addStep(collectManager);
+    assertTrue(loaderManager.addOutgoingConnection(StepManager.CON_INSTANCE,
+      sorterManager));
+    assertTrue(sorterManager.addOutgoingConnection(StepManager.CON_INSTANCE,
+      collectManager));
+
+    FlowRunner runner = new FlowRunner();
+    runner.setFlow(flow);
+    runner.run();
+    runner.waitUntilFinished();
+
+    return collect;
+  }
+
+  public void testExternalSortIsStable() throws Exception {
+    CountingSorter inMemory = new CountingSorter();
+    Collect expected = sort(inMemory, NUM_INSTANCES + 1);
+    assertEquals(0, inMemory.m_numRuns);
+
+    CountingSorter external = new CountingSorter();
+    Collect actual = sort(external, SMALL_BUFFER);
+    assertEquals(NUM_INSTANCES / SMALL_BUFFER, external.m_numRuns);
+
+    assertEquals(NUM_INSTANCES, expected.m_instances.size());
+    assertEquals(expected.m_instances, actual.m_instances);
+
+    // instances with equal keys keep their original order
+    for (int i = 1; i < actual.m_copies.size(); i++) {
+      Instance prev = actual.m_copies.get(i - 1);
+      Instance current = actual.m_copies.get(i);
+      Attribute first = current.dataset().attribute("Nominal1");
+      Attribute second = current.dataset().attribute("Nominal2");
+      int cmp = Double.compare(prev.value(first), current.value(first));
+      if (cmp == 0) {
+        cmp = -Double.compare(prev.value(second), current.value(second));
+      }
+      assertTrue("Out of order at " + i, cmp <= 0);
+      if (cmp == 0) {
+        assertTrue("Unstable at " + i, prev.value(0) < current.value(0));
+      }
+    }
+  }
+
+  public static Test suite() {
+    return new TestSuite(SorterTest.class);
+  }
+
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+}